@@ -228,8 +228,23 @@ public abstract class Image extends Rectangle implements Element,
 
 	protected Long mySerialId = getSerialId();
 
+	/**
+	 * <CODE>true</CODE> if the serial id is shared with the other copies of an
+	 * image taken from an <CODE>ImageCache</CODE>.
+	 */
+	boolean sharedSerialId = false;
+
+	/**
+	 * The cache of the image if it's a copy of a cached image or the mask of
+	 * a cached image, to keep the data deflated by the writers.
+	 */
+	ImageCache cache;
+
 	static long serialId = 0;
 
+	/** The cache of the images read from URLs and byte arrays, if any. */
+	private static volatile ImageCache imageCache;
+
 	/** Holds value of property dpiX. */
 	protected int dpiX = 0;
 
@@ -329,6 +344,8 @@ public abstract class Image extends Rectangle implements Element,
 		this.bpc = image.bpc;
 		this.transparency = image.transparency;
 		this.mySerialId = image.mySerialId;
+		this.sharedSerialId = image.sharedSerialId;
+		this.cache = image.cache;
 		this.invert = image.invert;
 		this.dpiX = image.dpiX;
 		this.dpiY = image.dpiY;
@@ -386,6 +403,24 @@ public abstract class Image extends Rectangle implements Element,
 
 	public static Image getInstance(URL url) throws BadElementException,
 			MalformedURLException, IOException {
+		ImageCache cache = imageCache;
+		if (cache != null)
+			return cache.getImage(url);
+		return getUncachedInstance(url);
+	}
+
+	/**
+	 * Reads an image from an URL without going through the image cache.
+	 * 
+	 * @param url
+	 *            an URL
+	 * @return an Image
+	 * @throws BadElementException
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 */
+	static Image getUncachedInstance(URL url) throws BadElementException,
+			MalformedURLException, IOException {
 		InputStream is = null;
 		try {
 			is = url.openStream();
@@ -457,6 +492,24 @@ public abstract class Image extends Rectangle implements Element,
 	 */
 	public static Image getInstance(byte imgb[]) throws BadElementException,
 			MalformedURLException, IOException {
+		ImageCache cache = imageCache;
+		if (cache != null)
+			return cache.getImage(imgb);
+		return getUncachedInstance(imgb);
+	}
+
+	/**
+	 * Reads an image from a byte array without going through the image cache.
+	 * 
+	 * @param imgb
+	 *            raw image date
+	 * @return an Image object
+	 * @throws BadElementException
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 */
+	static Image getUncachedInstance(byte imgb[]) throws BadElementException,
+			MalformedURLException, IOException {
 		InputStream is = null;
 		try {
 			is = new java.io.ByteArrayInputStream(imgb);
@@ -1551,6 +1604,7 @@ public abstract class Image extends Rectangle implements Element,
 	 *            the transparency values
 	 */
 	public void setTransparency(int transparency[]) {
+		unshareSerialId();
 		this.transparency = transparency;
 	}
 
@@ -1600,6 +1654,41 @@ public abstract class Image extends Rectangle implements Element,
 		return mySerialId;
 	}
 
+	/**
+	 * Gives this image its own serial id if it shares it with the other copies
+	 * of a cached image, before a change that makes it embedded differently.
+	 */
+	private void unshareSerialId() {
+		if (sharedSerialId) {
+			mySerialId = getSerialId();
+			sharedSerialId = false;
+			cache = null;
+		}
+	}
+
+	/**
+	 * Sets the cache used by <CODE>getInstance()</CODE> for the images read
+	 * from an URL, a file or a byte array. With a cache the same image content
+	 * is only decoded once and all the instances returned for it share the
+	 * serial id, so a <CODE>PdfWriter</CODE> embeds it only once.
+	 * 
+	 * @param cache
+	 *            the cache or <CODE>null</CODE> to read every image again, the
+	 *            default
+	 */
+	public static void setImageCache(ImageCache cache) {
+		imageCache = cache;
+	}
+
+	/**
+	 * Gets the cache used by <CODE>getInstance()</CODE>.
+	 * 
+	 * @return the cache or <CODE>null</CODE> if there is none
+	 */
+	public static ImageCache getImageCache() {
+		return imageCache;
+	}
+
 	/**
 	 * Gets the dots-per-inch in the X direction. Returns 0 if not available.
 	 * 
@@ -1654,6 +1743,7 @@ public abstract class Image extends Rectangle implements Element,
 	public void makeMask() throws DocumentException {
 		if (!isMaskCandidate())
 			throw new DocumentException("This image can not be an image mask.");
+		unshareSerialId();
 		mask = true;
 	}
 
@@ -1672,6 +1762,7 @@ public abstract class Image extends Rectangle implements Element,
 		if (!mask.mask)
 			throw new DocumentException(
 					"The image mask is not a mask. Did you do makeMask()?");
+		unshareSerialId();
 		imageMask = mask;
 		smask = (mask.bpc > 1 && mask.bpc <= 8);
 	}
@@ -1702,6 +1793,7 @@ public abstract class Image extends Rectangle implements Element,
 	 *            mask
 	 */
 	public void setInvertMask(boolean invert) {
+		unshareSerialId();
 		this.invert = invert;
 	}
 
@@ -1730,6 +1822,7 @@ public abstract class Image extends Rectangle implements Element,
 	 *            true or false
 	 */
 	public void setInverted(boolean invert) {
+		unshareSerialId();
 		this.invert = invert;
 	}
 
@@ -1750,6 +1843,7 @@ public abstract class Image extends Rectangle implements Element,
 	 *            New value of property interpolation.
 	 */
 	public void setInterpolation(boolean interpolation) {
+		unshareSerialId();
 		this.interpolation = interpolation;
 	}
 
@@ -1798,6 +1892,7 @@ public abstract class Image extends Rectangle implements Element,
 	 *            the profile
 	 */
 	public void tagICC(ICC_Profile profile) {
+		unshareSerialId();
 		this.profile = profile;
 	}
 
@@ -1837,6 +1932,7 @@ public abstract class Image extends Rectangle implements Element,
 	 *  
 	 */
 	public void setDeflated(boolean deflated) {
+		unshareSerialId();
 		this.deflated = deflated;
 	}
 
@@ -1857,6 +1953,7 @@ public abstract class Image extends Rectangle implements Element,
 	 *            New value of property indexed.
 	 */
 	public void setAdditional(PdfDictionary additional) {
+		unshareSerialId();
 		this.additional = additional;
 	}
 
@@ -1878,6 +1975,7 @@ public abstract class Image extends Rectangle implements Element,
 	 *  
 	 */
 	public void setSmask(boolean smask) {
+		unshareSerialId();
 		this.smask = smask;
 	}
 
@@ -2066,6 +2164,7 @@ public abstract class Image extends Rectangle implements Element,
 	 *            the layer this image belongs to
 	 */
 	public void setLayer(PdfOCG layer) {
+		unshareSerialId();
 		this.layer = layer;
 	}
 
@@ -2091,6 +2190,14 @@ public abstract class Image extends Rectangle implements Element,
         if (value == null || !value.isArray())
             return;
         PdfObject cs = simplifyColorspace(value);
+        if (sharedSerialId) {
+            // the dictionary and the colorspace belong to the cached image
+            unshareSerialId();
+            PdfDictionary copy = new PdfDictionary();
+            copy.putAll(additional);
+            additional = copy;
+            value = new PdfArray((PdfArray)value);
+        }
         if (cs.isName())
             value = cs;
         else {
@@ -2137,6 +2244,7 @@ public abstract class Image extends Rectangle implements Element,
      * @param directReference New value of property directReference.
      */
     public void setDirectReference(PdfIndirectReference directReference) {
+        unshareSerialId();
         this.directReference = directReference;
     }
     
@@ -0,0 +1,393 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+
+package com.lowagie.text;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A cache of decoded images keyed by the hash of the image file content.
+ * <P>
+ * An image found in the cache isn't read or decoded again. Every call returns
+ * a new copy of the cached image with its own position, scaling and other
+ * layout properties, but all the copies share the image data and the serial
+ * id, so that a writer embeds an image only once however many times it's used.
+ * The WMF and Postscript images are not cached, each writer draws them in a
+ * template of its own.
+ * A copy gets its own serial id when it's changed in a way that makes it
+ * embedded differently, as with <CODE>setTransparency()</CODE>,
+ * <CODE>setInterpolation()</CODE>, <CODE>makeMask()</CODE>,
+ * <CODE>setImageMask()</CODE>, <CODE>setLayer()</CODE> or
+ * <CODE>setAdditional()</CODE>. The image data, its size in pixels, the mask
+ * and the dictionary returned by <CODE>getAdditional()</CODE> belong to the
+ * cached image and must not be changed in place.
+ * <P>
+ * The pixels of the images decoded to raw data, as PNG, GIF and BMP, are kept
+ * uncompressed. The first <CODE>PdfWriter</CODE> that embeds such an image
+ * deflates it and keeps the result in the cache, for the image compression
+ * level it used; the other writers with the same level take the deflated data
+ * from the cache.
+ * <P>
+ * The cache is bounded by the memory the entries are estimated to use, with the
+ * least recently used images evicted first, and it can be shared by several
+ * threads and writers. It is installed with <CODE>Image.setImageCache()</CODE>;
+ * subclasses can change how the images are created with <CODE>createImage()</CODE>.
+ */
+public class ImageCache {
+    
+    /** The default maximum size of the cache, 32 megabytes. */
+    public static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+    
+    /** The estimated size of an image without its data. */
+    private static final int IMAGE_OVERHEAD = 512;
+    
+    /** The estimated size of deflated data without the data itself. */
+    private static final int DEFLATED_OVERHEAD = 64;
+    
+    /** The images and their deflated data. */
+    private final WeightedCache images;
+    
+    /** The key of an image, the SHA-1 digest and the length of its content. */
+    private static class Key {
+        final byte digest[];
+        final int length;
+        final int hash;
+        
+        Key(byte digest[], int length) {
+            this.digest = digest;
+            this.length = length;
+            int h = length;
+            for (int k = 0; k < 4; ++k)
+                h = (h << 8) ^ (digest[k] & 0xff);
+            hash = h;
+        }
+        
+        public int hashCode() {
+            return hash;
+        }
+        
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key)obj;
+            return length == other.length && Arrays.equals(digest, other.digest);
+        }
+    }
+    
+    /** The key of the data of an image deflated with a compression level. */
+    private static class DeflatedKey {
+        final Long serialId;
+        final int level;
+        
+        DeflatedKey(Long serialId, int level) {
+            this.serialId = serialId;
+            this.level = level;
+        }
+        
+        public int hashCode() {
+            return serialId.hashCode() * 31 + level;
+        }
+        
+        public boolean equals(Object obj) {
+            if (!(obj instanceof DeflatedKey))
+                return false;
+            DeflatedKey other = (DeflatedKey)obj;
+            return level == other.level && serialId.equals(other.serialId);
+        }
+    }
+    
+    /** Creates a cache with the default maximum size. */
+    public ImageCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+    
+    /**
+     * Creates a cache.
+     * @param maxSize the maximum estimated size in bytes
+     */
+    public ImageCache(long maxSize) {
+        images = new WeightedCache(maxSize);
+    }
+    
+    /**
+     * Gets an image from its content.
+     * @param imgb the content of an image file
+     * @return a new copy of the image
+     * @throws BadElementException on error
+     * @throws MalformedURLException on error
+     * @throws IOException on error
+     */
+    public Image getImage(byte imgb[]) throws BadElementException, MalformedURLException, IOException {
+        Key key = new Key(digest(imgb), imgb.length);
+        Image img = (Image)images.get(key);
+        if (img == null) {
+            img = createImage(imgb);
+            // a WMF or a Postscript image is drawn in a template by each
+            // writer, the template can't be shared by the copies
+            if (img.isImgTemplate())
+                return img;
+            img.cache = this;
+            if (img.getImageMask() != null)
+                img.getImageMask().cache = this;
+            img = (Image)images.put(key, img, weight(img));
+        }
+        Image copy = Image.getInstance(img);
+        copy.sharedSerialId = true;
+        return copy;
+    }
+    
+    /**
+     * Checks if the deflated data of an image can be kept in a cache, that is
+     * if the image or the image it's the mask of was returned by a cache and
+     * wasn't changed since.
+     * @param img the image
+     * @return <CODE>true</CODE> if the deflated data can be kept
+     */
+    public static boolean isCached(Image img) {
+        return img.cache != null;
+    }
+    
+    /**
+     * Gets the data of an image as deflated by a writer.
+     * @param img the image
+     * @param level the compression level used to deflate the data
+     * @return the deflated data, that must not be changed, or <CODE>null</CODE>
+     * if it's not in the cache
+     */
+    public static byte[] getDeflatedData(Image img, int level) {
+        ImageCache cache = img.cache;
+        if (cache == null)
+            return null;
+        return (byte[])cache.images.get(new DeflatedKey(img.getMySerialId(), level));
+    }
+    
+    /**
+     * Keeps the data of an image as deflated by a writer, so that the other
+     * writers don't have to deflate it again. Nothing is kept if the image
+     * is not cached.
+     * @param img the image
+     * @param level the compression level used to deflate the data
+     * @param data the deflated data, it must not be changed afterwards
+     */
+    public static void putDeflatedData(Image img, int level, byte data[]) {
+        ImageCache cache = img.cache;
+        if (cache != null)
+            cache.images.put(new DeflatedKey(img.getMySerialId(), level), data, data.length + DEFLATED_OVERHEAD);
+    }
+    
+    /**
+     * Gets an image from an URL. The content is always read to find its hash
+     * but it's only decoded if it's not in the cache.
+     * @param url the URL of the image file
+     * @return a new copy of the image
+     * @throws BadElementException on error
+     * @throws MalformedURLException on error
+     * @throws IOException on error
+     */
+    public Image getImage(URL url) throws BadElementException, MalformedURLException, IOException {
+        Image img = getImage(readAll(url));
+        img.setUrl(url);
+        return img;
+    }
+    
+    /**
+     * Gets an image from a file or an URL.
+     * @param filename the file name or the URL
+     * @return a new copy of the image
+     * @throws BadElementException on error
+     * @throws MalformedURLException on error
+     * @throws IOException on error
+     */
+    public Image getImage(String filename) throws BadElementException, MalformedURLException, IOException {
+        return getImage(Image.toURL(filename));
+    }
+    
+    /**
+     * Decodes an image that is not in the cache. The returned image is only
+     * used to make the copies given to the callers and it's not changed
+     * afterwards.
+     * @param imgb the content of an image file
+     * @return the image
+     * @throws BadElementException on error
+     * @throws MalformedURLException on error
+     * @throws IOException on error
+     */
+    protected Image createImage(byte imgb[]) throws BadElementException, MalformedURLException, IOException {
+        return Image.getUncachedInstance(imgb);
+    }
+    
+    /**
+     * Estimates the memory used by an image, with its mask.
+     * @param img the image
+     * @return the size in bytes
+     */
+    protected int weight(Image img) {
+        int w = IMAGE_OVERHEAD;
+        if (img.rawData != null)
+            w += img.rawData.length;
+        if (img.originalData != null && img.originalData != img.rawData)
+            w += img.originalData.length;
+        if (img.getImageMask() != null)
+            w += weight(img.getImageMask());
+        return w;
+    }
+    
+    private static byte[] digest(byte data[]) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            return md.digest(data);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new ExceptionConverter(e);
+        }
+    }
+    
+    private static byte[] readAll(URL url) throws IOException {
+        InputStream is = null;
+        try {
+            is = url.openStream();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte buf[] = new byte[8192];
+            int n;
+            while ((n = is.read(buf)) >= 0)
+                out.write(buf, 0, n);
+            return out.toByteArray();
+        }
+        finally {
+            if (is != null)
+                is.close();
+        }
+    }
+    
+    /** Removes all the images from the cache. The statistics are kept. */
+    public void clear() {
+        images.clear();
+    }
+    
+    /**
+     * Sets the maximum estimated size. Images are evicted if the cache is
+     * already bigger.
+     * @param maxSize the maximum estimated size in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        images.setMaxSize(maxSize);
+    }
+    
+    /**
+     * Gets the maximum estimated size.
+     * @return the maximum estimated size in bytes
+     */
+    public long getMaxSize() {
+        return images.getMaxSize();
+    }
+    
+    /**
+     * Gets the current estimated size of the images and of their deflated data.
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return images.getSize();
+    }
+    
+    /**
+     * Gets the number of entries in the cache, the images and their data
+     * deflated with each compression level.
+     * @return the number of entries
+     */
+    public int getCount() {
+        return images.getCount();
+    }
+    
+    /**
+     * Gets the number of times an image or its deflated data was found in the cache.
+     * The count is approximate if several threads use the cache.
+     * @return the number of hits
+     */
+    public long getHits() {
+        return images.getHits();
+    }
+    
+    /**
+     * Gets the number of times an image had to be decoded or deflated.
+     * The count is approximate if several threads use the cache.
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return images.getMisses();
+    }
+    
+    /**
+     * Gets the number of entries evicted to keep the cache within its size.
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return images.getEvictions();
+    }
+    
+    /** Sets the hits, misses and evictions to zero. */
+    public void resetStatistics() {
+        images.resetStatistics();
+    }
+    
+    /**
+     * Gets a summary of the cache state.
+     * @return the summary
+     */
+    public String toString() {
+        return "ImageCache[entries=" + getCount() + ", size=" + getSize() + ", maxSize=" + getMaxSize()
+            + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+    }
+}
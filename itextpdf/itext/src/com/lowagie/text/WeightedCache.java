@@ -0,0 +1,317 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+
+package com.lowagie.text;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache bounded by the memory its entries are estimated to use.
+ * <P>
+ * The entries are spread over several segments, each one with its own lock,
+ * so that threads adding different entries don't wait for each other. When the
+ * estimated size goes over the maximum the least recently used entries are
+ * evicted, starting with the segment that was being changed. It is the store
+ * of <CODE>FontCache</CODE> and <CODE>ImageCache</CODE>.
+ */
+public class WeightedCache {
+    
+    /** The number of segments, a power of two. */
+    private static final int SEGMENTS = 16;
+    
+    private final Segment segments[] = new Segment[SEGMENTS];
+    
+    /** The maximum estimated size in bytes. */
+    private volatile long maxSize;
+    /** The current estimated size in bytes, guarded by <CODE>this</CODE>. */
+    private long size;
+    
+    private volatile long hits;
+    private volatile long misses;
+    /** Guarded by <CODE>this</CODE>. */
+    private long evictions;
+    
+    /** An entry with its estimated size. */
+    private static class Entry {
+        final Object value;
+        final int weight;
+        
+        Entry(Object value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+    
+    /** A part of the cache with its own lock, ordered by access. */
+    private static class Segment extends LinkedHashMap {
+        
+        private static final long serialVersionUID = 2891746231985472640L;
+        
+        Segment() {
+            super(16, 0.75f, true);
+        }
+    }
+    
+    /**
+     * Creates a cache.
+     * @param maxSize the maximum estimated size in bytes
+     */
+    public WeightedCache(long maxSize) {
+        this.maxSize = maxSize;
+        for (int k = 0; k < SEGMENTS; ++k)
+            segments[k] = new Segment();
+    }
+    
+    private Segment segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return segments[h & (SEGMENTS - 1)];
+    }
+    
+    /**
+     * Gets a cached object.
+     * @param key the key
+     * @return the object or <CODE>null</CODE> if it is not in the cache
+     */
+    public Object get(Object key) {
+        Segment seg = segmentFor(key);
+        Entry e;
+        synchronized (seg) {
+            e = (Entry)seg.get(key);
+        }
+        if (e == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return e.value;
+    }
+    
+    /**
+     * Adds an object to the cache if there is none with the same key.
+     * @param key the key
+     * @param value the object
+     * @param weight the estimated size of the object in bytes
+     * @return the object already in the cache or <CODE>value</CODE> if
+     * it was added
+     */
+    public Object put(Object key, Object value, int weight) {
+        Segment seg = segmentFor(key);
+        synchronized (seg) {
+            Entry e = (Entry)seg.get(key);
+            if (e != null)
+                return e.value;
+            seg.put(key, new Entry(value, weight));
+        }
+        if (addSize(weight) > maxSize)
+            evict(seg, key);
+        return value;
+    }
+    
+    /**
+     * Removes an object from the cache.
+     * @param key the key
+     * @return the object removed or <CODE>null</CODE> if it was not in the cache
+     */
+    public Object remove(Object key) {
+        Segment seg = segmentFor(key);
+        Entry e;
+        synchronized (seg) {
+            e = (Entry)seg.remove(key);
+        }
+        if (e == null)
+            return null;
+        addSize(-e.weight);
+        return e.value;
+    }
+    
+    /** Removes all the objects from the cache. The statistics are kept. */
+    public void clear() {
+        for (int k = 0; k < SEGMENTS; ++k) {
+            Segment seg = segments[k];
+            long freed = 0;
+            synchronized (seg) {
+                for (Iterator it = seg.values().iterator(); it.hasNext();)
+                    freed += ((Entry)it.next()).weight;
+                seg.clear();
+            }
+            addSize(-freed);
+        }
+    }
+    
+    private synchronized long addSize(long delta) {
+        size += delta;
+        return size;
+    }
+    
+    private synchronized void evicted(int weight) {
+        size -= weight;
+        ++evictions;
+    }
+    
+    /**
+     * Evicts the least recently used entries until the cache is within its
+     * maximum size, starting with the segment <CODE>first</CODE>.
+     * @param first the segment that was changed
+     * @param keep the key just added, it is never evicted
+     */
+    private void evict(Segment first, Object keep) {
+        int start = 0;
+        while (segments[start] != first)
+            ++start;
+        for (int n = 0; n < SEGMENTS && getSize() > maxSize; ++n) {
+            Segment seg = segments[(start + n) & (SEGMENTS - 1)];
+            while (getSize() > maxSize) {
+                Entry e = null;
+                synchronized (seg) {
+                    Iterator it = seg.entrySet().iterator();
+                    while (it.hasNext()) {
+                        Map.Entry me = (Map.Entry)it.next();
+                        if (me.getKey().equals(keep))
+                            continue;
+                        e = (Entry)me.getValue();
+                        it.remove();
+                        break;
+                    }
+                }
+                if (e == null)
+                    break;
+                evicted(e.weight);
+            }
+        }
+    }
+    
+    /**
+     * Sets the maximum estimated size. Entries are evicted if the cache is
+     * already bigger.
+     * @param maxSize the maximum estimated size in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        if (getSize() > maxSize)
+            evict(segments[0], null);
+    }
+    
+    /**
+     * Gets the maximum estimated size.
+     * @return the maximum estimated size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Gets the current estimated size of the entries.
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+    
+    /**
+     * Gets the number of entries in the cache.
+     * @return the number of entries
+     */
+    public int getCount() {
+        int n = 0;
+        for (int k = 0; k < SEGMENTS; ++k) {
+            synchronized (segments[k]) {
+                n += segments[k].size();
+            }
+        }
+        return n;
+    }
+    
+    /**
+     * Gets the number of times <CODE>get()</CODE> found the object.
+     * The count is approximate if several threads use the cache.
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+    
+    /**
+     * Gets the number of times <CODE>get()</CODE> didn't find the object.
+     * The count is approximate if several threads use the cache.
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * Gets the number of entries evicted to keep the cache within its size.
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    /** Sets the hits, misses and evictions to zero. */
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        synchronized (this) {
+            evictions = 0;
+        }
+    }
+    
+    /**
+     * Gets a summary of the cache state.
+     * @return the summary
+     */
+    public String toString() {
+        return "WeightedCache[entries=" + getCount() + ", size=" + getSize() + ", maxSize=" + maxSize
+            + ", hits=" + hits + ", misses=" + misses + ", evictions=" + getEvictions() + "]";
+    }
+}
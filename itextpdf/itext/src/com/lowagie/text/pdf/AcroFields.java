@@ -50,6 +50,7 @@ import java.awt.Color;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -138,16 +139,87 @@ public class AcroFields {
         }
         fill();
     }
-
-    void fill() {
+    
+    /**
+     * Creates the fields of a form whose widgets are already known, without
+     * looking for them in the annotations of all the pages. It is used by
+     * <CODE>PdfFormFiller</CODE> to fill the same template many times.
+     * @param reader the form
+     * @param writer the writer
+     * @param widgets the widgets as returned by <CODE>getWidgetPositions()</CODE>
+     * for another reader of the same document
+     */
+    AcroFields(PdfReader reader, PdfWriter writer, int widgets[][]) {
+        this.reader = reader;
+        this.writer = writer;
+        try {
+            xfa = new XfaForm(reader);
+        }
+        catch (Exception e) {
+            throw new ExceptionConverter(e);
+        }
+        if (writer instanceof PdfStamperImp) {
+            append = ((PdfStamperImp)writer).isAppend();
+        }
         fields = new HashMap();
-        PdfDictionary top = (PdfDictionary)PdfReader.getPdfObjectRelease(reader.getCatalog().get(PdfName.ACROFORM));
+        PdfDictionary top = getTopForm();
         if (top == null)
             return;
+        for (int k = 0; k < widgets.length; ++k) {
+            int w[] = widgets[k];
+            PRIndirectReference ref = new PRIndirectReference(reader, w[2], w[3]);
+            fillWidget((PdfDictionary)PdfReader.getPdfObject(ref), ref, w[0], w[1], top);
+        }
+    }
+    
+    /**
+     * Gets the position of the widgets of the form, to create the fields of
+     * another reader of the same document without looking for them.
+     * @return an array of {page, tab order, object number, generation} for each
+     * widget, sorted by page and tab order, or <CODE>null</CODE> if a widget is
+     * not an indirect object
+     */
+    int[][] getWidgetPositions() {
+        ArrayList positions = new ArrayList();
+        for (Iterator it = fields.values().iterator(); it.hasNext();) {
+            Item item = (Item)it.next();
+            for (int k = 0; k < item.widget_refs.size(); ++k) {
+                PdfObject ref = (PdfObject)item.widget_refs.get(k);
+                if (!ref.isIndirect())
+                    return null;
+                PdfIndirectReference iref = (PdfIndirectReference)ref;
+                positions.add(new int[]{((Integer)item.page.get(k)).intValue(),
+                    ((Integer)item.tabOrder.get(k)).intValue(), iref.getNumber(), iref.getGeneration()});
+            }
+        }
+        int widgets[][] = (int[][])positions.toArray(new int[positions.size()][]);
+        Arrays.sort(widgets, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                int w1[] = (int[])o1;
+                int w2[] = (int[])o2;
+                if (w1[0] != w2[0])
+                    return w1[0] < w2[0] ? -1 : 1;
+                return w1[1] < w2[1] ? -1 : (w1[1] == w2[1] ? 0 : 1);
+            }
+        });
+        return widgets;
+    }
+    
+    private PdfDictionary getTopForm() {
+        PdfDictionary top = (PdfDictionary)PdfReader.getPdfObjectRelease(reader.getCatalog().get(PdfName.ACROFORM));
+        if (top == null)
+            return null;
         PdfArray arrfds = (PdfArray)PdfReader.getPdfObjectRelease(top.get(PdfName.FIELDS));
         if (arrfds == null || arrfds.size() == 0)
+            return null;
+        return top;
+    }
+
+    void fill() {
+        fields = new HashMap();
+        PdfDictionary top = getTopForm();
+        if (top == null)
             return;
-        arrfds = null;
         for (int k = 1; k <= reader.getNumberOfPages(); ++k) {
             if ((k % 100) == 0)
                 System.out.println(k);
@@ -167,48 +239,52 @@ public class AcroFields {
                     PdfReader.releaseLastXrefPartial((PdfObject)arr.get(j));
                     continue;
                 }
-                PdfDictionary widget = annot;
-                PdfDictionary dic = new PdfDictionary();
-                dic.putAll(annot);
-                String name = "";
-                PdfDictionary value = null;
-                PdfObject lastV = null;
-                while (annot != null) {
-                    dic.mergeDifferent(annot);
-                    PdfString t = (PdfString)PdfReader.getPdfObject(annot.get(PdfName.T));
-                    if (t != null)
-                        name = t.toUnicodeString() + "." + name;
-                    if (lastV == null && annot.get(PdfName.V) != null)
-                        lastV = PdfReader.getPdfObjectRelease(annot.get(PdfName.V));
-                    if (value == null &&  t != null) {
-                        value = annot;
-                        if (annot.get(PdfName.V) == null && lastV  != null)
-                            value.put(PdfName.V, lastV);
-                    }
-                    annot = (PdfDictionary)PdfReader.getPdfObject(annot.get(PdfName.PARENT), annot);
-                }
-                if (name.length() > 0)
-                    name = name.substring(0, name.length() - 1);
-                Item item = (Item)fields.get(name);
-                if (item == null) {
-                    item = new Item();
-                    fields.put(name, item);
-                }
-                if (value == null)
-                    item.values.add(widget);
-                else
-                    item.values.add(value);
-                item.widgets.add(widget);
-                item.widget_refs.add(arr.get(j)); // must be a reference
-                if (top != null)
-                    dic.mergeDifferent(top);
-                item.merged.add(dic);
-                item.page.add(new Integer(k));
-                item.tabOrder.add(new Integer(j));
+                fillWidget(annot, (PdfObject)arr.get(j), k, j, top);
             }
         }
     }
     
+    private void fillWidget(PdfDictionary annot, PdfObject ref, int k, int j, PdfDictionary top) {
+        PdfDictionary widget = annot;
+        PdfDictionary dic = new PdfDictionary();
+        dic.putAll(annot);
+        String name = "";
+        PdfDictionary value = null;
+        PdfObject lastV = null;
+        while (annot != null) {
+            dic.mergeDifferent(annot);
+            PdfString t = (PdfString)PdfReader.getPdfObject(annot.get(PdfName.T));
+            if (t != null)
+                name = t.toUnicodeString() + "." + name;
+            if (lastV == null && annot.get(PdfName.V) != null)
+                lastV = PdfReader.getPdfObjectRelease(annot.get(PdfName.V));
+            if (value == null &&  t != null) {
+                value = annot;
+                if (annot.get(PdfName.V) == null && lastV  != null)
+                    value.put(PdfName.V, lastV);
+            }
+            annot = (PdfDictionary)PdfReader.getPdfObject(annot.get(PdfName.PARENT), annot);
+        }
+        if (name.length() > 0)
+            name = name.substring(0, name.length() - 1);
+        Item item = (Item)fields.get(name);
+        if (item == null) {
+            item = new Item();
+            fields.put(name, item);
+        }
+        if (value == null)
+            item.values.add(widget);
+        else
+            item.values.add(value);
+        item.widgets.add(widget);
+        item.widget_refs.add(ref); // must be a reference
+        if (top != null)
+            dic.mergeDifferent(top);
+        item.merged.add(dic);
+        item.page.add(new Integer(k));
+        item.tabOrder.add(new Integer(j));
+    }
+    
     /** Gets the list of appearance names. Use it to get the names allowed
      * with radio and checkbox fields. If the /Opt key exists the values will
      * also be included. The name 'Off' may also be valid
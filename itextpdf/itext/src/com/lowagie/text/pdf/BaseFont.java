@@ -236,8 +236,12 @@ public abstract class BaseFont {
  */
     protected boolean fontSpecific = true;
     
-/** cache for the fonts already used. */
-    protected static HashMap fontCache = new HashMap();
+/**
+ * cache for the fonts already used and for the tables shared between them.
+ * It used to be a <CODE>HashMap</CODE>; subclasses must now use the
+ * <CODE>FontCache</CODE> methods, that do their own locking.
+ */
+    protected static FontCache fontCache = new FontCache();
     
 /** list of the 14 built in fonts. */
     protected static final HashMap BuiltinFonts14 = new HashMap();
@@ -259,6 +263,11 @@ public abstract class BaseFont {
     
     protected boolean fastWinansi = false;
     
+    /** The widths and the kerning glyphs of the chars in pages of 256 chars,
+     * indexed by the high byte of the char. The pages are built on demand.
+     */
+    private GlyphPage glyphPages[] = new GlyphPage[256];
+    
     /**
      * Custom encodings use this map to key the Unicode character
      * to the single byte code.
@@ -447,9 +456,7 @@ public abstract class BaseFont {
         BaseFont fontBuilt = null;
         String key = name + "\n" + encoding + "\n" + embedded;
         if (cached) {
-            synchronized (fontCache) {
-                fontFound = (BaseFont)fontCache.get(key);
-            }
+            fontFound = (BaseFont)fontCache.get(key);
             if (fontFound != null)
                 return fontFound;
         }
@@ -459,9 +466,9 @@ public abstract class BaseFont {
         }
         else if (nameBase.toLowerCase().endsWith(".ttf") || nameBase.toLowerCase().endsWith(".otf") || nameBase.toLowerCase().indexOf(".ttc,") > 0) {
             if (encoding.equals(IDENTITY_H) || encoding.equals(IDENTITY_V))
-                fontBuilt = new TrueTypeFontUnicode(name, encoding, embedded, ttfAfm);
+                fontBuilt = new TrueTypeFontUnicode(name, encoding, embedded, ttfAfm, cached);
             else {
-                fontBuilt = new TrueTypeFont(name, encoding, embedded, ttfAfm);
+                fontBuilt = new TrueTypeFont(name, encoding, embedded, ttfAfm, false, cached);
                 fontBuilt.fastWinansi = encoding.equals(CP1252);
             }
         }
@@ -469,17 +476,30 @@ public abstract class BaseFont {
             fontBuilt = new CJKFont(name, encoding, embedded);
         else
             throw new DocumentException("Font '" + name + "' with '" + encoding + "' is not recognized.");
-        if (cached) {
-            synchronized (fontCache) {
-                fontFound = (BaseFont)fontCache.get(key);
-                if (fontFound != null)
-                    return fontFound;
-                fontCache.put(key, fontBuilt);
-            }
-        }
+        if (cached)
+            return (BaseFont)fontCache.put(key, fontBuilt, fontBuilt.getCacheWeight());
         return fontBuilt;
     }
     
+    /**
+     * Gets the cache used by <CODE>createFont()</CODE>. It can be used to
+     * change the maximum memory taken by the cached fonts, to clear it
+     * and to get the statistics.
+     * @return the font cache
+     */
+    public static FontCache getFontCache() {
+        return fontCache;
+    }
+    
+    /**
+     * Estimates the memory used by this font for the font cache.
+     * @return the estimated size in bytes
+     */
+    int getCacheWeight() {
+        // widths, char bboxes and differences
+        return 16 * 1024;
+    }
+    
     /**
      * Creates a font based on an existing document font. The created font font may not
      * behave as expected, depending on the encoding or subset.
@@ -638,7 +658,126 @@ public abstract class BaseFont {
                 return widths[char1];
             return widths[PdfEncodings.winansi.get(char1)];
         }
-        return getWidth(new String(new char[]{char1}));
+        return getGlyphPage(char1).widths[char1 & 0xff];
+    }
+    
+    /**
+     * Gets the page with the widths and the kerning glyphs of <CODE>c</CODE>,
+     * building it if needed.
+     * @param c the char
+     * @return the page of the char
+     */
+    final GlyphPage getGlyphPage(char c) {
+        int high = c >>> 8;
+        GlyphPage page = glyphPages[high];
+        if (page == null) {
+            page = new GlyphPage(this, high);
+            glyphPages[high] = page;
+        }
+        return page;
+    }
+    
+    /**
+     * Discards the pages of widths and kerning glyphs. Must be called when
+     * the widths or the kerning pairs change.
+     */
+    void clearGlyphPages() {
+        glyphPages = new GlyphPage[256];
+    }
+    
+    /**
+     * Gets the glyph used to look up the kerning pairs of <CODE>c</CODE>.
+     * Fonts with kerning pairs override it together with
+     * <CODE>getKerningByGlyph()</CODE>.
+     * @param c the char
+     * @return the glyph or -1 if the char has no kerning pairs
+     */
+    int getKerningGlyph(char c) {
+        return -1;
+    }
+    
+    /**
+     * Gets the kerning between two glyphs returned by <CODE>getKerningGlyph()</CODE>.
+     * @param glyph1 the first glyph
+     * @param glyph2 the second glyph
+     * @return the kerning to be applied in normalized 1000 units
+     */
+    int getKerningByGlyph(int glyph1, int glyph2) {
+        return 0;
+    }
+    
+    /**
+     * Gets the kerning between two chars through the pages of kerning glyphs.
+     * @param char1 the first char
+     * @param char2 the second char
+     * @return the kerning to be applied in normalized 1000 units
+     */
+    final int getPageKerning(char char1, char char2) {
+        int g1 = getGlyphPage(char1).kernGlyphs[char1 & 0xff];
+        if (g1 < 0)
+            return 0;
+        int g2 = getGlyphPage(char2).kernGlyphs[char2 & 0xff];
+        if (g2 < 0)
+            return 0;
+        return getKerningByGlyph(g1, g2);
+    }
+    
+    /**
+     * Gets the width of some chars in points. It gives the same result as
+     * <CODE>getWidthPoint(new String(text, offset, length), fontSize)</CODE>
+     * without creating any object.
+     * @param text the chars
+     * @param offset the first char to measure
+     * @param length the number of chars to measure
+     * @param fontSize the font size
+     * @return the width in points
+     */
+    public float measure(char text[], int offset, int length, float fontSize) {
+        int total = 0;
+        int end = offset + length;
+        for (int k = offset; k < end; ++k)
+            total += getWidth(text[k]);
+        return (float)total * 0.001f * fontSize;
+    }
+    
+    /**
+     * Gets the width of some chars in points taking kerning into account.
+     * It gives the same result as
+     * <CODE>getWidthPointKerned(new String(text, offset, length), fontSize)</CODE>
+     * without creating any object.
+     * @param text the chars
+     * @param offset the first char to measure
+     * @param length the number of chars to measure
+     * @param fontSize the font size
+     * @return the width in points
+     */
+    public float measureKerned(char text[], int offset, int length, float fontSize) {
+        float size = measure(text, offset, length, fontSize);
+        if (!hasKernPairs())
+            return size;
+        int end = offset + length - 1;
+        int kern = 0;
+        for (int k = offset; k < end; ++k)
+            kern += getKerning(text[k], text[k + 1]);
+        return size + kern * 0.001f * fontSize;
+    }
+    
+    /**
+     * The widths and the kerning glyphs of 256 consecutive chars.
+     */
+    static final class GlyphPage {
+        /** The widths in normalized 1000 units. */
+        final int widths[] = new int[256];
+        /** The glyphs returned by <CODE>getKerningGlyph()</CODE>. */
+        final int kernGlyphs[] = new int[256];
+        
+        GlyphPage(BaseFont font, int high) {
+            char c = (char)(high << 8);
+            for (int k = 0; k < 256; ++k, ++c) {
+                widths[k] = font.getWidth(String.valueOf(c));
+                kernGlyphs[k] = font.getKerningGlyph(c);
+            }
+        }
     }
     
     /**
@@ -739,9 +878,8 @@ public abstract class BaseFont {
             return size;
         int len = text.length() - 1;
         int kern = 0;
-        char c[] = text.toCharArray();
         for (int k = 0; k < len; ++k) {
-            kern += getKerning(c[k], c[k + 1]);
+            kern += getKerning(text.charAt(k), text.charAt(k + 1));
         }
         return size + kern * 0.001f * fontSize;
     }
@@ -1131,6 +1269,7 @@ public abstract class BaseFont {
         if (b.length == 0)
             return false;
         widths[0xff & b[0]] = advance;
+        clearGlyphPages();
         return true;
     }
     
@@ -72,6 +72,13 @@ public class BidiLine {
     protected int indexChunkChar = 0;
     protected int currentChar = 0;
     
+    /** <CODE>true</CODE> if the paragraph is laid out left to right without
+     * bidirectional processing and all its chars are their own unicode
+     * equivalent and are printable. The lines of such a paragraph are broken
+     * and assembled without looking at each char through its chunk.
+     */
+    protected boolean simple;
+    
     protected int storedRunDirection;
     protected char storedText[] = new char[0];
     protected PdfChunk storedDetailChunks[] = new PdfChunk[0];
@@ -107,6 +114,7 @@ public class BidiLine {
         indexChunk = org.indexChunk;
         indexChunkChar = org.indexChunkChar;
         currentChar = org.currentChar;
+        simple = org.simple;
 
         storedRunDirection = org.storedRunDirection;
         storedText = (char[])org.storedText.clone();
@@ -142,11 +150,43 @@ public class BidiLine {
         char c;
         char uniC;
         BaseFont bf;
+        boolean bidi = (runDirection == PdfWriter.RUN_DIRECTION_LTR || runDirection == PdfWriter.RUN_DIRECTION_RTL);
+        simple = !bidi;
         for (; indexChunk < chunks.size(); ++indexChunk) {
             PdfChunk ck = (PdfChunk)chunks.get(indexChunk);
             bf = ck.font().getFont();
             String s = ck.toString();
             int len = s.length();
+            if (bf.getFontType() != BaseFont.FONT_TYPE_CJK) {
+                // the chars are their own unicode equivalent, copy them at once up to the newline
+                int end = indexChunkChar;
+                c = 0;
+                for (; end < len; ++end) {
+                    c = s.charAt(end);
+                    if (c == '\r' || c == '\n')
+                        break;
+                    if (PdfChunk.noPrint(c))
+                        simple = false;
+                }
+                addPieces(s, indexChunkChar, end, ck);
+                indexChunkChar = end;
+                if (end < len) {
+                    if (c == '\r' && indexChunkChar + 1 < len && s.charAt(indexChunkChar + 1) == '\n')
+                        ++indexChunkChar;
+                    ++indexChunkChar;
+                    if (indexChunkChar >= len) {
+                        indexChunkChar = 0;
+                        ++indexChunk;
+                    }
+                    hasText = true;
+                    if (totalTextLength == 0)
+                        detailChunks[0] = ck;
+                    break;
+                }
+                indexChunkChar = 0;
+                continue;
+            }
+            simple = false;
             for (; indexChunkChar < len; ++indexChunkChar) {
                 c = s.charAt(indexChunkChar);
                 uniC = bf.getUnicodeEquivalent(c);
@@ -178,7 +218,7 @@ public class BidiLine {
         if (totalTextLength == 0)
             return true;
         
-        if (runDirection == PdfWriter.RUN_DIRECTION_LTR || runDirection == PdfWriter.RUN_DIRECTION_RTL) {
+        if (bidi) {
             if (orderLevels.length < totalTextLength) {
                 orderLevels = new byte[pieceSize];
                 indexChars = new int[pieceSize];
@@ -206,19 +246,40 @@ public class BidiLine {
     }
     
     public void addPiece(char c, PdfChunk chunk) {
-        if (totalTextLength >= pieceSize) {
-            char tempText[] = text;
-            PdfChunk tempDetailChunks[] = detailChunks;
-            pieceSize *= 2;
-            text = new char[pieceSize];
-            detailChunks = new PdfChunk[pieceSize];
-            System.arraycopy(tempText, 0, text, 0, totalTextLength);
-            System.arraycopy(tempDetailChunks, 0, detailChunks, 0, totalTextLength);
-        }
+        if (totalTextLength >= pieceSize)
+            growPieces(totalTextLength + 1);
         text[totalTextLength] = c;
         detailChunks[totalTextLength++] = chunk;
     }
     
+    /** Adds the chars of a <CODE>String</CODE> from <CODE>start</CODE> to
+     * <CODE>end</CODE> (exclusive), all belonging to the same chunk.
+     * @param s the <CODE>String</CODE>
+     * @param start the first char to add
+     * @param end the end of the chars to add
+     * @param chunk the chunk of the chars
+     */
+    protected void addPieces(String s, int start, int end, PdfChunk chunk) {
+        int newLength = totalTextLength + end - start;
+        if (newLength > pieceSize)
+            growPieces(newLength);
+        s.getChars(start, end, text, totalTextLength);
+        for (int k = totalTextLength; k < newLength; ++k)
+            detailChunks[k] = chunk;
+        totalTextLength = newLength;
+    }
+    
+    private void growPieces(int minSize) {
+        char tempText[] = text;
+        PdfChunk tempDetailChunks[] = detailChunks;
+        while (pieceSize < minSize)
+            pieceSize *= 2;
+        text = new char[pieceSize];
+        detailChunks = new PdfChunk[pieceSize];
+        System.arraycopy(tempText, 0, text, 0, totalTextLength);
+        System.arraycopy(tempDetailChunks, 0, detailChunks, 0, totalTextLength);
+    }
+    
     public void save() {
         if (indexChunk > 0) {
             if (indexChunk >= chunks.size())
@@ -338,7 +399,6 @@ public class BidiLine {
             }
         }
         float originalWidth = width;
-        int lastSplit = -1;
         if (currentChar != 0)
             currentChar = trimLeftEx(currentChar, totalTextLength - 1);
         int oldCurrentChar = currentChar;
@@ -347,15 +407,23 @@ public class BidiLine {
         PdfChunk ck = null;
         float charWidth = 0;
         PdfChunk lastValidChunk = null;
-        for (; currentChar < totalTextLength; ++currentChar) {
+        if (simple) {
+            for (; currentChar < totalTextLength; ++currentChar) {
+                ck = detailChunks[currentChar];
+                charWidth = ck.font().width(text[currentChar]);
+                if (width - charWidth < 0)
+                    break;
+                width -= charWidth;
+                lastValidChunk = ck;
+            }
+        }
+        else for (; currentChar < totalTextLength; ++currentChar) {
             c = text[currentChar];
             ck = detailChunks[currentChar];
             uniC = ck.getUnicodeEquivalent(c);
             if (PdfChunk.noPrint(uniC))
                 continue;
             charWidth = ck.getCharWidth(c);
-            if (ck.isExtSplitCharacter(oldCurrentChar, currentChar, totalTextLength, text, detailChunks))
-                lastSplit = currentChar;
             if (width - charWidth < 0)
                 break;
             width -= charWidth;
@@ -391,6 +459,7 @@ public class BidiLine {
                 }
             }
         }
+        int lastSplit = getLastSplit(oldCurrentChar, currentChar);
         if (lastSplit == -1 || lastSplit >= newCurrentChar) {
             // no split point or split point ahead of end
             return new PdfLine(0, width + getWidth(newCurrentChar + 1, currentChar - 1), alignment, false, createArrayOfPdfChunks(oldCurrentChar, newCurrentChar), isRTL);
@@ -405,6 +474,24 @@ public class BidiLine {
         return new PdfLine(0, originalWidth - getWidth(oldCurrentChar, newCurrentChar), alignment, false, createArrayOfPdfChunks(oldCurrentChar, newCurrentChar), isRTL);
     }
     
+    /** Gets the last split character of a range of characters. It is only
+     * looked for when the line doesn't fit, going back from the end of the line,
+     * instead of checking every character while measuring the line.
+     * @param startIdx the first index of the line
+     * @param lastIdx the last inclusive index to check
+     * @return the index of the split character or -1 if there is none
+     */
+    private int getLastSplit(int startIdx, int lastIdx) {
+        for (int k = lastIdx; k >= startIdx; --k) {
+            PdfChunk ck = detailChunks[k];
+            if (PdfChunk.noPrint(ck.getUnicodeEquivalent(text[k])))
+                continue;
+            if (ck.isExtSplitCharacter(startIdx, k, totalTextLength, text, detailChunks))
+                return k;
+        }
+        return -1;
+    }
+    
     /** Gets the width of a range of characters.
      * @param startIdx the first index to calculate
      * @param lastIdx the last inclusive index to calculate
@@ -432,6 +519,8 @@ public class BidiLine {
     
     public ArrayList createArrayOfPdfChunks(int startIdx, int endIdx, PdfChunk extraPdfChunk) {
         boolean bidi = (runDirection == PdfWriter.RUN_DIRECTION_LTR || runDirection == PdfWriter.RUN_DIRECTION_RTL);
+        if (simple && !bidi)
+            return createArrayOfSimpleChunks(startIdx, endIdx, extraPdfChunk);
         if (bidi)
             reorder(startIdx, endIdx);
         ArrayList ar = new ArrayList();
@@ -493,6 +582,33 @@ public class BidiLine {
         return new int[]{first, last};
     }
     
+    /** Creates the chunks of a line of a simple paragraph, one for each run
+     * of chars of the same chunk, without copying the chars one by one.
+     * @param startIdx the first index of the line
+     * @param endIdx the last inclusive index of the line
+     * @param extraPdfChunk a chunk to add at the end or <CODE>null</CODE>
+     * @return the chunks of the line
+     */
+    private ArrayList createArrayOfSimpleChunks(int startIdx, int endIdx, PdfChunk extraPdfChunk) {
+        ArrayList ar = new ArrayList();
+        while (startIdx <= endIdx) {
+            PdfChunk ck = detailChunks[startIdx];
+            if (ck.isImage()) {
+                ar.add(ck);
+                ++startIdx;
+                continue;
+            }
+            int end = startIdx + 1;
+            while (end <= endIdx && detailChunks[end] == ck)
+                ++end;
+            ar.add(new PdfChunk(new String(text, startIdx, end - startIdx), ck));
+            startIdx = end;
+        }
+        if (extraPdfChunk != null)
+            ar.add(extraPdfChunk);
+        return ar;
+    }
+    
     public int trimRight(int startIdx, int endIdx) {
         int idx = endIdx;
         char c;
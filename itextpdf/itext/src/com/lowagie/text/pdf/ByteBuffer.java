@@ -71,18 +71,42 @@ public class ByteBuffer extends OutputStream {
     /** The buffer where the bytes are stored. */
     protected byte buf[];
     
-    private static int byteCacheSize = 0;
-    
-    private static byte[][] byteCache = new byte[byteCacheSize][];
     public static final byte ZERO = (byte)'0';
-    private static final char[] chars = new char[] {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
     private static final byte[] bytes = new byte[] {48, 49, 50, 51, 52, 53, 54, 55, 56, 57, 97, 98, 99, 100, 101, 102};
     /**
      * If <CODE>true</CODE> always output floating point numbers with 6 decimal digits.
-     * If <CODE>false</CODE> uses the faster, although less precise, representation.
+     * If <CODE>false</CODE> uses the shorter representation: 5 decimal digits
+     * below 1, 2 up to 32767 and none above that.
      */    
     public static boolean HIGH_PRECISION = false;
+    
+    /** The decimal digits used when <CODE>HIGH_PRECISION</CODE> is <CODE>true</CODE>. */
+    private static final int HIGH_PRECISION_DECIMALS = 6;
+    /**
+     * Below this magnitude, 2 to the power of 33, a double is closer than
+     * half a unit of the sixth decimal to its shortest decimal form, so
+     * rounding its exact binary value gives the same digits as
+     * <CODE>DecimalFormat</CODE>. Larger numbers are formatted with
+     * <CODE>DecimalFormat</CODE> when <CODE>HIGH_PRECISION</CODE> is set.
+     */
+    private static final double HIGH_PRECISION_LIMIT = 8589934592.0;
     private static final DecimalFormatSymbols dfs = new DecimalFormatSymbols(Locale.US);
+    /** The maximum number of decimal digits <CODE>formatDouble</CODE> can output. */
+    private static final int MAX_DECIMALS = 15;
+    /** The maximum size of a formatted number: sign, 19 digits, point and decimals. */
+    private static final int MAX_NUMBER_SIZE = 21 + MAX_DECIMALS;
+    /** Splits a double in two halves of 26 bits for the exact product. */
+    private static final double SPLITTER = 134217729.0;
+    private static final double POW10[] = new double[MAX_DECIMALS + 1];
+    private static final long LPOW10[] = new long[MAX_DECIMALS + 1];
+    static {
+        POW10[0] = 1;
+        LPOW10[0] = 1;
+        for (int k = 1; k <= MAX_DECIMALS; ++k) {
+            POW10[k] = POW10[k - 1] * 10;
+            LPOW10[k] = LPOW10[k - 1] * 10;
+        }
+    }
     
     /** Creates new ByteBuffer with capacity 128 */
     public ByteBuffer() {
@@ -102,84 +126,24 @@ public class ByteBuffer extends OutputStream {
     /**
      * Sets the cache size.
      * <P>
-     * This can only be used to increment the size.
-     * If the size that is passed through is smaller than the current size, nothing happens.
+     * The numbers are no longer cached, they are formatted without
+     * allocating memory. This method does nothing.
      *
      * @param   size    the size of the cache
+     * @deprecated the cache is not needed anymore
      */
     
     public static void setCacheSize(int size) {
-        if (size > 3276700) size = 3276700;
-        if (size <= byteCacheSize) return;
-        byte[][] tmpCache = new byte[size][];
-        System.arraycopy(byteCache, 0, tmpCache, 0, byteCacheSize);
-        byteCache = tmpCache;
-        byteCacheSize = size;
     }
     
     /**
-     * You can fill the cache in advance if you want to.
+     * You could fill the cache in advance. This method does nothing.
      *
      * @param   decimals
+     * @deprecated the cache is not needed anymore
      */
     
     public static void fillCache(int decimals) {
-        int step = 1;
-        switch(decimals) {
-            case 0:
-                step = 100;
-                break;
-            case 1:
-                step = 10;
-                break;
-        }
-        for (int i = 1; i < byteCacheSize; i += step) {
-            if (byteCache[i] != null) continue;
-            byteCache[i] = convertToBytes(i);
-        }
-    }
-    
-    /**
-     * Converts an double (multiplied by 100 and cast to an int) into an array of bytes.
-     *
-     * @param   i   the int
-     * @return  a bytearray
-     */
-    
-    private static byte[] convertToBytes(int i) {
-        int size = (int)Math.floor(Math.log(i) / Math.log(10));
-        if (i % 100 != 0) {
-            size += 2;
-        }
-        if (i % 10 != 0) {
-            size++;
-        }
-        if (i < 100) {
-            size++;
-            if (i < 10) {
-                size++;
-            }
-        }
-        size--;
-        byte[] cache = new byte[size];
-        size --;
-        if (i < 100) {
-            cache[0] = (byte)'0';
-        }
-        if (i % 10 != 0) {
-            cache[size--] = bytes[i % 10];
-        }
-        if (i % 100 != 0) {
-            cache[size--] = bytes[(i / 10) % 10];
-            cache[size--] = (byte)'.';
-        }
-        size = (int)Math.floor(Math.log(i) / Math.log(10)) - 1;
-        int add = 0;
-        while (add < size) {
-            cache[add] = bytes[(i / (int)Math.pow(10, size - add + 1)) % 10];
-            add++;
-        }
-        return cache;
     }
     
     /**
@@ -268,7 +232,28 @@ public class ByteBuffer extends OutputStream {
      * @return a reference to this <CODE>ByteBuffer</CODE> object
      */
     public ByteBuffer append(int i) {
-        return append((double)i);
+        return append((long)i);
+    }
+    
+    /**
+     * Appends the string representation of a <CODE>long</CODE>.
+     * @param l the <CODE>long</CODE> to be appended
+     * @return a reference to this <CODE>ByteBuffer</CODE> object
+     */
+    public ByteBuffer append(long l) {
+        ensureCapacity(MAX_NUMBER_SIZE);
+        if (l < 0) {
+            buf[count++] = (byte)'-';
+            if (l == Long.MIN_VALUE) {
+                // can't be negated, its last digit is 8
+                count = writeLong(Long.MAX_VALUE / 10, buf, count);
+                buf[count++] = (byte)'8';
+                return this;
+            }
+            l = -l;
+        }
+        count = writeLong(l, buf, count);
+        return this;
     }
     
     public ByteBuffer append(byte b) {
@@ -297,7 +282,10 @@ public class ByteBuffer extends OutputStream {
      * @return a reference to this <CODE>ByteBuffer</CODE> object
      */
     public ByteBuffer append(double d) {
-        append(formatDouble(d, this));
+        if (HIGH_PRECISION && isLarge(d))
+            return append(formatLarge(d));
+        ensureCapacity(MAX_NUMBER_SIZE);
+        count = formatDouble(d, buf, count);
         return this;
     }
     
@@ -307,7 +295,14 @@ public class ByteBuffer extends OutputStream {
      * @return the <CODE>String</CODE> representation of the <CODE>double</CODE>
      */
     public static String formatDouble(double d) {
-        return formatDouble(d, null);
+        if (HIGH_PRECISION && isLarge(d))
+            return formatLarge(d);
+        byte b[] = new byte[MAX_NUMBER_SIZE];
+        int len = formatDouble(d, b, 0);
+        char c[] = new char[len];
+        for (int k = 0; k < len; ++k)
+            c[k] = (char)b[k];
+        return new String(c);
     }
     
     /**
@@ -319,222 +314,192 @@ public class ByteBuffer extends OutputStream {
      * then the double is appended directly to the buffer and this methods returns <CODE>null</CODE>.
      */
     public static String formatDouble(double d, ByteBuffer buf) {
-        if (HIGH_PRECISION) {
-            DecimalFormat dn = new DecimalFormat("0.######", dfs);
-            String sform = dn.format(d);
-            if (buf == null)
-                return sform;
-            else {
-                buf.append(sform);
-                return null;
-            }
-        }
-        boolean negative = false;
-        if (Math.abs(d) < 0.000015) {
-            if (buf != null) {
-                buf.append(ZERO);
-                return null;
-            } else {
-                return "0";
-            }
+        if (buf == null)
+            return formatDouble(d);
+        buf.append(d);
+        return null;
+    }
+    
+    private static boolean isLarge(double d) {
+        return d >= HIGH_PRECISION_LIMIT || d <= -HIGH_PRECISION_LIMIT;
+    }
+    
+    /**
+     * Formats a number too large for <CODE>formatDouble(double, byte[], int)</CODE>
+     * with 6 decimal digits.
+     * @param d the number
+     * @return the formatted number
+     */
+    private static String formatLarge(double d) {
+        DecimalFormat dn = new DecimalFormat("0.######", dfs);
+        return dn.format(d);
+    }
+    
+    /**
+     * Writes a <CODE>double</CODE> in a format suitable for the PDF. The
+     * number of decimal digits is 6 if <CODE>HIGH_PRECISION</CODE> is set and
+     * depends on the magnitude otherwise; trailing zeros are not written.
+     * With <CODE>HIGH_PRECISION</CODE> the magnitude must be below 2 to the
+     * power of 33.
+     * Nothing is allocated and no state is shared, so it can be
+     * called from any thread.
+     * @param d the number
+     * @param b the destination, with room for at least 36 bytes after <CODE>off</CODE>
+     * @param off the position in <CODE>b</CODE> where to start writing
+     * @return the position after the last byte written
+     */
+    static int formatDouble(double d, byte b[], int off) {
+        if (d != d) {
+            // NaN
+            b[off++] = ZERO;
+            return off;
         }
-        if (d < 0) {
-            negative = true;
+        boolean negative = d < 0;
+        if (negative)
             d = -d;
+        if (HIGH_PRECISION) {
+            // like DecimalFormat, -0.0 and the negative numbers rounded to zero are written as -0
+            if (d == 0 && 1 / d < 0)
+                negative = true;
+            return formatDouble(negative, d, HIGH_PRECISION_DECIMALS, b, off);
         }
+        if (d < 0.000015) {
+            b[off++] = ZERO;
+            return off;
+        }
+        if (negative)
+            b[off++] = (byte)'-';
         if (d < 1.0) {
             d += 0.000005;
             if (d >= 1) {
-                if (negative) {
-                    if (buf != null) {
-                        buf.append((byte)'-');
-                        buf.append((byte)'1');
-                        return null;
-                    } else {
-                        return "-1";
-                    }
-                } else {
-                    if (buf != null) {
-                        buf.append((byte)'1');
-                        return null;
-                    } else {
-                        return "1";
-                    }
-                }
-            }
-            if (buf != null) {
-                int v = (int) (d * 100000);
-                
-                if (negative) buf.append((byte)'-');
-                buf.append((byte)'0');
-                buf.append((byte)'.');
-                
-                buf.append( (byte)(v / 10000 + ZERO) );
-                if (v % 10000 != 0) {
-                    buf.append( (byte)((v / 1000) % 10 + ZERO) );
-                    if (v % 1000 != 0) {
-                        buf.append( (byte)((v / 100) % 10 + ZERO) );
-                        if (v % 100 != 0) {
-                            buf.append((byte)((v / 10) % 10 + ZERO) );
-                            if (v % 10 != 0) {
-                                buf.append((byte)((v) % 10 + ZERO) );
-                            }
-                        }
-                    }
-                }
-                return null;
-            } else {
-                int x = 100000;
-                int v = (int) (d * x);
-                
-                StringBuffer res = new StringBuffer();
-                if (negative) res.append('-');
-                res.append("0.");
-                
-                while( v < x/10 ) {
-                    res.append('0');
-                    x /= 10;
-                }
-                res.append(v);
-                int cut = res.length() - 1;
-                while (res.charAt(cut) == '0') {
-                    --cut;
-                }
-                res.setLength(cut + 1);
-                return res.toString();
+                b[off++] = (byte)'1';
+                return off;
             }
-        } else if (d <= 32767) {
+            return writeFixed((int)(d * 100000), 5, b, off);
+        }
+        else if (d <= 32767) {
             d += 0.005;
-            int v = (int) (d * 100);
-            
-            if (v < byteCacheSize && byteCache[v] != null) {
-                if (buf != null) {
-                    if (negative) buf.append((byte)'-');
-                    buf.append(byteCache[v]);
-                    return null;
-                } else {
-                    String tmp = PdfEncodings.convertToString(byteCache[v], null);
-                    if (negative) tmp = "-" + tmp;
-                    return tmp;
-                }
-            }
-            if (buf != null) {
-                if (v < byteCacheSize) {
-                    //create the cachebyte[]
-                    byte[] cache;
-                    int size = 0;
-                    if (v >= 1000000) {
-                        //the original number is >=10000, we need 5 more bytes
-                        size += 5;
-                    } else if (v >= 100000) {
-                        //the original number is >=1000, we need 4 more bytes
-                        size += 4;
-                    } else if (v >= 10000) {
-                        //the original number is >=100, we need 3 more bytes
-                        size += 3;
-                    } else if (v >= 1000) {
-                        //the original number is >=10, we need 2 more bytes
-                        size += 2;
-                    } else if (v >= 100) {
-                        //the original number is >=1, we need 1 more bytes
-                        size += 1;
-                    }
-                    
-                    //now we must check if we have a decimal number
-                    if (v % 100 != 0) {
-                        //yes, do not forget the "."
-                        size += 2;
-                    }
-                    if (v % 10 != 0) {
-                        size++;
-                    }
-                    cache = new byte[size];
-                    int add = 0;
-                    if (v >= 1000000) {
-                        cache[add++] = bytes[(v / 1000000)];
-                    }
-                    if (v >= 100000) {
-                        cache[add++] = bytes[(v / 100000) % 10];
-                    }
-                    if (v >= 10000) {
-                        cache[add++] = bytes[(v / 10000) % 10];
-                    }
-                    if (v >= 1000) {
-                        cache[add++] = bytes[(v / 1000) % 10];
-                    }
-                    if (v >= 100) {
-                        cache[add++] = bytes[(v / 100) % 10];
-                    }
-                    
-                    if (v % 100 != 0) {
-                        cache[add++] = (byte)'.';
-                        cache[add++] = bytes[(v / 10) % 10];
-                        if (v % 10 != 0) {
-                            cache[add++] = bytes[v % 10];
-                        }
-                    }
-                    byteCache[v] = cache;
-                }
-                
-                if (negative) buf.append((byte)'-');
-                if (v >= 1000000) {
-                    buf.append( bytes[(v / 1000000)] );
-                }
-                if (v >= 100000) {
-                    buf.append( bytes[(v / 100000) % 10] );
-                }
-                if (v >= 10000) {
-                    buf.append( bytes[(v / 10000) % 10] );
-                }
-                if (v >= 1000) {
-                    buf.append( bytes[(v / 1000) % 10] );
-                }
-                if (v >= 100) {
-                    buf.append( bytes[(v / 100) % 10] );
-                }
-                
-                if (v % 100 != 0) {
-                    buf.append((byte)'.');
-                    buf.append( bytes[(v / 10) % 10] );
-                    if (v % 10 != 0) {
-                        buf.append( bytes[v % 10] );
-                    }
-                }
-                return null;
-            } else {
-                StringBuffer res = new StringBuffer();
-                if (negative) res.append('-');
-                if (v >= 1000000) {
-                    res.append( chars[(v / 1000000)] );
-                }
-                if (v >= 100000) {
-                    res.append( chars[(v / 100000) % 10] );
-                }
-                if (v >= 10000) {
-                    res.append( chars[(v / 10000) % 10] );
-                }
-                if (v >= 1000) {
-                    res.append( chars[(v / 1000) % 10] );
-                }
-                if (v >= 100) {
-                    res.append( chars[(v / 100) % 10] );
-                }
-                
-                if (v % 100 != 0) {
-                    res.append('.');
-                    res.append( chars[(v / 10) % 10] );
-                    if (v % 10 != 0) {
-                        res.append( chars[v % 10] );
-                    }
-                }
-                return res.toString();
+            return writeFixed((int)(d * 100), 2, b, off);
+        }
+        return writeLong((long)(d + 0.5), b, off);
+    }
+    
+    /**
+     * Writes a positive <CODE>double</CODE> with at most <CODE>decimals</CODE>
+     * decimal digits. The value is rounded from its exact binary value with
+     * the ties going to the even digit. Below 2 to the power of 33 the result
+     * is the same as with <CODE>DecimalFormat</CODE>.
+     * @param negative write a minus sign
+     * @param d the number, not negative
+     * @param decimals the number of decimal digits, up to 15
+     * @param b the destination
+     * @param off the position in <CODE>b</CODE> where to start writing
+     * @return the position after the last byte written
+     */
+    static int formatDouble(boolean negative, double d, int decimals, byte b[], int off) {
+        double ip = Math.floor(d);
+        // exact: the integer bits are cleared
+        double fr = d - ip;
+        long intPart = (long)ip;
+        long frac = 0;
+        if (decimals > 0 && fr != 0) {
+            double scale = POW10[decimals];
+            double p = fr * scale;
+            // the rounding error of the product, by Dekker's algorithm
+            double t = SPLITTER * fr;
+            double fhi = t - (t - fr);
+            double flo = fr - fhi;
+            t = SPLITTER * scale;
+            double shi = t - (t - scale);
+            double slo = scale - shi;
+            double err = ((fhi * shi - p) + fhi * slo + flo * shi) + flo * slo;
+            double fl = Math.floor(p);
+            double rem = p - fl;
+            frac = (long)fl;
+            if (rem > 0.5 || (rem == 0.5 && (err > 0 || (err == 0 && (frac & 1) != 0))))
+                ++frac;
+            if (frac == LPOW10[decimals]) {
+                frac = 0;
+                ++intPart;
             }
-        } else {
-            StringBuffer res = new StringBuffer();
-            if (negative) res.append('-');
-            d += 0.5;
-            long v = (long) d;
-            return res.append(v).toString();
+        }
+        else if (fr > 0.5 || (fr == 0.5 && (intPart & 1) != 0)) {
+            ++intPart;
+        }
+        if (negative)
+            b[off++] = (byte)'-';
+        off = writeLong(intPart, b, off);
+        return writeDecimals(frac, decimals, b, off);
+    }
+    
+    /**
+     * Writes a positive fixed point number, without the trailing zeros.
+     * @param v the number multiplied by 10 to the power of <CODE>decimals</CODE>
+     * @param decimals the number of decimal digits in <CODE>v</CODE>
+     * @param b the destination
+     * @param off the position in <CODE>b</CODE> where to start writing
+     * @return the position after the last byte written
+     */
+    private static int writeFixed(long v, int decimals, byte b[], int off) {
+        long scale = LPOW10[decimals];
+        off = writeLong(v / scale, b, off);
+        return writeDecimals(v % scale, decimals, b, off);
+    }
+    
+    /**
+     * Writes the decimal point and the decimal digits, without the
+     * trailing zeros. Nothing is written if <CODE>frac</CODE> is zero.
+     * @param frac the decimal digits as a number
+     * @param decimals the number of decimal digits in <CODE>frac</CODE>
+     * @param b the destination
+     * @param off the position in <CODE>b</CODE> where to start writing
+     * @return the position after the last byte written
+     */
+    private static int writeDecimals(long frac, int decimals, byte b[], int off) {
+        if (frac == 0)
+            return off;
+        while (frac % 10 == 0) {
+            frac /= 10;
+            --decimals;
+        }
+        b[off++] = (byte)'.';
+        int end = off + decimals;
+        for (int k = end - 1; k >= off; --k) {
+            b[k] = (byte)(frac % 10 + ZERO);
+            frac /= 10;
+        }
+        return end;
+    }
+    
+    /**
+     * Writes the digits of a positive <CODE>long</CODE>.
+     * @param v the number
+     * @param b the destination
+     * @param off the position in <CODE>b</CODE> where to start writing
+     * @return the position after the last byte written
+     */
+    private static int writeLong(long v, byte b[], int off) {
+        int len = 1;
+        for (long k = v; k >= 10; k /= 10)
+            ++len;
+        int end = off + len;
+        for (int k = end - 1; k >= off; --k) {
+            b[k] = (byte)(v % 10 + ZERO);
+            v /= 10;
+        }
+        return end;
+    }
+    
+    /**
+     * Makes room for <CODE>len</CODE> more bytes.
+     * @param len the number of bytes to be added
+     */
+    private void ensureCapacity(int len) {
+        int newcount = count + len;
+        if (newcount > buf.length) {
+            byte newbuf[] = new byte[Math.max(buf.length << 1, newcount)];
+            System.arraycopy(buf, 0, newbuf, 0, count);
+            buf = newbuf;
         }
     }
     
@@ -1262,7 +1262,7 @@ public class ColumnText {
                 }
                 float yTemp = yLine;
                 float yLineWrite = yLine;
-                if (!firstPass && listIdx == 0) {
+                if (!firstPass && listIdx == 0 && !table.isFlushed()) {
                     yTemp -= table.spacingBefore();
                     yLineWrite = yTemp;
                 }
@@ -1280,19 +1280,23 @@ public class ColumnText {
                     table.setTotalWidth(tableWidth);
                 }
                 int k;
-                boolean skipHeader = (!firstPass && table.isSkipFirstHeader() && listIdx <= table.getHeaderRows());
-                if (!skipHeader) {
-                    yTemp -= table.getHeaderHeight();
-                    if (yTemp < minY || yTemp > maxY) {
-                        if (firstPass) {
-                            compositeElements.removeFirst();
-                            continue;
-                        }
-                        return NO_MORE_COLUMN;
+                // the rows following the flushed ones don't repeat the header
+                boolean skipHeader = (!firstPass && (table.isSkipFirstHeader() || table.isFlushed()) && listIdx <= table.getHeaderRows());
+                float footerHeight = 0;
+                int headerRows = table.getHeaderRows();
+                for (int j = headerRows - Math.min(table.getFooterRows(), headerRows); j < headerRows; ++j)
+                    footerHeight += table.getRowHeight(j);
+                // the footer is written even if the header is skipped
+                yTemp -= skipHeader ? footerHeight : table.getHeaderHeight();
+                if (yTemp < minY || yTemp > maxY) {
+                    if (firstPass) {
+                        compositeElements.removeFirst();
+                        continue;
                     }
+                    return NO_MORE_COLUMN;
                 }
-                if (listIdx < table.getHeaderRows())
-                    listIdx = table.getHeaderRows();
+                if (listIdx < headerRows)
+                    listIdx = headerRows;
                 for (k = listIdx; k < table.size(); ++k) {
                     float rowHeight = table.getRowHeight(k);
                     if (yTemp - rowHeight < minY)
@@ -1312,8 +1316,11 @@ public class ColumnText {
                         float h = yTemp - minY;
                         PdfPRow newRow = table.getRow(k).splitRow(h);
                         if (newRow == null) {
-                            if (k == listIdx)
+                            if (k == listIdx) {
+                                if (skipHeader && table.isFlushed() && !simulate)
+                                    writeFooter(table, x1, tableWidth, yLineWrite);
                                 return NO_MORE_COLUMN;
+                            }
                         }
                         else {
                             yTemp = minY;
@@ -1326,10 +1333,20 @@ public class ColumnText {
                         continue;
                     }
                     else if (k == listIdx && !firstPass && (!table.isSplitRows() || table.isSplitLate())) {
-                            return NO_MORE_COLUMN;
+                        // the rows already flushed still need their footer in this column
+                        if (skipHeader && table.isFlushed() && !simulate)
+                            writeFooter(table, x1, tableWidth, yLineWrite);
+                        return NO_MORE_COLUMN;
                     }
                 }
+                // the rows of a table that is not complete go on after the last
+                // one without a footer, its space was only kept in case of a new column
+                boolean showFooter = table.isComplete() || k < table.size();
+                if (!showFooter)
+                    yTemp += footerHeight;
                 firstPass = false;
+                // the last row is not extended if more rows will follow it
+                boolean extendLastRow = table.isExtendLastRow() && (table.isComplete() || k < table.size());
                 if (!simulate) {
                     switch (table.getHorizontalAlignment()) {
                         case Element.ALIGN_LEFT:
@@ -1345,22 +1362,27 @@ public class ColumnText {
                     if (footerRows > realHeaderRows)
                         footerRows = realHeaderRows;
                     realHeaderRows -= footerRows;
+                    int writtenFooterRows = showFooter ? footerRows : 0;
                     PdfPTable nt = PdfPTable.shallowCopy(table);
                     ArrayList rows = table.getRows();
                     ArrayList sub = nt.getRows();
                     if (!skipHeader) {
                         for (int j = 0; j < realHeaderRows; ++j)
                             sub.add(rows.get(j));
+                        if (!showFooter) {
+                            nt.setHeaderRows(realHeaderRows);
+                            nt.setFooterRows(0);
+                        }
                     }
                     else
-                        nt.setHeaderRows(footerRows);
+                        nt.setHeaderRows(writtenFooterRows);
                     for (int j = listIdx; j < k; ++j)
                         sub.add(rows.get(j));
-                    for (int j = 0; j < footerRows; ++j)
+                    for (int j = 0; j < writtenFooterRows; ++j)
                         sub.add(rows.get(j + realHeaderRows));
                     float rowHeight = 0;
-                    if (table.isExtendLastRow()) {
-                        PdfPRow last = (PdfPRow)sub.get(sub.size() - 1 - footerRows);
+                    if (extendLastRow) {
+                        PdfPRow last = (PdfPRow)sub.get(sub.size() - 1 - writtenFooterRows);
                         rowHeight = last.getMaxHeights();
                         last.setMaxHeights(yTemp - minY + rowHeight);
                         yTemp = minY;
@@ -1369,16 +1391,17 @@ public class ColumnText {
                         nt.writeSelectedRows(0, -1, x1, yLineWrite, canvases);
                     else
                         nt.writeSelectedRows(0, -1, x1, yLineWrite, canvas);
-                    if (table.isExtendLastRow()) {
-                        PdfPRow last = (PdfPRow)sub.get(sub.size() - 1 - footerRows);
+                    if (extendLastRow) {
+                        PdfPRow last = (PdfPRow)sub.get(sub.size() - 1 - writtenFooterRows);
                         last.setMaxHeights(rowHeight);
                     }
                 }
-                else if (table.isExtendLastRow() && minY > PdfPRow.BOTTOM_LIMIT)
+                else if (extendLastRow && minY > PdfPRow.BOTTOM_LIMIT)
                     yTemp = minY;
                 yLine = yTemp;
                 if (k >= table.size()) {
-                    yLine -= table.spacingAfter();
+                    if (table.isComplete())
+                        yLine -= table.spacingAfter();
                     compositeElements.removeFirst();
                     splittedRow = false;
                     listIdx = 0;
@@ -1417,6 +1440,39 @@ public class ColumnText {
         }
     }
     
+    /**
+     * Writes only the footer of a table.
+     * @param table the table
+     * @param x1 the left of the column
+     * @param tableWidth the width of the table
+     * @param yLineWrite the top of the footer
+     */
+    private void writeFooter(PdfPTable table, float x1, float tableWidth, float yLineWrite) {
+        int headerRows = table.getHeaderRows();
+        int footerRows = Math.min(table.getFooterRows(), headerRows);
+        if (footerRows == 0)
+            return;
+        switch (table.getHorizontalAlignment()) {
+            case Element.ALIGN_LEFT:
+                break;
+            case Element.ALIGN_RIGHT:
+                x1 += rectangularWidth - tableWidth;
+                break;
+            default:
+                x1 += (rectangularWidth - tableWidth) / 2f;
+        }
+        PdfPTable nt = PdfPTable.shallowCopy(table);
+        nt.setHeaderRows(footerRows);
+        ArrayList rows = table.getRows();
+        ArrayList sub = nt.getRows();
+        for (int j = headerRows - footerRows; j < headerRows; ++j)
+            sub.add(rows.get(j));
+        if (canvases != null)
+            nt.writeSelectedRows(0, -1, x1, yLineWrite, canvases);
+        else
+            nt.writeSelectedRows(0, -1, x1, yLineWrite, canvas);
+    }
+    
     /**
      * Gets the canvas.
      * @return a PdfContentByte.
@@ -0,0 +1,334 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+
+package com.lowagie.text.pdf;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The map of a <CODE>PdfDictionary</CODE>. Most dictionaries have only a few
+ * keys so they are kept in a single array, alternating keys and values, and
+ * searched sequentially, first by identity as the names read are mostly shared
+ * instances. When the map grows past <CODE>THRESHOLD</CODE> entries it
+ * changes to a <CODE>LinkedHashMap</CODE>. The keys are kept in the order
+ * they were added in both cases.
+ */
+final class CompactMap extends AbstractMap {
+    
+    /** The maximum number of entries kept in the array. */
+    static final int THRESHOLD = 8;
+    
+    private static final Object EMPTY[] = new Object[0];
+    
+    /** The keys at the even positions and the values at the odd ones. */
+    private Object table[] = EMPTY;
+    /** The number of entries in <CODE>table</CODE>. */
+    private int size;
+    /** The map used after the upgrade, <CODE>null</CODE> before. */
+    private LinkedHashMap map;
+    /** The number of structural changes, to fail fast in the iterators. */
+    private int modCount;
+    
+    private Set entrySet;
+    
+    /** Creates an empty map. */
+    CompactMap() {
+    }
+    
+    /**
+     * Finds a key in the array.
+     * @param key the key
+     * @return the position of the key in <CODE>table</CODE> or -1
+     */
+    private int indexOf(Object key) {
+        Object t[] = table;
+        int n = size << 1;
+        for (int k = 0; k < n; k += 2) {
+            if (t[k] == key)
+                return k;
+        }
+        if (key == null)
+            return -1;
+        for (int k = 0; k < n; k += 2) {
+            if (key.equals(t[k]))
+                return k;
+        }
+        return -1;
+    }
+    
+    public int size() {
+        return map == null ? size : map.size();
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    public Object get(Object key) {
+        if (map != null)
+            return map.get(key);
+        int idx = indexOf(key);
+        return idx < 0 ? null : table[idx + 1];
+    }
+    
+    public boolean containsKey(Object key) {
+        if (map != null)
+            return map.containsKey(key);
+        return indexOf(key) >= 0;
+    }
+    
+    public Object put(Object key, Object value) {
+        if (map != null)
+            return map.put(key, value);
+        int idx = indexOf(key);
+        if (idx >= 0) {
+            Object old = table[idx + 1];
+            table[idx + 1] = value;
+            return old;
+        }
+        ++modCount;
+        if (size == THRESHOLD) {
+            map = new LinkedHashMap(THRESHOLD * 4);
+            for (int k = 0; k < size << 1; k += 2)
+                map.put(table[k], table[k + 1]);
+            map.put(key, value);
+            table = EMPTY;
+            size = 0;
+            return null;
+        }
+        int n = size << 1;
+        if (n == table.length) {
+            Object t[] = new Object[n == 0 ? 4 : n * 2];
+            System.arraycopy(table, 0, t, 0, n);
+            table = t;
+        }
+        table[n] = key;
+        table[n + 1] = value;
+        ++size;
+        return null;
+    }
+    
+    public Object remove(Object key) {
+        if (map != null)
+            return map.remove(key);
+        int idx = indexOf(key);
+        if (idx < 0)
+            return null;
+        Object old = table[idx + 1];
+        removeAt(idx);
+        return old;
+    }
+    
+    /**
+     * Removes the entry at a position of the array.
+     * @param idx the position of the key in <CODE>table</CODE>
+     */
+    private void removeAt(int idx) {
+        ++modCount;
+        int n = size << 1;
+        System.arraycopy(table, idx + 2, table, idx, n - idx - 2);
+        table[n - 2] = null;
+        table[n - 1] = null;
+        --size;
+    }
+    
+    public void putAll(Map m) {
+        for (Iterator it = m.entrySet().iterator(); it.hasNext();) {
+            Map.Entry e = (Map.Entry)it.next();
+            put(e.getKey(), e.getValue());
+        }
+    }
+    
+    public void clear() {
+        ++modCount;
+        if (map != null) {
+            // fails the iterators of the map
+            map.clear();
+            map = null;
+        }
+        table = EMPTY;
+        size = 0;
+    }
+    
+    public Set entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet() {
+                public Iterator iterator() {
+                    if (map != null)
+                        return map.entrySet().iterator();
+                    return new ArrayIterator();
+                }
+                public int size() {
+                    return CompactMap.this.size();
+                }
+                public void clear() {
+                    CompactMap.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+    
+    /** Iterates over the entries of the array. */
+    private class ArrayIterator implements Iterator {
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = modCount;
+        
+        public boolean hasNext() {
+            if (modCount != expectedModCount || map != null)
+                throw new ConcurrentModificationException();
+            return next < size << 1;
+        }
+        
+        public Object next() {
+            if (modCount != expectedModCount || map != null)
+                throw new ConcurrentModificationException();
+            if (next >= size << 1)
+                throw new NoSuchElementException();
+            last = next;
+            next += 2;
+            return new Entry(last);
+        }
+        
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount || map != null)
+                throw new ConcurrentModificationException();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+    
+    /**
+     * An entry of the array, it reads and writes the array directly. The
+     * position of the key is found again when the entries before it were
+     * removed. Once the key is removed the entry keeps the last value it had.
+     */
+    private class Entry implements Map.Entry {
+        private int idx;
+        private Object key;
+        private Object value;
+        
+        Entry(int idx) {
+            this.idx = idx;
+            key = table[idx];
+            value = table[idx + 1];
+        }
+        
+        /**
+         * Gets the position of the key in the array.
+         * @return the position or -1 if the key was removed
+         */
+        private int index() {
+            if (idx < 0 || idx >= size << 1 || table[idx] != key)
+                idx = indexOf(key);
+            return idx;
+        }
+        
+        public Object getKey() {
+            return key;
+        }
+        
+        public Object getValue() {
+            if (map != null) {
+                if (map.containsKey(key))
+                    value = map.get(key);
+            }
+            else {
+                int k = index();
+                if (k >= 0)
+                    value = table[k + 1];
+            }
+            return value;
+        }
+        
+        public Object setValue(Object value) {
+            Object old = getValue();
+            if (map != null) {
+                if (map.containsKey(key))
+                    map.put(key, value);
+            }
+            else {
+                int k = index();
+                if (k >= 0)
+                    table[k + 1] = value;
+            }
+            this.value = value;
+            return old;
+        }
+        
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry e = (Map.Entry)o;
+            Object v = getValue();
+            return key.equals(e.getKey()) && (v == null ? e.getValue() == null : v.equals(e.getValue()));
+        }
+        
+        public int hashCode() {
+            Object v = getValue();
+            return key.hashCode() ^ (v == null ? 0 : v.hashCode());
+        }
+        
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.ExceptionConverter;
+
+/**
+ * The items of a batch, written one by one by one or more threads. It is used
+ * by <CODE>PdfFormFiller</CODE>, <CODE>PdfBatchSigner</CODE> and
+ * <CODE>PdfSplitter</CODE>. With more than one thread the items are written in
+ * any order, the first error stops all the threads and is thrown once they
+ * are done.
+ */
+abstract class DocumentBatch implements Runnable {
+    
+    private Iterator items;
+    private int next;
+    private int done;
+    private Throwable error;
+    
+    /**
+     * Creates a batch.
+     * @param items the items of the batch
+     */
+    DocumentBatch(Iterator items) {
+        this.items = items;
+    }
+    
+    /**
+     * Gets the stream where an item is written.
+     * @param index the position of the item in the batch, the first is 0
+     * @param item the item
+     * @return the stream
+     * @throws IOException on error
+     */
+    abstract OutputStream getOutputStream(int index, Object item) throws IOException;
+    
+    /**
+     * Writes an item. The stream must be closed when the item is written,
+     * it is closed by the batch if there is an error.
+     * @param item the item
+     * @param os the stream
+     * @throws Exception on error
+     */
+    abstract void write(Object item, OutputStream os) throws Exception;
+    
+    /**
+     * Writes all the items.
+     * @param threads the number of threads writing the items
+     * @param name the prefix of the names of the threads
+     * @return the number of items written
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    int write(int threads, String name) throws IOException, DocumentException {
+        if (threads <= 1) {
+            run();
+        }
+        else {
+            Thread workers[] = new Thread[threads];
+            for (int k = 0; k < threads; ++k) {
+                workers[k] = new Thread(this, name + "-" + k);
+                workers[k].start();
+            }
+            boolean interrupted = false;
+            for (int k = 0; k < threads; ++k) {
+                try {
+                    workers[k].join();
+                }
+                catch (InterruptedException e) {
+                    // the workers stop after their current item
+                    stop(e);
+                    interrupted = true;
+                    --k;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        if (error instanceof IOException)
+            throw (IOException)error;
+        if (error instanceof DocumentException)
+            throw (DocumentException)error;
+        if (error instanceof RuntimeException)
+            throw (RuntimeException)error;
+        if (error instanceof Error)
+            throw (Error)error;
+        if (error != null)
+            throw new ExceptionConverter((Exception)error);
+        return done;
+    }
+    
+    private synchronized void stop(Throwable error) {
+        if (this.error == null)
+            this.error = error;
+    }
+    
+    public void run() {
+        try {
+            while (true) {
+                Object item;
+                int index;
+                synchronized (this) {
+                    if (error != null || !items.hasNext())
+                        return;
+                    item = items.next();
+                    index = next++;
+                }
+                OutputStream os = getOutputStream(index, item);
+                boolean written = false;
+                try {
+                    write(item, os);
+                    written = true;
+                }
+                finally {
+                    if (!written)
+                        closeAfterError(os);
+                }
+                synchronized (this) {
+                    ++done;
+                }
+            }
+        }
+        catch (Throwable e) {
+            stop(e);
+        }
+    }
+    
+    /**
+     * Closes a stream after an error. An error of the close itself is
+     * ignored, the first error is the one reported.
+     * @param os the stream
+     */
+    static void closeAfterError(OutputStream os) {
+        try {
+            os.close();
+        }
+        catch (IOException e) {
+            // empty on purpose
+        }
+    }
+}
@@ -0,0 +1,230 @@
+// LongHashtable - a Hashtable that uses ints as the keys and longs as the values
+//
+// This is based on IntHashtable, that is 90% based on JavaSoft's
+// java.util.Hashtable.
+
+package com.lowagie.text.pdf;
+
+/// A Hashtable that uses ints as the keys and longs as the values.
+// <P>
+// Use just like IntHashtable, except that the values are longs. It is
+// used to hold file offsets that may be larger than 2 GB.
+// <P>
+// @see IntHashtable
+
+public class LongHashtable implements Cloneable {
+    /// The hash table data.
+    private LongHashtableEntry table[];
+    
+    /// The total number of entries in the hash table.
+    private int count;
+    
+    /// Rehashes the table when count exceeds this threshold.
+    private int threshold;
+    
+    /// The load factor for the hashtable.
+    private float loadFactor;
+    
+    /// Constructs a new, empty hashtable with the specified initial
+    // capacity and the specified load factor.
+    // @param initialCapacity the initial number of buckets
+    // @param loadFactor a number between 0.0 and 1.0, it defines
+    //		the threshold for rehashing the hashtable into
+    //		a bigger one.
+    // @exception IllegalArgumentException If the initial capacity
+    // is less than or equal to zero.
+    // @exception IllegalArgumentException If the load factor is
+    // less than or equal to zero.
+    public LongHashtable( int initialCapacity, float loadFactor ) {
+        if ( initialCapacity <= 0 || loadFactor <= 0.0 )
+            throw new IllegalArgumentException();
+        this.loadFactor = loadFactor;
+        table = new LongHashtableEntry[initialCapacity];
+        threshold = (int) ( initialCapacity * loadFactor );
+    }
+    
+    /// Constructs a new, empty hashtable with the specified initial
+    // capacity.
+    // @param initialCapacity the initial number of buckets
+    public LongHashtable( int initialCapacity ) {
+        this( initialCapacity, 0.75f );
+    }
+    
+    /// Constructs a new, empty hashtable. A default capacity and load factor
+    // is used. Note that the hashtable will automatically grow when it gets
+    // full.
+    public LongHashtable() {
+        this( 101, 0.75f );
+    }
+    
+    /// Returns the number of elements contained in the hashtable.
+    public int size() {
+        return count;
+    }
+    
+    /// Returns true if the hashtable contains no elements.
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    /// Returns true if the collection contains an element for the key.
+    // @param key the key that we are looking for
+    public boolean containsKey( int key ) {
+        LongHashtableEntry tab[] = table;
+        int index = ( key & 0x7FFFFFFF ) % tab.length;
+        for ( LongHashtableEntry e = tab[index] ; e != null ; e = e.next ) {
+            if ( e.key == key )
+                return true;
+        }
+        return false;
+    }
+    
+    /// Gets the value associated with the specified key in the
+    // hashtable.
+    // @param key the specified key
+    // @returns the element for the key or 0 if the key
+    // 		is not defined in the hash table.
+    // @see LongHashtable#put
+    public long get( int key ) {
+        LongHashtableEntry tab[] = table;
+        int index = ( key & 0x7FFFFFFF ) % tab.length;
+        for ( LongHashtableEntry e = tab[index] ; e != null ; e = e.next ) {
+            if ( e.key == key )
+                return e.value;
+        }
+        return 0;
+    }
+    
+    /// Rehashes the content of the table into a bigger table.
+    // This method is called automatically when the hashtable's
+    // size exceeds the threshold.
+    protected void rehash() {
+        int oldCapacity = table.length;
+        LongHashtableEntry oldTable[] = table;
+        
+        int newCapacity = oldCapacity * 2 + 1;
+        LongHashtableEntry newTable[] = new LongHashtableEntry[newCapacity];
+        
+        threshold = (int) ( newCapacity * loadFactor );
+        table = newTable;
+        
+        for ( int i = oldCapacity ; i-- > 0 ; ) {
+            for ( LongHashtableEntry old = oldTable[i] ; old != null ; ) {
+                LongHashtableEntry e = old;
+                old = old.next;
+                
+                int index = ( e.key & 0x7FFFFFFF ) % newCapacity;
+                e.next = newTable[index];
+                newTable[index] = e;
+            }
+        }
+    }
+    
+    /// Puts the specified element into the hashtable, using the specified
+    // key.  The element may be retrieved by doing a get() with the same key.
+    // @param key the specified key in the hashtable
+    // @param value the specified element
+    // @see LongHashtable#get
+    // @return the old value of the key, or 0 if it did not have one.
+    public long put( int key, long value ) {
+        // Makes sure the key is not already in the hashtable.
+        LongHashtableEntry tab[] = table;
+        int index = ( key & 0x7FFFFFFF ) % tab.length;
+        for ( LongHashtableEntry e = tab[index] ; e != null ; e = e.next ) {
+            if ( e.key == key ) {
+                long old = e.value;
+                e.value = value;
+                return old;
+            }
+        }
+        
+        if ( count >= threshold ) {
+            // Rehash the table if the threshold is exceeded.
+            rehash();
+            return put( key, value );
+        }
+        
+        // Creates the new entry.
+        LongHashtableEntry e = new LongHashtableEntry();
+        e.key = key;
+        e.value = value;
+        e.next = tab[index];
+        tab[index] = e;
+        ++count;
+        return 0;
+    }
+    
+    /// Removes the element corresponding to the key. Does nothing if the
+    // key is not present.
+    // @param key the key that needs to be removed
+    // @return the value of key, or 0 if the key was not found.
+    public long remove( int key ) {
+        LongHashtableEntry tab[] = table;
+        int index = ( key & 0x7FFFFFFF ) % tab.length;
+        for ( LongHashtableEntry e = tab[index], prev = null ; e != null ; prev = e, e = e.next ) {
+            if ( e.key == key ) {
+                if ( prev != null )
+                    prev.next = e.next;
+                else
+                    tab[index] = e.next;
+                --count;
+                return e.value;
+            }
+        }
+        return 0;
+    }
+    
+    /// Clears the hash table so that it has no more elements in it.
+    public void clear() {
+        LongHashtableEntry tab[] = table;
+        for ( int index = tab.length; --index >= 0; )
+            tab[index] = null;
+        count = 0;
+    }
+    
+    public Object clone() {
+        try {
+            LongHashtable t = (LongHashtable)super.clone();
+            t.table = new LongHashtableEntry[table.length];
+            for (int i = table.length ; i-- > 0 ; ) {
+                t.table[i] = (table[i] != null)
+                ? (LongHashtableEntry)table[i].clone() : null;
+            }
+            return t;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    public int[] getKeys() {
+        int res[] = new int[count];
+        int ptr = 0;
+        int index = table.length;
+        LongHashtableEntry entry = null;
+        while (true) {
+            if (entry == null)
+                while ((index-- > 0) && ((entry = table[index]) == null));
+            if (entry == null)
+                break;
+            LongHashtableEntry e = entry;
+            entry = e.next;
+            res[ptr++] = e.key;
+        }
+        return res;
+    }
+    
+    static class LongHashtableEntry {
+        int key;
+        long value;
+        LongHashtableEntry next;
+        
+        protected Object clone() {
+            LongHashtableEntry entry = new LongHashtableEntry();
+            entry.key = key;
+            entry.value = value;
+            entry.next = (next != null) ? (LongHashtableEntry)next.clone() : null;
+            return entry;
+        }
+    }    
+}
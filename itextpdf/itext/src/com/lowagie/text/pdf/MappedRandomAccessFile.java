@@ -52,22 +52,41 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.nio.BufferUnderflowException;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * A {@link java.nio.MappedByteBuffer} wrapped as a {@link java.io.RandomAccessFile}
+ * A {@link java.nio.MappedByteBuffer} wrapped as a {@link java.io.RandomAccessFile}.
+ * <p>
+ * The file is not mapped as a whole. Fixed size windows are mapped when they
+ * are first needed and only a few of them are kept, the least recently used
+ * window being unmapped when the limit is reached. Opening a file of any size
+ * is then immediate and the address space used is bounded.
  *
  * @author Joakim Sandstroem
  * Created on 6.9.2006
  */
 public class MappedRandomAccessFile {
     
-    private MappedByteBuffer mappedByteBuffer = null;
+    /** The default size of a mapped window. */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 24;
+    /** The default number of windows kept mapped. */
+    public static final int DEFAULT_MAX_WINDOWS = 4;
+    
     private FileChannel channel = null;
+    private FileChannel.MapMode mapMode;
+    private long size;
+    private long pointer;
+    private int windowSize;
+    private LinkedHashMap windows;
+    private long windowStart = -1;
+    private MappedByteBuffer window;
+    private int windowLimit;
     
     /**
      * Constructs a new MappedRandomAccessFile instance
@@ -78,65 +97,122 @@ public class MappedRandomAccessFile {
      */
     public MappedRandomAccessFile(String filename, String mode)
     throws FileNotFoundException, IOException {
-        
+        this(filename, mode, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_WINDOWS);
+    }
+    
+    /**
+     * Constructs a new MappedRandomAccessFile instance
+     * @param filename String
+     * @param mode String r, w or rw
+     * @param windowSize the size of each mapped window
+     * @param maxWindows the maximum number of windows kept mapped
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public MappedRandomAccessFile(String filename, String mode, int windowSize, int maxWindows)
+    throws FileNotFoundException, IOException {
+        if (windowSize <= 0 || maxWindows <= 0)
+            throw new IllegalArgumentException("The window size and the window count must be positive.");
         if (mode.equals("rw"))
             init(
                     new java.io.RandomAccessFile(filename, mode).getChannel(),
-                    FileChannel.MapMode.READ_WRITE);
+                    FileChannel.MapMode.READ_WRITE, windowSize, maxWindows);
         else
             init(
                     new FileInputStream(filename).getChannel(),
-                    FileChannel.MapMode.READ_ONLY);
+                    FileChannel.MapMode.READ_ONLY, windowSize, maxWindows);
         
     }
     
     /**
-     * initializes the channel and mapped bytebuffer
+     * initializes the channel and the window cache
      * @param channel FileChannel
      * @param mapMode FileChannel.MapMode
+     * @param windowSize the size of each mapped window
+     * @param maxWindows the maximum number of windows kept mapped
      * @throws IOException
      */
-    private void init(FileChannel channel, FileChannel.MapMode mapMode)
+    private void init(FileChannel channel, FileChannel.MapMode mapMode, int windowSize, final int maxWindows)
     throws IOException {
         
         this.channel = channel;
-        this.mappedByteBuffer = channel.map(mapMode, 0L, channel.size());
-        mappedByteBuffer.load();
+        this.mapMode = mapMode;
+        this.windowSize = windowSize;
+        size = channel.size();
+        windows = new LinkedHashMap(maxWindows * 2, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                if (size() <= maxWindows)
+                    return false;
+                clean((MappedByteBuffer)eldest.getValue());
+                return true;
+            }
+        };
+    }
+    
+    /**
+     * Makes the window containing the file pointer the current window.
+     * @return <CODE>false</CODE> if the file pointer is at or past the end of the file
+     * @throws IOException
+     */
+    private boolean mapWindow() throws IOException {
+        if (pointer >= size)
+            return false;
+        long start = pointer - pointer % windowSize;
+        if (start == windowStart)
+            return true;
+        Long key = new Long(start);
+        MappedByteBuffer buffer = (MappedByteBuffer)windows.get(key);
+        if (buffer == null) {
+            // the current window must not be unmapped while in use
+            window = null;
+            buffer = channel.map(mapMode, start, Math.min(windowSize, size - start));
+            windows.put(key, buffer);
+        }
+        window = buffer;
+        windowStart = start;
+        windowLimit = buffer.limit();
+        return true;
     }
     
     /**
      * @see java.io.RandomAccessFile#read()
      * @return int next integer or -1 on EOF
+     * @throws IOException
      */
-    public int read() {
-        try {
-            byte b = mappedByteBuffer.get();
-            int n = b & 0xff;
-            
-            return n;
-        } catch (BufferUnderflowException e) {
+    public int read() throws IOException {
+        if (!mapWindow())
             return -1; // EOF
-        }
+        int n = window.get((int)(pointer - windowStart)) & 0xff;
+        ++pointer;
+        return n;
     }
     
     /**
+     * Reads a block of bytes, crossing window boundaries if needed.
      * @see java.io.RandomAccessFile#read(byte[], int, int)
      * @param bytes byte[]
      * @param off int offset
      * @param len int length
      * @return int bytes read or -1 on EOF
+     * @throws IOException
      */
-    public int read(byte bytes[], int off, int len) {
-        int pos = mappedByteBuffer.position();
-        int limit = mappedByteBuffer.limit();
-        if (pos == limit)
+    public int read(byte bytes[], int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (pointer >= size)
             return -1; // EOF
-        int newlimit = pos + len - off;
-        if (newlimit > limit) {
-            len = limit - pos; // don't read beyond EOF
+        int total = 0;
+        while (len > 0 && mapWindow()) {
+            int pos = (int)(pointer - windowStart);
+            int n = Math.min(len, windowLimit - pos);
+            window.position(pos);
+            window.get(bytes, off, n);
+            pointer += n;
+            off += n;
+            len -= n;
+            total += n;
         }
-        mappedByteBuffer.get(bytes, off, len);
-        return len;
+        return total;
     }
     
     /**
@@ -144,7 +220,7 @@ public class MappedRandomAccessFile {
      * @return long
      */
     public long getFilePointer() {
-        return mappedByteBuffer.position();
+        return pointer;
     }
     
     /**
@@ -152,7 +228,7 @@ public class MappedRandomAccessFile {
      * @param pos long position
      */
     public void seek(long pos) {
-        mappedByteBuffer.position((int) pos);
+        pointer = pos;
     }
     
     /**
@@ -160,16 +236,21 @@ public class MappedRandomAccessFile {
      * @return long length
      */
     public long length() {
-        return mappedByteBuffer.limit();
+        return size;
     }
     
     /**
      * @see java.io.RandomAccessFile#close()
-     * Cleans the mapped bytebuffer and closes the channel
+     * Unmaps all the windows and closes the channel
      */
     public void close() throws IOException {
-        clean(mappedByteBuffer);
-        mappedByteBuffer = null;
+        if (channel == null)
+            return;
+        window = null;
+        windowStart = -1;
+        for (Iterator it = windows.values().iterator(); it.hasNext();)
+            clean((MappedByteBuffer)it.next());
+        windows.clear();
         channel.close();
         channel = null;
     }
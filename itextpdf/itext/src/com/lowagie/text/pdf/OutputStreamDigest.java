@@ -0,0 +1,177 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.SignatureException;
+
+import com.lowagie.text.ExceptionConverter;
+
+/**
+ * The stream of a document that is signed while it is written.
+ * <p>
+ * The bytes go to the destination and to the signer at the same time until
+ * <CODE>hold()</CODE> is called, just before the signature dictionary is
+ * written. The end of the document, from the signature dictionary to the
+ * trailer, is then kept in memory until the byte range is known and the
+ * /Contents can be filled with the signature.
+ */
+final class OutputStreamDigest extends OutputStream {
+    
+    private OutputStream out;
+    private PdfPKCS7 signer;
+    private byte buf[] = new byte[8192];
+    private int count;
+    private long position;
+    private long holdPosition = -1;
+    private ByteBuffer tail;
+    
+    /**
+     * Creates a stream that digests what goes to <CODE>out</CODE>.
+     * @param out the destination of the document
+     * @param signer the signer fed with the bytes
+     */
+    OutputStreamDigest(OutputStream out, PdfPKCS7 signer) {
+        this.out = out;
+        this.signer = signer;
+    }
+    
+    public void write(int b) throws IOException {
+        ++position;
+        if (tail != null)
+            tail.append((byte)b);
+        else {
+            if (count == buf.length)
+                flushBuffer();
+            buf[count++] = (byte)b;
+        }
+    }
+    
+    public void write(byte b[], int off, int len) throws IOException {
+        position += len;
+        if (tail != null)
+            tail.append(b, off, len);
+        else if (len >= buf.length) {
+            flushBuffer();
+            digest(b, off, len);
+        }
+        else {
+            if (len > buf.length - count)
+                flushBuffer();
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+    }
+    
+    public void flush() throws IOException {
+        if (tail == null) {
+            flushBuffer();
+            out.flush();
+        }
+    }
+    
+    /**
+     * Does nothing, the destination is closed by the signature appearance
+     * once the signature is in place.
+     */
+    public void close() throws IOException {
+    }
+    
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            digest(buf, 0, count);
+            count = 0;
+        }
+    }
+    
+    private void digest(byte b[], int off, int len) throws IOException {
+        try {
+            signer.update(b, off, len);
+        }
+        catch (SignatureException e) {
+            throw new ExceptionConverter(e);
+        }
+        out.write(b, off, len);
+    }
+    
+    /**
+     * Stops digesting and keeps the following bytes in memory.
+     * @throws IOException on error
+     */
+    void hold() throws IOException {
+        flushBuffer();
+        holdPosition = position;
+        tail = new ByteBuffer();
+    }
+    
+    /**
+     * Gets the number of bytes written so far.
+     * @return the number of bytes written
+     */
+    long getPosition() {
+        return position;
+    }
+    
+    /**
+     * Gets the position of the first byte kept in memory.
+     * @return the position where <CODE>hold()</CODE> was called or -1
+     */
+    long getHoldPosition() {
+        return holdPosition;
+    }
+    
+    /**
+     * Gets the bytes kept in memory since <CODE>hold()</CODE>.
+     * @return the end of the document
+     */
+    ByteBuffer getTail() {
+        return tail;
+    }
+}
@@ -61,7 +61,7 @@ import com.lowagie.text.ExceptionConverter;
 public class PRStream extends PdfStream {
     
     protected PdfReader reader;
-    protected int offset;
+    protected long offset;
     protected int length;
     
     //added by ujihara for decryption
@@ -88,7 +88,7 @@ public class PRStream extends PdfStream {
         this.reader = reader;
     }
 
-    public PRStream(PdfReader reader, int offset) {
+    public PRStream(PdfReader reader, long offset) {
         this.reader = reader;
         this.offset = offset;
     }
@@ -143,7 +143,7 @@ public class PRStream extends PdfStream {
         put(PdfName.LENGTH, new PdfNumber(length));
     }
     
-    public int getOffset() {
+    public long getOffset() {
         return offset;
     }
     
@@ -172,6 +172,12 @@ public class PRStream extends PdfStream {
         return objGen;
     }
     
+    /**
+     * Does nothing, the data is read and encrypted by <CODE>toPdf()</CODE>.
+     */
+    void encryptLater(PdfWriter writer, int number, int generation) {
+    }
+    
     public void toPdf(PdfWriter writer, OutputStream os) throws IOException {
         byte[] b = PdfReader.getStreamBytesRaw(this);
         PdfEncryption crypto = null;
@@ -0,0 +1,622 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The <CODE>InputStream</CODE>s that decode the data of a <CODE>PRStream</CODE>
+ * as it is read. Each one keeps only a small buffer, a row of the image or
+ * the LZW string table, instead of the whole stream.
+ * @see PdfReader#getStreamInputStream(PRStream)
+ */
+final class PRStreamDecoder {
+    
+    /** The size of the buffer used to read the file. */
+    static final int BUFFER_SIZE = 8192;
+    
+    private PRStreamDecoder() {
+    }
+    
+    /**
+     * Gets a stream that applies a predictor. The stream is returned unchanged
+     * if the parameters don't have a PNG predictor.
+     * @param in the data with the predictor
+     * @param dicPar the decode parameters
+     * @return the decoded stream
+     */
+    static InputStream predictor(InputStream in, PdfObject dicPar) {
+        if (dicPar == null || !dicPar.isDictionary())
+            return in;
+        PdfDictionary dic = (PdfDictionary)dicPar;
+        PdfObject obj = PdfReader.getPdfObject(dic.get(PdfName.PREDICTOR));
+        if (obj == null || !obj.isNumber())
+            return in;
+        int predictor = ((PdfNumber)obj).intValue();
+        if (predictor < 10)
+            return in;
+        int width = 1;
+        obj = PdfReader.getPdfObject(dic.get(PdfName.COLUMNS));
+        if (obj != null && obj.isNumber())
+            width = ((PdfNumber)obj).intValue();
+        int colors = 1;
+        obj = PdfReader.getPdfObject(dic.get(PdfName.COLORS));
+        if (obj != null && obj.isNumber())
+            colors = ((PdfNumber)obj).intValue();
+        int bpc = 8;
+        obj = PdfReader.getPdfObject(dic.get(PdfName.BITSPERCOMPONENT));
+        if (obj != null && obj.isNumber())
+            bpc = ((PdfNumber)obj).intValue();
+        return new PredictorInputStream(in, colors * bpc / 8, (colors * width * bpc + 7) / 8);
+    }
+    
+    /**
+     * Reads the data of a stream from the file and decrypts it.
+     */
+    static final class RawInputStream extends InputStream {
+        private RandomAccessFileOrArray file;
+        private int remaining;
+        private StandardDecryption decryptor;
+        private byte buf[];
+        private byte pending[];
+        private int pendingPtr;
+        
+        /**
+         * Creates the stream. The file is closed with the stream.
+         * @param file the file, positioned at the start of the data
+         * @param length the length of the data
+         * @param decryptor the decryptor or <CODE>null</CODE> if the data is not encrypted
+         */
+        RawInputStream(RandomAccessFileOrArray file, int length, StandardDecryption decryptor) {
+            this.file = file;
+            this.remaining = length;
+            this.decryptor = decryptor;
+            if (decryptor != null)
+                buf = new byte[BUFFER_SIZE];
+        }
+        
+        public int read() throws IOException {
+            byte b[] = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+        
+        public int read(byte b[], int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            while (true) {
+                if (pending != null && pendingPtr < pending.length) {
+                    int n = Math.min(len, pending.length - pendingPtr);
+                    System.arraycopy(pending, pendingPtr, b, off, n);
+                    pendingPtr += n;
+                    return n;
+                }
+                if (file == null)
+                    return -1;
+                if (remaining == 0) {
+                    pending = decryptor == null ? null : decryptor.finish();
+                    pendingPtr = 0;
+                    close();
+                    continue;
+                }
+                if (decryptor == null) {
+                    int n = Math.min(len, remaining);
+                    file.readFully(b, off, n);
+                    remaining -= n;
+                    return n;
+                }
+                int n = Math.min(buf.length, remaining);
+                file.readFully(buf, 0, n);
+                remaining -= n;
+                pending = decryptor.update(buf, 0, n);
+                pendingPtr = 0;
+            }
+        }
+        
+        public void close() throws IOException {
+            if (file != null) {
+                file.close();
+                file = null;
+            }
+        }
+    }
+    
+    /**
+     * Decodes the FlateDecode filter. A corrupted stream ends at the error
+     * instead of throwing, as <CODE>PdfReader.FlateDecode()</CODE> keeps
+     * the data decoded up to the error.
+     */
+    static final class FlateInputStream extends InflaterInputStream {
+        private boolean eof;
+        
+        FlateInputStream(InputStream in) {
+            super(in);
+        }
+        
+        public int read(byte b[], int off, int len) throws IOException {
+            if (eof)
+                return -1;
+            try {
+                int n = super.read(b, off, len);
+                if (n < 0)
+                    eof = true;
+                return n;
+            }
+            catch (IOException e) {
+                eof = true;
+                return -1;
+            }
+        }
+        
+        public int available() throws IOException {
+            return eof ? 0 : super.available();
+        }
+    }
+    
+    /**
+     * Decodes the PNG predictors, one row at a time.
+     */
+    static final class PredictorInputStream extends InputStream {
+        private InputStream in;
+        private int bytesPerPixel;
+        private int bytesPerRow;
+        private byte curr[];
+        private byte prior[];
+        private int ptr;
+        private boolean eof;
+        
+        PredictorInputStream(InputStream in, int bytesPerPixel, int bytesPerRow) {
+            this.in = in;
+            this.bytesPerPixel = bytesPerPixel;
+            this.bytesPerRow = bytesPerRow;
+            curr = new byte[bytesPerRow];
+            prior = new byte[bytesPerRow];
+            ptr = bytesPerRow;
+        }
+        
+        public int read() throws IOException {
+            if (ptr == bytesPerRow && !nextRow())
+                return -1;
+            return curr[ptr++] & 0xff;
+        }
+        
+        public int read(byte b[], int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (ptr == bytesPerRow && !nextRow())
+                return -1;
+            int n = Math.min(len, bytesPerRow - ptr);
+            System.arraycopy(curr, ptr, b, off, n);
+            ptr += n;
+            return n;
+        }
+        
+        public void close() throws IOException {
+            in.close();
+        }
+        
+        private boolean nextRow() throws IOException {
+            if (eof)
+                return false;
+            // Swap curr and prior
+            byte tmp[] = prior;
+            prior = curr;
+            curr = tmp;
+            // Read the filter type byte and a row of data, an incomplete row is dropped
+            int filter = in.read();
+            int n = 0;
+            if (filter >= 0) {
+                while (n < bytesPerRow) {
+                    int r = in.read(curr, n, bytesPerRow - n);
+                    if (r < 0)
+                        break;
+                    n += r;
+                }
+            }
+            if (n < bytesPerRow || bytesPerRow == 0) {
+                eof = true;
+                return false;
+            }
+            decodeRow(filter, curr, prior, bytesPerPixel, bytesPerRow);
+            ptr = 0;
+            return true;
+        }
+    }
+    
+    /**
+     * Decodes a row with a PNG predictor.
+     * @param filter the filter type byte of the row
+     * @param curr the row, decoded in place
+     * @param prior the previous decoded row
+     * @param bytesPerPixel the number of bytes in a pixel
+     * @param bytesPerRow the number of bytes in a row
+     */
+    static void decodeRow(int filter, byte curr[], byte prior[], int bytesPerPixel, int bytesPerRow) {
+        switch (filter) {
+            case 0: //PNG_FILTER_NONE
+                break;
+            case 1: //PNG_FILTER_SUB
+                for (int i = bytesPerPixel; i < bytesPerRow; i++) {
+                    curr[i] += curr[i - bytesPerPixel];
+                }
+                break;
+            case 2: //PNG_FILTER_UP
+                for (int i = 0; i < bytesPerRow; i++) {
+                    curr[i] += prior[i];
+                }
+                break;
+            case 3: //PNG_FILTER_AVERAGE
+                for (int i = 0; i < bytesPerPixel; i++) {
+                    curr[i] += prior[i] / 2;
+                }
+                for (int i = bytesPerPixel; i < bytesPerRow; i++) {
+                    curr[i] += ((curr[i - bytesPerPixel] & 0xff) + (prior[i] & 0xff))/2;
+                }
+                break;
+            case 4: //PNG_FILTER_PAETH
+                for (int i = 0; i < bytesPerPixel; i++) {
+                    curr[i] += prior[i];
+                }
+
+                for (int i = bytesPerPixel; i < bytesPerRow; i++) {
+                    int a = curr[i - bytesPerPixel] & 0xff;
+                    int b = prior[i] & 0xff;
+                    int c = prior[i - bytesPerPixel] & 0xff;
+
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+
+                    int ret;
+
+                    if ((pa <= pb) && (pa <= pc)) {
+                        ret = a;
+                    } else if (pb <= pc) {
+                        ret = b;
+                    } else {
+                        ret = c;
+                    }
+                    curr[i] += (byte)(ret);
+                }
+                break;
+            default:
+                // Error -- uknown filter type
+                throw new RuntimeException("PNG filter unknown.");
+        }
+    }
+    
+    /**
+     * A base for the filters that decode a few bytes at a time.
+     */
+    abstract static class BlockInputStream extends InputStream {
+        protected InputStream in;
+        protected byte block[] = new byte[4];
+        protected int blockLength;
+        private int ptr;
+        private boolean eof;
+        private byte buf[] = new byte[BUFFER_SIZE];
+        private int bufLength;
+        private int bufPtr;
+        
+        BlockInputStream(InputStream in) {
+            this.in = in;
+        }
+        
+        /**
+         * Reads a byte of the encoded data.
+         * @return the byte or -1 at the end of the data
+         * @throws IOException on error
+         */
+        protected final int next() throws IOException {
+            if (bufPtr == bufLength) {
+                bufLength = in.read(buf, 0, buf.length);
+                bufPtr = 0;
+                if (bufLength <= 0) {
+                    bufLength = 0;
+                    return -1;
+                }
+            }
+            return buf[bufPtr++] & 0xff;
+        }
+        
+        /**
+         * Decodes the next block into <CODE>block</CODE> and <CODE>blockLength</CODE>.
+         * @return <CODE>false</CODE> at the end of the data
+         * @throws IOException on error
+         */
+        protected abstract boolean nextBlock() throws IOException;
+        
+        private boolean fill() throws IOException {
+            if (eof)
+                return false;
+            if (!nextBlock()) {
+                eof = true;
+                blockLength = 0;
+                return false;
+            }
+            ptr = 0;
+            return true;
+        }
+        
+        public int read() throws IOException {
+            while (ptr >= blockLength) {
+                if (!fill())
+                    return -1;
+            }
+            return block[ptr++] & 0xff;
+        }
+        
+        public int read(byte b[], int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            int n = 0;
+            while (n < len) {
+                if (ptr >= blockLength) {
+                    if (!fill())
+                        break;
+                    continue;
+                }
+                int k = Math.min(len - n, blockLength - ptr);
+                System.arraycopy(block, ptr, b, off + n, k);
+                ptr += k;
+                n += k;
+            }
+            return n == 0 ? -1 : n;
+        }
+        
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+    
+    /**
+     * Decodes the ASCIIHexDecode filter.
+     */
+    static final class ASCIIHexInputStream extends BlockInputStream {
+        
+        ASCIIHexInputStream(InputStream in) {
+            super(in);
+        }
+        
+        protected boolean nextBlock() throws IOException {
+            blockLength = 0;
+            boolean first = true;
+            int n1 = 0;
+            int ch;
+            while ((ch = next()) >= 0 && ch != '>') {
+                if (PRTokeniser.isWhitespace(ch))
+                    continue;
+                int n = PRTokeniser.getHex(ch);
+                if (n == -1)
+                    throw new RuntimeException("Illegal character in ASCIIHexDecode.");
+                if (first)
+                    n1 = n;
+                else {
+                    block[blockLength++] = (byte)((n1 << 4) + n);
+                    if (blockLength == block.length)
+                        return true;
+                }
+                first = !first;
+            }
+            if (!first)
+                block[blockLength++] = (byte)(n1 << 4);
+            return blockLength > 0;
+        }
+    }
+    
+    /**
+     * Decodes the ASCII85Decode filter.
+     */
+    static final class ASCII85InputStream extends BlockInputStream {
+        private int chn[] = new int[5];
+        private boolean end;
+        
+        ASCII85InputStream(InputStream in) {
+            super(in);
+        }
+        
+        protected boolean nextBlock() throws IOException {
+            if (end)
+                return false;
+            int state = 0;
+            int ch;
+            while ((ch = next()) >= 0 && ch != '~') {
+                if (PRTokeniser.isWhitespace(ch))
+                    continue;
+                if (ch == 'z' && state == 0) {
+                    block[0] = block[1] = block[2] = block[3] = 0;
+                    blockLength = 4;
+                    return true;
+                }
+                if (ch < '!' || ch > 'u')
+                    throw new RuntimeException("Illegal character in ASCII85Decode.");
+                chn[state] = ch - '!';
+                ++state;
+                if (state == 5) {
+                    int r = 0;
+                    for (int j = 0; j < 5; ++j)
+                        r = r * 85 + chn[j];
+                    block[0] = (byte)(r >> 24);
+                    block[1] = (byte)(r >> 16);
+                    block[2] = (byte)(r >> 8);
+                    block[3] = (byte)r;
+                    blockLength = 4;
+                    return true;
+                }
+            }
+            end = true;
+            if (state == 1)
+                throw new RuntimeException("Illegal length in ASCII85Decode.");
+            if (state == 0)
+                return false;
+            // the missing digits count as zero, only the bytes
+            // of the digits that are there are kept
+            int r = 0;
+            for (int j = 0; j < 5; ++j)
+                r = r * 85 + (j < state ? chn[j] : 0);
+            block[0] = (byte)(r >> 24);
+            block[1] = (byte)(r >> 16);
+            block[2] = (byte)(r >> 8);
+            blockLength = state - 1;
+            return true;
+        }
+    }
+    
+    /**
+     * Decodes the LZWDecode filter, one code at a time. The decoding is the
+     * same as <CODE>LZWDecoder</CODE>.
+     */
+    static final class LZWInputStream extends BlockInputStream {
+        private static final int andTable[] = {511, 1023, 2047, 4095};
+        private byte stringTable[][];
+        private int tableIndex;
+        private int bitsToGet;
+        private int nextData;
+        private int nextBits;
+        private int oldCode;
+        private boolean started;
+        private boolean end;
+        
+        LZWInputStream(InputStream in) {
+            super(in);
+        }
+        
+        private void initializeStringTable() {
+            stringTable = new byte[8192][];
+            for (int i = 0; i < 256; i++) {
+                stringTable[i] = new byte[1];
+                stringTable[i][0] = (byte)i;
+            }
+            tableIndex = 258;
+            bitsToGet = 9;
+        }
+        
+        private void addStringToTable(byte string[]) {
+            stringTable[tableIndex++] = string;
+            if (tableIndex == 511) {
+                bitsToGet = 10;
+            } else if (tableIndex == 1023) {
+                bitsToGet = 11;
+            } else if (tableIndex == 2047) {
+                bitsToGet = 12;
+            }
+        }
+        
+        private static byte[] composeString(byte oldString[], byte newString) {
+            int length = oldString.length;
+            byte string[] = new byte[length + 1];
+            System.arraycopy(oldString, 0, string, 0, length);
+            string[length] = newString;
+            return string;
+        }
+        
+        // Returns the next 9, 10, 11 or 12 bits, a missing EndOfInformation
+        // code is taken as the end of the data
+        private int getNextCode() throws IOException {
+            int b = next();
+            if (b < 0)
+                return 257;
+            nextData = (nextData << 8) | b;
+            nextBits += 8;
+            if (nextBits < bitsToGet) {
+                b = next();
+                if (b < 0)
+                    return 257;
+                nextData = (nextData << 8) | b;
+                nextBits += 8;
+            }
+            if (!started) {
+                started = true;
+                if (nextData == 0x0001)
+                    throw new RuntimeException("LZW flavour not supported.");
+            }
+            int code = (nextData >> (nextBits - bitsToGet)) & andTable[bitsToGet - 9];
+            nextBits -= bitsToGet;
+            return code;
+        }
+        
+        protected boolean nextBlock() throws IOException {
+            if (end)
+                return false;
+            if (stringTable == null)
+                initializeStringTable();
+            int code = getNextCode();
+            if (code == 257) {
+                end = true;
+                return false;
+            }
+            byte string[];
+            if (code == 256) {
+                initializeStringTable();
+                code = getNextCode();
+                if (code == 257) {
+                    end = true;
+                    return false;
+                }
+                string = stringTable[code];
+            }
+            else if (code < tableIndex) {
+                string = stringTable[code];
+                addStringToTable(composeString(stringTable[oldCode], string[0]));
+            }
+            else {
+                string = stringTable[oldCode];
+                string = composeString(string, string[0]);
+                addStringToTable(string);
+            }
+            oldCode = code;
+            block = string;
+            blockLength = string.length;
+            return true;
+        }
+    }
+}
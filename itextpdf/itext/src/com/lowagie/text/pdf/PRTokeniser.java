@@ -56,6 +56,8 @@ import java.io.IOException;
  */
 public class PRTokeniser {
     
+    private static final byte HEX_DIGITS[] = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+    
     public static final int TK_NUMBER = 1;
     public static final int TK_STRING = 2;
     public static final int TK_NAME = 3;
@@ -103,6 +105,10 @@ public class PRTokeniser {
     protected int reference;
     protected int generation;
     protected boolean hexString;
+    /** The last name read, escaped as in <CODE>PdfName</CODE>. */
+    private byte nameBuf[] = new byte[64];
+    private int nameLength;
+    private int nameHash;
        
     public PRTokeniser(String filename) throws IOException {
         file = new RandomAccessFileOrArray(filename);
@@ -116,11 +122,11 @@ public class PRTokeniser {
         this.file = file;
     }
     
-    public void seek(int pos) throws IOException {
+    public void seek(long pos) throws IOException {
         file.seek(pos);
     }
     
-    public int getFilePointer() throws IOException {
+    public long getFilePointer() throws IOException {
         return file.getFilePointer();
     }
 
@@ -128,7 +134,7 @@ public class PRTokeniser {
         file.close();
     }
     
-    public int length() throws IOException {
+    public long length() throws IOException {
         return file.length();
     }
 
@@ -145,15 +151,18 @@ public class PRTokeniser {
     }
     
     public String readString(int size) throws IOException {
-        StringBuffer buf = new StringBuffer();
-        int ch;
-        while ((size--) > 0) {
-            ch = file.read();
-            if (ch == -1)
+        byte b[] = new byte[size];
+        int n = 0;
+        while (n < size) {
+            int count = file.read(b, n, size - n);
+            if (count <= 0)
                 break;
-            buf.append((char)ch);
+            n += count;
         }
-        return buf.toString();
+        char c[] = new char[n];
+        for (int k = 0; k < n; ++k)
+            c[k] = (char)(b[k] & 0xff);
+        return new String(c);
     }
 
     public static final boolean isWhitespace(int ch) {
@@ -173,9 +182,84 @@ public class PRTokeniser {
     }
     
     public String getStringValue() {
+        if (stringValue == null)
+            stringValue = decodeName();
         return stringValue;
     }
     
+    /**
+     * Gets the name read by the last <CODE>TK_NAME</CODE> token. The same
+     * <CODE>PdfName</CODE> instance is usually returned for the same name.
+     * @return the name
+     * @see PdfName#intern(byte[], int, int)
+     */
+    public PdfName getName() {
+        return PdfName.intern(nameBuf, 0, nameLength, nameHash);
+    }
+    
+    /**
+     * Adds a char of a name, escaped as <CODE>PdfName(String)</CODE> does.
+     * @param ch the char
+     */
+    private void appendName(int ch) {
+        ch &= 0xff;
+        switch (ch) {
+            case ' ':
+            case '%':
+            case '(':
+            case ')':
+            case '<':
+            case '>':
+            case '[':
+            case ']':
+            case '{':
+            case '}':
+            case '/':
+            case '#':
+                appendNameHex(ch);
+                break;
+            default:
+                if (ch > 126 || ch < 32)
+                    appendNameHex(ch);
+                else
+                    appendNameByte(ch);
+        }
+    }
+    
+    private void appendNameHex(int ch) {
+        appendNameByte('#');
+        appendNameByte(HEX_DIGITS[ch >> 4]);
+        appendNameByte(HEX_DIGITS[ch & 0xf]);
+    }
+    
+    private void appendNameByte(int b) {
+        if (nameLength == nameBuf.length) {
+            byte n[] = new byte[nameLength * 2];
+            System.arraycopy(nameBuf, 0, n, 0, nameLength);
+            nameBuf = n;
+        }
+        nameBuf[nameLength++] = (byte)b;
+        nameHash = 31 * nameHash + (b & 0xff);
+    }
+    
+    /**
+     * Gets the name read, without the '/' and the escapes.
+     * @return the name
+     */
+    private String decodeName() {
+        char c[] = new char[nameLength];
+        int len = 0;
+        for (int k = 1; k < nameLength; ++k) {
+            int ch = nameBuf[k] & 0xff;
+            if (ch == '#') {
+                ch = (getHex(nameBuf[k + 1]) << 4) + getHex(nameBuf[k + 2]);
+                k += 2;
+            }
+            c[len++] = (char)ch;
+        }
+        return new String(c, 0, len);
+    }
+    
     public int getReference() {
         return reference;
     }
@@ -212,9 +296,9 @@ public class PRTokeniser {
         file.setStartOffset(idx);
     }
 
-    public int getStartxref() throws IOException {
-        int size = Math.min(1024, file.length());
-        int pos = file.length() - size;
+    public long getStartxref() throws IOException {
+        int size = (int)Math.min(1024, file.length());
+        long pos = file.length() - size;
         file.seek(pos);
         String str = readString(1024);
         int idx = str.lastIndexOf("startxref");
@@ -237,7 +321,7 @@ public class PRTokeniser {
         int level = 0;
         String n1 = null;
         String n2 = null;
-        int ptr = 0;
+        long ptr = 0;
         while (nextToken()) {
             if (type == TK_COMMENT)
                 continue;
@@ -299,8 +383,12 @@ public class PRTokeniser {
                 break;
             case '/':
             {
-                outBuf = new StringBuffer();
                 type = TK_NAME;
+                // the String is only made if asked for
+                stringValue = null;
+                nameLength = 0;
+                nameHash = 0;
+                appendNameByte('/');
                 while (true) {
                     ch = file.read();
                     if (delims[ch + 1])
@@ -308,7 +396,7 @@ public class PRTokeniser {
                     if (ch == '#') {
                         ch = (getHex(file.read()) << 4) + getHex(file.read());
                     }
-                    outBuf.append((char)ch);
+                    appendName(ch);
                 }
                 backOnePosition(ch);
                 break;
@@ -487,6 +575,10 @@ public class PRTokeniser {
         return Integer.parseInt(stringValue);
     }
     
+    public long longValue() {
+        return Long.parseLong(stringValue);
+    }
+    
     public boolean readLineSegment(byte input[]) throws IOException {
         int c = -1;
         boolean eol = false;
@@ -506,7 +598,7 @@ public class PRTokeniser {
                     break;
                 case '\r':
                     eol = true;
-                    int cur = getFilePointer();
+                    long cur = getFilePointer();
                     if ((read()) != '\n') {
                         seek(cur);
                     }
@@ -534,7 +626,7 @@ public class PRTokeniser {
                         break;
                     case '\r':
                         eol = true;
-                        int cur = getFilePointer();
+                        long cur = getFilePointer();
                         if ((read()) != '\n') {
                             seek(cur);
                         }
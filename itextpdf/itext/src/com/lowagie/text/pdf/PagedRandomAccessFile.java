@@ -0,0 +1,227 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A read only file that keeps only a bounded number of fixed size pages
+ * in memory. The pages are read on demand and the least recently used
+ * page is discarded when the limit is reached, so the memory used is at most
+ * <CODE>pageSize * maxPages</CODE> regardless of the file size.
+ */
+public class PagedRandomAccessFile {
+    
+    /** The default page size. */
+    public static final int DEFAULT_PAGE_SIZE = 1 << 16;
+    /** The default number of pages kept in memory. */
+    public static final int DEFAULT_MAX_PAGES = 16;
+    
+    private RandomAccessFile file;
+    private final int pageSize;
+    private final int maxPages;
+    private final long length;
+    private long pointer;
+    private long currentPageNumber = -1;
+    private byte currentPage[];
+    private int currentPageLength;
+    private LinkedHashMap pages;
+    
+    /**
+     * Opens a file for paged reading with the default page size and count.
+     * @param filename the file name
+     * @throws IOException on error
+     */
+    public PagedRandomAccessFile(String filename) throws IOException {
+        this(filename, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+    
+    /**
+     * Opens a file for paged reading.
+     * @param filename the file name
+     * @param pageSize the size of each page in bytes
+     * @param maxPages the maximum number of pages kept in memory
+     * @throws IOException on error
+     */
+    public PagedRandomAccessFile(String filename, int pageSize, final int maxPages) throws IOException {
+        if (pageSize <= 0 || maxPages <= 0)
+            throw new IllegalArgumentException("The page size and the page count must be positive.");
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        file = new RandomAccessFile(filename, "r");
+        length = file.length();
+        pages = new LinkedHashMap(maxPages * 2, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+    
+    /**
+     * Gets the page size.
+     * @return the page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    /**
+     * Gets the maximum number of pages kept in memory.
+     * @return the maximum number of pages
+     */
+    public int getMaxPages() {
+        return maxPages;
+    }
+    
+    /**
+     * Makes the page containing <CODE>pointer</CODE> the current page.
+     * @return <CODE>false</CODE> if the pointer is at or past the end of the file
+     */
+    private boolean loadPage() throws IOException {
+        if (pointer >= length)
+            return false;
+        long n = pointer / pageSize;
+        if (n == currentPageNumber)
+            return true;
+        Long key = new Long(n);
+        byte page[] = (byte[])pages.get(key);
+        if (page == null) {
+            long start = n * pageSize;
+            int size = (int)Math.min(pageSize, length - start);
+            page = new byte[size];
+            file.seek(start);
+            file.readFully(page);
+            pages.put(key, page);
+        }
+        currentPageNumber = n;
+        currentPage = page;
+        currentPageLength = page.length;
+        return true;
+    }
+    
+    /**
+     * @see java.io.RandomAccessFile#read()
+     * @return the next byte or -1 on EOF
+     * @throws IOException on error
+     */
+    public int read() throws IOException {
+        if (!loadPage())
+            return -1;
+        int b = currentPage[(int)(pointer - currentPageNumber * pageSize)] & 0xff;
+        ++pointer;
+        return b;
+    }
+    
+    /**
+     * @see java.io.RandomAccessFile#read(byte[], int, int)
+     * @param bytes the destination buffer
+     * @param off the offset in the buffer
+     * @param len the number of bytes to read
+     * @return the number of bytes read or -1 on EOF
+     * @throws IOException on error
+     */
+    public int read(byte bytes[], int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (pointer >= length)
+            return -1;
+        int total = 0;
+        while (len > 0 && loadPage()) {
+            int pageOff = (int)(pointer - currentPageNumber * pageSize);
+            int n = Math.min(len, currentPageLength - pageOff);
+            System.arraycopy(currentPage, pageOff, bytes, off, n);
+            pointer += n;
+            off += n;
+            len -= n;
+            total += n;
+        }
+        return total;
+    }
+    
+    /**
+     * @see java.io.RandomAccessFile#getFilePointer()
+     * @return the file pointer
+     */
+    public long getFilePointer() {
+        return pointer;
+    }
+    
+    /**
+     * @see java.io.RandomAccessFile#seek(long)
+     * @param pos the new position
+     */
+    public void seek(long pos) {
+        pointer = pos;
+    }
+    
+    /**
+     * @see java.io.RandomAccessFile#length()
+     * @return the file length
+     */
+    public long length() {
+        return length;
+    }
+    
+    /**
+     * Discards all the pages and closes the file.
+     * @throws IOException on error
+     */
+    public void close() throws IOException {
+        pages.clear();
+        currentPage = null;
+        currentPageNumber = -1;
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+}
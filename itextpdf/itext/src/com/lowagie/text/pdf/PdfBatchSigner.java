@@ -0,0 +1,242 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.PrivateKey;
+import java.security.cert.CRL;
+import java.security.cert.Certificate;
+import java.util.Iterator;
+
+import com.lowagie.text.DocumentException;
+
+/**
+ * Signs many documents with the same key and certificate chain.
+ * <p>
+ * Each document is signed while it is written, with
+ * <CODE>PdfStamper.createSignature(PdfReader, OutputStream, char, boolean, PrivateKey, Certificate[], CRL[], PdfName)</CODE>,
+ * so that neither the document nor a temporary file is kept to digest the
+ * signed byte range. The signatures are invisible. The documents can be signed
+ * one by one with <CODE>sign(PdfReader, OutputStream)</CODE> by any number of
+ * threads at once, or in a batch with <CODE>sign(Iterator, DocumentTarget, int)</CODE>.
+ * <pre>
+ * PdfBatchSigner signer = new PdfBatchSigner(key, chain, null, PdfSignatureAppearance.WINCER_SIGNED);
+ * signer.setReason("Approved");
+ * signer.sign(fileNames.iterator(), new PdfBatchSigner.DocumentTarget() {
+ *     public OutputStream getOutputStream(int index, Object document) throws IOException {
+ *         return new FileOutputStream("signed" + index + ".pdf");
+ *     }
+ * }, 4);
+ * </pre>
+ */
+public class PdfBatchSigner {
+    
+    /** Gives the destination of each signed document. */
+    public interface DocumentTarget {
+        /**
+         * Gets the stream where a signed document is written. The stream is
+         * closed when the document is complete. It may be called by several
+         * threads at once.
+         * @param index the position of the document in the batch, the first is 0
+         * @param document the document as given by the batch
+         * @return the stream to write the document to
+         * @throws IOException on error
+         */
+        OutputStream getOutputStream(int index, Object document) throws IOException;
+    }
+    
+    private PrivateKey privKey;
+    private Certificate[] certChain;
+    private CRL[] crlList;
+    private PdfName filter;
+    private String reason;
+    private String location;
+    private String contact;
+    private boolean append = false;
+    
+    /**
+     * Creates a signer.
+     * @param privKey the private key
+     * @param certChain the certificate chain
+     * @param crlList the certificate revocation list. It may be <CODE>null</CODE>
+     * @param filter the crytographic filter type. It can be
+     * <CODE>PdfSignatureAppearance.SELF_SIGNED</CODE>, <CODE>VERISIGN_SIGNED</CODE> or <CODE>WINCER_SIGNED</CODE>
+     */
+    public PdfBatchSigner(PrivateKey privKey, Certificate[] certChain, CRL[] crlList, PdfName filter) {
+        this.privKey = privKey;
+        this.certChain = certChain;
+        this.crlList = crlList;
+        this.filter = filter;
+    }
+    
+    /**
+     * Sets the signing reason.
+     * @param reason the signing reason
+     */
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+    
+    /**
+     * Gets the signing reason.
+     * @return the signing reason
+     */
+    public String getReason() {
+        return reason;
+    }
+    
+    /**
+     * Sets the signing location.
+     * @param location the signing location
+     */
+    public void setLocation(String location) {
+        this.location = location;
+    }
+    
+    /**
+     * Gets the signing location.
+     * @return the signing location
+     */
+    public String getLocation() {
+        return location;
+    }
+    
+    /**
+     * Sets the signing contact.
+     * @param contact the signing contact
+     */
+    public void setContact(String contact) {
+        this.contact = contact;
+    }
+    
+    /**
+     * Gets the signing contact.
+     * @return the signing contact
+     */
+    public String getContact() {
+        return contact;
+    }
+    
+    /**
+     * Sets whether the signatures are added as a new revision, not
+     * invalidating the existing signatures.
+     * @param append <CODE>true</CODE> to append the signatures
+     */
+    public void setAppend(boolean append) {
+        this.append = append;
+    }
+    
+    /**
+     * Gets whether the signatures are added as a new revision.
+     * @return <CODE>true</CODE> if the signatures are appended
+     */
+    public boolean isAppend() {
+        return append;
+    }
+    
+    /**
+     * Signs a document. It can be called by several threads at once.
+     * @param reader the document
+     * @param os the stream to write the signed document to. It is closed at the end
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public void sign(PdfReader reader, OutputStream os) throws IOException, DocumentException {
+        boolean written = false;
+        try {
+            PdfStamper stp = PdfStamper.createSignature(reader, os, '\0', append, privKey, certChain, crlList, filter);
+            PdfSignatureAppearance sap = stp.getSignatureAppearance();
+            sap.setReason(reason);
+            sap.setLocation(location);
+            sap.setContact(contact);
+            stp.close();
+            written = true;
+        }
+        finally {
+            if (!written)
+                DocumentBatch.closeAfterError(os);
+        }
+    }
+    
+    /**
+     * Signs each document of a batch. The documents are <CODE>PdfReader</CODE>s,
+     * file names or <CODE>byte</CODE> arrays; the last two are read by the
+     * thread that signs them. With more than one thread the documents are signed
+     * in any order, the first error stops all the threads and is thrown once
+     * they are done.
+     * @param documents the documents
+     * @param target gives the stream of each signed document
+     * @param threads the number of threads signing the documents
+     * @return the number of documents signed
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public int sign(Iterator documents, final DocumentTarget target, int threads) throws IOException, DocumentException {
+        DocumentBatch batch = new DocumentBatch(documents) {
+            OutputStream getOutputStream(int index, Object item) throws IOException {
+                return target.getOutputStream(index, item);
+            }
+            void write(Object item, OutputStream os) throws Exception {
+                sign(getReader(item), os);
+            }
+        };
+        return batch.write(threads, "PdfBatchSigner");
+    }
+    
+    private static PdfReader getReader(Object document) throws IOException {
+        if (document instanceof PdfReader)
+            return (PdfReader)document;
+        if (document instanceof String)
+            return new PdfReader((String)document);
+        if (document instanceof byte[])
+            return new PdfReader((byte[])document);
+        throw new IllegalArgumentException("A document must be a PdfReader, a file name or a byte array.");
+    }
+}
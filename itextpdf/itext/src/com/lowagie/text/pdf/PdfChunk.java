@@ -352,6 +352,8 @@ public class PdfChunk implements SplitCharacter{
             }
         }
         else {
+            if (fits(valueArray, width))
+                return null;
             while (currentPosition < length) {
                 // the width of every character is added to the currentWidth
                 character = valueArray[currentPosition];
@@ -415,6 +417,27 @@ public class PdfChunk implements SplitCharacter{
         return pc;
     }
     
+/**
+ * Checks if a text without newlines fits in the given width, measuring it
+ * in one pass instead of char by char. The width is increased by a margin
+ * larger than the rounding errors of the sum char by char, so a text that
+ * fits here also fits when measured char by char.
+ *
+ * @param		valueArray	the text
+ * @param		width		a given width
+ * @return		<CODE>true</CODE> if the text has no newlines and surely fits
+ */
+    
+    private boolean fits(char valueArray[], float width) {
+        int length = valueArray.length;
+        for (int k = 0; k < length; ++k) {
+            char c = valueArray[k];
+            if (c == '\r' || c == '\n')
+                return false;
+        }
+        return font.width(valueArray, 0, length) * (1 + (length + 8) * 1.2e-7f) <= width;
+    }
+    
 /**
  * Truncates this <CODE>PdfChunk</CODE> if it's too long for the given width.
  * <P>
@@ -452,10 +475,13 @@ public class PdfChunk implements SplitCharacter{
         // loop over all the characters of a string
         // or until the totalWidth is reached
         int length = value.length();
+        char valueArray[] = value.toCharArray();
+        if (fits(valueArray, width))
+            return null;
         char character;
         while (currentPosition < length) {
             // the width of every character is added to the currentWidth
-            character = value.charAt(currentPosition);
+            character = valueArray[currentPosition];
             currentWidth += font.width(character);
             if (currentWidth > width)
                 break;
@@ -0,0 +1,776 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+
+/**
+ * Scans a page or template content one operator at a time without creating
+ * objects for the tokens.
+ * <p>
+ * Each call to <CODE>next()</CODE> reads the operands up to the next operator
+ * and keeps them in slots that are reused for the following operator: the
+ * numbers as <CODE>double</CODE>s and the strings and names as ranges of the
+ * content buffer. The operator is given as a code made with
+ * <CODE>getOperatorCode()</CODE> that can be compared with the
+ * <CODE>OP_</CODE> constants. The elements of arrays and dictionaries are in
+ * the slots as well, enclosed by <CODE>ARRAY_START</CODE> and
+ * <CODE>ARRAY_END</CODE> or <CODE>DICTIONARY_START</CODE> and
+ * <CODE>DICTIONARY_END</CODE> slots. A typical loop is:
+ * <pre>
+ * PdfContentScanner scanner = new PdfContentScanner(reader.getPageContent(page));
+ * while (scanner.next()) {
+ *     if (scanner.getOperator() == PdfContentScanner.OP_Tf)
+ *         size = scanner.getFloat(1);
+ * }
+ * </pre>
+ * The data of an inline image is skipped after the <CODE>ID</CODE> operator
+ * and is available with <CODE>getDataOffset()</CODE> and <CODE>getDataLength()</CODE>.
+ * A scanner can be reused for other content with <CODE>setContent()</CODE>.
+ * @see PdfContentParser
+ */
+public class PdfContentScanner {
+    
+    /** A number. */
+    public static final int NUMBER = 1;
+    /** A string written between parenthesis, with the escapes still in the buffer. */
+    public static final int STRING = 2;
+    /** A string written in hexadecimal. */
+    public static final int HEX_STRING = 3;
+    /** A name, without the '/' in the buffer range. */
+    public static final int NAME = 4;
+    /** <CODE>true</CODE> or <CODE>false</CODE>. */
+    public static final int BOOLEAN = 5;
+    /** <CODE>null</CODE>. */
+    public static final int NULL = 6;
+    /** The start of an array. */
+    public static final int ARRAY_START = 7;
+    /** The end of an array. */
+    public static final int ARRAY_END = 8;
+    /** The start of a dictionary. */
+    public static final int DICTIONARY_START = 9;
+    /** The end of a dictionary. */
+    public static final int DICTIONARY_END = 10;
+    
+    public static final int OP_b = getOperatorCode("b");
+    public static final int OP_B = getOperatorCode("B");
+    public static final int OP_b_STAR = getOperatorCode("b*");
+    public static final int OP_B_STAR = getOperatorCode("B*");
+    public static final int OP_BDC = getOperatorCode("BDC");
+    public static final int OP_BI = getOperatorCode("BI");
+    public static final int OP_BMC = getOperatorCode("BMC");
+    public static final int OP_BT = getOperatorCode("BT");
+    public static final int OP_BX = getOperatorCode("BX");
+    public static final int OP_c = getOperatorCode("c");
+    public static final int OP_cm = getOperatorCode("cm");
+    public static final int OP_CS = getOperatorCode("CS");
+    public static final int OP_cs = getOperatorCode("cs");
+    public static final int OP_d = getOperatorCode("d");
+    public static final int OP_d0 = getOperatorCode("d0");
+    public static final int OP_d1 = getOperatorCode("d1");
+    public static final int OP_Do = getOperatorCode("Do");
+    public static final int OP_DP = getOperatorCode("DP");
+    public static final int OP_EI = getOperatorCode("EI");
+    public static final int OP_EMC = getOperatorCode("EMC");
+    public static final int OP_ET = getOperatorCode("ET");
+    public static final int OP_EX = getOperatorCode("EX");
+    public static final int OP_f = getOperatorCode("f");
+    public static final int OP_F = getOperatorCode("F");
+    public static final int OP_f_STAR = getOperatorCode("f*");
+    public static final int OP_G = getOperatorCode("G");
+    public static final int OP_g = getOperatorCode("g");
+    public static final int OP_gs = getOperatorCode("gs");
+    public static final int OP_h = getOperatorCode("h");
+    public static final int OP_i = getOperatorCode("i");
+    public static final int OP_ID = getOperatorCode("ID");
+    public static final int OP_j = getOperatorCode("j");
+    public static final int OP_J = getOperatorCode("J");
+    public static final int OP_K = getOperatorCode("K");
+    public static final int OP_k = getOperatorCode("k");
+    public static final int OP_l = getOperatorCode("l");
+    public static final int OP_m = getOperatorCode("m");
+    public static final int OP_M = getOperatorCode("M");
+    public static final int OP_MP = getOperatorCode("MP");
+    public static final int OP_n = getOperatorCode("n");
+    public static final int OP_q = getOperatorCode("q");
+    public static final int OP_Q = getOperatorCode("Q");
+    public static final int OP_re = getOperatorCode("re");
+    public static final int OP_RG = getOperatorCode("RG");
+    public static final int OP_rg = getOperatorCode("rg");
+    public static final int OP_ri = getOperatorCode("ri");
+    public static final int OP_s = getOperatorCode("s");
+    public static final int OP_S = getOperatorCode("S");
+    public static final int OP_SC = getOperatorCode("SC");
+    public static final int OP_sc = getOperatorCode("sc");
+    public static final int OP_SCN = getOperatorCode("SCN");
+    public static final int OP_scn = getOperatorCode("scn");
+    public static final int OP_sh = getOperatorCode("sh");
+    public static final int OP_T_STAR = getOperatorCode("T*");
+    public static final int OP_Tc = getOperatorCode("Tc");
+    public static final int OP_Td = getOperatorCode("Td");
+    public static final int OP_TD = getOperatorCode("TD");
+    public static final int OP_Tf = getOperatorCode("Tf");
+    public static final int OP_Tj = getOperatorCode("Tj");
+    public static final int OP_TJ = getOperatorCode("TJ");
+    public static final int OP_TL = getOperatorCode("TL");
+    public static final int OP_Tm = getOperatorCode("Tm");
+    public static final int OP_Tr = getOperatorCode("Tr");
+    public static final int OP_Ts = getOperatorCode("Ts");
+    public static final int OP_Tw = getOperatorCode("Tw");
+    public static final int OP_Tz = getOperatorCode("Tz");
+    public static final int OP_v = getOperatorCode("v");
+    public static final int OP_w = getOperatorCode("w");
+    public static final int OP_W = getOperatorCode("W");
+    public static final int OP_W_STAR = getOperatorCode("W*");
+    public static final int OP_y = getOperatorCode("y");
+    public static final int OP_QUOTE = getOperatorCode("'");
+    public static final int OP_DOUBLE_QUOTE = getOperatorCode("\"");
+    
+    private static final double POW10[] = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    
+    private byte buf[];
+    private int start;
+    private int end;
+    private int pos;
+    
+    private int count;
+    private int types[] = new int[16];
+    private double numbers[] = new double[16];
+    private int offsets[] = new int[16];
+    private int lengths[] = new int[16];
+    
+    private int operator;
+    private int operatorOffset;
+    private int operatorLength;
+    private int dataOffset;
+    private int dataLength;
+    
+    /**
+     * Creates a scanner for a content.
+     * @param content the content
+     */
+    public PdfContentScanner(byte content[]) {
+        setContent(content, 0, content.length);
+    }
+    
+    /**
+     * Creates a scanner for a part of a buffer.
+     * @param buf the buffer
+     * @param off the start of the content in <CODE>buf</CODE>
+     * @param len the length of the content
+     */
+    public PdfContentScanner(byte buf[], int off, int len) {
+        setContent(buf, off, len);
+    }
+    
+    /**
+     * Starts scanning another content, reusing the slots.
+     * @param buf the buffer
+     * @param off the start of the content in <CODE>buf</CODE>
+     * @param len the length of the content
+     */
+    public void setContent(byte buf[], int off, int len) {
+        this.buf = buf;
+        start = off;
+        end = off + len;
+        pos = off;
+        count = 0;
+        operator = 0;
+        operatorOffset = off;
+        operatorLength = 0;
+        dataOffset = off;
+        dataLength = 0;
+    }
+    
+    /**
+     * Gets the code of an operator. The code holds the bytes of the operator
+     * so that two operators of up to four characters never have the same code.
+     * @param operator the operator
+     * @return the code of the operator
+     */
+    public static int getOperatorCode(String operator) {
+        int code = 0;
+        for (int k = 0; k < operator.length(); ++k)
+            code = (code << 8) | (operator.charAt(k) & 0xff);
+        return code;
+    }
+    
+    /**
+     * Reads the operands and the operator that follows them.
+     * Operands at the end of the content without an operator are ignored.
+     * @return <CODE>true</CODE> if an operator was read, <CODE>false</CODE>
+     * if the end of the content was reached
+     * @throws IOException on a malformed content
+     */
+    public boolean next() throws IOException {
+        count = 0;
+        operator = 0;
+        operatorLength = 0;
+        dataLength = 0;
+        byte b[] = buf;
+        while (true) {
+            int ch = -1;
+            while (pos < end) {
+                ch = b[pos] & 0xff;
+                if (ch == '%') {
+                    while (pos < end && b[pos] != '\r' && b[pos] != '\n')
+                        ++pos;
+                }
+                else if (PRTokeniser.isWhitespace(ch))
+                    ++pos;
+                else
+                    break;
+            }
+            if (pos >= end) {
+                count = 0;
+                return false;
+            }
+            switch (ch) {
+                case '[':
+                    addSlot(ARRAY_START, 0, pos++, 1);
+                    break;
+                case ']':
+                    addSlot(ARRAY_END, 0, pos++, 1);
+                    break;
+                case '/': {
+                    int s = ++pos;
+                    while (pos < end && !PRTokeniser.delims[(b[pos] & 0xff) + 1])
+                        ++pos;
+                    addSlot(NAME, 0, s, pos - s);
+                    break;
+                }
+                case '<': {
+                    if (pos + 1 < end && b[pos + 1] == '<') {
+                        addSlot(DICTIONARY_START, 0, pos, 2);
+                        pos += 2;
+                        break;
+                    }
+                    int s = ++pos;
+                    while (pos < end && b[pos] != '>')
+                        ++pos;
+                    if (pos >= end)
+                        throwError("Error reading string");
+                    addSlot(HEX_STRING, 0, s, pos++ - s);
+                    break;
+                }
+                case '>':
+                    if (pos + 1 >= end || b[pos + 1] != '>')
+                        throwError("'>' not expected");
+                    addSlot(DICTIONARY_END, 0, pos, 2);
+                    pos += 2;
+                    break;
+                case '(': {
+                    int s = ++pos;
+                    int nesting = 0;
+                    while (true) {
+                        if (pos >= end)
+                            throwError("Error reading string");
+                        int c = b[pos];
+                        if (c == '\\')
+                            ++pos;
+                        else if (c == '(')
+                            ++nesting;
+                        else if (c == ')' && --nesting < 0)
+                            break;
+                        ++pos;
+                    }
+                    addSlot(STRING, 0, s, pos++ - s);
+                    break;
+                }
+                case ')':
+                    throwError("')' not expected");
+                    break;
+                default:
+                    if (ch == '-' || ch == '+' || ch == '.' || (ch >= '0' && ch <= '9'))
+                        readNumber();
+                    else if (readKeyword())
+                        return true;
+            }
+        }
+    }
+    
+    private void readNumber() {
+        byte b[] = buf;
+        int s = pos;
+        boolean negative = false;
+        // as in PRTokeniser a number is the sign followed by digits and points
+        int ch = b[pos];
+        while (ch == '-' || ch == '+') {
+            if (ch == '-')
+                negative = !negative;
+            if (++pos == end)
+                break;
+            ch = b[pos];
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        int ignored = 0;
+        boolean point = false;
+        while (pos < end) {
+            ch = b[pos];
+            if (ch >= '0' && ch <= '9') {
+                if (digits < 18) {
+                    if (mantissa != 0 || ch != '0')
+                        ++digits;
+                    mantissa = mantissa * 10 + (ch - '0');
+                    if (point)
+                        ++decimals;
+                }
+                else if (!point)
+                    ++ignored;
+            }
+            else if (ch == '.')
+                point = true;
+            else
+                break;
+            ++pos;
+        }
+        double value = mantissa;
+        int exp = ignored - decimals;
+        if (exp > 0)
+            value *= exp < POW10.length ? POW10[exp] : Math.pow(10, exp);
+        else if (exp < 0)
+            value /= -exp < POW10.length ? POW10[-exp] : Math.pow(10, -exp);
+        addSlot(NUMBER, negative ? -value : value, s, pos - s);
+    }
+    
+    /**
+     * Reads a keyword, that is either an operand or an operator.
+     * @return <CODE>true</CODE> if it was an operator
+     * @throws IOException on error
+     */
+    private boolean readKeyword() throws IOException {
+        byte b[] = buf;
+        int s = pos;
+        int code = 0;
+        while (pos < end && !PRTokeniser.delims[(b[pos] & 0xff) + 1])
+            code = (code << 8) | (b[pos++] & 0xff);
+        int len = pos - s;
+        if (len == 4 && code == 0x74727565) { // true
+            addSlot(BOOLEAN, 1, s, len);
+            return false;
+        }
+        if (len == 5 && code == 0x616c7365 && b[s] == 'f') { // false
+            addSlot(BOOLEAN, 0, s, len);
+            return false;
+        }
+        if (len == 4 && code == 0x6e756c6c) { // null
+            addSlot(NULL, 0, s, len);
+            return false;
+        }
+        operator = code;
+        operatorOffset = s;
+        operatorLength = len;
+        if (code == OP_ID && len == 2)
+            skipInlineImage();
+        return true;
+    }
+    
+    /**
+     * Skips the data of an inline image, up to the whitespace before the
+     * <CODE>EI</CODE> operator.
+     * @throws IOException if there is no <CODE>EI</CODE>
+     */
+    private void skipInlineImage() throws IOException {
+        byte b[] = buf;
+        // a single whitespace separates ID from the data
+        if (pos < end && PRTokeniser.isWhitespace(b[pos] & 0xff))
+            ++pos;
+        int s = pos;
+        for (int k = s; k + 1 < end; ++k) {
+            if (b[k] == 'E' && b[k + 1] == 'I' && k > s && PRTokeniser.isWhitespace(b[k - 1] & 0xff)
+                && (k + 2 == end || PRTokeniser.delims[(b[k + 2] & 0xff) + 1])) {
+                dataOffset = s;
+                dataLength = k - 1 - s;
+                pos = k;
+                return;
+            }
+        }
+        throwError("EI not found after inline image data");
+    }
+    
+    private void addSlot(int type, double number, int offset, int length) {
+        if (count == types.length) {
+            int n = count * 2;
+            int t[] = new int[n];
+            System.arraycopy(types, 0, t, 0, count);
+            types = t;
+            double d[] = new double[n];
+            System.arraycopy(numbers, 0, d, 0, count);
+            numbers = d;
+            t = new int[n];
+            System.arraycopy(offsets, 0, t, 0, count);
+            offsets = t;
+            t = new int[n];
+            System.arraycopy(lengths, 0, t, 0, count);
+            lengths = t;
+        }
+        types[count] = type;
+        numbers[count] = number;
+        offsets[count] = offset;
+        lengths[count] = length;
+        ++count;
+    }
+    
+    private void throwError(String error) throws IOException {
+        throw new IOException(error + " at content position " + (pos - start));
+    }
+    
+    /**
+     * Gets the code of the last operator read.
+     * @return the code of the operator, as given by <CODE>getOperatorCode()</CODE>
+     */
+    public int getOperator() {
+        return operator;
+    }
+    
+    /**
+     * Gets the position of the last operator read in the buffer.
+     * @return the position of the operator
+     */
+    public int getOperatorOffset() {
+        return operatorOffset;
+    }
+    
+    /**
+     * Gets the length in bytes of the last operator read.
+     * @return the length of the operator
+     */
+    public int getOperatorLength() {
+        return operatorLength;
+    }
+    
+    /**
+     * Gets the last operator read as a <CODE>String</CODE>. A new
+     * <CODE>String</CODE> is made at each call.
+     * @return the operator
+     */
+    public String getOperatorString() {
+        return PdfEncodings.convertToString(copy(operatorOffset, operatorLength), null);
+    }
+    
+    /**
+     * Gets the number of operands of the last operator read. The start and the
+     * end of the arrays and dictionaries are counted.
+     * @return the number of operands
+     */
+    public int getOperandCount() {
+        return count;
+    }
+    
+    /**
+     * Gets the type of an operand.
+     * @param idx the index of the operand
+     * @return the type of the operand, <CODE>NUMBER</CODE>, <CODE>NAME</CODE>, etc.
+     */
+    public int getOperandType(int idx) {
+        checkIndex(idx);
+        return types[idx];
+    }
+    
+    /**
+     * Gets the value of a number operand. The value of a <CODE>BOOLEAN</CODE>
+     * is 1 or 0 and it's 0 for the other types.
+     * @param idx the index of the operand
+     * @return the value of the operand
+     */
+    public double getNumber(int idx) {
+        checkIndex(idx);
+        return numbers[idx];
+    }
+    
+    /**
+     * Gets the value of a number operand as a <CODE>float</CODE>.
+     * @param idx the index of the operand
+     * @return the value of the operand
+     */
+    public float getFloat(int idx) {
+        return (float)getNumber(idx);
+    }
+    
+    /**
+     * Gets the value of a number operand as an <CODE>int</CODE>.
+     * @param idx the index of the operand
+     * @return the value of the operand
+     */
+    public int getInt(int idx) {
+        return (int)getNumber(idx);
+    }
+    
+    /**
+     * Gets the value of a <CODE>BOOLEAN</CODE> operand.
+     * @param idx the index of the operand
+     * @return the value of the operand
+     */
+    public boolean getBoolean(int idx) {
+        return getNumber(idx) != 0;
+    }
+    
+    /**
+     * Gets the buffer with the content. The operands are read from it with
+     * <CODE>getOffset()</CODE> and <CODE>getLength()</CODE>.
+     * @return the buffer
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+    
+    /**
+     * Gets the position of an operand in the buffer. Strings start after the
+     * '(' or the '&lt;' and names after the '/'.
+     * @param idx the index of the operand
+     * @return the position of the operand
+     */
+    public int getOffset(int idx) {
+        checkIndex(idx);
+        return offsets[idx];
+    }
+    
+    /**
+     * Gets the length in bytes of an operand in the buffer, without the
+     * delimiters of the strings or the '/' of the names.
+     * @param idx the index of the operand
+     * @return the length of the operand
+     */
+    public int getLength(int idx) {
+        checkIndex(idx);
+        return lengths[idx];
+    }
+    
+    /**
+     * Gets the position in the buffer of the data of an inline image, after
+     * the <CODE>ID</CODE> operator was read.
+     * @return the position of the data
+     */
+    public int getDataOffset() {
+        return dataOffset;
+    }
+    
+    /**
+     * Gets the length of the data of an inline image, after the <CODE>ID</CODE>
+     * operator was read. It's 0 after the other operators.
+     * @return the length of the data
+     */
+    public int getDataLength() {
+        return dataLength;
+    }
+    
+    /**
+     * Checks if a <CODE>NAME</CODE> operand is a name.
+     * @param idx the index of the operand
+     * @param name the name to compare
+     * @return <CODE>true</CODE> if the operand is <CODE>name</CODE>
+     */
+    public boolean isName(int idx, PdfName name) {
+        if (getOperandType(idx) != NAME)
+            return false;
+        byte n[] = name.getBytes();
+        int off = offsets[idx];
+        int len = lengths[idx];
+        if (indexOf('#', off, len) >= 0)
+            return name.equals(getName(idx));
+        if (n.length != len + 1)
+            return false;
+        for (int k = 0; k < len; ++k) {
+            if (n[k + 1] != buf[off + k])
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Gets a <CODE>NAME</CODE> operand as a <CODE>PdfName</CODE>. The names
+     * are shared as with <CODE>PdfName.intern()</CODE>.
+     * @param idx the index of the operand
+     * @return the name
+     */
+    public PdfName getName(int idx) {
+        if (getOperandType(idx) != NAME)
+            throw new IllegalArgumentException("The operand " + idx + " is not a name.");
+        int off = offsets[idx];
+        int len = lengths[idx];
+        boolean plain = true;
+        for (int k = off; k < off + len && plain; ++k) {
+            int ch = buf[k] & 0xff;
+            plain = ch != '#' && ch > 32 && ch < 127 && ch != '{' && ch != '}';
+        }
+        // the '/' is in the buffer just before the name
+        if (plain)
+            return PdfName.intern(buf, off - 1, len + 1);
+        char c[] = new char[len];
+        int n = 0;
+        for (int k = off; k < off + len; ++k) {
+            int ch = buf[k] & 0xff;
+            if (ch == '#' && k + 2 < off + len) {
+                ch = (PRTokeniser.getHex(buf[k + 1]) << 4) + PRTokeniser.getHex(buf[k + 2]);
+                k += 2;
+            }
+            c[n++] = (char)ch;
+        }
+        return new PdfName(new String(c, 0, n), false);
+    }
+    
+    /**
+     * Decodes a <CODE>STRING</CODE> or <CODE>HEX_STRING</CODE> operand into
+     * a buffer. The decoded string is never longer than <CODE>getLength()</CODE>.
+     * @param idx the index of the operand
+     * @param dest the buffer to write to
+     * @param off the position in <CODE>dest</CODE> to start writing
+     * @return the length of the decoded string
+     */
+    public int decodeString(int idx, byte dest[], int off) {
+        int type = getOperandType(idx);
+        int s = offsets[idx];
+        int e = s + lengths[idx];
+        byte b[] = buf;
+        int n = off;
+        if (type == HEX_STRING) {
+            int v1 = -1;
+            for (int k = s; k < e; ++k) {
+                int v = PRTokeniser.getHex(b[k]);
+                if (v < 0)
+                    continue;
+                if (v1 < 0)
+                    v1 = v;
+                else {
+                    dest[n++] = (byte)((v1 << 4) + v);
+                    v1 = -1;
+                }
+            }
+            if (v1 >= 0)
+                dest[n++] = (byte)(v1 << 4);
+            return n - off;
+        }
+        if (type != STRING)
+            throw new IllegalArgumentException("The operand " + idx + " is not a string.");
+        for (int k = s; k < e; ++k) {
+            int ch = b[k] & 0xff;
+            if (ch == '\\') {
+                if (++k == e)
+                    break;
+                ch = b[k] & 0xff;
+                switch (ch) {
+                    case 'n':
+                        ch = '\n';
+                        break;
+                    case 'r':
+                        ch = '\r';
+                        break;
+                    case 't':
+                        ch = '\t';
+                        break;
+                    case 'b':
+                        ch = '\b';
+                        break;
+                    case 'f':
+                        ch = '\f';
+                        break;
+                    case '\r':
+                        if (k + 1 < e && b[k + 1] == '\n')
+                            ++k;
+                        continue;
+                    case '\n':
+                        continue;
+                    default:
+                        if (ch >= '0' && ch <= '7') {
+                            int octal = ch - '0';
+                            for (int j = 0; j < 2 && k + 1 < e && b[k + 1] >= '0' && b[k + 1] <= '7'; ++j)
+                                octal = (octal << 3) + b[++k] - '0';
+                            ch = octal & 0xff;
+                        }
+                }
+            }
+            else if (ch == '\r') {
+                if (k + 1 < e && b[k + 1] == '\n')
+                    ++k;
+                ch = '\n';
+            }
+            dest[n++] = (byte)ch;
+        }
+        return n - off;
+    }
+    
+    /**
+     * Gets the decoded bytes of a <CODE>STRING</CODE> or <CODE>HEX_STRING</CODE>
+     * operand in a new array.
+     * @param idx the index of the operand
+     * @return the decoded string
+     */
+    public byte[] getStringBytes(int idx) {
+        byte b[] = new byte[getLength(idx)];
+        int n = decodeString(idx, b, 0);
+        if (n == b.length)
+            return b;
+        byte r[] = new byte[n];
+        System.arraycopy(b, 0, r, 0, n);
+        return r;
+    }
+    
+    private int indexOf(int ch, int off, int len) {
+        for (int k = off; k < off + len; ++k) {
+            if (buf[k] == ch)
+                return k;
+        }
+        return -1;
+    }
+    
+    private byte[] copy(int off, int len) {
+        byte b[] = new byte[len];
+        System.arraycopy(buf, off, b, 0, len);
+        return b;
+    }
+    
+    private void checkIndex(int idx) {
+        if (idx < 0 || idx >= count)
+            throw new IndexOutOfBoundsException("Operand " + idx + " of " + count + ".");
+    }
+}
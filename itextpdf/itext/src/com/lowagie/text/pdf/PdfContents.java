@@ -52,10 +52,8 @@ package com.lowagie.text.pdf;
 
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
-import java.util.zip.DeflaterOutputStream;
 
 import com.lowagie.text.DocWriter;
-import com.lowagie.text.Document;
 import com.lowagie.text.Rectangle;
 
 /**
@@ -85,15 +83,8 @@ class PdfContents extends PdfStream {
     PdfContents(PdfContentByte under, PdfContentByte content, PdfContentByte text, PdfContentByte secondContent, Rectangle page) throws BadPdfFormatException {
         super();
         try {
-            OutputStream out = null;
             streamBytes = new ByteArrayOutputStream();
-            if (Document.compress)
-            {
-                compressed = true;
-                out = new DeflaterOutputStream(streamBytes);
-            }
-            else
-                out = streamBytes;
+            OutputStream out = streamBytes;
             int rotation = page.getRotation();
             switch (rotation) {
                 case 90:
@@ -142,7 +133,6 @@ class PdfContents extends PdfStream {
             throw new BadPdfFormatException(e.getMessage());
         }
         put(PdfName.LENGTH, new PdfNumber(streamBytes.size()));
-        if (compressed)
-            put(PdfName.FILTER, PdfName.FLATEDECODE);
+        flateCompress();
     }
 }
\ No newline at end of file
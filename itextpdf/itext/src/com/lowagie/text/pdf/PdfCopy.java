@@ -65,6 +65,10 @@ import com.lowagie.text.ExceptionConverter;
 /**
  * Make copies of PDF documents. Documents can be edited after reading and
  * before writing them out.
+ * <p>
+ * With <CODE>setFullCompression()</CODE> the copied dictionaries are packed
+ * in object streams as each page is copied and the cross-reference is written
+ * as a stream.
  * @author Mark Thompson
  */
 
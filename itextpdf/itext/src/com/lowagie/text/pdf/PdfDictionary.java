@@ -52,8 +52,8 @@ package com.lowagie.text.pdf;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -100,8 +100,11 @@ public class PdfDictionary extends PdfObject {
 /** This is the type of this dictionary */
     private PdfName dictionaryType = null;
     
-/** This is the hashmap that contains all the values and keys of the dictionary */
-    protected HashMap hashMap;
+/** This is the map that contains all the values and keys of the dictionary.
+ * It is kept in an array while the dictionary is small and the keys are
+ * written in the order they were added. It was a <CODE>HashMap</CODE> before,
+ * subclasses must only use the <CODE>Map</CODE> methods. */
+    protected Map hashMap;
     
     // constructors
     
@@ -111,7 +114,7 @@ public class PdfDictionary extends PdfObject {
     
     public PdfDictionary() {
         super(DICTIONARY);
-        hashMap = new HashMap();
+        hashMap = new CompactMap();
     }
     
 /**
@@ -138,13 +141,14 @@ public class PdfDictionary extends PdfObject {
         os.write('<');
         os.write('<');
 
-        // loop over all the object-pairs in the HashMap
+        // loop over all the object-pairs in the map
         PdfName key;
         PdfObject value;
         int type = 0;
-        for (Iterator i = hashMap.keySet().iterator(); i.hasNext(); ) {
-            key = (PdfName) i.next();
-            value = (PdfObject) hashMap.get(key);
+        for (Iterator i = hashMap.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            key = (PdfName) entry.getKey();
+            value = (PdfObject) entry.getValue();
             key.toPdf(writer, os);
             type = value.type();
             if (type != PdfObject.ARRAY && type != PdfObject.DICTIONARY && type != PdfObject.NAME && type != PdfObject.STRING)
@@ -1904,7 +1904,10 @@ class PdfDocument extends Document implements DocListener, PdfViewerPreferences
                     
                     addPTable(ptable);
                     pageEmpty = false;
-                    newLine();
+                    // the rows of a table that is not complete continue right
+                    // after, without a new line that could start a new page
+                    if (ptable.isComplete())
+                        newLine();
                     break;
                 }
                 case Element.MULTI_COLUMN_TEXT: {
@@ -49,13 +49,14 @@
 
 package com.lowagie.text.pdf;
 
+import com.lowagie.text.pdf.crypto.AESCipher;
+import com.lowagie.text.pdf.crypto.IVGenerator;
 import com.lowagie.text.pdf.crypto.RC4Encryption;
-import java.io.IOException;
 import java.io.OutputStream;
 import java.security.MessageDigest;
+import java.util.Arrays;
 
 import com.lowagie.text.ExceptionConverter;
-import java.io.ByteArrayOutputStream;
 
 /**
  *
@@ -101,6 +102,15 @@ public class PdfEncryption {
     private int keyLength;
     private boolean encryptMetadata;
     private int cryptoMode;
+    /** The number of object keys kept, a power of 2. */
+    private static final int KEY_CACHE_SIZE = 256;
+    /** The object keys computed lately, in the slot of the low bits of the object number. */
+    private byte keyCache[][] = new byte[KEY_CACHE_SIZE][];
+    private int keyCacheNumber[] = new int[KEY_CACHE_SIZE];
+    private int keyCacheGeneration[] = new int[KEY_CACHE_SIZE];
+    /** The object of the current key. */
+    private int hashNumber;
+    private int hashGeneration;
 
     public PdfEncryption() {
         try {
@@ -211,6 +221,7 @@ public class PdfEncryption {
         this.permissions = permissions;
         // use variable keylength
         mkey = new byte[keyLength/8];
+        Arrays.fill(keyCache, null);
 
         //fixed by ujihara in order to follow PDF refrence
         md5.reset();
@@ -322,6 +333,35 @@ public class PdfEncryption {
     }
 
     public void setHashKey(int number, int generation) {
+        key = getHashKey(number, generation);
+        keySize = getKeySize();
+        hashNumber = number;
+        hashGeneration = generation;
+    }
+    
+    /**
+     * Checks if the current key is the one of an object.
+     * @param number the object number
+     * @param generation the object generation
+     * @return <CODE>true</CODE> if the last <CODE>setHashKey()</CODE> was for this object
+     */
+    boolean isHashKey(int number, int generation) {
+        return key != null && hashNumber == number && hashGeneration == generation;
+    }
+    
+    /**
+     * Gets the key of an object. The keys are kept in a small cache, the
+     * strings of an object and the objects read again don't need the MD5.
+     * It can be called by several threads at once.
+     * @param number the object number
+     * @param generation the object generation
+     * @return the key, of which the first <CODE>getKeySize()</CODE> bytes are used
+     */
+    synchronized byte[] getHashKey(int number, int generation) {
+        int slot = number & (KEY_CACHE_SIZE - 1);
+        byte k[] = keyCache[slot];
+        if (k != null && keyCacheNumber[slot] == number && keyCacheGeneration[slot] == generation)
+            return k;
         md5.reset();	//added by ujihara
         extra[0] = (byte)number;
         extra[1] = (byte)(number >> 8);
@@ -332,10 +372,15 @@ public class PdfEncryption {
         md5.update(extra);
         if (revision == AES_128)
             md5.update(salt);
-        key = md5.digest();
-        keySize = mkey.length + 5;
-        if (keySize > 16)
-            keySize = 16;
+        k = md5.digest();
+        keyCache[slot] = k;
+        keyCacheNumber[slot] = number;
+        keyCacheGeneration[slot] = generation;
+        return k;
+    }
+    
+    private int getKeySize() {
+        return Math.min(mkey.length + 5, 16);
     }
 
     public static PdfObject createInfoId(byte id[]) {
@@ -404,14 +449,37 @@ public class PdfEncryption {
     }
     
     public byte[] encryptByteArray(byte[] b) {
-        try {
-            ByteArrayOutputStream ba = new ByteArrayOutputStream();
-            OutputStreamEncryption os2 = getEncryptionStream(ba);
-            os2.write(b);
-            os2.finish();
-            return ba.toByteArray();
-        } catch (IOException ex) {
-            throw new ExceptionConverter(ex);
+        return encrypt(b, key, keySize);
+    }
+    
+    /**
+     * Encrypts the data of an object without changing the current object key.
+     * It can be called by several threads at once.
+     * @param b the data
+     * @param number the object number
+     * @param generation the object generation
+     * @return the encrypted data
+     */
+    byte[] encryptByteArray(byte[] b, int number, int generation) {
+        return encrypt(b, getHashKey(number, generation), getKeySize());
+    }
+    
+    private byte[] encrypt(byte[] b, byte k[], int kl) {
+        if (revision == AES_128) {
+            byte iv[] = IVGenerator.getIV();
+            byte out[] = new byte[calculateStreamSize(b.length)];
+            System.arraycopy(iv, 0, out, 0, iv.length);
+            byte nkey[] = new byte[kl];
+            System.arraycopy(k, 0, nkey, 0, kl);
+            AESCipher.process(true, nkey, iv, b, 0, b.length, out, iv.length);
+            return out;
+        }
+        else {
+            RC4Encryption arc4 = new RC4Encryption();
+            arc4.prepareRC4Key(k, 0, kl);
+            byte out[] = new byte[b.length];
+            arc4.encryptRC4(b, out);
+            return out;
         }
     }
     
@@ -419,19 +487,41 @@ public class PdfEncryption {
         return new StandardDecryption(key, 0, keySize, revision);
     }
     
+    /**
+     * Gets a decryptor for the data of an object without changing the current
+     * object key. It can be called by several threads at once.
+     * @param number the object number
+     * @param generation the object generation
+     * @return the decryptor
+     */
+    StandardDecryption getDecryptor(int number, int generation) {
+        return new StandardDecryption(getHashKey(number, generation), 0, getKeySize(), revision);
+    }
+    
     public byte[] decryptByteArray(byte[] b) {
-        try {
-            ByteArrayOutputStream ba = new ByteArrayOutputStream();
-            StandardDecryption dec = getDecryptor();
-            byte[] b2 = dec.update(b, 0, b.length);
-            if (b2 != null)
-                ba.write(b2);
-            b2 = dec.finish();
-            if (b2 != null)
-                ba.write(b2);
-            return ba.toByteArray();
-        } catch (IOException ex) {
-            throw new ExceptionConverter(ex);
+        if (revision == AES_128 && b.length >= 16) {
+            byte iv[] = new byte[16];
+            System.arraycopy(b, 0, iv, 0, 16);
+            byte nkey[] = new byte[keySize];
+            System.arraycopy(key, 0, nkey, 0, keySize);
+            byte out[] = new byte[b.length - 16];
+            int n = AESCipher.process(false, nkey, iv, b, 16, b.length - 16, out, 0);
+            if (n == out.length)
+                return out;
+            byte out2[] = new byte[n];
+            System.arraycopy(out, 0, out2, 0, n);
+            return out2;
         }
+        StandardDecryption dec = getDecryptor();
+        byte[] b2 = dec.update(b, 0, b.length);
+        byte[] b3 = dec.finish();
+        if (b3 == null || b3.length == 0)
+            return b2 == null ? new byte[0] : b2;
+        if (b2 == null || b2.length == 0)
+            return b3;
+        byte out[] = new byte[b2.length + b3.length];
+        System.arraycopy(b2, 0, out, 0, b2.length);
+        System.arraycopy(b3, 0, out, b2.length, b3.length);
+        return out;
     }
 }
\ No newline at end of file
@@ -165,6 +165,22 @@ class PdfFont implements Comparable {
             return image.scaledWidth();
     }
     
+    /**
+     * Returns the width of some characters of this font.
+     *
+     * @param		chars	the characters
+     * @param		offset	the first character to measure
+     * @param		length	the number of characters to measure
+     * @return		a width in Text Space
+     */
+    
+    float width(char chars[], int offset, int length) {
+        if (image == null)
+            return font.measure(chars, offset, length, size) * hScale;
+        else
+            return image.scaledWidth();
+    }
+    
     BaseFont getFont() {
         return font;
     }
@@ -0,0 +1,238 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.lowagie.text.DocumentException;
+
+/**
+ * Fills the same form with many records, the mail merge of a template.
+ * <p>
+ * The template is read once in a <CODE>PdfSharedReader</CODE> and each record
+ * is filled with <CODE>PdfStamper</CODE> in a reader that only copies the
+ * objects it changes. The <CODE>TextField</CODE>s that make the appearances,
+ * with the fonts decoded from the form, are kept for each thread and reused by
+ * the following records. The records are maps from the field names to the
+ * values, they can be filled one by one with <CODE>fill(Map, OutputStream)</CODE>
+ * by any number of threads at once, or in a batch with
+ * <CODE>fill(Iterator, DocumentTarget, int)</CODE>.
+ * <pre>
+ * PdfFormFiller filler = new PdfFormFiller(new PdfReader("invoice.pdf"));
+ * filler.setFormFlattening(true);
+ * filler.fill(records.iterator(), new PdfFormFiller.DocumentTarget() {
+ *     public OutputStream getOutputStream(int index, Map record) throws IOException {
+ *         return new FileOutputStream("invoice" + index + ".pdf");
+ *     }
+ * }, 4);
+ * </pre>
+ */
+public class PdfFormFiller {
+    
+    /** Gives the destination of each filled document. */
+    public interface DocumentTarget {
+        /**
+         * Gets the stream where a filled document is written. The stream is
+         * closed when the document is complete. It may be called by several
+         * threads at once.
+         * @param index the position of the record in the batch, the first is 0
+         * @param record the record
+         * @return the stream to write the document to
+         * @throws IOException on error
+         */
+        OutputStream getOutputStream(int index, Map record) throws IOException;
+    }
+    
+    private PdfSharedReader template;
+    private List fieldNames;
+    /** The widgets of the form, <CODE>null</CODE> to look for them in each record. */
+    private int widgets[][];
+    private boolean formFlattening = false;
+    private boolean fullCompression = false;
+    /** The <CODE>AcroFields</CODE> field cache of each thread. */
+    private ThreadLocal fieldCaches = new ThreadLocal();
+    
+    /**
+     * Creates a filler for a form.
+     * @param template the form
+     */
+    public PdfFormFiller(PdfSharedReader template) {
+        this.template = template;
+        // the widgets are found once, the fields of each record are made
+        // from them without looking at the annotations of all the pages
+        AcroFields form = template.getReader().getAcroFields();
+        fieldNames = Collections.unmodifiableList(new ArrayList(form.getFields().keySet()));
+        widgets = form.getWidgetPositions();
+    }
+    
+    /**
+     * Creates a filler for a form. The reader belongs to this object and
+     * must not be used anymore.
+     * @param reader the form
+     */
+    public PdfFormFiller(PdfReader reader) {
+        this(new PdfSharedReader(reader));
+    }
+    
+    /**
+     * Gets the names of the fields of the form.
+     * @return the fully qualified names of the fields
+     */
+    public List getFieldNames() {
+        return fieldNames;
+    }
+    
+    /**
+     * Gets the shared form.
+     * @return the shared form
+     */
+    public PdfSharedReader getTemplate() {
+        return template;
+    }
+    
+    /**
+     * Sets whether the filled fields are flattened.
+     * @param formFlattening <CODE>true</CODE> to flatten the fields
+     */
+    public void setFormFlattening(boolean formFlattening) {
+        this.formFlattening = formFlattening;
+    }
+    
+    /**
+     * Gets whether the filled fields are flattened.
+     * @return <CODE>true</CODE> if the fields are flattened
+     */
+    public boolean isFormFlattening() {
+        return formFlattening;
+    }
+    
+    /**
+     * Sets whether the documents are written with full compression, see
+     * <CODE>PdfStamper.setFullCompression()</CODE>.
+     * @param fullCompression <CODE>true</CODE> to use full compression
+     */
+    public void setFullCompression(boolean fullCompression) {
+        this.fullCompression = fullCompression;
+    }
+    
+    /**
+     * Gets whether the documents are written with full compression.
+     * @return <CODE>true</CODE> if full compression is used
+     */
+    public boolean isFullCompression() {
+        return fullCompression;
+    }
+    
+    /**
+     * Fills the form with a record. It can be called by several threads at once.
+     * @param record the values of the fields by field name. The values are converted
+     * with <CODE>toString()</CODE> and the <CODE>null</CODE> values are ignored
+     * @param os the stream to write the document to. It is closed at the end
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public void fill(Map record, OutputStream os) throws IOException, DocumentException {
+        boolean written = false;
+        try {
+            PdfStamper stamper = new PdfStamper(template.getReader(), os);
+            if (fullCompression)
+                stamper.setFullCompression();
+            AcroFields form = widgets == null ? stamper.getAcroFields() : stamper.stamper.getAcroFields(widgets);
+            HashMap fieldCache = (HashMap)fieldCaches.get();
+            if (fieldCache == null) {
+                fieldCache = new HashMap();
+                fieldCaches.set(fieldCache);
+            }
+            form.setFieldCache(fieldCache);
+            for (Iterator it = record.entrySet().iterator(); it.hasNext();) {
+                Map.Entry entry = (Map.Entry)it.next();
+                if (entry.getValue() != null)
+                    form.setField(entry.getKey().toString(), entry.getValue().toString());
+            }
+            stamper.setFormFlattening(formFlattening);
+            stamper.close();
+            written = true;
+        }
+        finally {
+            if (!written)
+                DocumentBatch.closeAfterError(os);
+        }
+    }
+    
+    /**
+     * Fills the form with each record of a batch. With more than one thread
+     * the records are filled in any order, the first error stops all the threads
+     * and is thrown once they are done.
+     * @param records the records, <CODE>Map</CODE>s of the values by field name
+     * @param target gives the stream of each document
+     * @param threads the number of threads filling the records
+     * @return the number of documents written
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public int fill(Iterator records, final DocumentTarget target, int threads) throws IOException, DocumentException {
+        DocumentBatch batch = new DocumentBatch(records) {
+            OutputStream getOutputStream(int index, Object item) throws IOException {
+                return target.getOutputStream(index, (Map)item);
+            }
+            void write(Object item, OutputStream os) throws Exception {
+                fill((Map)item, os);
+            }
+        };
+        return batch.write(threads, "PdfFormFiller");
+    }
+}
@@ -56,6 +56,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import com.lowagie.text.Image;
+import com.lowagie.text.ImageCache;
 
 /**
  * <CODE>PdfImage</CODE> is a <CODE>PdfStream</CODE> containing an image-<CODE>Dictionary</CODE> and -stream.
@@ -69,6 +70,9 @@ class PdfImage extends PdfStream {
     /** This is the <CODE>PdfName</CODE> of the image. */
     protected PdfName name = null;
     
+    /** The cached image whose data is deflated by this stream, if any. */
+    private Image cachedImage;
+    
     // constructor
     
     /**
@@ -165,9 +169,12 @@ class PdfImage extends PdfStream {
                     put(PdfName.BITSPERCOMPONENT, new PdfNumber(image.bpc()));
                     if (image.isDeflated())
                         put(PdfName.FILTER, PdfName.FLATEDECODE);
-                    else {
+                    else if (additional == null || additional.get(PdfName.FILTER) == null) {
                         flateCompress();
+                        if (ImageCache.isCached(image))
+                            cachedImage = image;
                     }
+                    // else the data is already encoded with the filter in the additional dictionary
                 }
                 return;
             }
@@ -237,6 +244,26 @@ class PdfImage extends PdfStream {
         return name;
     }
     
+    /**
+     * Deflates the data, or takes it from the <CODE>ImageCache</CODE> if
+     * another writer already deflated it with the same compression level.
+     */
+    synchronized void deflate() {
+        if (cachedImage == null || !isDeflatePending()) {
+            super.deflate();
+            return;
+        }
+        byte data[] = ImageCache.getDeflatedData(cachedImage, compressionLevel);
+        if (data != null) {
+            setDeflatedData(data);
+            return;
+        }
+        super.deflate();
+        data = streamBytes.toByteArray();
+        setDeflatedData(data);
+        ImageCache.putDeflatedData(cachedImage, compressionLevel, data);
+    }
+    
     static void transferBytes(InputStream in, OutputStream out, int len) throws IOException {
         byte buffer[] = new byte[TRANSFERSIZE];
         if (len < 0)
@@ -252,6 +279,7 @@ class PdfImage extends PdfStream {
     }
     
     protected void importAll(PdfImage dup) {
+        dup.deflate();
         name = dup.name;
         compressed = dup.compressed;
         streamBytes = dup.streamBytes;
@@ -50,6 +50,11 @@
 
 package com.lowagie.text.pdf;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import com.lowagie.text.ExceptionConverter;
+
 /**
  * <CODE>PdfName</CODE> is an object that can be used as a name in a PDF-file.
  * <P>
@@ -964,6 +969,8 @@ public class PdfName extends PdfObject implements Comparable{
     /** A name */
     public static final PdfName VERISIGN_PPKVS = new PdfName("VeriSign.PPKVS");
     /** A name */
+    public static final PdfName VERSION = new PdfName("Version");
+    /** A name */
     public static final PdfName VIEW = new PdfName("View");
     /** A name */
     public static final PdfName VIEWAREA = new PdfName("ViewArea");
@@ -1022,6 +1029,44 @@ public class PdfName extends PdfObject implements Comparable{
     /** A name */
     public static final PdfName ZOOM = new PdfName("Zoom");
     
+    /** The static names above in an open addressing table. */
+    private static final PdfName staticNames[];
+    
+    /** The size of the table of other names read, a power of two. */
+    private static final int CACHE_SIZE = 4096;
+    /** Only names up to this length, with the '/', are kept in the cache. */
+    private static final int MAX_CACHED_LENGTH = 64;
+    /** The other names read, the newest replaces the one in the same slot. */
+    private static final PdfName cachedNames[] = new PdfName[CACHE_SIZE];
+    /** The locks of the slots in <CODE>cachedNames</CODE>. */
+    private static final Object cacheLocks[] = new Object[16];
+    
+    static {
+        Field fields[] = PdfName.class.getDeclaredFields();
+        int size = 1;
+        while (size < fields.length * 2)
+            size <<= 1;
+        staticNames = new PdfName[size];
+        try {
+            for (int k = 0; k < fields.length; ++k) {
+                Field f = fields[k];
+                if (f.getType() == PdfName.class && Modifier.isStatic(f.getModifiers()) && Modifier.isPublic(f.getModifiers())) {
+                    PdfName name = (PdfName)f.get(null);
+                    int idx = name.hashCode() & (size - 1);
+                    while (staticNames[idx] != null && !staticNames[idx].equals(name))
+                        idx = (idx + 1) & (size - 1);
+                    if (staticNames[idx] == null)
+                        staticNames[idx] = name;
+                }
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new ExceptionConverter(e);
+        }
+        for (int k = 0; k < cacheLocks.length; ++k)
+            cacheLocks[k] = new Object();
+    }
+    
     private int hash = 0;
     
     // constructors
@@ -1097,6 +1142,88 @@ public class PdfName extends PdfObject implements Comparable{
     public PdfName(byte bytes[]) {
         super(PdfObject.NAME, bytes);
     }
+    
+    /**
+     * Constructs a PdfName with its hash code already known.
+     * @param bytes the byte representation of the name
+     * @param hash the hash code of the name
+     */
+    private PdfName(byte bytes[], int hash) {
+        super(PdfObject.NAME, bytes);
+        this.hash = hash;
+    }
+    
+    /**
+     * Gets a <CODE>PdfName</CODE> from its byte representation, as it would be
+     * produced by <CODE>PdfName(String)</CODE>, including the starting '/'. The
+     * static names of this class are returned when they match and the other names
+     * are shared while they stay in a small cache, so that the same instances are
+     * used across the objects and the pages read. No <CODE>String</CODE> is created.
+     * It can be used by several threads at once.
+     * @param b the buffer with the bytes
+     * @param off the start of the name in <CODE>b</CODE>
+     * @param len the length of the name
+     * @return the name
+     */
+    public static PdfName intern(byte b[], int off, int len) {
+        int h = 0;
+        for (int k = 0; k < len; ++k)
+            h = 31 * h + (b[off + k] & 0xff);
+        return intern(b, off, len, h);
+    }
+    
+    /**
+     * Gets a <CODE>PdfName</CODE> from its byte representation.
+     * @param b the buffer with the bytes
+     * @param off the start of the name in <CODE>b</CODE>
+     * @param len the length of the name
+     * @param h the hash code of the name as computed by <CODE>hashCode()</CODE>
+     * @return the name
+     * @see #intern(byte[], int, int)
+     */
+    static PdfName intern(byte b[], int off, int len, int h) {
+        int mask = staticNames.length - 1;
+        for (int idx = h & mask; staticNames[idx] != null; idx = (idx + 1) & mask) {
+            PdfName name = staticNames[idx];
+            if (name.hash == h && name.equals(b, off, len))
+                return name;
+        }
+        if (len > MAX_CACHED_LENGTH)
+            return new PdfName(copy(b, off, len), h);
+        int slot = (h ^ (h >>> 12)) & (CACHE_SIZE - 1);
+        synchronized (cacheLocks[slot & (cacheLocks.length - 1)]) {
+            PdfName name = cachedNames[slot];
+            if (name == null || name.hash != h || !name.equals(b, off, len)) {
+                name = new PdfName(copy(b, off, len), h);
+                cachedNames[slot] = name;
+            }
+            return name;
+        }
+    }
+    
+    private static byte[] copy(byte b[], int off, int len) {
+        byte c[] = new byte[len];
+        System.arraycopy(b, off, c, 0, len);
+        return c;
+    }
+    
+    /**
+     * Compares the bytes of this name with a slice of a buffer.
+     * @param b the buffer
+     * @param off the start of the slice
+     * @param len the length of the slice
+     * @return <CODE>true</CODE> if the bytes are the same
+     */
+    private boolean equals(byte b[], int off, int len) {
+        byte myBytes[] = bytes;
+        if (myBytes.length != len)
+            return false;
+        for (int k = 0; k < len; ++k) {
+            if (myBytes[k] != b[off + k])
+                return false;
+        }
+        return true;
+    }
     // methods
     
     /**
@@ -1139,8 +1266,13 @@ public class PdfName extends PdfObject implements Comparable{
     public boolean equals(Object obj) {
         if (this == obj)
             return true;
-        if (obj instanceof PdfName)
+        if (obj instanceof PdfName) {
+            PdfName name = (PdfName)obj;
+            // the names read are mostly shared instances with the hash code known
+            if (hash != 0 && name.hash != 0 && hash != name.hash)
+                return false;
             return compareTo(obj) == 0;
+        }
         return false;
     }
     
@@ -98,6 +98,19 @@ public class PdfNumber extends PdfObject {
         setContent(String.valueOf(value));
     }
     
+/**
+ * Constructs a new INTEGER <CODE>PdfNumber</CODE>-object from a <CODE>long</CODE>,
+ * as needed by the byte offsets of large files.
+ *
+ * @param		value				value of the new <CODE>PdfNumber</CODE>-object
+ */
+    
+    public PdfNumber(long value) {
+        super(NUMBER);
+        this.value = value;
+        setContent(String.valueOf(value));
+    }
+    
 /**
  * Constructs a new REAL <CODE>PdfNumber</CODE>-object.
  *
@@ -132,6 +145,16 @@ public class PdfNumber extends PdfObject {
         return (int) value;
     }
     
+/**
+ * Returns the primitive <CODE>long</CODE> value of this object.
+ *
+ * @return		a value
+ */
+    
+    public long longValue() {
+        return (long) value;
+    }
+    
 /**
  * Returns the primitive <CODE>double</CODE> value of this object.
  *
@@ -51,11 +51,14 @@
 package com.lowagie.text.pdf;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 
+import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
 import com.lowagie.text.Element;
 import com.lowagie.text.ElementListener;
 import com.lowagie.text.Image;
+import com.lowagie.text.LargeElement;
 import com.lowagie.text.Phrase;
 import com.lowagie.text.Rectangle;
 import com.lowagie.text.pdf.events.PdfPTableEventForwarder;
@@ -70,7 +73,7 @@ import com.lowagie.text.pdf.events.PdfPTableEventForwarder;
  * @author Paulo Soares (psoares@consiste.pt)
  */
 
-public class PdfPTable implements Element{
+public class PdfPTable implements LargeElement{
     
     /** The index of the original <CODE>PdfcontentByte</CODE>.
      */    
@@ -153,6 +156,15 @@ public class PdfPTable implements Element{
      */
     private int footerRows;
     
+    /**
+     * <CODE>false</CODE> if more rows will be added after the table is
+     * added to the document.
+     */
+    protected boolean complete = true;
+    
+    /** <CODE>true</CODE> if some rows were already written and flushed. */
+    private boolean flushed = false;
+    
     protected PdfPTable() {
     }
     
@@ -246,6 +258,8 @@ public class PdfPTable implements Element{
         skipFirstHeader = sourceTable.skipFirstHeader;
         horizontalAlignment = sourceTable.horizontalAlignment;
         keepTogether = sourceTable.keepTogether;
+        complete = sourceTable.complete;
+        flushed = sourceTable.flushed;
     }
 
     /** Sets the relative widths of the table.
@@ -419,6 +433,23 @@ public class PdfPTable implements Element{
         addCell(new Phrase(text));
     }
     
+    /** Adds a cell element of any of the types accepted by
+     * <CODE>addCell()</CODE>. Other objects are added as text.
+     * @param cell the cell element
+     */    
+    void addCell(Object cell) {
+        if (cell instanceof PdfPCell)
+            addCell((PdfPCell)cell);
+        else if (cell instanceof Phrase)
+            addCell((Phrase)cell);
+        else if (cell instanceof PdfPTable)
+            addCell((PdfPTable)cell);
+        else if (cell instanceof Image)
+            addCell((Image)cell);
+        else
+            addCell(cell == null ? "" : cell.toString());
+    }
+    
     /**
      * Adds a nested table.
      * @param table the table to be added to the cell
@@ -1079,4 +1110,106 @@ public class PdfPTable implements Element{
         this.footerRows = footerRows;
     }
     
-}
\ No newline at end of file
+    
+    /**
+     * Checks if the table is complete.
+     * @return <CODE>true</CODE> if the table is complete
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+    
+    /**
+     * Sets the table in streaming mode if <CODE>complete</CODE> is <CODE>false</CODE>.
+     * A table that is not complete can be added to the <CODE>Document</CODE>
+     * several times: each time the rows added since the last time are laid out
+     * and written and then deleted from the table, so the memory used doesn't
+     * depend on the number of rows. The headers are repeated at the top of the
+     * pages and the footers at the bottom of the pages, but not after the
+     * rows that were just flushed. Only whole rows are written, the cells of a
+     * row in progress stay in the table. Before the table is added for the last
+     * time it must be set as complete to write the final footer and the spacing after;
+     * it should still have some rows then, as a table with only headers is not written.
+     * <P>
+     * A typical use is:
+     * <PRE>
+     * table.setComplete(false);
+     * for (int k = 0; k &lt; rows; ++k) {
+     *     if (k &gt; 0 &amp;&amp; k % 100 == 0)
+     *         document.add(table);
+     *     // add the cells of row k
+     * }
+     * table.setComplete(true);
+     * document.add(table);
+     * </PRE>
+     * @param complete <CODE>false</CODE> if more rows will be added
+     * @see #addRows(Iterator, Document, int)
+     */
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+    
+    /**
+     * Deletes the body rows already written, keeping the headers for the
+     * following pages. The table doesn't need the header again at the start
+     * of the next rows, nor the spacing before, whatever
+     * <CODE>isSkipFirstHeader()</CODE> says. It is called by the
+     * <CODE>Document</CODE> when a table that is not complete is added.
+     */
+    public void flushContent() {
+        if (rows.size() <= headerRows)
+            return;
+        deleteBodyRows();
+        flushed = true;
+    }
+    
+    /**
+     * Checks if rows of this table were already written and flushed.
+     * @return <CODE>true</CODE> if this table continues rows already written
+     */
+    boolean isFlushed() {
+        return flushed;
+    }
+    
+    /**
+     * Adds to the document all the rows returned by an iterator, writing them
+     * every <CODE>flushRows</CODE> rows so that only those are kept in memory.
+     * Each object returned by the iterator is either an array with the cells
+     * of one row or a single cell. The cells can be <CODE>PdfPCell</CODE>,
+     * <CODE>Phrase</CODE>, <CODE>PdfPTable</CODE> or <CODE>Image</CODE>,
+     * any other object is added as its <CODE>toString()</CODE> text.
+     * <P>
+     * The table is complete when this method returns and it was already
+     * added to the document for the last time. The header rows, if any, must
+     * be added before calling this method.
+     * @param rows the rows to add
+     * @param document the document where the table is written
+     * @param flushRows the number of rows written each time
+     * @throws DocumentException on error
+     */
+    public void addRows(Iterator rows, Document document, int flushRows) throws DocumentException {
+        if (flushRows < 1)
+            flushRows = 1;
+        setComplete(false);
+        int pending = 0;
+        while (rows.hasNext()) {
+            Object row = rows.next();
+            // flushed only when more rows follow, the last ones are written complete
+            if (pending >= flushRows && currentRowIdx == 0) {
+                document.add(this);
+                pending = 0;
+            }
+            if (row instanceof Object[]) {
+                Object cells[] = (Object[])row;
+                for (int k = 0; k < cells.length; ++k)
+                    addCell(cells[k]);
+            }
+            else
+                addCell(row);
+            if (currentRowIdx == 0)
+                ++pending;
+        }
+        setComplete(true);
+        document.add(this);
+    }
+}
@@ -52,7 +52,6 @@ package com.lowagie.text.pdf;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -61,6 +60,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -91,9 +91,9 @@ public class PdfReader implements PdfViewerPreferences {
     // type 0 -> -1, 0
     // type 1 -> offset, 0
     // type 2 -> index, obj num
-    protected int xref[];
+    protected long xref[];
     protected HashMap objStmMark;
-    protected IntHashtable objStmToOffset;
+    protected LongHashtable objStmToOffset;
     protected boolean newXrefType;
     private ArrayList xrefObj;
     PdfDictionary rootPages;
@@ -108,8 +108,8 @@ public class PdfReader implements PdfViewerPreferences {
     protected boolean rebuilt = false;
     protected int freeXref;
     protected boolean tampered = false;
-    protected int lastXref;
-    protected int eofPos;
+    protected long lastXref;
+    protected long eofPos;
     protected char pdfVersion;
     protected PdfEncryption decrypt;
     protected byte password[] = null; //added by ujihara for decryption
@@ -120,11 +120,13 @@ public class PdfReader implements PdfViewerPreferences {
     protected int pValue;
     private int objNum;
     private int objGen;
-    private int fileLength;
+    private long fileLength;
     private boolean hybridXref;
     private int lastXrefPartial = -1;
     private boolean partial;
     private PRIndirectReference cryptoRef;
+    private int maxResidentObjects;
+    private LinkedHashMap residentObjects;
 	private PdfViewerPreferencesImp viewerPreferences = new PdfViewerPreferencesImp();
 
     /**
@@ -220,6 +222,14 @@ public class PdfReader implements PdfViewerPreferences {
      * into memory. The reader is said to be working in "partial" mode as only parts of the pdf
      * are read as needed. The pdf is left open but may be closed at any time with
      * <CODE>PdfReader.close()</CODE>, reopen is automatic.
+     * <p>
+     * Documents larger than the available memory can be read with a paged
+     * <CODE>RandomAccessFileOrArray</CODE>, optionally limiting the number of parsed
+     * objects kept with <CODE>setMaxResidentObjects()</CODE>:
+     * <pre>
+     * PdfReader reader = new PdfReader(new RandomAccessFileOrArray(filename, 65536, 32), null);
+     * reader.setMaxResidentObjects(1000);
+     * </pre>
      * @param raf the document location
      * @param ownerPassword the password or <CODE>null</CODE> for no password
      * @throws IOException on error
@@ -265,6 +275,109 @@ public class PdfReader implements PdfViewerPreferences {
         this.objStmToOffset = reader.objStmToOffset;
         this.xref = reader.xref;
         this.cryptoRef = (PRIndirectReference)duplicatePdfObject(reader.cryptoRef, this);
+        setMaxResidentObjects(reader.maxResidentObjects);
+    }
+
+    /**
+     * Creates a reader that shares the objects of the reader of a
+     * <CODE>PdfSharedReader</CODE>. An object is duplicated the first time it
+     * is asked for and only the objects never asked for are shared when
+     * written by <CODE>PdfStamper</CODE>.
+     * @param shared the shared reader
+     */
+    PdfReader(PdfSharedReader shared) {
+        PdfReader reader = shared.reader;
+        this.appendable = reader.appendable;
+        this.consolidateNamedDestinations = reader.consolidateNamedDestinations;
+        this.encrypted = reader.encrypted;
+        this.rebuilt = reader.rebuilt;
+        this.sharedStreams = reader.sharedStreams;
+        this.tampered = reader.tampered;
+        this.password = reader.password;
+        this.pdfVersion = reader.pdfVersion;
+        this.eofPos = reader.eofPos;
+        this.freeXref = reader.freeXref;
+        this.lastXref = reader.lastXref;
+        this.tokens = new PRTokeniser(reader.tokens.getSafeFile());
+        if (reader.decrypt != null)
+            this.decrypt = new PdfEncryption(reader.decrypt);
+        this.pValue = reader.pValue;
+        this.rValue = reader.rValue;
+        this.xrefObj = new SharedObjects(this, reader.xrefObj);
+        this.pageRefs = new PageRefs(reader.pageRefs, this);
+        this.trailer = (PdfDictionary)duplicatePdfObject(reader.trailer, this);
+        this.catalog = (PdfDictionary)getPdfObject(trailer.get(PdfName.ROOT));
+        this.rootPages = (PdfDictionary)getPdfObject(catalog.get(PdfName.PAGES));
+        this.fileLength = reader.fileLength;
+        this.hybridXref = reader.hybridXref;
+        this.objStmToOffset = reader.objStmToOffset;
+        this.xref = reader.xref;
+        this.cryptoRef = (PRIndirectReference)duplicatePdfObject(reader.cryptoRef, this);
+    }
+
+    /**
+     * The objects of a reader made by <CODE>PdfSharedReader</CODE>. An object
+     * is duplicated from the shared reader the first time it is asked for,
+     * the shared objects are never changed.
+     */
+    private static class SharedObjects extends ArrayList {
+        private PdfReader reader;
+        private ArrayList shared;
+        /** The objects no longer shared, duplicated or replaced. */
+        private boolean copied[];
+
+        SharedObjects(PdfReader reader, ArrayList shared) {
+            super(shared.size());
+            addAll(Collections.nCopies(shared.size(), null));
+            this.reader = reader;
+            this.shared = shared;
+            copied = new boolean[shared.size()];
+        }
+
+        public Object get(int idx) {
+            Object obj = super.get(idx);
+            if (obj == null && idx < copied.length && !copied[idx]) {
+                copied[idx] = true;
+                obj = duplicatePdfObject((PdfObject)shared.get(idx), reader);
+                super.set(idx, obj);
+            }
+            return obj;
+        }
+
+        public Object set(int idx, Object obj) {
+            if (idx < copied.length)
+                copied[idx] = true;
+            return super.set(idx, obj);
+        }
+
+        /**
+         * Gets an object to be written without duplicating it.
+         * @param idx the object number
+         * @return the object
+         */
+        PdfObject getToWrite(int idx) {
+            if (idx >= copied.length || copied[idx])
+                return (PdfObject)super.get(idx);
+            PdfObject obj = (PdfObject)shared.get(idx);
+            // a stream changes its /Length while being written
+            if (obj != null && obj.isStream())
+                return new PRStream((PRStream)obj, null);
+            return obj;
+        }
+    }
+
+    /**
+     * Gets an object to be written as it is. It's the same as
+     * <CODE>getPdfObjectRelease()</CODE> except for a reader made by
+     * <CODE>PdfSharedReader</CODE> where the objects never asked for are not
+     * duplicated.
+     * @param idx the object number
+     * @return the object
+     */
+    PdfObject getPdfObjectToWrite(int idx) {
+        if (xrefObj instanceof SharedObjects && decrypt == null && idx >= 0 && idx < xrefObj.size())
+            return ((SharedObjects)xrefObj).getToWrite(idx);
+        return getPdfObjectRelease(idx);
     }
 
     /** Gets a new file instance of the original PDF
@@ -490,7 +603,8 @@ public class PdfReader implements PdfViewerPreferences {
 
             strings.clear();
             readPages();
-            eliminateSharedStreams();
+            // the content streams shared by several pages are separated only
+            // when a page content is replaced, it would read every page
             removeUnusedObjects();
         }
         finally {
@@ -750,8 +864,13 @@ public class PdfReader implements PdfViewerPreferences {
             if (idx < 0 || idx >= xrefObj.size())
                 return null;
             PdfObject obj = (PdfObject)xrefObj.get(idx);
-            if (!partial || obj != null)
+            if (!partial)
+                return obj;
+            if (obj != null) {
+                if (residentObjects != null)
+                    residentObjects.get(new Integer(idx));
                 return obj;
+            }
             if (idx * 2 >= xref.length)
                 return null;
             obj = readSingleObject(idx);
@@ -798,6 +917,47 @@ public class PdfReader implements PdfViewerPreferences {
         reader.lastXrefPartial = -1;
     }
 
+    /**
+     * Limits the number of objects read from the file that are kept in memory when
+     * the document was opened in partial mode. When the limit is reached the least
+     * recently used object is released and will be read again from the file
+     * if needed. Changes made to a released object are lost, so the objects to be
+     * changed should be obtained again after any other object is read.
+     * This setting has no effect if the document was not opened in partial mode.
+     * @param maxResidentObjects the maximum number of objects kept in memory or 0
+     * for no limit
+     */
+    public void setMaxResidentObjects(int maxResidentObjects) {
+        this.maxResidentObjects = maxResidentObjects;
+        if (maxResidentObjects <= 0 || !partial) {
+            residentObjects = null;
+            return;
+        }
+        final int max = maxResidentObjects;
+        LinkedHashMap old = residentObjects;
+        residentObjects = new LinkedHashMap(Math.min(max, 1024) * 2, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                if (size() <= max)
+                    return false;
+                xrefObj.set(((Integer)eldest.getKey()).intValue(), null);
+                return true;
+            }
+        };
+        if (old != null) {
+            for (Iterator it = old.keySet().iterator(); it.hasNext();)
+                residentObjects.put(it.next(), null);
+        }
+    }
+
+    /**
+     * Gets the maximum number of objects read from the file that are kept in memory
+     * when in partial mode.
+     * @return the maximum number of objects or 0 if there's no limit
+     */
+    public int getMaxResidentObjects() {
+        return maxResidentObjects;
+    }
+
     private void setXrefPartialObject(int idx, PdfObject obj) {
         if (!partial || idx < 0)
             return;
@@ -837,11 +997,11 @@ public class PdfReader implements PdfViewerPreferences {
     protected PdfObject readSingleObject(int k) throws IOException {
         strings.clear();
         int k2 = k * 2;
-        int pos = xref[k2];
+        long pos = xref[k2];
         if (pos < 0)
             return null;
         if (xref[k2 + 1] > 0)
-            pos = objStmToOffset.get(xref[k2 + 1]);
+            pos = objStmToOffset.get((int)xref[k2 + 1]);
         if (pos == 0)
             return null;
         tokens.seek(pos);
@@ -871,9 +1031,11 @@ public class PdfReader implements PdfViewerPreferences {
             obj = null;
         }
         if (xref[k2 + 1] > 0) {
-            obj = readOneObjStm((PRStream)obj, xref[k2]);
+            obj = readOneObjStm((PRStream)obj, (int)xref[k2]);
         }
         xrefObj.set(k, obj);
+        if (residentObjects != null && obj != null)
+            residentObjects.put(new Integer(k), null);
         return obj;
     }
 
@@ -930,7 +1092,7 @@ public class PdfReader implements PdfViewerPreferences {
         xrefObj = new ArrayList(xref.length / 2);
         xrefObj.addAll(Collections.nCopies(xref.length / 2, null));
         for (int k = 2; k < xref.length; k += 2) {
-            int pos = xref[k];
+            long pos = xref[k];
             if (pos <= 0 || xref[k + 1] > 0)
                 continue;
             tokens.seek(pos);
@@ -975,8 +1137,8 @@ public class PdfReader implements PdfViewerPreferences {
     }
 
     private void checkPRStreamLength(PRStream stream) throws IOException {
-        int fileLength = tokens.length();
-        int start = stream.getOffset();
+        long fileLength = tokens.length();
+        long start = stream.getOffset();
         boolean calc = false;
         int streamLength = 0;
         PdfObject obj = getPdfObjectRelease(stream.get(PdfName.LENGTH));
@@ -1000,11 +1162,11 @@ public class PdfReader implements PdfViewerPreferences {
             byte tline[] = new byte[16];
             tokens.seek(start);
             while (true) {
-                int pos = tokens.getFilePointer();
+                long pos = tokens.getFilePointer();
                 if (!tokens.readLineSegment(tline))
                     break;
                 if (equalsn(tline, endstream)) {
-                    streamLength = pos - start;
+                    streamLength = (int)(pos - start);
                     break;
                 }
                 if (equalsn(tline, endobj)) {
@@ -1013,7 +1175,7 @@ public class PdfReader implements PdfViewerPreferences {
                     int index = s.indexOf("endstream");
                     if (index >= 0)
                         pos = pos - 16 + index;
-                    streamLength = pos - start;
+                    streamLength = (int)(pos - start);
                     break;
                 }
             }
@@ -1089,10 +1251,10 @@ public class PdfReader implements PdfViewerPreferences {
         if (size == 0)
             return;
         if (xref == null)
-            xref = new int[size];
+            xref = new long[size];
         else {
             if (xref.length < size) {
-                int xref2[] = new int[size];
+                long xref2[] = new long[size];
                 System.arraycopy(xref, 0, xref2, 0, xref.length);
                 xref = xref2;
             }
@@ -1109,7 +1271,7 @@ public class PdfReader implements PdfViewerPreferences {
         tokens.nextToken();
         if (tokens.getTokenType() != PRTokeniser.TK_NUMBER)
             throw new IOException("startxref is not followed by a number.");
-        int startxref = tokens.intValue();
+        long startxref = tokens.longValue();
         lastXref = startxref;
         eofPos = tokens.getFilePointer();
         try {
@@ -1127,7 +1289,7 @@ public class PdfReader implements PdfViewerPreferences {
             PdfNumber prev = (PdfNumber)trailer2.get(PdfName.PREV);
             if (prev == null)
                 break;
-            tokens.seek(prev.intValue());
+            tokens.seek(prev.longValue());
             trailer2 = readXrefSection();
         }
     }
@@ -1138,7 +1300,7 @@ public class PdfReader implements PdfViewerPreferences {
             tokens.throwError("xref subsection not found");
         int start = 0;
         int end = 0;
-        int pos = 0;
+        long pos = 0;
         int gen = 0;
         while (true) {
             tokens.nextValidToken();
@@ -1152,9 +1314,9 @@ public class PdfReader implements PdfViewerPreferences {
                 tokens.throwError("Number of entries in this xref subsection not found");
             end = tokens.intValue() + start;
             if (start == 1) { // fix incorrect start number
-                int back = tokens.getFilePointer();
+                long back = tokens.getFilePointer();
                 tokens.nextValidToken();
-                pos = tokens.intValue();
+                pos = tokens.longValue();
                 tokens.nextValidToken();
                 gen = tokens.intValue();
                 if (pos == 0 && gen == 65535) {
@@ -1166,7 +1328,7 @@ public class PdfReader implements PdfViewerPreferences {
             ensureXrefSize(end * 2);
             for (int k = start; k < end; ++k) {
                 tokens.nextValidToken();
-                pos = tokens.intValue();
+                pos = tokens.longValue();
                 tokens.nextValidToken();
                 gen = tokens.intValue();
                 tokens.nextValidToken();
@@ -1191,7 +1353,7 @@ public class PdfReader implements PdfViewerPreferences {
         ensureXrefSize(xrefSize.intValue() * 2);
         PdfObject xrs = trailer.get(PdfName.XREFSTM);
         if (xrs != null && xrs.isNumber()) {
-            int loc = ((PdfNumber)xrs).intValue();
+            long loc = ((PdfNumber)xrs).longValue();
             try {
                 readXRefStream(loc);
                 newXrefType = true;
@@ -1205,7 +1367,7 @@ public class PdfReader implements PdfViewerPreferences {
         return trailer;
     }
 
-    protected boolean readXRefStream(int ptr) throws IOException {
+    protected boolean readXRefStream(long ptr) throws IOException {
         tokens.seek(ptr);
         int thisStream = 0;
         if (!tokens.nextToken())
@@ -1241,10 +1403,10 @@ public class PdfReader implements PdfViewerPreferences {
         else
             index = (PdfArray)obj;
         PdfArray w = (PdfArray)stm.get(PdfName.W);
-        int prev = -1;
+        long prev = -1;
         obj = stm.get(PdfName.PREV);
         if (obj != null)
-            prev = ((PdfNumber)obj).intValue();
+            prev = ((PdfNumber)obj).longValue();
         // Each xref pair is a position
         // type 0 -> -1, 0
         // type 1 -> offset, 0
@@ -1253,7 +1415,7 @@ public class PdfReader implements PdfViewerPreferences {
         if (objStmMark == null && !partial)
             objStmMark = new HashMap();
         if (objStmToOffset == null && partial)
-            objStmToOffset = new IntHashtable();
+            objStmToOffset = new LongHashtable();
         byte b[] = getStreamBytes(stm, tokens.getFile());
         int bptr = 0;
         ArrayList wa = w.getArrayList();
@@ -1272,7 +1434,7 @@ public class PdfReader implements PdfViewerPreferences {
                     for (int k = 0; k < wc[0]; ++k)
                         type = (type << 8) + (b[bptr++] & 0xff);
                 }
-                int field2 = 0;
+                long field2 = 0;
                 for (int k = 0; k < wc[1]; ++k)
                     field2 = (field2 << 8) + (b[bptr++] & 0xff);
                 int field3 = 0;
@@ -1291,10 +1453,10 @@ public class PdfReader implements PdfViewerPreferences {
                             xref[base] = field3;
                             xref[base + 1] = field2;
                             if (partial) {
-                                objStmToOffset.put(field2, 0);
+                                objStmToOffset.put((int)field2, 0);
                             }
                             else {
-                                Integer on = new Integer(field2);
+                                Integer on = new Integer((int)field2);
                                 IntHashtable seq = (IntHashtable)objStmMark.get(on);
                                 if (seq == null) {
                                     seq = new IntHashtable();
@@ -1323,12 +1485,12 @@ public class PdfReader implements PdfViewerPreferences {
         hybridXref = false;
         newXrefType = false;
         tokens.seek(0);
-        int xr[][] = new int[1024][];
+        long xr[][] = new long[1024][];
         int top = 0;
         trailer = null;
         byte line[] = new byte[64];
         for (;;) {
-            int pos = tokens.getFilePointer();
+            long pos = tokens.getFilePointer();
             if (!tokens.readLineSegment(line))
                 break;
             if (line[0] == 't') {
@@ -1356,23 +1518,22 @@ public class PdfReader implements PdfViewerPreferences {
                 int gen = obj[1];
                 if (num >= xr.length) {
                     int newLength = num * 2;
-                    int xr2[][] = new int[newLength][];
+                    long xr2[][] = new long[newLength][];
                     System.arraycopy(xr, 0, xr2, 0, top);
                     xr = xr2;
                 }
                 if (num >= top)
                     top = num + 1;
                 if (xr[num] == null || gen >= xr[num][1]) {
-                    obj[0] = pos;
-                    xr[num] = obj;
+                    xr[num] = new long[]{pos, gen};
                 }
             }
         }
         if (trailer == null)
             throw new IOException("trailer not found.");
-        xref = new int[top * 2];
+        xref = new long[top * 2];
         for (int k = 0; k < top; ++k) {
-            int obj[] = xr[k];
+            long obj[] = xr[k];
             if (obj != null)
                 xref[k * 2] = obj[0];
         }
@@ -1386,7 +1547,7 @@ public class PdfReader implements PdfViewerPreferences {
                 break;
             if (tokens.getTokenType() != PRTokeniser.TK_NAME)
                 tokens.throwError("Dictionary key is not a name.");
-            PdfName name = new PdfName(tokens.getStringValue(), false);
+            PdfName name = tokens.getName();
             PdfObject obj = readPRObject();
             int type = obj.type();
             if (-type == PRTokeniser.TK_END_DIC)
@@ -1418,7 +1579,7 @@ public class PdfReader implements PdfViewerPreferences {
         switch (type) {
             case PRTokeniser.TK_START_DIC: {
                 PdfDictionary dic = readDictionary();
-                int pos = tokens.getFilePointer();
+                long pos = tokens.getFilePointer();
                 // be careful in the trailer. May not be a "next" token.
                 if (tokens.nextToken() && tokens.getStringValue().equals("stream")) {
                     int ch = tokens.read();
@@ -1447,7 +1608,7 @@ public class PdfReader implements PdfViewerPreferences {
                     strings.add(str);
                 return str;
             case PRTokeniser.TK_NAME:
-                return new PdfName(tokens.getStringValue(), false);
+                return tokens.getName();
             case PRTokeniser.TK_REF:
                 int num = tokens.getReference();
                 PRIndirectReference ref = new PRIndirectReference(this, num, tokens.getGeneration());
@@ -1481,112 +1642,21 @@ public class PdfReader implements PdfViewerPreferences {
      * @return a byte array
      */
     public static byte[] decodePredictor(byte in[], PdfObject dicPar) {
-        if (dicPar == null || !dicPar.isDictionary())
-            return in;
-        PdfDictionary dic = (PdfDictionary)dicPar;
-        PdfObject obj = getPdfObject(dic.get(PdfName.PREDICTOR));
-        if (obj == null || !obj.isNumber())
-            return in;
-        int predictor = ((PdfNumber)obj).intValue();
-        if (predictor < 10)
+        ByteArrayInputStream bin = new ByteArrayInputStream(in);
+        InputStream dataStream = PRStreamDecoder.predictor(bin, dicPar);
+        if (dataStream == bin)
             return in;
-        int width = 1;
-        obj = getPdfObject(dic.get(PdfName.COLUMNS));
-        if (obj != null && obj.isNumber())
-            width = ((PdfNumber)obj).intValue();
-        int colors = 1;
-        obj = getPdfObject(dic.get(PdfName.COLORS));
-        if (obj != null && obj.isNumber())
-            colors = ((PdfNumber)obj).intValue();
-        int bpc = 8;
-        obj = getPdfObject(dic.get(PdfName.BITSPERCOMPONENT));
-        if (obj != null && obj.isNumber())
-            bpc = ((PdfNumber)obj).intValue();
-        DataInputStream dataStream = new DataInputStream(new ByteArrayInputStream(in));
         ByteArrayOutputStream fout = new ByteArrayOutputStream(in.length);
-        int bytesPerPixel = colors * bpc / 8;
-        int bytesPerRow = (colors*width*bpc + 7)/8;
-        byte[] curr = new byte[bytesPerRow];
-        byte[] prior = new byte[bytesPerRow];
-
-        // Decode the (sub)image row-by-row
-        while (true) {
-            // Read the filter type byte and a row of data
-            int filter = 0;
-            try {
-                filter = dataStream.read();
-                if (filter < 0) {
-                    return fout.toByteArray();
-                }
-                dataStream.readFully(curr, 0, bytesPerRow);
-            } catch (Exception e) {
-                return fout.toByteArray();
-            }
-
-            switch (filter) {
-                case 0: //PNG_FILTER_NONE
-                    break;
-                case 1: //PNG_FILTER_SUB
-                    for (int i = bytesPerPixel; i < bytesPerRow; i++) {
-                        curr[i] += curr[i - bytesPerPixel];
-                    }
-                    break;
-                case 2: //PNG_FILTER_UP
-                    for (int i = 0; i < bytesPerRow; i++) {
-                        curr[i] += prior[i];
-                    }
-                    break;
-                case 3: //PNG_FILTER_AVERAGE
-                    for (int i = 0; i < bytesPerPixel; i++) {
-                        curr[i] += prior[i] / 2;
-                    }
-                    for (int i = bytesPerPixel; i < bytesPerRow; i++) {
-                        curr[i] += ((curr[i - bytesPerPixel] & 0xff) + (prior[i] & 0xff))/2;
-                    }
-                    break;
-                case 4: //PNG_FILTER_PAETH
-                    for (int i = 0; i < bytesPerPixel; i++) {
-                        curr[i] += prior[i];
-                    }
-
-                    for (int i = bytesPerPixel; i < bytesPerRow; i++) {
-                        int a = curr[i - bytesPerPixel] & 0xff;
-                        int b = prior[i] & 0xff;
-                        int c = prior[i - bytesPerPixel] & 0xff;
-
-                        int p = a + b - c;
-                        int pa = Math.abs(p - a);
-                        int pb = Math.abs(p - b);
-                        int pc = Math.abs(p - c);
-
-                        int ret;
-
-                        if ((pa <= pb) && (pa <= pc)) {
-                            ret = a;
-                        } else if (pb <= pc) {
-                            ret = b;
-                        } else {
-                            ret = c;
-                        }
-                        curr[i] += (byte)(ret);
-                    }
-                    break;
-                default:
-                    // Error -- uknown filter type
-                    throw new RuntimeException("PNG filter unknown.");
-            }
-            try {
-                fout.write(curr);
-            }
-            catch (IOException ioe) {
-                // Never happens
-            }
-
-            // Swap curr and prior
-            byte[] tmp = prior;
-            prior = curr;
-            curr = tmp;
+        byte buf[] = new byte[4096];
+        try {
+            int n;
+            while ((n = dataStream.read(buf)) >= 0)
+                fout.write(buf, 0, n);
+        }
+        catch (IOException ioe) {
+            // Never happens
         }
+        return fout.toByteArray();
     }
 
     /** A helper to FlateDecode.
@@ -1853,6 +1923,9 @@ public class PdfReader implements PdfViewerPreferences {
      * @param pageNum the page number. 1 is the first
      */
     public void setPageContent(int pageNum, byte content[]) {
+        // the old content is removed, it must not be used by other pages
+        if (!partial)
+            eliminateSharedStreams();
         PdfDictionary page = getPageN(pageNum);
         if (page == null)
             return;
@@ -1874,25 +1947,9 @@ public class PdfReader implements PdfViewerPreferences {
      * @return the stream content
      */
     public static byte[] getStreamBytes(PRStream stream, RandomAccessFileOrArray file) throws IOException {
-        PdfObject filter = getPdfObjectRelease(stream.get(PdfName.FILTER));
         byte[] b = getStreamBytesRaw(stream, file);
-        ArrayList filters = new ArrayList();
-        if (filter != null) {
-            if (filter.isName())
-                filters.add(filter);
-            else if (filter.isArray())
-                filters = ((PdfArray)filter).getArrayList();
-        }
-        ArrayList dp = new ArrayList();
-        PdfObject dpo = getPdfObjectRelease(stream.get(PdfName.DECODEPARMS));
-        if (dpo == null || (!dpo.isDictionary() && !dpo.isArray()))
-            dpo = getPdfObjectRelease(stream.get(PdfName.DP));
-        if (dpo != null) {
-            if (dpo.isDictionary())
-                dp.add(dpo);
-            else if (dpo.isArray())
-                dp = ((PdfArray)dpo).getArrayList();
-        }
+        ArrayList filters = getFilters(stream);
+        ArrayList dp = getDecodeParms(stream);
         String name;
         for (int j = 0; j < filters.size(); ++j) {
             name = ((PdfName)getPdfObjectRelease((PdfObject)filters.get(j))).toString();
@@ -1956,27 +2013,9 @@ public class PdfReader implements PdfViewerPreferences {
             file.seek(stream.getOffset());
             file.readFully(b);
             PdfEncryption decrypt = reader.getDecrypt();
-            if (decrypt != null) {
-                PdfObject filter = getPdfObjectRelease(stream.get(PdfName.FILTER));
-                ArrayList filters = new ArrayList();
-                if (filter != null) {
-                    if (filter.isName())
-                        filters.add(filter);
-                    else if (filter.isArray())
-                        filters = ((PdfArray)filter).getArrayList();
-                }
-                boolean skip = false;
-                for (int k = 0; k < filters.size(); ++k) {
-                    PdfObject obj = getPdfObjectRelease((PdfObject)filters.get(k));
-                    if (obj != null && obj.toString().equals("/Crypt")) {
-                        skip = true;
-                        break;
-                    }
-                }
-                if (!skip) {
-                    decrypt.setHashKey(stream.getObjNum(), stream.getObjGen());
-                    b = decrypt.decryptByteArray(b);
-                }
+            if (decrypt != null && !isCryptFilter(stream)) {
+                decrypt.setHashKey(stream.getObjNum(), stream.getObjGen());
+                b = decrypt.decryptByteArray(b);
             }
         }
         return b;
@@ -1998,7 +2037,138 @@ public class PdfReader implements PdfViewerPreferences {
         }
     }
 
-    /** Eliminates shared streams if they exist. */
+    /** Gets an <CODE>InputStream</CODE> with the content of a stream. The filters
+     * are applied as the data is read from the file, the content is never
+     * entirely in memory. The stream must be closed to release the file.
+     * @param stream the stream
+     * @throws IOException on error or if a filter is not supported
+     * @return the stream content
+     */
+    public static InputStream getStreamInputStream(PRStream stream) throws IOException {
+        ArrayList filters = getFilters(stream);
+        String name;
+        for (int j = 0; j < filters.size(); ++j) {
+            name = ((PdfName)getPdfObjectRelease((PdfObject)filters.get(j))).toString();
+            if (!name.equals("/FlateDecode") && !name.equals("/Fl") && !name.equals("/ASCIIHexDecode")
+                && !name.equals("/AHx") && !name.equals("/ASCII85Decode") && !name.equals("/A85")
+                && !name.equals("/LZWDecode") && !name.equals("/Crypt"))
+                throw new IOException("The filter " + name + " is not supported.");
+        }
+        return getStreamInputStream(stream, null);
+    }
+
+    /** Gets an <CODE>InputStream</CODE> with the content of a stream, decoded
+     * as far as the filters are supported. The filters are applied up to the
+     * first one that is not supported, as <CODE>/DCTDecode</CODE>; the content
+     * is returned still encoded with it and with the filters that follow it.
+     * The stream must be closed to release the file.
+     * @param stream the stream
+     * @param notApplied the names of the filters that were not applied are
+     * added to this list, in the order they must be applied. It can be
+     * <CODE>null</CODE>
+     * @throws IOException on error
+     * @return the stream content
+     */
+    public static InputStream getStreamInputStream(PRStream stream, ArrayList notApplied) throws IOException {
+        ArrayList filters = getFilters(stream);
+        ArrayList dp = getDecodeParms(stream);
+        String name;
+        InputStream in = getStreamInputStreamRaw(stream);
+        for (int j = 0; j < filters.size(); ++j) {
+            name = ((PdfName)getPdfObjectRelease((PdfObject)filters.get(j))).toString();
+            if (name.equals("/FlateDecode") || name.equals("/Fl")) {
+                in = new PRStreamDecoder.FlateInputStream(in);
+                if (j < dp.size())
+                    in = PRStreamDecoder.predictor(in, (PdfObject)dp.get(j));
+            }
+            else if (name.equals("/ASCIIHexDecode") || name.equals("/AHx"))
+                in = new PRStreamDecoder.ASCIIHexInputStream(in);
+            else if (name.equals("/ASCII85Decode") || name.equals("/A85"))
+                in = new PRStreamDecoder.ASCII85InputStream(in);
+            else if (name.equals("/LZWDecode")) {
+                in = new PRStreamDecoder.LZWInputStream(in);
+                if (j < dp.size())
+                    in = PRStreamDecoder.predictor(in, (PdfObject)dp.get(j));
+            }
+            else if (!name.equals("/Crypt")) {
+                if (notApplied != null) {
+                    for (int k = j; k < filters.size(); ++k)
+                        notApplied.add(getPdfObjectRelease((PdfObject)filters.get(k)));
+                }
+                break;
+            }
+        }
+        return in;
+    }
+
+    /** Gets an <CODE>InputStream</CODE> with the content of a stream as it is
+     * without applying any filter. The data is read from the file, and decrypted,
+     * as it is needed. The stream must be closed to release the file.
+     * @param stream the stream
+     * @throws IOException on error
+     * @return the stream content
+     */
+    public static InputStream getStreamInputStreamRaw(PRStream stream) throws IOException {
+        if (stream.getOffset() < 0)
+            return new ByteArrayInputStream(stream.getBytes());
+        PdfReader reader = stream.getReader();
+        StandardDecryption decryptor = null;
+        PdfEncryption decrypt = reader.getDecrypt();
+        if (decrypt != null && !isCryptFilter(stream))
+            decryptor = decrypt.getDecryptor(stream.getObjNum(), stream.getObjGen());
+        RandomAccessFileOrArray rf = reader.getSafeFile();
+        try {
+            rf.reOpen();
+            rf.seek(stream.getOffset());
+        }
+        catch (IOException e) {
+            try{rf.close();}catch(Exception ee){}
+            throw e;
+        }
+        return new PRStreamDecoder.RawInputStream(rf, stream.getLength(), decryptor);
+    }
+
+    private static ArrayList getFilters(PRStream stream) {
+        PdfObject filter = getPdfObjectRelease(stream.get(PdfName.FILTER));
+        ArrayList filters = new ArrayList();
+        if (filter != null) {
+            if (filter.isName())
+                filters.add(filter);
+            else if (filter.isArray())
+                filters = ((PdfArray)filter).getArrayList();
+        }
+        return filters;
+    }
+
+    private static ArrayList getDecodeParms(PRStream stream) {
+        ArrayList dp = new ArrayList();
+        PdfObject dpo = getPdfObjectRelease(stream.get(PdfName.DECODEPARMS));
+        if (dpo == null || (!dpo.isDictionary() && !dpo.isArray()))
+            dpo = getPdfObjectRelease(stream.get(PdfName.DP));
+        if (dpo != null) {
+            if (dpo.isDictionary())
+                dp.add(dpo);
+            else if (dpo.isArray())
+                dp = ((PdfArray)dpo).getArrayList();
+        }
+        return dp;
+    }
+
+    private static boolean isCryptFilter(PRStream stream) {
+        ArrayList filters = getFilters(stream);
+        for (int k = 0; k < filters.size(); ++k) {
+            PdfObject obj = getPdfObjectRelease((PdfObject)filters.get(k));
+            if (obj != null && obj.toString().equals("/Crypt"))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Eliminates shared streams if they exist. It reads every page, so it is
+     * only done by <CODE>setPageContent()</CODE>. Call it before changing the
+     * content streams of the pages in place.
+     */
     public void eliminateSharedStreams() {
         if (!sharedStreams)
             return;
@@ -2094,10 +2264,18 @@ public class PdfReader implements PdfViewerPreferences {
      * Gets the byte address of the last xref table.
      * @return the byte address of the last xref table
      */
-    public int getLastXref() {
+    public long getLastXref() {
         return lastXref;
     }
 
+    /**
+     * Checks if the document was opened in partial mode.
+     * @return <CODE>true</CODE> if the objects are read from the file when needed
+     */
+    boolean isPartial() {
+        return partial;
+    }
+
     /**
      * Gets the number of xref objects.
      * @return the number of xref objects
@@ -2110,7 +2288,7 @@ public class PdfReader implements PdfViewerPreferences {
      * Gets the byte address of the %%EOF marker.
      * @return the byte address of the %%EOF marker
      */
-    public int getEofPos() {
+    public long getEofPos() {
         return eofPos;
     }
 
@@ -2828,7 +3006,7 @@ public class PdfReader implements PdfViewerPreferences {
      * Getter for property fileLength.
      * @return Value of property fileLength.
      */
-    public int getFileLength() {
+    public long getFileLength() {
         return fileLength;
     }
 
@@ -2840,6 +3018,9 @@ public class PdfReader implements PdfViewerPreferences {
         return hybridXref;
     }
 
+    /** The deepest page tree followed by the counts of its nodes. */
+    static final int MAX_PAGE_TREE_DEPTH = 256;
+
     static class PageRefs {
         private PdfReader reader;
         private IntHashtable refsp;
@@ -2847,17 +3028,40 @@ public class PdfReader implements PdfViewerPreferences {
         private ArrayList pageInh;
         private int lastPageRead = -1;
         private int sizep;
+        /** The top of the page tree as read by <CODE>getSinglePage()</CODE>. */
+        private PageNode root;
+
+        /**
+         * A node of the page tree with the number of pages under each kid, so
+         * that a page is found without reading the other branches. The nodes
+         * under it are read when a page is asked for in them.
+         */
+        private static class PageNode {
+            /** The kids of the node. */
+            PRIndirectReference kids[];
+            /** The number of pages up to and including each kid. */
+            int ends[];
+            /** <CODE>true</CODE> for the kids that are nodes and not pages. */
+            boolean isNode[];
+            /** The nodes already read, by kid. */
+            PageNode nodes[];
+            /** The attributes inherited by the kids. */
+            PdfDictionary inherited;
+
+            int count() {
+                return ends.length == 0 ? 0 : ends[ends.length - 1];
+            }
+        }
 
         private PageRefs(PdfReader reader) throws IOException {
             this.reader = reader;
-            if (reader.partial) {
+            if (reader.partial)
                 refsp = new IntHashtable();
-                PdfNumber npages = (PdfNumber)PdfReader.getPdfObjectRelease(reader.rootPages.get(PdfName.COUNT));
-                sizep = npages.intValue();
-            }
-            else {
-                readPages();
-            }
+            // the pages are found from the /Count of the nodes when asked for,
+            // the whole tree is read only if the counts are wrong
+            PageNode top = getRoot();
+            if (top != null)
+                sizep = top.count();
         }
 
         PageRefs(PageRefs other, PdfReader reader) {
@@ -2869,7 +3073,7 @@ public class PdfReader implements PdfViewerPreferences {
                     refsn.set(k, duplicatePdfObject((PdfObject)refsn.get(k), reader));
                 }
             }
-            else
+            else if (other.refsp != null)
                 this.refsp = (IntHashtable)other.refsp.clone();
         }
 
@@ -2884,6 +3088,7 @@ public class PdfReader implements PdfViewerPreferences {
             if (refsn != null)
                 return;
             refsp = null;
+            root = null;
             refsn = new ArrayList();
             pageInh = new ArrayList();
             iteratePages((PRIndirectReference)reader.catalog.get(PdfName.PAGES));
@@ -2936,10 +3141,25 @@ public class PdfReader implements PdfViewerPreferences {
                     return null;
                 if (refsn != null)
                     return (PRIndirectReference)refsn.get(pageNum);
+                else if (refsp == null) {
+                    // all the objects are in memory, nothing to release
+                    PRIndirectReference ref = getSinglePage(pageNum);
+                    if (ref == null)
+                        return getFlatPage(pageNum);
+                    return ref;
+                }
                 else {
                     int n = refsp.get(pageNum);
+                    if (n != 0 && reader.xrefObj.get(n) == null) {
+                        // the page was released by the resident object limit and
+                        // the inherited attributes must be merged again
+                        refsp.remove(pageNum);
+                        n = 0;
+                    }
                     if (n == 0) {
                         PRIndirectReference ref = getSinglePage(pageNum);
+                        if (ref == null)
+                            return getFlatPage(pageNum);
                         if (reader.lastXrefPartial == -1)
                             lastPageRead = -1;
                         else
@@ -2988,12 +3208,17 @@ public class PdfReader implements PdfViewerPreferences {
 
         void insertPage(int pageNum, PRIndirectReference ref) {
             --pageNum;
+            // the page was added to the tree by the caller
+            root = null;
             if (refsn != null) {
                 if (pageNum >= refsn.size())
                     refsn.add(ref);
                 else
                     refsn.add(pageNum, ref);
             }
+            else if (refsp == null) {
+                ++sizep;
+            }
             else {
                 ++sizep;
                 lastPageRead = -1;
@@ -3065,39 +3290,162 @@ public class PdfReader implements PdfViewerPreferences {
             }
         }
 
+        /**
+         * Gets a page from the page tree, reading only the nodes in the way.
+         * @param n the page number. 0 is the first
+         * @return the page reference or <CODE>null</CODE> if the tree is malformed
+         * and must be read with <CODE>readPages()</CODE>
+         */
         protected PRIndirectReference getSinglePage(int n) {
-            PdfDictionary acc = new PdfDictionary();
-            PdfDictionary top = reader.rootPages;
+            PageNode node = getRoot();
+            if (node == null)
+                return null;
             int base = 0;
-            while (true) {
-                for (int k = 0; k < pageInhCandidates.length; ++k) {
-                    PdfObject obj = top.get(pageInhCandidates[k]);
-                    if (obj != null)
-                        acc.put(pageInhCandidates[k], obj);
-                }
-                PdfArray kids = (PdfArray)PdfReader.getPdfObjectRelease(top.get(PdfName.KIDS));
-                for (Iterator it = kids.listIterator(); it.hasNext();) {
-                    PRIndirectReference ref = (PRIndirectReference)it.next();
-                    PdfDictionary dic = (PdfDictionary)getPdfObject(ref);
-                    int last = reader.lastXrefPartial;
-                    PdfObject count = getPdfObjectRelease(dic.get(PdfName.COUNT));
+            for (int depth = 0; depth < MAX_PAGE_TREE_DEPTH; ++depth) {
+                int ends[] = node.ends;
+                int target = n - base;
+                int lo = 0;
+                int hi = ends.length - 1;
+                if (hi < 0 || target >= ends[hi])
+                    return null;
+                // the first kid with more pages up to it than the target
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (ends[mid] > target)
+                        hi = mid;
+                    else
+                        lo = mid + 1;
+                }
+                if (lo > 0)
+                    base += ends[lo - 1];
+                PRIndirectReference ref = node.kids[lo];
+                if (!node.isNode[lo]) {
+                    PdfDictionary page = (PdfDictionary)getPdfObject(ref);
+                    page.put(PdfName.TYPE, PdfName.PAGE);
+                    page.mergeDifferent(node.inherited);
+                    if (page.get(PdfName.MEDIABOX) == null) {
+                        PdfArray arr = new PdfArray(new float[]{0,0,PageSize.LETTER.right(),PageSize.LETTER.top()});
+                        page.put(PdfName.MEDIABOX, arr);
+                    }
+                    return ref;
+                }
+                PageNode child = node.nodes[lo];
+                if (child == null) {
+                    PdfDictionary dic = (PdfDictionary)getPdfObjectRelease(ref);
+                    child = readNode(dic, node.inherited);
+                    if (child == null || child.count() != ends[lo] - (lo > 0 ? ends[lo - 1] : 0)) {
+                        root = null;
+                        return null;
+                    }
+                    node.nodes[lo] = child;
+                }
+                node = child;
+            }
+            return null;
+        }
+
+        /**
+         * Gets the top node of the page tree, reading it if needed. If the tree
+         * can't be read by the counts of its nodes, or the /Count of the top node
+         * isn't the sum of the counts of its kids, all the pages are read with
+         * <CODE>readPages()</CODE>.
+         * @return the top node or <CODE>null</CODE> if the tree is malformed
+         */
+        private PageNode getRoot() {
+            if (root != null)
+                return root;
+            if (refsn != null)
+                return null;
+            root = readNode(reader.rootPages, null);
+            if (root != null) {
+                PdfObject count = getPdfObjectRelease(reader.rootPages.get(PdfName.COUNT));
+                if (count == null || !count.isNumber() || ((PdfNumber)count).intValue() != root.count())
+                    root = null;
+            }
+            if (root == null) {
+                try {
+                    readPages();
+                }
+                catch (IOException e) {
+                    throw new ExceptionConverter(e);
+                }
+            }
+            return root;
+        }
+
+        /**
+         * Reads a node of the page tree and the /Count of its kids.
+         * @param dic the node
+         * @param inherited the attributes inherited from the parent or <CODE>null</CODE>
+         * @return the node or <CODE>null</CODE> if it's malformed
+         */
+        private PageNode readNode(PdfDictionary dic, PdfDictionary inherited) {
+            if (dic == null)
+                return null;
+            PdfObject obj = getPdfObjectRelease(dic.get(PdfName.KIDS));
+            if (obj == null || !obj.isArray())
+                return null;
+            dic.put(PdfName.TYPE, PdfName.PAGES);
+            PageNode node = new PageNode();
+            node.inherited = new PdfDictionary();
+            if (inherited != null)
+                node.inherited.putAll(inherited);
+            for (int k = 0; k < pageInhCandidates.length; ++k) {
+                PdfObject inh = dic.get(pageInhCandidates[k]);
+                if (inh != null)
+                    node.inherited.put(pageInhCandidates[k], inh);
+            }
+            ArrayList kids = ((PdfArray)obj).getArrayList();
+            int size = kids.size();
+            node.kids = new PRIndirectReference[size];
+            node.ends = new int[size];
+            node.isNode = new boolean[size];
+            node.nodes = new PageNode[size];
+            int total = 0;
+            for (int k = 0; k < size; ++k) {
+                PdfObject kid = (PdfObject)kids.get(k);
+                if (!kid.isIndirect())
+                    return null;
+                PRIndirectReference ref = (PRIndirectReference)kid;
+                PdfObject kidObj = getPdfObject(ref);
+                if (kidObj == null || !kidObj.isDictionary()) {
+                    reader.releaseLastXrefPartial();
+                    return null;
+                }
+                PdfDictionary kidDic = (PdfDictionary)kidObj;
+                int last = reader.lastXrefPartial;
+                int acn = 1;
+                if (kidDic.get(PdfName.KIDS) != null) {
+                    PdfObject count = getPdfObjectRelease(kidDic.get(PdfName.COUNT));
                     reader.lastXrefPartial = last;
-                    int acn = 1;
-                    if (count != null && count.type() == PdfObject.NUMBER)
-                        acn = ((PdfNumber)count).intValue();
-                    if (n < base + acn) {
-                        if (count == null) {
-                            dic.mergeDifferent(acc);
-                            return ref;
-                        }
+                    if (count == null || !count.isNumber() || ((PdfNumber)count).intValue() < 0) {
                         reader.releaseLastXrefPartial();
-                        top = dic;
-                        break;
+                        return null;
                     }
-                    reader.releaseLastXrefPartial();
-                    base += acn;
+                    acn = ((PdfNumber)count).intValue();
+                    node.isNode[k] = true;
                 }
+                reader.releaseLastXrefPartial();
+                node.kids[k] = ref;
+                total += acn;
+                node.ends[k] = total;
             }
+            return node;
+        }
+
+        /**
+         * Reads all the pages with <CODE>readPages()</CODE>, when the page tree
+         * couldn't be followed by the counts of its nodes, and gets a page.
+         * @param pageNum the page number. 0 is the first
+         * @return the page reference or <CODE>null</CODE> if there's no such page
+         * @throws IOException on error
+         */
+        private PRIndirectReference getFlatPage(int pageNum) throws IOException {
+            readPages();
+            lastPageRead = -1;
+            if (pageNum >= refsn.size())
+                return null;
+            return (PRIndirectReference)refsn.get(pageNum);
         }
 
         private void selectPages(List pagesToKeep) {
@@ -3147,6 +3495,7 @@ public class PdfReader implements PdfViewerPreferences {
             topPages.put(PdfName.KIDS, kids);
             refsp = null;
             refsn = newPageRefs;
+            root = null;
         }
     }
     
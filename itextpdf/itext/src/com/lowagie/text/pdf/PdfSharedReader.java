@@ -0,0 +1,148 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A parsed document shared by several threads, to fill or stamp the same
+ * template many times without reading it again.
+ * <p>
+ * Each call to <CODE>getReader()</CODE> returns a new <CODE>PdfReader</CODE>
+ * that duplicates the objects of the shared document only when they are asked
+ * for, so that <CODE>PdfStamper</CODE> and <CODE>AcroFields</CODE> change
+ * their own copies. The objects never asked for, usually the fonts, the images
+ * and the page contents, are written by <CODE>PdfStamper</CODE> from the shared
+ * document. The readers can be used by different threads at the same time, each
+ * reader by a single thread.
+ * <pre>
+ * PdfSharedReader template = new PdfSharedReader(new PdfReader(pdf));
+ * // in each thread
+ * PdfStamper stamper = new PdfStamper(template.getReader(), out);
+ * stamper.getAcroFields().setField("name", name);
+ * stamper.close();
+ * </pre>
+ * The <CODE>PdfReader</CODE> given to the constructor belongs to this object
+ * and must not be used anymore. Encrypted documents are supported but all
+ * their objects are duplicated when written.
+ */
+public class PdfSharedReader {
+    
+    /** The shared document, never changed. */
+    final PdfReader reader;
+    
+    /**
+     * Shares a document.
+     * @param reader the document. It can't be opened in partial mode
+     * and must not be used after this call
+     */
+    public PdfSharedReader(PdfReader reader) {
+        if (reader.isPartial())
+            throw new IllegalArgumentException("A document read in partial mode can't be shared.");
+        // the values computed when asked for are computed now, to have
+        // nothing changing in the shared objects
+        reader.eliminateSharedStreams();
+        for (int k = 1; k < reader.getXrefSize(); ++k)
+            prepare(reader.getPdfObject(k));
+        prepare(reader.getTrailer());
+        this.reader = reader;
+    }
+    
+    /**
+     * Reads and shares a document.
+     * @param pdf the document
+     * @throws IOException on error
+     */
+    public PdfSharedReader(byte pdf[]) throws IOException {
+        this(new PdfReader(pdf));
+    }
+    
+    /**
+     * Gets a new reader of the shared document. It can be called by several
+     * threads at the same time.
+     * @return a new reader
+     */
+    public PdfReader getReader() {
+        return new PdfReader(this);
+    }
+    
+    /**
+     * Gets the number of pages of the shared document.
+     * @return the number of pages
+     */
+    public int getNumberOfPages() {
+        return reader.getNumberOfPages();
+    }
+    
+    private static void prepare(PdfObject obj) {
+        if (obj == null)
+            return;
+        switch (obj.type()) {
+            case PdfObject.STRING:
+                obj.getBytes();
+                break;
+            case PdfObject.ARRAY: {
+                ArrayList list = ((PdfArray)obj).getArrayList();
+                for (int k = 0; k < list.size(); ++k)
+                    prepare((PdfObject)list.get(k));
+                break;
+            }
+            case PdfObject.DICTIONARY:
+            case PdfObject.STREAM: {
+                PdfDictionary dic = (PdfDictionary)obj;
+                for (Iterator it = dic.getKeys().iterator(); it.hasNext();)
+                    prepare(dic.get((PdfName)it.next()));
+                break;
+            }
+        }
+    }
+}
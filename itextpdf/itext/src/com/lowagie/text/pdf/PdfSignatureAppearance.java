@@ -134,10 +134,13 @@ public class PdfSignatureAppearance {
     private PdfStamper stamper;
     private boolean preClosed = false;
     private PdfSigGenericPKCS sigStandard;
-    private int range[];
+    private long range[];
     private RandomAccessFile raf;
     private byte bout[];
     private int boutLen;
+    /** The position in the document of the first byte in <CODE>bout</CODE>. */
+    private long boutOffset;
+    private OutputStreamDigest digestout;
     private byte externalDigest[];
     private byte externalRSAdata[];
     private String digestEncryptionAlgorithm;
@@ -804,6 +807,27 @@ public class PdfSignatureAppearance {
     void setTempFile(java.io.File tempFile) {
         this.tempFile = tempFile;
     }
+    
+    /**
+     * Signs the document while it is written. The signature dictionary must
+     * already have the signing information and its signer must be the one that
+     * digests the stream.
+     * @param digestout the stream that digests the document
+     * @param sigStandard the signature dictionary
+     */
+    void setDigestout(OutputStreamDigest digestout, PdfSigGenericPKCS sigStandard) {
+        this.digestout = digestout;
+        this.sigStandard = sigStandard;
+    }
+    
+    /**
+     * Checks if the document is signed while it is written, without keeping
+     * it in memory or in a temporary file.
+     * @return <CODE>true</CODE> if the document is signed while it is written
+     */
+    public boolean isStreamingSignature() {
+        return digestout != null;
+    }
 
     /**
      * Gets a new signature fied name that doesn't clash with any existing name.
@@ -865,6 +889,8 @@ public class PdfSignatureAppearance {
     public void preClose(HashMap exclusionSizes) throws IOException, DocumentException {
         if (preClosed)
             throw new DocumentException("Document already pre closed.");
+        if (digestout != null && (cryptoDictionary != null || externalDigest != null))
+            throw new DocumentException("External signatures can't be used when signing while writing.");
         preClosed = true;
         AcroFields af = writer.getAcroFields();
         String name = getFieldName();
@@ -907,17 +933,14 @@ public class PdfSignatureAppearance {
             writer.addAnnotation(sigField, pagen);
         }
 
+        // the signature dictionary must go straight to the output to know its position
+        writer.setParallelCompression(0);
         exclusionLocations = new HashMap();
         if (cryptoDictionary == null) {
-            if (PdfName.ADOBE_PPKLITE.equals(getFilter()))
-                sigStandard = new PdfSigGenericPKCS.PPKLite(getProvider());
-            else if (PdfName.ADOBE_PPKMS.equals(getFilter()))
-                sigStandard = new PdfSigGenericPKCS.PPKMS(getProvider());
-            else if (PdfName.VERISIGN_PPKVS.equals(getFilter()))
-                sigStandard = new PdfSigGenericPKCS.VeriSign(getProvider());
-            else
-                throw new IllegalArgumentException("Unknown filter: " + getFilter());
-            sigStandard.setExternalDigest(externalDigest, externalRSAdata, digestEncryptionAlgorithm);
+            if (digestout == null) {
+                sigStandard = createSigStandard(getFilter(), getProvider());
+                sigStandard.setExternalDigest(externalDigest, externalRSAdata, digestEncryptionAlgorithm);
+            }
             if (getReason() != null)
                 sigStandard.setReason(getReason());
             if (getLocation() != null)
@@ -925,7 +948,8 @@ public class PdfSignatureAppearance {
             if (getContact() != null)
                 sigStandard.setContact(getContact());
             sigStandard.put(PdfName.M, new PdfDate(getSignDate()));
-            sigStandard.setSignInfo(getPrivKey(), getCertChain(), getCrlList());
+            if (digestout == null)
+                sigStandard.setSignInfo(getPrivKey(), getCertChain(), getCrlList());
             PdfString contents = (PdfString)sigStandard.get(PdfName.CONTENTS);
             PdfLiteral lit = new PdfLiteral((contents.toString().length() + (PdfName.ADOBE_PPKLITE.equals(getFilter())?0:64)) * 2 + 2);
             exclusionLocations.put(PdfName.CONTENTS, lit);
@@ -937,7 +961,10 @@ public class PdfSignatureAppearance {
                 addDocMDP(sigStandard);
             if (signatureEvent != null)
                 signatureEvent.getSignatureDictionary(sigStandard);
-            writer.addToBody(sigStandard, refSig, false);
+            if (digestout == null)
+                writer.addToBody(sigStandard, refSig, false);
+            else
+                writer.setSignatureDictionary(sigStandard, refSig, digestout);
         }
         else {
             PdfLiteral lit = new PdfLiteral(80);
@@ -965,13 +992,13 @@ public class PdfSignatureAppearance {
         }
         writer.close(stamper.getMoreInfo());
         
-        range = new int[exclusionLocations.size() * 2];
-        int byteRangePosition = ((PdfLiteral)exclusionLocations.get(PdfName.BYTERANGE)).getPosition();
+        range = new long[exclusionLocations.size() * 2];
+        long byteRangePosition = ((PdfLiteral)exclusionLocations.get(PdfName.BYTERANGE)).getPosition();
         exclusionLocations.remove(PdfName.BYTERANGE);
         int idx = 1;
         for (Iterator it = exclusionLocations.values().iterator(); it.hasNext();) {
             PdfLiteral lit = (PdfLiteral)it.next();
-            int n = lit.getPosition();
+            long n = lit.getPosition();
             range[idx++] = n;
             range[idx++] = lit.getPosLength() + n;
         }
@@ -980,20 +1007,28 @@ public class PdfSignatureAppearance {
             range[k] -= range[k - 1];
         
         if (tempFile == null) {
-            bout = sigout.getBuffer();
-            boutLen = sigout.size();
-            range[range.length - 1] = boutLen - range[range.length - 2];
+            if (digestout == null) {
+                bout = sigout.getBuffer();
+                boutLen = sigout.size();
+            }
+            else {
+                // only the end of the document from the signature dictionary is in memory
+                bout = digestout.getTail().getBuffer();
+                boutLen = digestout.getTail().size();
+                boutOffset = digestout.getHoldPosition();
+            }
+            range[range.length - 1] = boutOffset + boutLen - range[range.length - 2];
             ByteBuffer bf = new ByteBuffer();
             bf.append('[');
             for (int k = 0; k < range.length; ++k)
                 bf.append(range[k]).append(' ');
             bf.append(']');
-            System.arraycopy(bf.getBuffer(), 0, bout, byteRangePosition, bf.size());
+            System.arraycopy(bf.getBuffer(), 0, bout, (int)(byteRangePosition - boutOffset), bf.size());
         }
         else {
             try {
                 raf = new RandomAccessFile(tempFile, "rw");
-                int boutLen = (int)raf.length();
+                long boutLen = raf.length();
                 range[range.length - 1] = boutLen - range[range.length - 2];
                 ByteBuffer bf = new ByteBuffer();
                 bf.append('[');
@@ -1038,7 +1073,7 @@ public class PdfSignatureAppearance {
                 if (bf.size() > lit.getPosLength())
                     throw new IllegalArgumentException("The key " + key.toString() + " is too big. Is " + bf.size() + ", reserved " + lit.getPosLength());
                 if (tempFile == null)
-                    System.arraycopy(bf.getBuffer(), 0, bout, lit.getPosition(), bf.size());
+                    System.arraycopy(bf.getBuffer(), 0, bout, (int)(lit.getPosition() - boutOffset), bf.size());
                 else {
                     raf.seek(lit.getPosition());
                     raf.write(bf.getBuffer(), 0, bf.size());
@@ -1093,10 +1128,37 @@ public class PdfSignatureAppearance {
      * Gets the document bytes that are hashable when using external signatures. The general sequence is:
      * preClose(), getRangeStream() and close().
      * <p>
+     * When signing while writing only the bytes from the signature dictionary
+     * are returned, the ones before it were already given to the signer.
      * @return the document bytes that are hashable
      */    
     public InputStream getRangeStream() {
-        return new PdfSignatureAppearance.RangeStream(raf, bout, range);
+        if (digestout == null)
+            return new PdfSignatureAppearance.RangeStream(raf, bout, range);
+        long tailRange[] = new long[range.length];
+        tailRange[1] = range[1] - boutOffset;
+        for (int k = 2; k < range.length; k += 2) {
+            tailRange[k] = range[k] - boutOffset;
+            tailRange[k + 1] = range[k + 1];
+        }
+        return new PdfSignatureAppearance.RangeStream(null, bout, tailRange);
+    }
+    
+    /**
+     * Creates the signature dictionary of one of the standard filters.
+     * @param filter the filter, SELF_SIGNED, VERISIGN_SIGNED or WINCER_SIGNED
+     * @param provider the crypto provider or <CODE>null</CODE> for the default provider
+     * @return the signature dictionary
+     */
+    static PdfSigGenericPKCS createSigStandard(PdfName filter, String provider) {
+        if (PdfName.ADOBE_PPKLITE.equals(filter))
+            return new PdfSigGenericPKCS.PPKLite(provider);
+        else if (PdfName.ADOBE_PPKMS.equals(filter))
+            return new PdfSigGenericPKCS.PPKMS(provider);
+        else if (PdfName.VERISIGN_PPKVS.equals(filter))
+            return new PdfSigGenericPKCS.VeriSign(provider);
+        else
+            throw new IllegalArgumentException("Unknown filter: " + filter);
     }
     
     /**
@@ -1356,10 +1418,10 @@ public class PdfSignatureAppearance {
         private byte b[] = new byte[1];
         private RandomAccessFile raf;
         private byte bout[];
-        private int range[];
-        private int rangePosition = 0;
+        private long range[];
+        private long rangePosition = 0;
         
-        private RangeStream(RandomAccessFile raf, byte bout[], int range[]) {
+        private RangeStream(RandomAccessFile raf, byte bout[], long range[]) {
             this.raf = raf;
             this.bout = bout;
             this.range = range;
@@ -1391,14 +1453,14 @@ public class PdfSignatureAppearance {
                 return -1;
             }
             for (int k = 0; k < range.length; k += 2) {
-                int start = range[k];
-                int end = start + range[k + 1];
+                long start = range[k];
+                long end = start + range[k + 1];
                 if (rangePosition < start)
                     rangePosition = start;
                 if (rangePosition >= start && rangePosition < end) {
-                    int lenf = Math.min(len, end - rangePosition);
+                    int lenf = (int)Math.min(len, end - rangePosition);
                     if (raf == null)
-                        System.arraycopy(bout, rangePosition, b, off, lenf);
+                        System.arraycopy(bout, (int)rangePosition, b, off, lenf);
                     else {
                         raf.seek(rangePosition);
                         raf.readFully(b, off, lenf);
@@ -0,0 +1,299 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.ExceptionConverter;
+
+/**
+ * A <CODE>PdfCopy</CODE> that writes identical resources only once.
+ * <p>
+ * <CODE>PdfCopy</CODE> only knows that two references are the same object
+ * when they come from the same reader. When many documents made from the
+ * same template are concatenated, each one brings its own copy of the same
+ * fonts, images and form XObjects. This class computes a digest of the
+ * streams and of the font, font descriptor, encoding, pattern and graphic
+ * state dictionaries, including everything they reference, and reuses the
+ * object already written when the digest matches.
+ * <p>
+ * The pages, annotations and fields are never shared. Objects nested deeper
+ * than <CODE>MAX_DEPTH</CODE> or in a reference cycle are copied as usual.
+ */
+public class PdfSmartCopy extends PdfCopy {
+    
+    /** The maximum nesting of references followed to compute a digest. */
+    public static final int MAX_DEPTH = 20;
+    
+    /** the objects already written, keyed by the digest of their content */
+    private HashMap shared = new HashMap();
+    /** the digests of the objects of each reader, keyed by <CODE>RefKey</CODE> */
+    private HashMap digestMap = new HashMap();
+    /**
+     * the digests of the objects of the current reader, or the highest level
+     * as an <CODE>Integer</CODE> for the objects whose digest failed
+     */
+    private HashMap digests;
+    /** the references whose digest is being computed, to stop at a cycle */
+    private HashSet digesting = new HashSet();
+    private MessageDigest md5;
+    
+    /**
+     * Constructor
+     * @param document
+     * @param os outputstream
+     * @throws DocumentException on error
+     */
+    public PdfSmartCopy(Document document, OutputStream os) throws DocumentException {
+        super(document, os);
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        }
+        catch (Exception e) {
+            throw new ExceptionConverter(e);
+        }
+    }
+    
+    /**
+     * Translates a PRIndirectReference to a PdfIndirectReference, reusing
+     * an object already written if it has the same content.
+     */
+    protected PdfIndirectReference copyIndirect(PRIndirectReference in) throws IOException, BadPdfFormatException {
+        RefKey key = new RefKey(in);
+        if (indirects.get(key) != null)
+            return super.copyIndirect(in);
+        PdfObject srcObj = PdfReader.getPdfObjectRelease(in);
+        if (!isShareable(srcObj))
+            return super.copyIndirect(in);
+        ByteStore content = null;
+        byte digest[] = digest(in, MAX_DEPTH + 1);
+        if (digest != null) {
+            content = new ByteStore(digest);
+            PdfIndirectReference ref = (PdfIndirectReference)shared.get(content);
+            if (ref != null) {
+                IndirectReferences iRef = new IndirectReferences(ref);
+                iRef.setCopied();
+                indirects.put(key, iRef);
+                return ref;
+            }
+        }
+        PdfIndirectReference theRef = super.copyIndirect(in);
+        if (content != null)
+            shared.put(content, theRef);
+        return theRef;
+    }
+    
+    protected void setFromReader(PdfReader reader) {
+        super.setFromReader(reader);
+        digests = (HashMap)digestMap.get(reader);
+        if (digests == null) {
+            digests = new HashMap();
+            digestMap.put(reader, digests);
+        }
+    }
+    
+    public void freeReader(PdfReader reader) throws IOException {
+        digestMap.remove(reader);
+        super.freeReader(reader);
+    }
+    
+    /**
+     * Checks if an object can be used in place of an identical one
+     * from another document.
+     * @param obj the object
+     * @return <CODE>true</CODE> if the object can be shared
+     */
+    protected boolean isShareable(PdfObject obj) {
+        if (obj == null)
+            return false;
+        if (obj.isStream())
+            return true;
+        if (!obj.isDictionary())
+            return false;
+        PdfObject type = PdfReader.getPdfObjectRelease(((PdfDictionary)obj).get(PdfName.TYPE));
+        return PdfName.FONT.equals(type) || PdfName.FONTDESCRIPTOR.equals(type)
+            || PdfName.ENCODING.equals(type) || PdfName.PATTERN.equals(type)
+            || PdfName.EXTGSTATE.equals(type);
+    }
+    
+    /**
+     * Computes the digest of an object and of all the objects it references.
+     * Indirect references are replaced by the digest of the object they point to,
+     * so the result doesn't depend on the object numbers of the reader.
+     * @param obj the object
+     * @param level the number of references that can still be followed
+     * @return the digest or <CODE>null</CODE> if the object is too deep
+     * @throws IOException on error
+     */
+    private byte[] digest(PdfObject obj, int level) throws IOException {
+        ByteBuffer bb = new ByteBuffer();
+        if (!serObject(obj, level, bb))
+            return null;
+        if (obj.isStream()) {
+            bb.append("$B");
+            bb.append(md5.digest(PdfReader.getStreamBytesRaw((PRStream)obj)));
+        }
+        return md5.digest(bb.toByteArray());
+    }
+    
+    /**
+     * Computes the digest of an indirect object, or takes it from the digests
+     * already computed. A failure is also kept, with the level it happened at,
+     * so that each object is only followed once for each level.
+     * @param ref the reference
+     * @param level the number of references that can still be followed
+     * @return the digest or <CODE>null</CODE> if the object is too deep or in a cycle
+     * @throws IOException on error
+     */
+    private byte[] digest(PRIndirectReference ref, int level) throws IOException {
+        if (level <= 0)
+            return null;
+        RefKey key = new RefKey(ref);
+        Object known = digests.get(key);
+        if (known instanceof byte[])
+            return (byte[])known;
+        if (known != null && level <= ((Integer)known).intValue())
+            return null;
+        if (digesting.contains(key))
+            return null;
+        PdfObject target = PdfReader.getPdfObjectRelease(ref);
+        byte digest[];
+        if (target == null)
+            digest = new byte[0];
+        else {
+            digesting.add(key);
+            try {
+                digest = digest(target, level - 1);
+            }
+            finally {
+                digesting.remove(key);
+            }
+        }
+        if (digest == null)
+            digests.put(key, new Integer(level));
+        else
+            digests.put(key, digest);
+        return digest;
+    }
+    
+    private boolean serObject(PdfObject obj, int level, ByteBuffer bb) throws IOException {
+        if (obj == null) {
+            bb.append("$Lnull");
+            return true;
+        }
+        switch (obj.type()) {
+            case PdfObject.INDIRECT: {
+                byte digest[] = digest((PRIndirectReference)obj, level);
+                if (digest == null)
+                    return false;
+                bb.append("$R").append(digest);
+                return true;
+            }
+            case PdfObject.STREAM:
+            case PdfObject.DICTIONARY: {
+                PdfDictionary dic = (PdfDictionary)obj;
+                bb.append(obj.isStream() ? "$S" : "$D");
+                Object keys[] = dic.getKeys().toArray();
+                Arrays.sort(keys);
+                for (int k = 0; k < keys.length; ++k) {
+                    bb.append(((PdfName)keys[k]).getBytes());
+                    if (!serObject(dic.get((PdfName)keys[k]), level, bb))
+                        return false;
+                }
+                bb.append("$d");
+                return true;
+            }
+            case PdfObject.ARRAY: {
+                bb.append("$A");
+                for (Iterator it = ((PdfArray)obj).getArrayList().iterator(); it.hasNext();) {
+                    if (!serObject((PdfObject)it.next(), level, bb))
+                        return false;
+                }
+                bb.append("$a");
+                return true;
+            }
+            case PdfObject.STRING:
+                bb.append("$T").append(((PdfString)obj).getBytes());
+                return true;
+            default:
+                bb.append("$L").append(obj.toString());
+                return true;
+        }
+    }
+    
+    /** A digest usable as a <CODE>HashMap</CODE> key. */
+    static class ByteStore {
+        private byte b[];
+        private int hash;
+        
+        ByteStore(byte b[]) {
+            this.b = b;
+            for (int k = 0; k < b.length; ++k)
+                hash = hash * 31 + b[k];
+        }
+        
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ByteStore))
+                return false;
+            return Arrays.equals(b, ((ByteStore)obj).b);
+        }
+        
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+
+/**
+ * Splits a document in parts, each part a new document with some of its pages.
+ * <p>
+ * The document is parsed once and shared with a <CODE>PdfSharedReader</CODE>.
+ * Each part is copied with <CODE>PdfCopy</CODE> from its own reader of the
+ * shared document, that only duplicates the objects of the pages of the part
+ * and is dropped when the part is written, so that many parts can be written
+ * at the same time with a memory that doesn't grow with the number of parts.
+ * The parts can be extracted one by one with <CODE>extract(List, OutputStream)</CODE>
+ * by any number of threads at once, or in a batch with
+ * <CODE>split(Iterator, DocumentTarget, int)</CODE>.
+ * <pre>
+ * PdfSplitter splitter = new PdfSplitter(new PdfReader("statements.pdf"));
+ * splitter.split(ranges.iterator(), new PdfSplitter.DocumentTarget() {
+ *     public OutputStream getOutputStream(int index, List pages) throws IOException {
+ *         return new FileOutputStream("customer" + index + ".pdf");
+ *     }
+ * }, 4);
+ * </pre>
+ */
+public class PdfSplitter {
+    
+    /** Gives the destination of each part. */
+    public interface DocumentTarget {
+        /**
+         * Gets the stream where a part is written. The stream is closed when
+         * the part is complete. It may be called by several threads at once.
+         * @param index the position of the part in the batch, the first is 0
+         * @param pages the pages of the part as <CODE>Integer</CODE>, the first is 1
+         * @return the stream to write the part to
+         * @throws IOException on error
+         */
+        OutputStream getOutputStream(int index, List pages) throws IOException;
+    }
+    
+    private PdfSharedReader source;
+    private boolean fullCompression = false;
+    
+    /**
+     * Creates a splitter for a document.
+     * @param source the document
+     */
+    public PdfSplitter(PdfSharedReader source) {
+        this.source = source;
+    }
+    
+    /**
+     * Creates a splitter for a document. The reader belongs to this object and
+     * must not be used anymore.
+     * @param reader the document
+     */
+    public PdfSplitter(PdfReader reader) {
+        this(new PdfSharedReader(reader));
+    }
+    
+    /**
+     * Gets the shared document.
+     * @return the shared document
+     */
+    public PdfSharedReader getSource() {
+        return source;
+    }
+    
+    /**
+     * Gets the number of pages of the document.
+     * @return the number of pages
+     */
+    public int getNumberOfPages() {
+        return source.getNumberOfPages();
+    }
+    
+    /**
+     * Sets whether the parts are written with full compression, see
+     * <CODE>PdfWriter.setFullCompression()</CODE>.
+     * @param fullCompression <CODE>true</CODE> to use full compression
+     */
+    public void setFullCompression(boolean fullCompression) {
+        this.fullCompression = fullCompression;
+    }
+    
+    /**
+     * Gets whether the parts are written with full compression.
+     * @return <CODE>true</CODE> if full compression is used
+     */
+    public boolean isFullCompression() {
+        return fullCompression;
+    }
+    
+    /**
+     * Writes a part. It can be called by several threads at once.
+     * @param pages the pages of the part as <CODE>Integer</CODE>, the first is 1.
+     * The pages are written in this order
+     * @param os the stream to write the part to. It is closed at the end
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public void extract(List pages, OutputStream os) throws IOException, DocumentException {
+        if (pages.isEmpty())
+            throw new IllegalArgumentException("A part must have at least one page.");
+        for (int k = 0; k < pages.size(); ++k) {
+            int page = ((Integer)pages.get(k)).intValue();
+            if (page < 1 || page > getNumberOfPages())
+                throw new IllegalArgumentException("Invalid page number: " + page);
+        }
+        boolean written = false;
+        try {
+            PdfReader reader = source.getReader();
+            removeOtherPages(reader, pages);
+            Document document = new Document(reader.getPageSizeWithRotation(((Integer)pages.get(0)).intValue()));
+            PdfCopy copy = new PdfCopy(document, os);
+            if (fullCompression)
+                copy.setFullCompression();
+            document.open();
+            for (int k = 0; k < pages.size(); ++k)
+                copy.addPage(copy.getImportedPage(reader, ((Integer)pages.get(k)).intValue()));
+            document.close();
+            written = true;
+        }
+        finally {
+            if (!written)
+                DocumentBatch.closeAfterError(os);
+        }
+    }
+    
+    /**
+     * Writes a part. It can be called by several threads at once.
+     * @param ranges the pages of the part as described in {@link SequenceList}
+     * @param os the stream to write the part to. It is closed at the end
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public void extract(String ranges, OutputStream os) throws IOException, DocumentException {
+        extract(SequenceList.expand(ranges, getNumberOfPages()), os);
+    }
+    
+    /**
+     * Writes each part of a batch. The parts are <CODE>List</CODE>s of
+     * <CODE>Integer</CODE> or ranges as described in {@link SequenceList}.
+     * With more than one thread the parts are written in any order, the first
+     * error stops all the threads and is thrown once they are done.
+     * @param parts the parts
+     * @param target gives the stream of each part
+     * @param threads the number of threads writing the parts
+     * @return the number of parts written
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public int split(Iterator parts, final DocumentTarget target, int threads) throws IOException, DocumentException {
+        DocumentBatch batch = new DocumentBatch(parts) {
+            OutputStream getOutputStream(int index, Object item) throws IOException {
+                return target.getOutputStream(index, getPages(item));
+            }
+            void write(Object item, OutputStream os) throws Exception {
+                extract(getPages(item), os);
+            }
+        };
+        return batch.write(threads, "PdfSplitter");
+    }
+    
+    /**
+     * Writes each page of the document as a part.
+     * @param target gives the stream of each page
+     * @param threads the number of threads writing the pages
+     * @return the number of pages written
+     * @throws IOException on error
+     * @throws DocumentException on error
+     */
+    public int burst(DocumentTarget target, int threads) throws IOException, DocumentException {
+        int n = getNumberOfPages();
+        ArrayList parts = new ArrayList(n);
+        for (int k = 1; k <= n; ++k) {
+            ArrayList part = new ArrayList(1);
+            part.add(new Integer(k));
+            parts.add(part);
+        }
+        return split(parts.iterator(), target, threads);
+    }
+    
+    /**
+     * Removes the references to the pages that are not in a part from the
+     * annotations of its pages, otherwise <CODE>PdfCopy</CODE> would copy these
+     * pages with all their content. The links to these pages are removed and
+     * the other annotations lose their <CODE>/P</CODE> and the actions or the
+     * destinations going to them. The reader is the one of the part, the shared
+     * document is not changed.
+     * @param reader the reader of the part
+     * @param pages the pages of the part
+     */
+    private static void removeOtherPages(PdfReader reader, List pages) {
+        IntHashtable others = new IntHashtable();
+        for (int k = 1; k <= reader.getNumberOfPages(); ++k)
+            others.put(reader.getPageOrigRef(k).getNumber(), 1);
+        for (int k = 0; k < pages.size(); ++k)
+            others.remove(reader.getPageOrigRef(((Integer)pages.get(k)).intValue()).getNumber());
+        if (others.size() == 0)
+            return;
+        ArrayList stack = new ArrayList();
+        for (int k = 0; k < pages.size(); ++k) {
+            PdfDictionary page = reader.getPageN(((Integer)pages.get(k)).intValue());
+            PdfArray annots = (PdfArray)PdfReader.getPdfObject(page.get(PdfName.ANNOTS));
+            if (annots == null)
+                continue;
+            ArrayList list = annots.getArrayList();
+            for (int j = 0; j < list.size(); ++j) {
+                PdfObject obj = PdfReader.getPdfObject((PdfObject)list.get(j));
+                if (obj != null && obj.isDictionary() && PdfName.LINK.equals(((PdfDictionary)obj).get(PdfName.SUBTYPE))
+                    && goesToOtherPage((PdfDictionary)obj, others)) {
+                    list.remove(j--);
+                    continue;
+                }
+                stack.add(list.get(j));
+            }
+        }
+        IntHashtable visited = new IntHashtable();
+        while (!stack.isEmpty()) {
+            PdfObject obj = (PdfObject)stack.remove(stack.size() - 1);
+            if (obj.isIndirect()) {
+                int num = ((PRIndirectReference)obj).getNumber();
+                if (visited.containsKey(num))
+                    continue;
+                visited.put(num, 1);
+                obj = PdfReader.getPdfObject(obj);
+                if (obj == null)
+                    continue;
+            }
+            if (obj.isDictionary() || obj.isStream()) {
+                PdfDictionary dic = (PdfDictionary)obj;
+                // the pages of the part are copied anyway
+                if (PdfName.PAGE.equals(dic.get(PdfName.TYPE)))
+                    continue;
+                ArrayList keys = new ArrayList(dic.getKeys());
+                for (int k = 0; k < keys.size(); ++k) {
+                    PdfName key = (PdfName)keys.get(k);
+                    PdfObject value = dic.get(key);
+                    if (isOtherPage(value, others)
+                        || (PdfName.DEST.equals(key) || PdfName.A.equals(key) || PdfName.D.equals(key))
+                        && goesToOtherPage(dic, key, others))
+                        dic.remove(key);
+                    else
+                        stack.add(value);
+                }
+            }
+            else if (obj.isArray()) {
+                ArrayList list = ((PdfArray)obj).getArrayList();
+                for (int k = 0; k < list.size(); ++k) {
+                    PdfObject value = (PdfObject)list.get(k);
+                    if (isOtherPage(value, others))
+                        list.set(k, PdfNull.PDFNULL);
+                    else
+                        stack.add(value);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks if an annotation links to a page that is not in the part.
+     * @param annot the annotation
+     * @param others the object numbers of the pages that are not in the part
+     * @return <CODE>true</CODE> if the link goes to one of <CODE>others</CODE>
+     */
+    private static boolean goesToOtherPage(PdfDictionary annot, IntHashtable others) {
+        return goesToOtherPage(annot, PdfName.DEST, others) || goesToOtherPage(annot, PdfName.A, others);
+    }
+    
+    /**
+     * Checks if an explicit destination or a go-to action goes to a page that
+     * is not in the part.
+     * @param dic the dictionary holding the destination or the action
+     * @param key <CODE>/Dest</CODE> or <CODE>/D</CODE> for a destination,
+     * <CODE>/A</CODE> for an action
+     * @param others the object numbers of the pages that are not in the part
+     * @return <CODE>true</CODE> if it goes to one of <CODE>others</CODE>
+     */
+    private static boolean goesToOtherPage(PdfDictionary dic, PdfName key, IntHashtable others) {
+        PdfObject obj = PdfReader.getPdfObject(dic.get(key));
+        if (obj == null)
+            return false;
+        if (PdfName.A.equals(key)) {
+            if (!obj.isDictionary() || !PdfName.GOTO.equals(((PdfDictionary)obj).get(PdfName.S)))
+                return false;
+            obj = PdfReader.getPdfObject(((PdfDictionary)obj).get(PdfName.D));
+            if (obj == null)
+                return false;
+        }
+        if (!obj.isArray())
+            return false;
+        ArrayList dest = ((PdfArray)obj).getArrayList();
+        return !dest.isEmpty() && isOtherPage((PdfObject)dest.get(0), others);
+    }
+    
+    private static boolean isOtherPage(PdfObject obj, IntHashtable others) {
+        return obj != null && obj.isIndirect() && others.containsKey(((PRIndirectReference)obj).getNumber());
+    }
+    
+    private List getPages(Object part) {
+        if (part instanceof List)
+            return (List)part;
+        if (part instanceof String)
+            return SequenceList.expand((String)part, getNumberOfPages());
+        throw new IllegalArgumentException("A part must be a List of pages or a String with page ranges.");
+    }
+}
@@ -51,7 +51,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.PrivateKey;
 import java.security.SignatureException;
+import java.security.cert.CRL;
+import java.security.cert.Certificate;
 import java.util.HashMap;
 import java.util.List;
 
@@ -485,6 +488,11 @@ public class PdfStamper implements PdfViewerPreferences {
     /**
      * Sets the document's compression to the new 1.5 mode with object streams and xref
      * streams. It can be set at any time but once set it can't be unset.
+     * <p>
+     * The dictionaries of the original document are packed in object streams as
+     * they are written at close. As the header is already written, the catalog
+     * gets a /Version 1.5 entry if the original document is older. It has no
+     * effect in append mode, where the type of the original cross-reference is kept.
      */
     public void setFullCompression() {
         if (stamper.isAppend())
@@ -578,15 +586,71 @@ public class PdfStamper implements PdfViewerPreferences {
             stp.sigApp.setTempFile(tempFile);
         }
         stp.sigApp.setOriginalout(os);
-        stp.sigApp.setStamper(stp);
-        stp.hasSignature = true;
-        PdfDictionary catalog = reader.getCatalog();
+        stp.prepareSignature();
+        return stp;
+    }
+    
+    /**
+     * Applies a digital signature to a document while it is written. The
+     * document is neither kept in memory nor in a temporary file: the bytes
+     * are given to the signer as they go to <CODE>os</CODE> and only the end
+     * of the document, from the signature dictionary to the trailer, waits
+     * in memory for the signature. The returned PdfStamper can be used
+     * normally as the signature is only applied when closing.
+     * <p>
+     * The signing information is given here because the signer must see the
+     * document from its first byte. External signatures and user made signature
+     * dictionaries can't be used and the signature uses the default provider.
+     * <p>
+     * A possible use is:
+     * <p>
+     * <pre>
+     * PdfReader reader = new PdfReader("original.pdf");
+     * FileOutputStream fout = new FileOutputStream("signed.pdf");
+     * PdfStamper stp = PdfStamper.createSignature(reader, fout, '\0', false,
+     *     key, chain, null, PdfSignatureAppearance.WINCER_SIGNED);
+     * PdfSignatureAppearance sap = stp.getSignatureAppearance();
+     * sap.setReason("I'm the author");
+     * sap.setLocation("Lisbon");
+     * stp.close();
+     * </pre>
+     * @param reader the original document
+     * @param os the output stream
+     * @param pdfVersion the new pdf version or '\0' to keep the same version as the original
+     * document
+     * @param append if <CODE>true</CODE> the signature and all the other content will be added as a
+     * new revision thus not invalidating existing signatures
+     * @param privKey the private key
+     * @param certChain the certificate chain
+     * @param crlList the certificate revocation list. It may be <CODE>null</CODE>
+     * @param filter the crytographic filter type. It can be SELF_SIGNED, VERISIGN_SIGNED or WINCER_SIGNED
+     * @return a <CODE>PdfStamper</CODE>
+     * @throws DocumentException on error
+     * @throws IOException on error
+     */
+    public static PdfStamper createSignature(PdfReader reader, OutputStream os, char pdfVersion, boolean append,
+        PrivateKey privKey, Certificate[] certChain, CRL[] crlList, PdfName filter) throws DocumentException, IOException {
+        PdfSigGenericPKCS sig = PdfSignatureAppearance.createSigStandard(filter, null);
+        sig.setSignInfo(privKey, certChain, crlList);
+        OutputStreamDigest dout = new OutputStreamDigest(os, sig.getSigner());
+        PdfStamper stp = new PdfStamper(reader, dout, pdfVersion, append);
+        stp.sigApp = new PdfSignatureAppearance(stp.stamper);
+        stp.sigApp.setCrypto(privKey, certChain, crlList, filter);
+        stp.sigApp.setDigestout(dout, sig);
+        stp.sigApp.setOriginalout(os);
+        stp.prepareSignature();
+        return stp;
+    }
+    
+    private void prepareSignature() {
+        sigApp.setStamper(this);
+        hasSignature = true;
+        PdfDictionary catalog = stamper.reader.getCatalog();
         PdfDictionary acroForm = (PdfDictionary)PdfReader.getPdfObject(catalog.get(PdfName.ACROFORM), catalog);
         if (acroForm != null) {
             acroForm.remove(PdfName.NEEDAPPEARANCES);
-            stp.stamper.markUsed(acroForm);
+            stamper.markUsed(acroForm);
         }
-        return stp;
     }
 
     /**
@@ -89,6 +89,10 @@ class PdfStamperImp extends PdfWriter implements PdfViewerPreferences {
     protected IntHashtable marked;
     protected int initialXrefSize;
     protected PdfAction openAction;
+    /** The signature dictionary written last when the document is signed while written. */
+    private PdfDictionary sigDictionary;
+    private PdfIndirectReference sigReference;
+    private OutputStreamDigest sigDigest;
     
     /** Creates new PdfStamperImp.
      * @param reader the read PDF
@@ -171,6 +175,8 @@ class PdfStamperImp extends PdfWriter implements PdfViewerPreferences {
         setJavaScript();
         addFileAttachments();
         PdfDictionary catalog = reader.getCatalog();        	
+        if (addVersionToCatalog(catalog))
+            markUsed(catalog);
         if (openAction != null) {
             catalog.put(PdfName.OPENACTION, openAction);
         }
@@ -222,7 +228,7 @@ class PdfStamperImp extends PdfWriter implements PdfViewerPreferences {
             }
             else {
                 for (int k = 1; k < reader.getXrefSize(); ++k) {
-                    PdfObject obj = reader.getPdfObjectRelease(k);
+                    PdfObject obj = reader.getPdfObjectToWrite(k);
                     if (obj != null && skip != k) {
                         addToBody(obj, getNewObjectNumber(reader, k, 0), k != rootN);
                     }
@@ -283,6 +289,11 @@ class PdfStamperImp extends PdfWriter implements PdfViewerPreferences {
             if (!newInfo.getKeys().isEmpty())
                 info = addToBody(newInfo, false).getIndirectReference();
         }
+        if (sigDictionary != null) {
+            // everything before the signature dictionary is already digested
+            sigDigest.hold();
+            addToBody(sigDictionary, sigReference, false);
+        }
         // write the cross-reference table of the body
         body.writeCrossReferenceTable(os, root, info, encryption, fileID, prevxref);
         if (fullCompression) {
@@ -305,6 +316,19 @@ class PdfStamperImp extends PdfWriter implements PdfViewerPreferences {
         reader.close();
     }
     
+    /**
+     * Sets the signature dictionary to be written after all the other objects,
+     * when the document is signed while it is written.
+     * @param sigDictionary the signature dictionary
+     * @param sigReference the reference of the signature dictionary
+     * @param sigDigest the stream that digests the document
+     */
+    void setSignatureDictionary(PdfDictionary sigDictionary, PdfIndirectReference sigReference, OutputStreamDigest sigDigest) {
+        this.sigDictionary = sigDictionary;
+        this.sigReference = sigReference;
+        this.sigDigest = sigDigest;
+    }
+    
     void applyRotation(PdfDictionary pageN, ByteBuffer out) {
         if (!rotateContents)
             return;
@@ -366,7 +390,7 @@ class PdfStamperImp extends PdfWriter implements PdfViewerPreferences {
             if (ps.over != null)
                 out.append(PdfContents.SAVESTATE);
             PdfStream stream = new PdfStream(out.toByteArray());
-            try{stream.flateCompress();}catch(Exception e){throw new ExceptionConverter(e);}
+            try{stream.flateCompress(contentCompressionLevel);}catch(Exception e){throw new ExceptionConverter(e);}
             ar.addFirst(addToBody(stream).getIndirectReference());
             out.reset();
             if (ps.over != null) {
@@ -377,7 +401,7 @@ class PdfStamperImp extends PdfWriter implements PdfViewerPreferences {
                 out.append(ps.over.getInternalBuffer());
                 out.append(PdfContents.RESTORESTATE);
                 stream = new PdfStream(out.toByteArray());
-                try{stream.flateCompress();}catch(Exception e){throw new ExceptionConverter(e);}
+                try{stream.flateCompress(contentCompressionLevel);}catch(Exception e){throw new ExceptionConverter(e);}
                 ar.add(addToBody(stream).getIndirectReference());
             }
             alterResources(ps);
@@ -686,6 +710,18 @@ class PdfStamperImp extends PdfWriter implements PdfViewerPreferences {
         }
         return acroFields;
     }
+    
+    /**
+     * Gets the fields of a form whose widgets are already known.
+     * @param widgets the widgets, see <CODE>AcroFields.getWidgetPositions()</CODE>
+     * @return the fields
+     */
+    AcroFields getAcroFields(int widgets[][]) {
+        if (acroFields == null) {
+            acroFields = new AcroFields(reader, this, widgets);
+        }
+        return acroFields;
+    }
 
     void setFormFlattening(boolean flat) {
         this.flat = flat;
@@ -87,8 +87,29 @@ public class PdfStream extends PdfDictionary {
     
     // membervariables
     
+    /** A possible compression level: the zlib default. */
+    public static final int DEFAULT_COMPRESSION = Deflater.DEFAULT_COMPRESSION;
+    /** A possible compression level: the data is stored without compression. */
+    public static final int NO_COMPRESSION = Deflater.NO_COMPRESSION;
+    /** A possible compression level: the fastest compression. */
+    public static final int BEST_SPEED = Deflater.BEST_SPEED;
+    /** A possible compression level: the smallest output. */
+    public static final int BEST_COMPRESSION = Deflater.BEST_COMPRESSION;
+    
 /** is the stream compressed? */
     protected boolean compressed = false;
+    /** the level used to deflate the stream */
+    protected int compressionLevel = DEFAULT_COMPRESSION;
+    /** is the stream marked as compressed but not yet deflated? */
+    private volatile boolean deflatePending = false;
+    /** is the stream waiting to be encrypted by a compression thread? */
+    private volatile boolean encryptPending = false;
+    /** the encryption, object number and generation of a pending encryption */
+    private PdfEncryption pendingCrypto;
+    private int cryptoNumber;
+    private int cryptoGeneration;
+    /** the data encrypted ahead of the writing */
+    private byte encryptedBytes[];
     
     protected ByteArrayOutputStream streamBytes = null;
     protected InputStream inputStream;
@@ -175,16 +196,29 @@ public class PdfStream extends PdfDictionary {
     }
     
     /**
-     * Compresses the stream.
+     * Compresses the stream with the default compression level.
      */
     
     public void flateCompress() {
+        flateCompress(inputStream != null ? BEST_COMPRESSION : DEFAULT_COMPRESSION);
+    }
+    
+    /**
+     * Compresses the stream. The data is only deflated when the stream is
+     * written or when the <CODE>PdfWriter</CODE> hands it to a compression
+     * thread; the /Filter is set immediately.
+     * @param compressionLevel the compression level, from <CODE>NO_COMPRESSION</CODE>
+     * to <CODE>BEST_COMPRESSION</CODE> or <CODE>DEFAULT_COMPRESSION</CODE>
+     */
+    
+    public void flateCompress(int compressionLevel) {
         if (!Document.compress)
             return;
         // check if the flateCompress-method has already been
         if (compressed) {
             return;
         }
+        this.compressionLevel = compressionLevel;
         if (inputStream != null) {
             compressed = true;
             return;
@@ -204,53 +238,108 @@ public class PdfStream extends PdfDictionary {
                 throw new RuntimeException("Stream could not be compressed: filter is not a name or array.");
             }
         }
+        if (filter == null) {
+            put(PdfName.FILTER, PdfName.FLATEDECODE);
+        }
+        else {
+            PdfArray filters = new PdfArray(filter);
+            filters.add(PdfName.FLATEDECODE);
+            put(PdfName.FILTER, filters);
+        }
+        compressed = true;
+        deflatePending = true;
+    }
+    
+    /**
+     * Checks if the stream still has to be deflated.
+     * @return <CODE>true</CODE> if <CODE>flateCompress()</CODE> was called
+     * and the data is not yet deflated
+     */
+    boolean isDeflatePending() {
+        return deflatePending;
+    }
+    
+    /**
+     * Deflates the data of a stream marked with <CODE>flateCompress()</CODE>.
+     * Does nothing if there is nothing pending. It can be called from a
+     * compression thread; a second caller waits for the first one to finish.
+     */
+    synchronized void deflate() {
+        if (!deflatePending)
+            return;
         try {
-            // compress
             ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            DeflaterOutputStream zip = new DeflaterOutputStream(stream);
+            Deflater deflater = new Deflater(compressionLevel);
+            DeflaterOutputStream zip = new DeflaterOutputStream(stream, deflater);
             if (streamBytes != null)
                 streamBytes.writeTo(zip);
             else
                 zip.write(bytes);
             zip.close();
+            deflater.end();
             // update the object
             streamBytes = stream;
             bytes = null;
             put(PdfName.LENGTH, new PdfNumber(streamBytes.size()));
-            if (filter == null) {
-                put(PdfName.FILTER, PdfName.FLATEDECODE);
-            }
-            else {
-                PdfArray filters = new PdfArray(filter);
-                filters.add(PdfName.FLATEDECODE);
-                put(PdfName.FILTER, filters);
-            }
-            compressed = true;
+            deflatePending = false;
         }
         catch(IOException ioe) {
             throw new ExceptionConverter(ioe);
         }
     }
 
-//    public int getStreamLength(PdfWriter writer) {
-//        if (dicBytes == null)
-//            toPdf(writer);
-//        if (streamBytes != null)
-//            return streamBytes.size() + dicBytes.length + SIZESTREAM;
-//        else
-//            return bytes.length + dicBytes.length + SIZESTREAM;
-//    }
+    /**
+     * Sets the data of a stream marked with <CODE>flateCompress()</CODE> to
+     * the same data already deflated with its compression level.
+     * @param data the deflated data, it's not copied
+     */
+    synchronized void setDeflatedData(byte data[]) {
+        streamBytes = null;
+        bytes = data;
+        put(PdfName.LENGTH, new PdfNumber(data.length));
+        deflatePending = false;
+    }
+
+    /**
+     * Marks the stream to be encrypted for an object by a compression thread,
+     * after it's deflated. Streams from an <CODE>InputStream</CODE> and
+     * streams with a /Crypt filter are encrypted as they are written.
+     * @param writer the writer of the stream
+     * @param number the object number of the stream
+     * @param generation the object generation of the stream
+     */
+    void encryptLater(PdfWriter writer, int number, int generation) {
+        PdfEncryption crypto = getEncryption(writer);
+        if (crypto == null || inputStream != null)
+            return;
+        pendingCrypto = crypto;
+        cryptoNumber = number;
+        cryptoGeneration = generation;
+        encryptPending = true;
+    }
     
-    protected void superToPdf(PdfWriter writer, OutputStream os) throws IOException {
-        super.toPdf(writer, os);
+    /**
+     * Checks if the stream still has to be deflated or encrypted.
+     * @return <CODE>true</CODE> if there is work left for <CODE>prepare()</CODE>
+     */
+    boolean isPending() {
+        return deflatePending || encryptPending;
     }
     
     /**
-     * @see com.lowagie.text.pdf.PdfDictionary#toPdf(com.lowagie.text.pdf.PdfWriter, java.io.OutputStream)
+     * Deflates the data and encrypts it if it was marked with
+     * <CODE>encryptLater()</CODE>. It can be called from a compression thread.
      */
-    public void toPdf(PdfWriter writer, OutputStream os) throws IOException {
-        if (inputStream != null && compressed)
-            put(PdfName.FILTER, PdfName.FLATEDECODE);
+    synchronized void prepare() {
+        deflate();
+        if (!encryptPending)
+            return;
+        byte b[] = streamBytes != null ? streamBytes.toByteArray() : bytes;
+        encryptedBytes = pendingCrypto.encryptByteArray(b, cryptoNumber, cryptoGeneration);
+        encryptPending = false;
+    }
+    
+    private PdfEncryption getEncryption(PdfWriter writer) {
         PdfEncryption crypto = null;
         if (writer != null)
             crypto = writer.getEncryption();
@@ -266,6 +355,30 @@ public class PdfStream extends PdfDictionary {
                 }
             }
         }
+        return crypto;
+    }
+
+//    public int getStreamLength(PdfWriter writer) {
+//        if (dicBytes == null)
+//            toPdf(writer);
+//        if (streamBytes != null)
+//            return streamBytes.size() + dicBytes.length + SIZESTREAM;
+//        else
+//            return bytes.length + dicBytes.length + SIZESTREAM;
+//    }
+    
+    protected void superToPdf(PdfWriter writer, OutputStream os) throws IOException {
+        super.toPdf(writer, os);
+    }
+    
+    /**
+     * @see com.lowagie.text.pdf.PdfDictionary#toPdf(com.lowagie.text.pdf.PdfWriter, java.io.OutputStream)
+     */
+    public void toPdf(PdfWriter writer, OutputStream os) throws IOException {
+        prepare();
+        if (inputStream != null && compressed)
+            put(PdfName.FILTER, PdfName.FLATEDECODE);
+        PdfEncryption crypto = getEncryption(writer);
         PdfObject nn = get(PdfName.LENGTH);
         if (crypto != null && nn != null && nn.isNumber()) {
             int sz = ((PdfNumber)nn).intValue();
@@ -284,8 +397,9 @@ public class PdfStream extends PdfDictionary {
             OutputStream fout = osc;
             if (crypto != null)
                 fout = ose = crypto.getEncryptionStream(fout);
+            Deflater deflater = null;
             if (compressed)    
-                fout = def = new DeflaterOutputStream(fout, new Deflater(Deflater.BEST_COMPRESSION), 0x8000);
+                fout = def = new DeflaterOutputStream(fout, deflater = new Deflater(compressionLevel), 0x8000);
             
             byte buf[] = new byte[4192];
             while (true) {
@@ -295,11 +409,13 @@ public class PdfStream extends PdfDictionary {
                 fout.write(buf, 0, n);
                 rawLength += n;
             }
-            if (def != null)
+            if (def != null) {
                 def.finish();
+                deflater.end();
+            }
             if (ose != null)
                 ose.finish();
-            inputStreamLength = osc.getCounter();
+            inputStreamLength = (int)osc.getCounter();
         }
         else {
             if (crypto == null) {
@@ -310,7 +426,11 @@ public class PdfStream extends PdfDictionary {
             }
             else {
                 byte b[];
-                if (streamBytes != null) {
+                if (encryptedBytes != null && crypto == pendingCrypto && crypto.isHashKey(cryptoNumber, cryptoGeneration)) {
+                    b = encryptedBytes;
+                    encryptedBytes = null;
+                }
+                else if (streamBytes != null) {
                     b = crypto.encryptByteArray(streamBytes.toByteArray());
                 }
                 else {
@@ -328,6 +448,7 @@ public class PdfStream extends PdfDictionary {
      * @throws IOException on error
      */    
     public void writeContent(OutputStream os) throws IOException {
+        deflate();
         if (streamBytes != null)
             streamBytes.writeTo(os);
         else if (bytes != null)
@@ -50,12 +50,14 @@
 package com.lowagie.text.pdf;
 
 import java.awt.Color;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -111,7 +113,7 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
             private int type;
             
             /**	Byte offset in the PDF file. */
-            private int offset;
+            private long offset;
             
             private int refnum;
             /**	generation of the object. */
@@ -125,7 +127,7 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
              * @param	generation	generationnumber of the object
              */
             
-            PdfCrossReference(int refnum, int offset, int generation) {
+            PdfCrossReference(int refnum, long offset, int generation) {
                 type = 0;
                 this.offset = offset;
                 this.refnum = refnum;
@@ -138,14 +140,14 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
              * @param	offset		byte offset of the object
              */
             
-            PdfCrossReference(int refnum, int offset) {
+            PdfCrossReference(int refnum, long offset) {
                 type = 1;
                 this.offset = offset;
                 this.refnum = refnum;
                 this.generation = 0;
             }
             
-            PdfCrossReference(int type, int refnum, int offset, int generation) {
+            PdfCrossReference(int type, int refnum, long offset, int generation) {
                 this.type = type;
                 this.offset = offset;
                 this.refnum = refnum;
@@ -215,14 +217,40 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
 
         }
         
+        /**
+         * An object added to the body while a stream before it was still
+         * being deflated. It holds either the stream or the bytes of the
+         * object already serialized.
+         */
+        
+        static class DeferredObject {
+            int refNumber;
+            PdfStream stream;
+            byte bytes[];
+            
+            DeferredObject(int refNumber, PdfStream stream) {
+                this.refNumber = refNumber;
+                this.stream = stream;
+            }
+            
+            DeferredObject(int refNumber, byte bytes[]) {
+                this.refNumber = refNumber;
+                this.bytes = bytes;
+            }
+        }
+        
         // membervariables
         
         /** array containing the cross-reference table of the normal objects. */
         private TreeSet xrefs;
         private int refnum;
         /** the current byteposition in the body. */
-        private int position;
+        private long position;
         private PdfWriter writer;
+        /** the objects waiting for a stream to be deflated before they can be written, in order. */
+        private LinkedList deferred = new LinkedList();
+        /** the number of streams in <CODE>deferred</CODE>. */
+        private int deferredStreams;
         // constructors
         
         /**
@@ -362,18 +390,81 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
                 return indirect;
             }
             else {
+                PdfStream stream = null;
+                if (object.isStream()) {
+                    stream = (PdfStream)object;
+                    if (stream.isDeflatePending() && stream.compressionLevel == PdfStream.DEFAULT_COMPRESSION)
+                        stream.compressionLevel = writer.getCompressionLevel(stream);
+                }
                 PdfIndirectObject indirect = new PdfIndirectObject(refNumber, object, writer);
-                PdfCrossReference pxref = new PdfCrossReference(refNumber, position);
-                if (!xrefs.add(pxref)) {
-                    xrefs.remove(pxref);
-                    xrefs.add(pxref);
+                if (writer.compressor != null) {
+                    if (stream != null)
+                        stream.encryptLater(writer, refNumber, 0);
+                    if (stream != null && stream.isPending()) {
+                        writer.compressor.submit(stream);
+                        deferred.addLast(new DeferredObject(refNumber, stream));
+                        ++deferredStreams;
+                        writeDeferred(false);
+                        return indirect;
+                    }
+                    if (!deferred.isEmpty()) {
+                        // a stream from an InputStream must be written at once for writeLength()
+                        if (stream == null || stream.inputStream == null) {
+                            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                            indirect.writeTo(buf);
+                            deferred.addLast(new DeferredObject(refNumber, buf.toByteArray()));
+                            return indirect;
+                        }
+                        writeDeferred(true);
+                        indirect = new PdfIndirectObject(refNumber, object, writer);
+                    }
                 }
+                addCrossReference(refNumber);
                 indirect.writeTo(writer.getOs());
                 position = writer.getOs().getCounter();
                 return indirect;
             }
         }
         
+        private void addCrossReference(int refNumber) {
+            PdfCrossReference pxref = new PdfCrossReference(refNumber, position);
+            if (!xrefs.add(pxref)) {
+                xrefs.remove(pxref);
+                xrefs.add(pxref);
+            }
+        }
+        
+        /**
+         * Writes the objects that were waiting for their streams to be deflated.
+         * The objects are written in the order they were added.
+         * @param all if <CODE>true</CODE> all the objects are written, deflating
+         * the streams no worker got to in this thread; if <CODE>false</CODE> the
+         * writing stops at the first stream that is still being deflated, unless
+         * there are too many streams waiting
+         * @throws IOException on error
+         */
+        void writeDeferred(boolean all) throws IOException {
+            int maxStreams = writer.compressor == null ? 0 : writer.compressor.getMaxThreads() * 2;
+            while (!deferred.isEmpty()) {
+                DeferredObject d = (DeferredObject)deferred.getFirst();
+                if (d.stream != null) {
+                    if (!all && deferredStreams <= maxStreams && d.stream.isPending())
+                        return;
+                    deferred.removeFirst();
+                    --deferredStreams;
+                    PdfIndirectObject indirect = new PdfIndirectObject(d.refNumber, d.stream, writer);
+                    addCrossReference(d.refNumber);
+                    indirect.writeTo(writer.getOs());
+                }
+                else {
+                    deferred.removeFirst();
+                    addCrossReference(d.refNumber);
+                    writer.getOs().write(d.bytes);
+                }
+                position = writer.getOs().getCounter();
+            }
+        }
+        
         /**
          * Adds a <CODE>PdfResources</CODE> object to the body.
          *
@@ -406,7 +497,7 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
          * @return		an offset
          */
         
-        int offset() {
+        long offset() {
             return position;
         }
         
@@ -431,13 +522,16 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
          * @throws IOException
          */
         
-        void writeCrossReferenceTable(OutputStream os, PdfIndirectReference root, PdfIndirectReference info, PdfIndirectReference encryption, PdfObject fileID, int prevxref) throws IOException {
+        void writeCrossReferenceTable(OutputStream os, PdfIndirectReference root, PdfIndirectReference info, PdfIndirectReference encryption, PdfObject fileID, long prevxref) throws IOException {
             int refNumber = 0;
             if (writer.isFullCompression()) {
                 flushObjStm();
+                writeDeferred(true);
                 refNumber = getIndirectReferenceNumber();
                 xrefs.add(new PdfCrossReference(refNumber, position));
             }
+            else
+                writeDeferred(true);
             PdfCrossReference entry = (PdfCrossReference)xrefs.first();
             int first = entry.getRefnum();
             int len = 0;
@@ -456,8 +550,8 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
             sections.add(new Integer(first));
             sections.add(new Integer(len));
             if (writer.isFullCompression()) {
-                int mid = 4;
-                int mask = 0xff000000;
+                int mid = 8;
+                long mask = 0xff00000000000000L;
                 for (; mid > 1; --mid) {
                     if ((mask & position) != 0)
                         break;
@@ -525,7 +619,7 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
         
         // membervariables
         
-        int offset;
+        long offset;
         
         // constructors
         
@@ -541,7 +635,7 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
          * @param prevxref
          */
         
-        PdfTrailer(int size, int offset, PdfIndirectReference root, PdfIndirectReference info, PdfIndirectReference encryption, PdfObject fileID, int prevxref) {
+        PdfTrailer(int size, long offset, PdfIndirectReference root, PdfIndirectReference info, PdfIndirectReference encryption, PdfObject fileID, long prevxref) {
             this.offset = offset;
             put(PdfName.SIZE, new PdfNumber(size));
             put(PdfName.ROOT, root);
@@ -635,8 +729,10 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
     private static final int VPOINT = 7;
     /** this is the header of a PDF document */
     protected byte[] HEADER = getISOBytes("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+    /** the version written in the header, 0 if no header with a version was written */
+    private char headerVersion = 0;
 
-    protected int prevxref = 0;
+    protected long prevxref = 0;
     
     protected PdfPages root = new PdfPages(this);
     
@@ -772,6 +868,18 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
      */
     protected boolean fullCompression = false;
     
+    /** the compression level of the page content streams and form XObjects */
+    protected int contentCompressionLevel = PdfStream.DEFAULT_COMPRESSION;
+    
+    /** the compression level of the image streams */
+    protected int imageCompressionLevel = PdfStream.DEFAULT_COMPRESSION;
+    
+    /** the compression level of the embedded font programs */
+    protected int fontCompressionLevel = PdfStream.DEFAULT_COMPRESSION;
+    
+    /** the worker threads that deflate the streams, <CODE>null</CODE> if the streams are deflated when written */
+    StreamCompressor compressor;
+    
     protected boolean tagged = false;
     
     protected PdfStructureTreeRoot structureTreeRoot;
@@ -1031,6 +1139,8 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
         super.open();
         try {
             os.write(HEADER);
+            if (HEADER.length > VPOINT)
+                headerVersion = (char)HEADER[VPOINT];
             body = new PdfBody(this);
             if (pdfxConformance == PDFX32002) {
                 PdfDictionary sec = new PdfDictionary();
@@ -1248,6 +1358,7 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
                 PdfIndirectReference rootRef = root.writePageTree();
                 // make the catalog-object and add it to the body
                 PdfDictionary catalog = getCatalog(rootRef);
+                addVersionToCatalog(catalog);
                 // if there is XMP data to add: add it
                 if (xmpMetadata != null) {
                 	PdfStream xmp = new PdfStream(xmpMetadata);
@@ -2154,6 +2265,24 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
             HEADER[VPOINT] = (byte)version;
     }
     
+    /**
+     * Puts /Version in the catalog if the version was raised after the header
+     * was written, as <CODE>setFullCompression()</CODE> does when it is called
+     * on an open document or on a <CODE>PdfStamper</CODE>.
+     * @param catalog the catalog of the document
+     * @return <CODE>true</CODE> if the catalog was changed
+     */
+    boolean addVersionToCatalog(PdfDictionary catalog) {
+        if (headerVersion == 0 || HEADER[VPOINT] <= headerVersion)
+            return false;
+        PdfName version = new PdfName("1." + (char)HEADER[VPOINT]);
+        PdfObject current = PdfReader.getPdfObject(catalog.get(PdfName.VERSION));
+        if (current != null && current.isName() && current.toString().compareTo(version.toString()) >= 0)
+            return false;
+        catalog.put(PdfName.VERSION, version);
+        return true;
+    }
+    
     /** Reorder the pages in the document. A <CODE>null</CODE> argument value
      * only returns the number of pages to process. It is
      * advisable to issue a <CODE>Document.newPage()</CODE>
@@ -2256,7 +2385,7 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
      * and an idea of the current size is needed.
      * @return the approximate size without fonts or templates
      */    
-    public int getCurrentDocumentSize() {
+    public long getCurrentDocumentSize() {
         return body.offset() + body.size() * 20 + 0x48;
     }
     
@@ -2571,6 +2700,120 @@ public class PdfWriter extends DocWriter implements PdfViewerPreferences {
         setPdfVersion(VERSION_1_5);
     }
     
+    /**
+     * Sets the compression level of all the stream categories: page content,
+     * images and fonts.
+     * @param compressionLevel a value from <CODE>PdfStream.NO_COMPRESSION</CODE> (0)
+     * to <CODE>PdfStream.BEST_COMPRESSION</CODE> (9); any other value sets
+     * <CODE>PdfStream.DEFAULT_COMPRESSION</CODE>
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        setContentCompressionLevel(compressionLevel);
+        setImageCompressionLevel(compressionLevel);
+        setFontCompressionLevel(compressionLevel);
+    }
+    
+    /**
+     * Sets the compression level of the page content streams and form XObjects.
+     * @param compressionLevel a value from 0 to 9 or <CODE>PdfStream.DEFAULT_COMPRESSION</CODE>
+     */
+    public void setContentCompressionLevel(int compressionLevel) {
+        contentCompressionLevel = checkCompressionLevel(compressionLevel);
+    }
+    
+    /**
+     * Gets the compression level of the page content streams and form XObjects.
+     * @return the compression level
+     */
+    public int getContentCompressionLevel() {
+        return contentCompressionLevel;
+    }
+    
+    /**
+     * Sets the compression level of the images that are not already compressed,
+     * such as raw or PNG images. JPEG images are never recompressed.
+     * @param compressionLevel a value from 0 to 9 or <CODE>PdfStream.DEFAULT_COMPRESSION</CODE>
+     */
+    public void setImageCompressionLevel(int compressionLevel) {
+        imageCompressionLevel = checkCompressionLevel(compressionLevel);
+    }
+    
+    /**
+     * Gets the compression level of the images.
+     * @return the compression level
+     */
+    public int getImageCompressionLevel() {
+        return imageCompressionLevel;
+    }
+    
+    /**
+     * Sets the compression level of the embedded font programs.
+     * @param compressionLevel a value from 0 to 9 or <CODE>PdfStream.DEFAULT_COMPRESSION</CODE>
+     */
+    public void setFontCompressionLevel(int compressionLevel) {
+        fontCompressionLevel = checkCompressionLevel(compressionLevel);
+    }
+    
+    /**
+     * Gets the compression level of the embedded font programs.
+     * @return the compression level
+     */
+    public int getFontCompressionLevel() {
+        return fontCompressionLevel;
+    }
+    
+    private static int checkCompressionLevel(int compressionLevel) {
+        if (compressionLevel < PdfStream.NO_COMPRESSION || compressionLevel > PdfStream.BEST_COMPRESSION)
+            return PdfStream.DEFAULT_COMPRESSION;
+        return compressionLevel;
+    }
+    
+    /**
+     * Gets the compression level for a stream that was compressed with
+     * the default level. The level depends on the kind of stream.
+     * @param stream the stream
+     * @return the compression level
+     */
+    int getCompressionLevel(PdfStream stream) {
+        if (stream instanceof PdfContents || stream instanceof PdfFormXObject || stream instanceof PdfPattern)
+            return contentCompressionLevel;
+        if (stream instanceof PdfImage)
+            return imageCompressionLevel;
+        if (stream instanceof BaseFont.StreamFont)
+            return fontCompressionLevel;
+        return PdfStream.DEFAULT_COMPRESSION;
+    }
+    
+    /**
+     * Deflates the page content streams, the images and the font programs in
+     * <CODE>threads</CODE> worker threads while the document is being built.
+     * The objects are still written in the order they are added, so the output
+     * is the same as the one produced without worker threads.
+     * <p>
+     * It can be set at any time. A value of 0 stops the parallel compression
+     * and writes all the objects that are waiting for their streams.
+     * @param threads the maximum number of worker threads, 0 to deflate the
+     * streams in the writing thread
+     */
+    public void setParallelCompression(int threads) {
+        try {
+            if (body != null)
+                body.writeDeferred(true);
+        }
+        catch (IOException ioe) {
+            throw new ExceptionConverter(ioe);
+        }
+        compressor = threads > 0 ? new StreamCompressor(threads) : null;
+    }
+    
+    /**
+     * Gets the maximum number of worker threads used to deflate the streams.
+     * @return the number of threads, 0 if the parallel compression is off
+     */
+    public int getParallelCompression() {
+        return compressor == null ? 0 : compressor.getMaxThreads();
+    }
+    
     /**
      * Gets the <B>Optional Content Properties Dictionary</B>. Each call fills the dictionary with the current layer
      * state. It's advisable to only call this method right before close and do any modifications
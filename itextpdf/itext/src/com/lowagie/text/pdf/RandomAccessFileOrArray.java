@@ -67,7 +67,10 @@ import java.net.URL;
 public class RandomAccessFileOrArray implements DataInput {
     
     MappedRandomAccessFile rf;
+    PagedRandomAccessFile pf;
     String filename;
+    int pageSize;
+    int maxPages;
     byte arrayIn[];
     int arrayInPtr;
     byte back;
@@ -121,6 +124,22 @@ public class RandomAccessFileOrArray implements DataInput {
         rf = new MappedRandomAccessFile(filename, "r");
     }
 
+    /**
+     * Opens a file that is read through a bounded set of memory pages instead of
+     * being mapped or read whole. Only <CODE>pageSize * maxPages</CODE> bytes of the
+     * file are kept in memory at any time, making it suitable for documents of any size.
+     * @param filename the file name
+     * @param pageSize the size of each page in bytes
+     * @param maxPages the maximum number of pages kept in memory
+     * @throws IOException on error
+     */
+    public RandomAccessFileOrArray(String filename, int pageSize, int maxPages) throws IOException {
+        this.filename = filename;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        pf = new PagedRandomAccessFile(filename, pageSize, maxPages);
+    }
+
     public RandomAccessFileOrArray(URL url) throws IOException {
         InputStream is = url.openStream();
         try {
@@ -153,6 +172,8 @@ public class RandomAccessFileOrArray implements DataInput {
     
     public RandomAccessFileOrArray(RandomAccessFileOrArray file) {
         filename = file.filename;
+        pageSize = file.pageSize;
+        maxPages = file.maxPages;
         arrayIn = file.arrayIn;
         startOffset = file.startOffset;
     }
@@ -168,7 +189,7 @@ public class RandomAccessFileOrArray implements DataInput {
             return back & 0xff;
         }
         if (arrayIn == null)
-            return rf.read();
+            return isPaged() ? pf.read() : rf.read();
         else {
             if (arrayInPtr >= arrayIn.length)
                 return -1;
@@ -193,7 +214,10 @@ public class RandomAccessFileOrArray implements DataInput {
             }
         }
         if (arrayIn == null) {
-            return rf.read(b, off, len) + n;
+            int count = isPaged() ? pf.read(b, off, len) : rf.read(b, off, len);
+            if (count < 0)
+                return n > 0 ? n : -1;
+            return count + n;
         }
         else {
             if (arrayInPtr >= arrayIn.length)
@@ -225,10 +249,6 @@ public class RandomAccessFileOrArray implements DataInput {
     }
     
     public long skip(long n) throws IOException {
-        return skipBytes((int)n);
-    }
-    
-    public int skipBytes(int n) throws IOException {
         if (n <= 0) {
             return 0;
         }
@@ -243,9 +263,9 @@ public class RandomAccessFileOrArray implements DataInput {
                 adj = 1;
             }
         }
-        int pos;
-        int len;
-        int newpos;
+        long pos;
+        long len;
+        long newpos;
         
         pos = getFilePointer();
         len = length();
@@ -259,20 +279,36 @@ public class RandomAccessFileOrArray implements DataInput {
         return newpos - pos + adj;
     }
     
+    public int skipBytes(int n) throws IOException {
+        return (int)skip(n);
+    }
+    
+    /**
+     * Checks if the file is read through a bounded set of memory pages.
+     * @return <CODE>true</CODE> if the file is paged
+     */
+    public boolean isPaged() {
+        return maxPages > 0;
+    }
+    
     public void reOpen() throws IOException {
-        if (filename != null && rf == null)
-            rf = new MappedRandomAccessFile(filename, "r");
+        if (filename != null && !isOpen()) {
+            if (isPaged())
+                pf = new PagedRandomAccessFile(filename, pageSize, maxPages);
+            else
+                rf = new MappedRandomAccessFile(filename, "r");
+        }
         seek(0);
     }
     
     protected void insureOpen() throws IOException {
-        if (filename != null && rf == null) {
+        if (!isOpen()) {
             reOpen();
         }
     }
     
     public boolean isOpen() {
-        return (filename == null || rf != null);
+        return (filename == null || rf != null || pf != null);
     }
     
     public void close() throws IOException {
@@ -281,37 +317,44 @@ public class RandomAccessFileOrArray implements DataInput {
             rf.close();
             rf = null;
         }
+        if (pf != null) {
+            pf.close();
+            pf = null;
+        }
     }
     
-    public int length() throws IOException {
+    public long length() throws IOException {
         if (arrayIn == null) {
             insureOpen();
-            return (int)rf.length() - startOffset;
+            return (isPaged() ? pf.length() : rf.length()) - startOffset;
         }
         else
             return arrayIn.length - startOffset;
     }
     
     public void seek(int pos) throws IOException {
+        seek((long)pos);
+    }
+    
+    public void seek(long pos) throws IOException {
         pos += startOffset;
         isBack = false;
         if (arrayIn == null) {
             insureOpen();
-            rf.seek(pos);
+            if (isPaged())
+                pf.seek(pos);
+            else
+                rf.seek(pos);
         }
         else
-            arrayInPtr = pos;
-    }
-    
-    public void seek(long pos) throws IOException {
-        seek((int)pos);
+            arrayInPtr = (int)pos;
     }
     
-    public int getFilePointer() throws IOException {
+    public long getFilePointer() throws IOException {
         insureOpen();
         int n = isBack ? 1 : 0;
         if (arrayIn == null) {
-            return (int)rf.getFilePointer() - n - startOffset;
+            return (isPaged() ? pf.getFilePointer() : rf.getFilePointer()) - n - startOffset;
         }
         else
             return arrayInPtr - n - startOffset;
@@ -568,7 +611,7 @@ public class RandomAccessFileOrArray implements DataInput {
                     break;
                 case '\r':
                     eol = true;
-                    int cur = getFilePointer();
+                    long cur = getFilePointer();
                     if ((read()) != '\n') {
                         seek(cur);
                     }
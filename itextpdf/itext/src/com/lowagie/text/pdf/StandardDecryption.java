@@ -102,6 +102,9 @@ public class StandardDecryption {
     
     public byte[] finish() {
         if (aes) {
+            // less than an IV: there's nothing to decrypt
+            if (!initiated)
+                return null;
             return cipher.doFinal();
         }
         else
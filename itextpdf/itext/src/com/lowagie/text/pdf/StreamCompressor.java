@@ -0,0 +1,123 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.text.pdf;
+
+import java.util.LinkedList;
+
+/**
+ * Deflates <CODE>PdfStream</CODE>s, and encrypts them if the document is
+ * encrypted, in worker threads ahead of the time
+ * <CODE>PdfWriter.PdfBody</CODE> writes them. The body keeps the order of
+ * the objects; if no worker got to a stream by the time it must be written
+ * the writing thread deflates it itself.
+ * <p>
+ * The threads are started when there is work and end as soon as the queue
+ * is empty, so no thread outlives the document.
+ */
+class StreamCompressor {
+    
+    private final LinkedList queue = new LinkedList();
+    private final int maxThreads;
+    private int threads;
+    
+    /**
+     * Creates a new compressor.
+     * @param maxThreads the maximum number of worker threads
+     */
+    StreamCompressor(int maxThreads) {
+        this.maxThreads = Math.max(maxThreads, 1);
+    }
+    
+    /**
+     * Gets the maximum number of worker threads.
+     * @return the maximum number of worker threads
+     */
+    int getMaxThreads() {
+        return maxThreads;
+    }
+    
+    /**
+     * Queues a stream marked with <CODE>flateCompress()</CODE> or
+     * <CODE>encryptLater()</CODE> to be prepared.
+     * @param stream the stream
+     */
+    synchronized void submit(PdfStream stream) {
+        queue.addLast(stream);
+        if (threads < maxThreads) {
+            ++threads;
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    work();
+                }
+            }, "PdfStreamCompressor");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+    
+    private synchronized PdfStream next() {
+        if (queue.isEmpty()) {
+            --threads;
+            return null;
+        }
+        return (PdfStream)queue.removeFirst();
+    }
+    
+    private void work() {
+        PdfStream stream;
+        while ((stream = next()) != null) {
+            try {
+                stream.prepare();
+            }
+            catch (Exception e) {
+                // the stream is still pending, the writing thread will fail on it
+            }
+        }
+    }
+}
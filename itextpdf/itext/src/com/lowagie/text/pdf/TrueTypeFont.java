@@ -330,13 +330,105 @@ class TrueTypeFont extends BaseFont {
         int sCapHeight;
     }
     
+    /**
+     * The tables read from a font file. They are shared by all the fonts
+     * created from the same file, whatever the encoding, and are never
+     * changed after being read.
+     */
+    static class SharedTables {
+        HashMap tables;
+        boolean cff;
+        int cffOffset;
+        int cffLength;
+        int directoryOffset;
+        String fontName;
+        String fullName[][];
+        String familyName[][];
+        FontHeader head;
+        HorizontalHeader hhea;
+        WindowsMetrics os_2;
+        double italicAngle;
+        boolean isFixedPitch;
+        boolean fontSpecific;
+        HashMap cmap10;
+        HashMap cmap31;
+        IntHashtable kerning;
+        int bboxes[][];
+        /** A closed copy of the font file used to embed the font. */
+        RandomAccessFileOrArray source;
+        
+        SharedTables(TrueTypeFont font) {
+            tables = font.tables;
+            cff = font.cff;
+            cffOffset = font.cffOffset;
+            cffLength = font.cffLength;
+            directoryOffset = font.directoryOffset;
+            fontName = font.fontName;
+            fullName = font.fullName;
+            familyName = font.familyName;
+            head = font.head;
+            hhea = font.hhea;
+            os_2 = font.os_2;
+            italicAngle = font.italicAngle;
+            isFixedPitch = font.isFixedPitch;
+            fontSpecific = font.fontSpecific;
+            cmap10 = font.cmap10;
+            cmap31 = font.cmap31;
+            kerning = font.kerning;
+            bboxes = font.bboxes;
+            source = new RandomAccessFileOrArray(font.rf);
+        }
+        
+        /**
+         * Estimates the memory used by the tables.
+         * @return the estimated size in bytes
+         */
+        int getWeight() {
+            int weight = 4096 + kerning.size() * 32;
+            if (cmap10 != null)
+                weight += cmap10.size() * 96;
+            if (cmap31 != null)
+                weight += cmap31.size() * 96;
+            if (bboxes != null) {
+                weight += bboxes.length * 4;
+                for (int k = 0; k < bboxes.length; ++k) {
+                    if (bboxes[k] != null)
+                        weight += 32;
+                }
+            }
+            if (source.arrayIn != null)
+                weight += source.arrayIn.length;
+            return weight;
+        }
+    }
+    
+    /** <CODE>true</CODE> if <CODE>kerning</CODE> belongs to the shared tables
+     * and must be copied before being changed.
+     */
+    private boolean kerningShared = false;
+    
+    /** <CODE>true</CODE> if <CODE>cmap10</CODE> and <CODE>cmap31</CODE> belong
+     * to the shared tables and must be copied before being changed.
+     */
+    boolean cmapsShared = false;
+    
+    /** <CODE>true</CODE> if the tables come from the font cache. */
+    private boolean tablesShared = false;
+    
+    /** <CODE>true</CODE> if the tables can be taken from and put in the font cache. */
+    boolean cacheTables = false;
+    
     /** This constructor is present to allow extending the class.
      */
     protected TrueTypeFont() {
     }
     
     TrueTypeFont(String ttFile, String enc, boolean emb, byte ttfAfm[]) throws DocumentException, IOException {
-        this(ttFile, enc, emb, ttfAfm, false);
+        this(ttFile, enc, emb, ttfAfm, false, false);
+    }
+    
+    TrueTypeFont(String ttFile, String enc, boolean emb, byte ttfAfm[], boolean justNames) throws DocumentException, IOException {
+        this(ttFile, enc, emb, ttfAfm, justNames, false);
     }
     
     /** Creates a new TrueType font.
@@ -345,11 +437,14 @@ class TrueTypeFont extends BaseFont {
      * @param enc the encoding to be applied to this font
      * @param emb true if the font is to be embedded in the PDF
      * @param ttfAfm the font as a <CODE>byte</CODE> array
+     * @param justNames only read the names of the font
+     * @param cached share the tables read from the file through the font cache
      * @throws DocumentException the font is invalid
      * @throws IOException the font file could not be read
      */
-    TrueTypeFont(String ttFile, String enc, boolean emb, byte ttfAfm[], boolean justNames) throws DocumentException, IOException {
+    TrueTypeFont(String ttFile, String enc, boolean emb, byte ttfAfm[], boolean justNames, boolean cached) throws DocumentException, IOException {
         this.justNames = justNames;
+        this.cacheTables = cached;
         String nameBase = getBaseName(ttFile);
         String ttcName = getTTCName(nameBase);
         if (nameBase.length() < ttFile.length()) {
@@ -539,7 +634,7 @@ class TrueTypeFont extends BaseFont {
             int length = rf.readUnsignedShort();
             int offset = rf.readUnsignedShort();
             if (nameID == id) {
-                int pos = rf.getFilePointer();
+                int pos = (int)rf.getFilePointer();
                 rf.seek(table_location[0] + startOfStorage + offset);
                 String name;
                 if (platformID == 0 || platformID == 3 || (platformID == 2 && platformEncodingID == 1)){
@@ -575,6 +670,17 @@ class TrueTypeFont extends BaseFont {
      * @throws IOException the font file could not be read
      */
     void process(byte ttfAfm[]) throws DocumentException, IOException {
+        String key = null;
+        if (ttfAfm == null && !justNames && cacheTables) {
+            // a file changed on disk gets a new key
+            File file = new File(fileName);
+            key = "TrueTypeTables\n" + fileName + "\n" + ttcIndex + "\n" + file.length() + "\n" + file.lastModified();
+            SharedTables shared = (SharedTables)fontCache.get(key);
+            if (shared != null) {
+                setSharedTables(shared);
+                return;
+            }
+        }
         tables = new HashMap();
         
         try {
@@ -621,6 +727,10 @@ class TrueTypeFont extends BaseFont {
                 readKerning();
                 readBbox();
                 GlyphWidths = null;
+                if (key != null) {
+                    SharedTables shared = new SharedTables(this);
+                    setSharedTables((SharedTables)fontCache.put(key, shared, shared.getWeight()));
+                }
             }
         }
         finally {
@@ -632,6 +742,51 @@ class TrueTypeFont extends BaseFont {
         }
     }
     
+    /** Uses the tables already read from the same font file.
+     * @param shared the tables
+     * @throws IOException the font file could not be read
+     */
+    void setSharedTables(SharedTables shared) throws IOException {
+        tables = shared.tables;
+        cff = shared.cff;
+        cffOffset = shared.cffOffset;
+        cffLength = shared.cffLength;
+        directoryOffset = shared.directoryOffset;
+        fontName = shared.fontName;
+        fullName = shared.fullName;
+        familyName = shared.familyName;
+        head = shared.head;
+        hhea = shared.hhea;
+        os_2 = shared.os_2;
+        italicAngle = shared.italicAngle;
+        isFixedPitch = shared.isFixedPitch;
+        fontSpecific = shared.fontSpecific;
+        cmap10 = shared.cmap10;
+        cmap31 = shared.cmap31;
+        kerning = shared.kerning;
+        kerningShared = true;
+        cmapsShared = true;
+        tablesShared = true;
+        bboxes = shared.bboxes;
+        if (embedded)
+            rf = new RandomAccessFileOrArray(shared.source);
+    }
+    
+    int getCacheWeight() {
+        int weight = super.getCacheWeight();
+        if (!tablesShared) {
+            // the tables are not in the cache by themselves
+            weight += 4096 + kerning.size() * 32 + (bboxes == null ? 0 : bboxes.length * 36);
+            if (cmap10 != null)
+                weight += cmap10.size() * 96;
+            if (cmap31 != null)
+                weight += cmap31.size() * 96;
+            if (rf != null && rf.arrayIn != null)
+                weight += rf.arrayIn.length;
+        }
+        return weight;
+    }
+    
     /** Reads a <CODE>String</CODE> from the font file as bytes using the Cp1252
      *  encoding.
      * @param length the length of bytes to read
@@ -924,15 +1079,18 @@ class TrueTypeFont extends BaseFont {
      * @return the kerning to be applied
      */
     public int getKerning(char char1, char char2) {
-        int metrics[] = getMetricsTT(char1);
-        if (metrics == null)
-            return 0;
-        int c1 = metrics[0];
-        metrics = getMetricsTT(char2);
+        return getPageKerning(char1, char2);
+    }
+    
+    int getKerningGlyph(char c) {
+        int metrics[] = getMetricsTT(c);
         if (metrics == null)
-            return 0;
-        int c2 = metrics[0];
-        return kerning.get((c1 << 16) + c2);
+            return -1;
+        return metrics[0];
+    }
+    
+    int getKerningByGlyph(int glyph1, int glyph2) {
+        return kerning.get((glyph1 << 16) + glyph2);
     }
     
     /** Gets the width from the font according to the unicode char <CODE>c</CODE>.
@@ -1068,7 +1226,7 @@ class TrueTypeFont extends BaseFont {
         try {
             rf2 = new RandomAccessFileOrArray(rf);
             rf2.reOpen();
-            byte b[] = new byte[rf2.length()];
+            byte b[] = new byte[(int)rf2.length()];
             rf2.readFully(b);
             return b;
         } 
@@ -1367,6 +1525,10 @@ class TrueTypeFont extends BaseFont {
         if (metrics == null)
             return false;
         int c2 = metrics[0];
+        if (kerningShared) {
+            kerning = (IntHashtable)kerning.clone();
+            kerningShared = false;
+        }
         kerning.put((c1 << 16) + c2, kern);
         return true;
     }
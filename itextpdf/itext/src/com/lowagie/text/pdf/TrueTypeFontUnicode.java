@@ -79,6 +79,20 @@ class TrueTypeFontUnicode extends TrueTypeFont implements Comparator{
      * @throws IOException the font file could not be read
      */
     TrueTypeFontUnicode(String ttFile, String enc, boolean emb, byte ttfAfm[]) throws DocumentException, IOException {
+        this(ttFile, enc, emb, ttfAfm, false);
+    }
+    
+    /** Creates a new TrueType font addressed by Unicode characters.
+     * @param ttFile the location of the font on file
+     * @param enc the encoding to be applied to this font
+     * @param emb true if the font is to be embedded in the PDF
+     * @param ttfAfm the font as a <CODE>byte</CODE> array
+     * @param cached share the tables read from the file through the font cache
+     * @throws DocumentException the font is invalid
+     * @throws IOException the font file could not be read
+     */
+    TrueTypeFontUnicode(String ttFile, String enc, boolean emb, byte ttfAfm[], boolean cached) throws DocumentException, IOException {
+        cacheTables = cached;
         String nameBase = getBaseName(ttFile);
         String ttcName = getTTCName(nameBase);
         if (nameBase.length() < ttFile.length()) {
@@ -406,6 +420,13 @@ class TrueTypeFontUnicode extends TrueTypeFont implements Comparator{
      * <CODE>false</CODE> otherwise
      */
     public boolean setCharAdvance(char c, int advance) {
+        if (cmapsShared) {
+            if (cmap10 != null)
+                cmap10 = (HashMap)cmap10.clone();
+            if (cmap31 != null)
+                cmap31 = (HashMap)cmap31.clone();
+            cmapsShared = false;
+        }
         HashMap map = null;
         if (fontSpecific)
             map = cmap10;
@@ -413,19 +434,22 @@ class TrueTypeFontUnicode extends TrueTypeFont implements Comparator{
             map = cmap31;
         if (map == null)
             return false;
-        int m[] = null;
+        Integer key;
         if (fontSpecific) {
             if ((c & 0xff00) == 0 || (c & 0xff00) == 0xf000)
-                m = (int[])map.get(new Integer(c & 0xff));
+                key = new Integer(c & 0xff);
             else
                 return false;
         }
         else
-            m = (int[])map.get(new Integer(c));
+            key = new Integer(c);
+        int m[] = (int[])map.get(key);
         if (m == null)
             return false;
-        else
-            m[1] = advance;
+        // the metrics can still be shared with the maps of other fonts
+        m = new int[]{m[0], advance};
+        map.put(key, m);
+        clearGlyphPages();
         return true;
     }
     
@@ -54,6 +54,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 import com.lowagie.text.DocumentException;
@@ -148,6 +150,13 @@ class Type1Font extends BaseFont
  *  repeated for all the pairs.
  */
     private HashMap KernPairs = new HashMap();
+/** The code of each glyph name of <CODE>KernPairs</CODE>. */
+    private HashMap kernCodes = new HashMap();
+/** The kerning distances of <CODE>KernPairs</CODE>. The key has the code of
+ *  the first glyph in the high 16 bits and the code of the second glyph in
+ *  the low 16 bits.
+ */
+    private IntHashtable kernTable = new IntHashtable();
 /** The file in use.
  */
     private String fileName;
@@ -279,6 +288,57 @@ class Type1Font extends BaseFont
         if (!encoding.startsWith("#"))
             PdfEncodings.convertToBytes(" ", enc); // check if the encoding exists
         createEncoding();
+        createKernTable();
+    }
+    
+/** Fills <CODE>kernCodes</CODE> and <CODE>kernTable</CODE> from <CODE>KernPairs</CODE>.
+ */
+    private void createKernTable() {
+        HashMap codes = new HashMap();
+        IntHashtable table = new IntHashtable();
+        for (Iterator it = KernPairs.entrySet().iterator(); it.hasNext();) {
+            Map.Entry entry = (Map.Entry)it.next();
+            int c1 = getKernCode(codes, (String)entry.getKey());
+            Object obj[] = (Object[])entry.getValue();
+            // backwards so that the first of repeated pairs is kept
+            for (int k = obj.length - 2; k >= 0; k -= 2) {
+                int c2 = getKernCode(codes, (String)obj[k]);
+                table.put((c1 << 16) | c2, ((Integer)obj[k + 1]).intValue());
+            }
+        }
+        kernCodes = codes;
+        kernTable = table;
+        clearGlyphPages();
+    }
+    
+/** Adds a pair set with <CODE>setKerning()</CODE> to <CODE>kernTable</CODE>.
+ */
+    private void putKernPair(String first, String second, int kern) {
+        int size = kernCodes.size();
+        int c1 = getKernCode(kernCodes, first);
+        int c2 = getKernCode(kernCodes, second);
+        kernTable.put((c1 << 16) | c2, kern);
+        if (kernCodes.size() != size)
+            clearGlyphPages();
+    }
+    
+    private static int getKernCode(HashMap codes, String name) {
+        Integer code = (Integer)codes.get(name);
+        if (code == null) {
+            code = new Integer(codes.size());
+            codes.put(name, code);
+        }
+        return code.intValue();
+    }
+    
+/** Estimates the memory used by this font for the font cache.
+ * @return the estimated size in bytes
+ */
+    int getCacheWeight() {
+        int weight = super.getCacheWeight() + (CharMetrics.size() + KernPairs.size()) * 128;
+        if (pfb != null)
+            weight += pfb.length;
+        return weight;
     }
     
 /** Gets the width from the font according to the <CODE>name</CODE> or,
@@ -312,20 +372,21 @@ class Type1Font extends BaseFont
  */
     public int getKerning(char char1, char char2)
     {
-        String first = GlyphList.unicodeToName((int)char1);
-        if (first == null)
-            return 0;
-        String second = GlyphList.unicodeToName((int)char2);
-        if (second == null)
-            return 0;
-        Object obj[] = (Object[])KernPairs.get(first);
-        if (obj == null)
-            return 0;
-        for (int k = 0; k < obj.length; k += 2) {
-            if (second.equals(obj[k]))
-                return ((Integer)obj[k + 1]).intValue();
-        }
-        return 0;
+        return getPageKerning(char1, char2);
+    }
+    
+    int getKerningGlyph(char c) {
+        String name = GlyphList.unicodeToName((int)c);
+        if (name == null)
+            return -1;
+        Integer code = (Integer)kernCodes.get(name);
+        if (code == null)
+            return -1;
+        return code.intValue();
+    }
+    
+    int getKerningByGlyph(int glyph1, int glyph2) {
+        return kernTable.get((glyph1 << 16) | glyph2);
     }
     
     
@@ -507,7 +568,7 @@ class Type1Font extends BaseFont
                 rf = new RandomAccessFileOrArray(filePfb);
             else
                 rf = new RandomAccessFileOrArray(pfb);
-            int fileLength = rf.length();
+            int fileLength = (int)rf.length();
             byte st[] = new byte[fileLength - 18];
             int lengths[] = new int[3];
             int bytePtr = 0;
@@ -774,11 +835,13 @@ class Type1Font extends BaseFont
         if (obj == null) {
             obj = new Object[]{second, new Integer(kern)};
             KernPairs.put(first, obj);
+            putKernPair(first, second, kern);
             return true;
         }
         for (int k = 0; k < obj.length; k += 2) {
             if (second.equals(obj[k])) {
                 obj[k + 1] = new Integer(kern);
+                putKernPair(first, second, kern);
                 return true;
             }
         }
@@ -788,6 +851,7 @@ class Type1Font extends BaseFont
         obj2[size] = second;
         obj2[size + 1] = new Integer(kern);
         KernPairs.put(first, obj2);
+        putKernPair(first, second, kern);
         return true;
     }
     
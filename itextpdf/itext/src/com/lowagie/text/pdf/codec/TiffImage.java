@@ -52,8 +52,10 @@ import java.util.zip.DataFormatException;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
 
+import com.lowagie.text.BadElementException;
 import com.lowagie.text.ExceptionConverter;
 import com.lowagie.text.Image;
+import com.lowagie.text.ImgRaw;
 import com.lowagie.text.Jpeg;
 import com.lowagie.text.pdf.PdfArray;
 import com.lowagie.text.pdf.PdfDictionary;
@@ -112,7 +114,11 @@ public class TiffImage {
      * @param page the page to get. The first page is 1
      * @param direct for single strip, CCITT images, generate the image
      * by direct byte copying. It's faster but may not work
-     * every time
+     * every time. The strips of the color images are also copied without
+     * being decoded when PDF has a filter for them, see
+     * <CODE>getTiffImageColor(TIFFDirectory, RandomAccessFileOrArray, boolean)</CODE>.
+     * It's much faster but the PackBits and LZW images are usually bigger
+     * than when compressed again with Deflate
      * @return the <CODE>Image</CODE>
      */    
     public static Image getTiffImage(RandomAccessFileOrArray s, int page, boolean direct) {
@@ -130,7 +136,7 @@ public class TiffImage {
                 case TIFFConstants.COMPRESSION_CCITTFAX4:
                     break;
                 default:
-                    return getTiffImageColor(dir, s);
+                    return getTiffImageColor(dir, s, direct);
             }
             float rotation = 0;
             if (dir.isTagPresent(TIFFConstants.TIFFTAG_ORIENTATION)) {
@@ -209,7 +215,7 @@ public class TiffImage {
                         tiffT6Options = t6OptionsField.getAsLong(0);
                     break;
             }
-            if (direct && rowsStrip == h) { //single strip, direct
+            if (direct && rowsStrip == h && size != null) { //single strip, direct
                 byte im[] = new byte[(int)size[0]];
                 s.seek(offset[0]);
                 s.readFully(im);
@@ -282,6 +288,19 @@ public class TiffImage {
     }
     
     protected static Image getTiffImageColor(TIFFDirectory dir, RandomAccessFileOrArray s) {
+        return getTiffImageColor(dir, s, false);
+    }
+    
+    /** Reads a color, gray or palette page from a TIFF image.
+     * @param dir the directory of the page
+     * @param s the file source
+     * @param direct copy the strips without decoding them when PDF has a
+     * filter for them: a single Deflate or LZW strip, with or without the
+     * horizontal differencing predictor, or PackBits strips, except for the
+     * bilevel images. The other images are decoded
+     * @return the <CODE>Image</CODE>
+     */
+    protected static Image getTiffImageColor(TIFFDirectory dir, RandomAccessFileOrArray s, boolean direct) {
         try {
             int compression = (int)dir.getFieldAsLong(TIFFConstants.TIFFTAG_COMPRESSION);
             int predictor = 1;
@@ -291,6 +310,7 @@ public class TiffImage {
                 case TIFFConstants.COMPRESSION_LZW:
                 case TIFFConstants.COMPRESSION_PACKBITS:
                 case TIFFConstants.COMPRESSION_DEFLATE:
+                case TIFFConstants.COMPRESSION_ADOBE_DEFLATE:
                 case TIFFConstants.COMPRESSION_OJPEG:
                 case TIFFConstants.COMPRESSION_JPEG:
                     break;
@@ -358,7 +378,8 @@ public class TiffImage {
             if (size == null && h == rowsStrip) { // some TIFF producers are really lousy, so...
                 size = new long[]{s.length() - (int)offset[0]};
             }
-            if (compression == TIFFConstants.COMPRESSION_LZW) {
+            if (compression == TIFFConstants.COMPRESSION_LZW || compression == TIFFConstants.COMPRESSION_DEFLATE
+                || compression == TIFFConstants.COMPRESSION_ADOBE_DEFLATE) {
                 TIFFField predictorField = dir.getField(TIFFConstants.TIFFTAG_PREDICTOR);
                 if (predictorField != null) {
                     predictor = predictorField.getAsInt(0);
@@ -369,22 +390,31 @@ public class TiffImage {
                         throw new RuntimeException(bitsPerSample + "-bit samples are not supported for Horizontal differencing Predictor.");
                     }
                 }
+            }
+            if (compression == TIFFConstants.COMPRESSION_LZW) {
                 lzwDecoder = new TIFFLZWDecoder(w, predictor, 
                                                 samplePerPixel); 
             }
+            if (direct)
+                img = getStripsImage(s, compression, predictor, w, h, samplePerPixel, bitsPerSample, rowsStrip, offset, size);
             int rowsLeft = h;
             ByteArrayOutputStream stream = null;
             DeflaterOutputStream zip = null;
             CCITTG4Encoder g4 = null;
-            if (bitsPerSample == 1 && samplePerPixel == 1) {
-                g4 = new CCITTG4Encoder(w);
+            if (img == null) {
+                if (bitsPerSample == 1 && samplePerPixel == 1) {
+                    g4 = new CCITTG4Encoder(w);
+                }
+                else {
+                    stream = new ByteArrayOutputStream();
+                    if (compression != TIFFConstants.COMPRESSION_OJPEG && compression != TIFFConstants.COMPRESSION_JPEG)
+                        zip = new DeflaterOutputStream(stream);
+                }
             }
-            else {
-                stream = new ByteArrayOutputStream();
-                if (compression != TIFFConstants.COMPRESSION_OJPEG && compression != TIFFConstants.COMPRESSION_JPEG)
-                    zip = new DeflaterOutputStream(stream);
+            if (img != null) {
+                // the strips were copied as they are
             }
-            if (compression == TIFFConstants.COMPRESSION_OJPEG) {
+            else if (compression == TIFFConstants.COMPRESSION_OJPEG) {
                 if ((!dir.isTagPresent(TIFFConstants.TIFFTAG_JPEGIFOFFSET))
                 || (!dir.isTagPresent(TIFFConstants.TIFFTAG_JPEGIFBYTECOUNT))) {
                     throw new RuntimeException("Missing tag(s) for OJPEG compression.");
@@ -393,9 +423,9 @@ public class TiffImage {
                 int jpegLength = (int)dir.getFieldAsLong(TIFFConstants.TIFFTAG_JPEGIFBYTECOUNT) +
                         (int)size[0];
 
-                byte[] jpeg = new byte[Math.min(jpegLength, s.length() - jpegOffset)];
+                byte[] jpeg = new byte[(int)Math.min(jpegLength, s.length() - jpegOffset)];
 
-                int posFilePointer = s.getFilePointer();
+                long posFilePointer = s.getFilePointer();
                 posFilePointer += jpegOffset;
                 s.seek(posFilePointer);
                 s.readFully(jpeg);
@@ -420,7 +450,10 @@ public class TiffImage {
                         outBuf = new byte[(w * bitsPerSample * samplePerPixel + 7) / 8 * height];
                     switch (compression) {
                         case TIFFConstants.COMPRESSION_DEFLATE:
+                        case TIFFConstants.COMPRESSION_ADOBE_DEFLATE:
                             inflate(im, outBuf);
+                            if (predictor == 2)
+                                applyPredictor(outBuf, w * samplePerPixel, samplePerPixel);
                             break;
                         case TIFFConstants.COMPRESSION_NONE:
                             outBuf = im;
@@ -479,7 +512,9 @@ public class TiffImage {
                     indexed.add(PdfName.DEVICERGB);
                     indexed.add(new PdfNumber(gColor - 1));
                     indexed.add(new PdfString(palette));
-                    PdfDictionary additional = new PdfDictionary();
+                    PdfDictionary additional = img.getAdditional();
+                    if (additional == null)
+                        additional = new PdfDictionary();
                     additional.put(PdfName.COLORSPACE, indexed);
                     img.setAdditional(additional);
                 }
@@ -496,6 +531,139 @@ public class TiffImage {
         }
     }
     
+    /**
+     * Makes an image from the strips as they are in the file, without decoding
+     * them, if PDF has a filter for their compression. That is the case for a
+     * single strip compressed with Deflate or LZW, with or without the
+     * horizontal differencing predictor, and for PackBits strips, that are
+     * kept as RunLengthDecode data. Bilevel PackBits images are decoded
+     * anyway to be compressed with CCITT G4.
+     * @param s the file source
+     * @param compression the TIFF compression
+     * @param predictor the TIFF predictor
+     * @param w the width of the image
+     * @param h the height of the image
+     * @param samplePerPixel the samples per pixel
+     * @param bitsPerSample the bits per sample
+     * @param rowsStrip the rows per strip
+     * @param offset the offsets of the strips
+     * @param size the lengths of the strips
+     * @return the image or <CODE>null</CODE> if the strips have to be decoded
+     * @throws IOException on error
+     * @throws BadElementException on error
+     */
+    static Image getStripsImage(RandomAccessFileOrArray s, int compression, int predictor, int w, int h,
+        int samplePerPixel, int bitsPerSample, int rowsStrip, long offset[], long size[]) throws IOException, BadElementException {
+        if (size == null || size.length < offset.length)
+            return null;
+        if (samplePerPixel != 1 && samplePerPixel != 3 && samplePerPixel != 4)
+            return null;
+        PdfName filter;
+        byte data[];
+        switch (compression) {
+            case TIFFConstants.COMPRESSION_DEFLATE:
+            case TIFFConstants.COMPRESSION_ADOBE_DEFLATE:
+            case TIFFConstants.COMPRESSION_LZW:
+                if (offset.length != 1)
+                    return null;
+                data = new byte[(int)size[0]];
+                s.seek(offset[0]);
+                s.readFully(data);
+                if (compression == TIFFConstants.COMPRESSION_LZW) {
+                    // the old style codes are left to the decoder to report
+                    if (data.length < 2 || (data[0] == 0 && data[1] == 1))
+                        return null;
+                    filter = PdfName.LZWDECODE;
+                }
+                else
+                    filter = PdfName.FLATEDECODE;
+                break;
+            case TIFFConstants.COMPRESSION_PACKBITS:
+                if (bitsPerSample == 1 && samplePerPixel == 1)
+                    return null;
+                data = copyPackbits(s, (w * bitsPerSample * samplePerPixel + 7) / 8, h, rowsStrip, offset, size);
+                if (data == null)
+                    return null;
+                filter = PdfName.RUNLENGTHDECODE;
+                break;
+            default:
+                return null;
+        }
+        Image img = new ImgRaw(w, h, samplePerPixel, bitsPerSample, data);
+        PdfDictionary additional = new PdfDictionary();
+        if (filter == PdfName.FLATEDECODE)
+            img.setDeflated(true);
+        else
+            additional.put(PdfName.FILTER, filter);
+        if (predictor == 2) {
+            PdfDictionary decodeparms = new PdfDictionary();
+            decodeparms.put(PdfName.PREDICTOR, new PdfNumber(2));
+            decodeparms.put(PdfName.COLORS, new PdfNumber(samplePerPixel));
+            decodeparms.put(PdfName.BITSPERCOMPONENT, new PdfNumber(bitsPerSample));
+            decodeparms.put(PdfName.COLUMNS, new PdfNumber(w));
+            additional.put(PdfName.DECODEPARMS, decodeparms);
+        }
+        if (additional.size() > 0)
+            img.setAdditional(additional);
+        return img;
+    }
+    
+    /**
+     * Joins PackBits strips into RunLengthDecode data. Each strip is cut where
+     * it has all its rows.
+     * @return the data or <CODE>null</CODE> if a strip has a no-op code,
+     * the end of data code of RunLengthDecode, or the wrong number of bytes
+     */
+    private static byte[] copyPackbits(RandomAccessFileOrArray s, int rowBytes, int h, int rowsStrip,
+        long offset[], long size[]) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int rowsLeft = h;
+        for (int k = 0; k < offset.length && rowsLeft > 0; ++k) {
+            byte im[] = new byte[(int)size[k]];
+            s.seek(offset[k]);
+            s.readFully(im);
+            int expected = rowBytes * Math.min(rowsStrip, rowsLeft);
+            int src = 0;
+            int dst = 0;
+            while (dst < expected) {
+                if (src >= im.length)
+                    return null;
+                int b = im[src++];
+                if (b >= 0) {
+                    dst += b + 1;
+                    src += b + 1;
+                }
+                else if (b != -128) {
+                    dst += -b + 1;
+                    ++src;
+                }
+                else
+                    return null;
+            }
+            if (dst != expected || src > im.length)
+                return null;
+            out.write(im, 0, src);
+            rowsLeft -= rowsStrip;
+        }
+        if (rowsLeft > 0)
+            return null;
+        out.write(128);
+        return out.toByteArray();
+    }
+    
+    /**
+     * Undoes the TIFF horizontal differencing predictor on 8 bit samples.
+     * @param buf the rows
+     * @param rowLength the samples in a row
+     * @param samplePerPixel the samples per pixel
+     */
+    static void applyPredictor(byte buf[], int rowLength, int samplePerPixel) {
+        for (int row = 0; row + rowLength <= buf.length; row += rowLength) {
+            for (int k = row + samplePerPixel; k < row + rowLength; ++k)
+                buf[k] += buf[k - samplePerPixel];
+        }
+    }
+    
     static long[] getArrayLongShort(TIFFDirectory dir, int tag) {
         TIFFField field = dir.getField(tag);
         if (field == null)
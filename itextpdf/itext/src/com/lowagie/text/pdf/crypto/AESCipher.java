@@ -48,17 +48,68 @@
  */
 package com.lowagie.text.pdf.crypto;
 
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
 import com.lowagie.text.ExceptionConverter;
 
 /**
  * Creates an AES Cipher with CBC and padding PKCS5/7.
+ * <p>
+ * The cipher of the JCE provider is used when there is one, the virtual
+ * machine may run it with the processor AES instructions. The bundled
+ * <CODE>AESFastEngine</CODE> is used otherwise.
  * @author Paulo Soares (psoares@consiste.pt)
  */
 public class AESCipher {
+    
+    /** The transformation asked to the JCE provider. */
+    private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    /** Is there a JCE provider for AES? */
+    private static final boolean PROVIDER_AVAILABLE;
+    /**
+     * The data length from which <CODE>process()</CODE> uses the JCE provider.
+     * Below it the setup of the provider cipher costs more than the bundled
+     * engine takes for all the data.
+     */
+    private static final int PROVIDER_MIN_LENGTH = 512;
+    
+    static {
+        boolean available = false;
+        try {
+            Cipher.getInstance(TRANSFORMATION);
+            available = true;
+        }
+        catch (Exception e) {
+            // the bundled engine is used
+        }
+        PROVIDER_AVAILABLE = available;
+    }
+    
     private PaddedBufferedBlockCipher bp;
+    private Cipher cipher;
     
     /** Creates a new instance of AESCipher */
     public AESCipher(boolean forEncryption, byte[] key, byte[] iv) {
+        this(forEncryption, key, iv, PROVIDER_AVAILABLE);
+    }
+    
+    private AESCipher(boolean forEncryption, byte[] key, byte[] iv, boolean provider) {
+        if (provider) {
+            try {
+                cipher = Cipher.getInstance(TRANSFORMATION);
+                cipher.init(forEncryption ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE,
+                    new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+                return;
+            }
+            catch (GeneralSecurityException e) {
+                // a key the provider doesn't take goes to the bundled engine
+                cipher = null;
+            }
+        }
         BlockCipher aes = new AESFastEngine();
         BlockCipher cbc = new CBCBlockCipher(aes);
         bp = new PaddedBufferedBlockCipher(cbc);
@@ -67,7 +118,18 @@ public class AESCipher {
         bp.init(forEncryption, piv);
     }
     
+    /**
+     * Checks if the ciphers are made by a JCE provider.
+     * @return <CODE>true</CODE> if a JCE provider is used, <CODE>false</CODE>
+     * if it's the bundled engine
+     */
+    public static boolean isProviderAvailable() {
+        return PROVIDER_AVAILABLE;
+    }
+    
     public byte[] update(byte[] inp, int inpOff, int inpLen) {
+        if (cipher != null)
+            return cipher.update(inp, inpOff, inpLen);
         int neededLen = bp.getUpdateOutputSize(inpLen);
         byte[] outp = null;
         if (neededLen > 0)
@@ -79,6 +141,14 @@ public class AESCipher {
     }
     
     public byte[] doFinal() {
+        if (cipher != null) {
+            try {
+                return cipher.doFinal();
+            }
+            catch (GeneralSecurityException ex) {
+                throw new ExceptionConverter(ex);
+            }
+        }
         int neededLen = bp.getOutputSize(0);
         byte[] outp = new byte[neededLen];
         int n = 0;
@@ -96,4 +166,42 @@ public class AESCipher {
             return outp;
     }
     
+    /**
+     * Encrypts or decrypts all the data at once, writing the result in the given array.
+     * Short data, like most strings, is processed with the bundled engine.
+     * @param forEncryption <CODE>true</CODE> to encrypt, <CODE>false</CODE> to decrypt
+     * @param key the key
+     * @param iv the initialization vector
+     * @param inp the data
+     * @param inpOff the offset of the data
+     * @param inpLen the length of the data
+     * @param outp the array for the result. It must have room for the data and the padding
+     * @param outOff the offset in <CODE>outp</CODE>
+     * @return the number of bytes written in <CODE>outp</CODE>
+     */
+    public static int process(boolean forEncryption, byte[] key, byte[] iv, byte[] inp, int inpOff, int inpLen, byte[] outp, int outOff) {
+        AESCipher cipher = new AESCipher(forEncryption, key, iv, PROVIDER_AVAILABLE && inpLen >= PROVIDER_MIN_LENGTH);
+        return cipher.doFinal(inp, inpOff, inpLen, outp, outOff);
+    }
+    
+    /**
+     * Processes all the data at once, writing the result in the given array.
+     * @param inp the data
+     * @param inpOff the offset of the data
+     * @param inpLen the length of the data
+     * @param outp the array for the result. It must have room for the data and the padding
+     * @param outOff the offset in <CODE>outp</CODE>
+     * @return the number of bytes written in <CODE>outp</CODE>
+     */
+    private int doFinal(byte[] inp, int inpOff, int inpLen, byte[] outp, int outOff) {
+        try {
+            if (cipher != null)
+                return cipher.doFinal(inp, inpOff, inpLen, outp, outOff);
+            int n = bp.processBytes(inp, inpOff, inpLen, outp, outOff);
+            return n + bp.doFinal(outp, outOff + n);
+        }
+        catch (Exception ex) {
+            throw new ExceptionConverter(ex);
+        }
+    }
 }
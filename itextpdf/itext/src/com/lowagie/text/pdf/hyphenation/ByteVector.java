@@ -60,7 +60,7 @@ public class ByteVector implements Serializable {
     public ByteVector(byte[] a) {
         blockSize = DEFAULT_BLOCK_SIZE;
         array = a;
-        n = 0;
+        n = a.length;
     }
 
     public ByteVector(byte[] a, int capacity) {
@@ -70,7 +70,7 @@ public class ByteVector implements Serializable {
             blockSize = DEFAULT_BLOCK_SIZE;
         }
         array = a;
-        n = 0;
+        n = a.length;
     }
 
     public byte[] getArray() {
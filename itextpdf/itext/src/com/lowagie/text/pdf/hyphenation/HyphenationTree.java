@@ -18,10 +18,17 @@
  
 package com.lowagie.text.pdf.hyphenation;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * This tree structure stores the hyphenation patterns in an efficient
@@ -50,6 +57,11 @@ public class HyphenationTree extends TernaryTree
      */
     protected TernaryTree classmap;
 
+    /**
+     * The first bytes of the compiled patterns, "HYC" and the format version.
+     */
+    static final int COMPILED_MAGIC = 0x48594301;
+
     /**
      * Temporary map to store interletter values on pattern loading.
      */
@@ -123,6 +135,92 @@ public class HyphenationTree extends TernaryTree
     }
 
 
+    /**
+     * Loads a tree written by {@link #saveCompiledPatterns(OutputStream)
+     * saveCompiledPatterns()}. The arrays of the tree are read as they are,
+     * which is much faster than parsing the XML patterns again.
+     * @param stream the compiled patterns. It is closed at the end
+     * @throws IOException on error or if the stream doesn't have compiled patterns
+     */
+    public void loadCompiledPatterns(InputStream stream) throws IOException {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            if (in.readInt() != COMPILED_MAGIC) {
+                throw new IOException("Not a compiled hyphenation tree.");
+            }
+            readTree(in);
+            classmap.readTree(in);
+            byte[] values = new byte[in.readInt()];
+            in.readFully(values);
+            vspace = new ByteVector(values);
+            int size = in.readInt();
+            stoplist = new HashMap(size * 2 + 1);
+            for (int i = 0; i < size; i++) {
+                String word = in.readUTF();
+                int n = in.readInt();
+                ArrayList hyphenatedword = new ArrayList(n);
+                for (int k = 0; k < n; k++) {
+                    if (in.readBoolean()) {
+                        hyphenatedword.add(new Hyphen(readString(in), readString(in), readString(in)));
+                    } else {
+                        hyphenatedword.add(in.readUTF());
+                    }
+                }
+                stoplist.put(word, hyphenatedword);
+            }
+        }
+        finally {
+            try{stream.close();}catch(Exception e){}
+        }
+    }
+
+    /**
+     * Writes the tree in the binary form read by
+     * {@link #loadCompiledPatterns(InputStream) loadCompiledPatterns()}.
+     * @param stream the destination of the compiled patterns. It is flushed but not closed
+     * @throws IOException on error
+     */
+    public void saveCompiledPatterns(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(COMPILED_MAGIC);
+        writeTree(out);
+        classmap.writeTree(out);
+        out.writeInt(vspace.length());
+        out.write(vspace.getArray(), 0, vspace.length());
+        out.writeInt(stoplist.size());
+        for (java.util.Iterator it = stoplist.entrySet().iterator(); it.hasNext();) {
+            Map.Entry entry = (Map.Entry)it.next();
+            out.writeUTF((String)entry.getKey());
+            ArrayList hyphenatedword = (ArrayList)entry.getValue();
+            out.writeInt(hyphenatedword.size());
+            for (int k = 0; k < hyphenatedword.size(); k++) {
+                Object item = hyphenatedword.get(k);
+                if (item instanceof Hyphen) {
+                    Hyphen hyphen = (Hyphen)item;
+                    out.writeBoolean(true);
+                    writeString(out, hyphen.preBreak);
+                    writeString(out, hyphen.noBreak);
+                    writeString(out, hyphen.postBreak);
+                } else {
+                    out.writeBoolean(false);
+                    out.writeUTF((String)item);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     public String findPattern(String pat) {
         int k = super.find(pat);
         if (k >= 0) {
@@ -18,8 +18,10 @@ package com.lowagie.text.pdf.hyphenation;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Hashtable;
+import java.util.HashMap;
+import java.util.Iterator;
 
 import com.lowagie.text.pdf.BaseFont;
 
@@ -31,8 +33,9 @@ import com.lowagie.text.pdf.BaseFont;
  */
 public class Hyphenator {
     
-    /** TODO: Don't use statics */
-    private static Hashtable hyphenTrees = new Hashtable();
+    /** The hyphenation trees by key, each one in a <CODE>TreeEntry</CODE>.
+     * TODO: Don't use statics */
+    private static final HashMap hyphenTrees = new HashMap();
 
     private HyphenationTree hyphenTree = null;
     private int remainCharCount = 2;
@@ -42,6 +45,20 @@ public class Hyphenator {
     /** Holds value of property hyphenDir. */
     private static String hyphenDir = "";    
 
+    /**
+     * A tree of the registry. A tree is loaded once, holding the lock of its
+     * entry, so that the threads asking for the same language wait for it
+     * while the other languages can be loaded at the same time.
+     * The fields are only changed holding the locks of both the entry and
+     * <CODE>hyphenTrees</CODE>.
+     */
+    private static final class TreeEntry {
+        /** The tree or <CODE>null</CODE> if there are no patterns for the key. */
+        HyphenationTree tree;
+        /** <CODE>true</CODE> when the tree was looked for. */
+        boolean loaded;
+    }
+
     /**
      * @param lang
      * @param country
@@ -67,22 +84,38 @@ public class Hyphenator {
         if (country != null && !country.equals("none")) {
             key += "_" + country;
         }
+        TreeEntry entry;
+        synchronized (hyphenTrees) {
             // first try to find it in the cache
-        if (hyphenTrees.containsKey(key)) {
-            return (HyphenationTree)hyphenTrees.get(key);
-        }
-        if (hyphenTrees.containsKey(lang)) {
-            return (HyphenationTree)hyphenTrees.get(lang);
+            entry = (TreeEntry)hyphenTrees.get(key);
+            if (entry != null && entry.tree != null) {
+                return entry.tree;
+            }
+            TreeEntry langEntry = (TreeEntry)hyphenTrees.get(lang);
+            if (langEntry != null && langEntry.tree != null) {
+                return langEntry.tree;
+            }
+            if (entry == null) {
+                entry = new TreeEntry();
+                hyphenTrees.put(key, entry);
+            }
+            else if (entry.loaded) {
+                // there are no patterns for this key
+                return null;
+            }
         }
-
-        HyphenationTree hTree = getResourceHyphenationTree(key);
-        if (hTree == null)
-            hTree = getFileHyphenationTree(key);
-        // put it into the pattern cache
-        if (hTree != null) {
-            hyphenTrees.put(key, hTree);
+        synchronized (entry) {
+            if (!entry.loaded) {
+                HyphenationTree hTree = getResourceHyphenationTree(key);
+                if (hTree == null)
+                    hTree = getFileHyphenationTree(key);
+                synchronized (hyphenTrees) {
+                    entry.tree = hTree;
+                    entry.loaded = true;
+                }
+            }
+            return entry.tree;
         }
-        return hTree;
     }
 
     /**
@@ -91,13 +124,9 @@ public class Hyphenator {
      */
     public static HyphenationTree getResourceHyphenationTree(String key) {
         try {
-            InputStream stream = BaseFont.getResourceStream(defaultHyphLocation + key + ".xml");
-            if (stream == null && key.length() > 2)
-                stream = BaseFont.getResourceStream(defaultHyphLocation + key.substring(0, 2) + ".xml");
-            if (stream == null)
-                return null;
-            HyphenationTree hTree = new HyphenationTree();
-            hTree.loadSimplePatterns(stream);
+            HyphenationTree hTree = loadResourceTree(key);
+            if (hTree == null && key.length() > 2)
+                hTree = loadResourceTree(key.substring(0, 2));
             return hTree;
         }
         catch (Exception e) {
@@ -105,27 +134,41 @@ public class Hyphenator {
         }
     }
 
+    /**
+     * Loads the compiled patterns <CODE>name.hyc</CODE> or, if they are
+     * not there, parses the patterns <CODE>name.xml</CODE>.
+     * @param name the name of the patterns
+     * @return a hyphenation tree or <CODE>null</CODE> if there are no patterns
+     * @throws IOException on error
+     */
+    private static HyphenationTree loadResourceTree(String name) throws IOException {
+        InputStream stream = BaseFont.getResourceStream(defaultHyphLocation + name + ".hyc");
+        if (stream != null) {
+            HyphenationTree hTree = new HyphenationTree();
+            hTree.loadCompiledPatterns(stream);
+            return hTree;
+        }
+        stream = BaseFont.getResourceStream(defaultHyphLocation + name + ".xml");
+        if (stream != null) {
+            HyphenationTree hTree = new HyphenationTree();
+            hTree.loadSimplePatterns(stream);
+            return hTree;
+        }
+        return null;
+    }
+
     /**
      * @param key
      * @return a hyphenation tree
      */
     public static HyphenationTree getFileHyphenationTree(String key) {
         try {
-            if (hyphenDir == null)
+            String dir = hyphenDir;
+            if (dir == null)
                 return null;
-            InputStream stream = null;
-            File hyphenFile = new File(hyphenDir, key + ".xml");
-            if (hyphenFile.canRead())
-                stream = new FileInputStream(hyphenFile);
-            if (stream == null && key.length() > 2) {
-                hyphenFile = new File(hyphenDir, key.substring(0, 2) + ".xml");
-                if (hyphenFile.canRead())
-                    stream = new FileInputStream(hyphenFile);
-            }
-            if (stream == null)
-                return null;
-            HyphenationTree hTree = new HyphenationTree();
-            hTree.loadSimplePatterns(stream);
+            HyphenationTree hTree = loadFileTree(dir, key);
+            if (hTree == null && key.length() > 2)
+                hTree = loadFileTree(dir, key.substring(0, 2));
             return hTree;
         }
         catch (Exception e) {
@@ -133,6 +176,30 @@ public class Hyphenator {
         }
     }
 
+    /**
+     * Loads the compiled patterns <CODE>name.hyc</CODE> or, if they are
+     * not there, parses the patterns <CODE>name.xml</CODE>.
+     * @param dir the directory of the patterns
+     * @param name the name of the patterns
+     * @return a hyphenation tree or <CODE>null</CODE> if there are no patterns
+     * @throws IOException on error
+     */
+    private static HyphenationTree loadFileTree(String dir, String name) throws IOException {
+        File hyphenFile = new File(dir, name + ".hyc");
+        if (hyphenFile.canRead()) {
+            HyphenationTree hTree = new HyphenationTree();
+            hTree.loadCompiledPatterns(new FileInputStream(hyphenFile));
+            return hTree;
+        }
+        hyphenFile = new File(dir, name + ".xml");
+        if (hyphenFile.canRead()) {
+            HyphenationTree hTree = new HyphenationTree();
+            hTree.loadSimplePatterns(new FileInputStream(hyphenFile));
+            return hTree;
+        }
+        return null;
+    }
+
     /**
      * @param lang
      * @param country
@@ -233,7 +300,15 @@ public class Hyphenator {
      * @param _hyphenDir New value of property hyphenDir.
      */
     public static void setHyphenDir(String _hyphenDir) {
-        hyphenDir = _hyphenDir;
+        synchronized (hyphenTrees) {
+            hyphenDir = _hyphenDir;
+            // the patterns not found may be in the new directory
+            for (Iterator it = hyphenTrees.values().iterator(); it.hasNext();) {
+                TreeEntry entry = (TreeEntry)it.next();
+                if (entry.loaded && entry.tree == null)
+                    it.remove();
+            }
+        }
     }
     
 }
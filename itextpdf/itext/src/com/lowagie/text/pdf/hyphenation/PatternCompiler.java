@@ -0,0 +1,142 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+
+package com.lowagie.text.pdf.hyphenation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compiles the XML hyphenation patterns into the binary form loaded by
+ * <CODE>HyphenationTree.loadCompiledPatterns()</CODE>. <CODE>Hyphenator</CODE>
+ * looks for the compiled patterns <CODE>name.hyc</CODE> before the XML
+ * patterns <CODE>name.xml</CODE>, both in the resources and in the hyphenation
+ * directory, so the patterns don't have to be parsed every time a language
+ * is used for the first time.
+ * <p>
+ * Usage:
+ * <pre>
+ * java com.lowagie.text.pdf.hyphenation.PatternCompiler source destination
+ * </pre>
+ * where <CODE>source</CODE> is a pattern file or a directory with pattern files
+ * and <CODE>destination</CODE> is the directory of the compiled patterns.
+ * From the build file this is <CODE>ant compile.hyphenation -Dhyphenation.src=...</CODE>.
+ */
+public class PatternCompiler {
+    
+    /**
+     * Compiles one XML pattern file.
+     * @param source the XML patterns
+     * @param destination the compiled patterns
+     * @return the compiled tree
+     * @throws IOException on error
+     */
+    public static HyphenationTree compile(File source, File destination) throws IOException {
+        HyphenationTree hTree = new HyphenationTree();
+        hTree.loadSimplePatterns(new FileInputStream(source));
+        OutputStream out = new FileOutputStream(destination);
+        try {
+            hTree.saveCompiledPatterns(out);
+        }
+        finally {
+            out.close();
+        }
+        return hTree;
+    }
+    
+    /**
+     * Compiles all the XML pattern files of a directory, or a single file.
+     * @param source a pattern file or a directory with pattern files
+     * @param destination the directory of the compiled patterns
+     * @return the number of compiled files
+     * @throws IOException on error
+     */
+    public static int compileAll(File source, File destination) throws IOException {
+        File files[];
+        if (source.isDirectory())
+            files = source.listFiles();
+        else
+            files = new File[]{source};
+        if (files == null)
+            throw new IOException("Can't list the files of " + source.getPath());
+        destination.mkdirs();
+        int count = 0;
+        for (int k = 0; k < files.length; ++k) {
+            String name = files[k].getName();
+            if (!files[k].isFile() || !name.toLowerCase().endsWith(".xml"))
+                continue;
+            File target = new File(destination, name.substring(0, name.length() - 4) + ".hyc");
+            compile(files[k], target);
+            ++count;
+        }
+        return count;
+    }
+    
+    /**
+     * Compiles the XML pattern files.
+     * @param args the source and the destination
+     */
+    public static void main(String args[]) {
+        if (args.length != 2) {
+            System.err.println("arguments: source destination");
+            return;
+        }
+        try {
+            int count = compileAll(new File(args[0]), new File(args[1]));
+            System.out.println(count + " pattern files compiled to " + args[1]);
+        }
+        catch (Exception e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -16,6 +16,9 @@
 
 package com.lowagie.text.pdf.hyphenation;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Enumeration;
 import java.util.Stack;
@@ -632,6 +635,64 @@ public class TernaryTree implements Cloneable, Serializable {
 
     }
 
+    /**
+     * Writes the nodes and the keys of the tree in a compact binary form
+     * that <code>readTree()</code> loads without rebuilding the tree.
+     */
+    void writeTree(DataOutputStream out) throws IOException {
+        out.writeChar(root);
+        out.writeChar(freenode);
+        out.writeInt(length);
+        writeChars(out, lo, freenode);
+        writeChars(out, hi, freenode);
+        writeChars(out, eq, freenode);
+        writeChars(out, sc, freenode);
+        writeChars(out, kv.getArray(), kv.length());
+    }
+
+    /**
+     * Replaces the tree with one written by <code>writeTree()</code>.
+     */
+    void readTree(DataInputStream in) throws IOException {
+        root = in.readChar();
+        freenode = in.readChar();
+        length = in.readInt();
+        lo = readChars(in);
+        hi = readChars(in);
+        eq = readChars(in);
+        sc = readChars(in);
+        kv = new CharVector(readChars(in));
+        if (lo.length != freenode || hi.length != freenode
+                || eq.length != freenode || sc.length != freenode) {
+            throw new IOException("Corrupted compiled hyphenation tree.");
+        }
+    }
+
+    static void writeChars(DataOutputStream out, char[] a, int len) throws IOException {
+        out.writeInt(len);
+        byte[] b = new byte[len * 2];
+        for (int i = 0, j = 0; i < len; i++) {
+            char c = a[i];
+            b[j++] = (byte)(c >>> 8);
+            b[j++] = (byte)c;
+        }
+        out.write(b);
+    }
+
+    static char[] readChars(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            throw new IOException("Corrupted compiled hyphenation tree.");
+        }
+        byte[] b = new byte[len * 2];
+        in.readFully(b);
+        char[] a = new char[len];
+        for (int i = 0, j = 0; i < len; i++, j += 2) {
+            a[i] = (char)(((b[j] & 0xff) << 8) | (b[j + 1] & 0xff));
+        }
+        return a;
+    }
+
     public void printStats() {
         System.out.println("Number of keys = " + Integer.toString(length));
         System.out.println("Node count = " + Integer.toString(freenode));
@@ -0,0 +1,286 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.tools.benchmark;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+/**
+ * Runs <CODE>Benchmark</CODE>s and reports the throughput of each one.
+ * <p>
+ * Every benchmark gets a number of warmup iterations, to let the JIT compile
+ * the hot paths, followed by the measured iterations. Each iteration calls
+ * <CODE>run()</CODE> for a fixed time and the report gives the mean number of
+ * operations per second, the standard deviation between the iterations and the
+ * mean time of one operation.
+ * <p>
+ * Usage:
+ * <pre>
+ * java com.lowagie.tools.benchmark.BenchmarkRunner [-warmup n] [-iterations n] [-time ms] [-memory] [-list] [name ...]
+ * </pre>
+ * With <CODE>-memory</CODE> the report also gives the heap still reachable
+ * from the object returned by one call to <CODE>run()</CODE>, measured after
+ * a garbage collection.
+ * Only the benchmarks whose name starts with one of the given names are run;
+ * all of them are run if no name is given. From the build file the arguments
+ * are given with <CODE>ant benchmark -Dbenchmark.args="..."</CODE>.
+ */
+public class BenchmarkRunner {
+    
+    /** The default number of warmup iterations. */
+    public static final int DEFAULT_WARMUP = 5;
+    /** The default number of measured iterations. */
+    public static final int DEFAULT_ITERATIONS = 10;
+    /** The default duration of an iteration in milliseconds. */
+    public static final int DEFAULT_TIME = 1000;
+    
+    private int warmup = DEFAULT_WARMUP;
+    private int iterations = DEFAULT_ITERATIONS;
+    private int time = DEFAULT_TIME;
+    private boolean memory;
+    private PrintStream out;
+    
+    /** Receives the results of the benchmarks so that the work is not optimized away. */
+    private static volatile int sink;
+    
+    /**
+     * Creates a runner that reports to <CODE>out</CODE>.
+     * @param out the report destination
+     */
+    public BenchmarkRunner(PrintStream out) {
+        this.out = out;
+    }
+    
+    /**
+     * Sets the number of warmup iterations.
+     * @param warmup the number of warmup iterations
+     */
+    public void setWarmup(int warmup) {
+        this.warmup = warmup;
+    }
+    
+    /**
+     * Sets the number of measured iterations.
+     * @param iterations the number of measured iterations
+     */
+    public void setIterations(int iterations) {
+        this.iterations = Math.max(iterations, 1);
+    }
+    
+    /**
+     * Sets the duration of each iteration.
+     * @param time the duration in milliseconds
+     */
+    public void setTime(int time) {
+        this.time = Math.max(time, 1);
+    }
+    
+    /**
+     * Sets whether the memory retained by the result of <CODE>run()</CODE> is reported.
+     * @param memory <CODE>true</CODE> to report the retained memory
+     */
+    public void setMemory(boolean memory) {
+        this.memory = memory;
+    }
+    
+    /**
+     * Runs a benchmark and reports its result.
+     * @param benchmark the benchmark
+     * @return the mean number of operations per second
+     * @throws Exception on error
+     */
+    public double run(Benchmark benchmark) throws Exception {
+        benchmark.setUp();
+        try {
+            for (int k = 0; k < warmup; ++k)
+                iteration(benchmark);
+            double rates[] = new double[iterations];
+            double mean = 0;
+            for (int k = 0; k < iterations; ++k) {
+                System.gc();
+                rates[k] = iteration(benchmark);
+                mean += rates[k];
+            }
+            mean /= iterations;
+            double var = 0;
+            for (int k = 0; k < iterations; ++k)
+                var += (rates[k] - mean) * (rates[k] - mean);
+            double dev = iterations > 1 ? Math.sqrt(var / (iterations - 1)) : 0;
+            long retained = memory ? retained(benchmark) : -1;
+            report(benchmark.getName(), mean, dev, retained);
+            return mean;
+        }
+        finally {
+            benchmark.tearDown();
+        }
+    }
+    
+    private double iteration(Benchmark benchmark) throws Exception {
+        long start = System.currentTimeMillis();
+        long end = start + time;
+        long now;
+        long ops = 0;
+        int h = 0;
+        do {
+            Object result = benchmark.run();
+            if (result != null)
+                h += result.hashCode();
+            ++ops;
+            now = System.currentTimeMillis();
+        } while (now < end);
+        sink += h;
+        return ops * 1000.0 / (now - start);
+    }
+    
+    /**
+     * Measures the heap reachable from the result of one call to <CODE>run()</CODE>.
+     * @param benchmark the benchmark
+     * @return the retained memory in bytes
+     * @throws Exception on error
+     */
+    private long retained(Benchmark benchmark) throws Exception {
+        long before = usedMemory();
+        Object result = benchmark.run();
+        long after = usedMemory();
+        if (result != null)
+            sink += result.hashCode();
+        return Math.max(after - before, 0);
+    }
+    
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // collect until the heap stops shrinking
+        for (int k = 0; k < 10; ++k) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            }
+            catch (InterruptedException e) {
+            }
+            long u = rt.totalMemory() - rt.freeMemory();
+            if (u >= used)
+                break;
+            used = u;
+        }
+        return used;
+    }
+    
+    private void report(String name, double mean, double dev, long retained) {
+        DecimalFormat ops = new DecimalFormat("0.0");
+        DecimalFormat us = new DecimalFormat("0.000");
+        StringBuffer buf = new StringBuffer(name);
+        while (buf.length() < 40)
+            buf.append(' ');
+        buf.append(pad(ops.format(mean), 14)).append(" ops/s +-").append(pad(ops.format(dev), 12));
+        buf.append(pad(us.format(1e6 / mean), 16)).append(" us/op");
+        if (retained >= 0)
+            buf.append(pad(ops.format(retained / 1024.0), 14)).append(" KB");
+        out.println(buf.toString());
+    }
+    
+    private static String pad(String s, int width) {
+        StringBuffer buf = new StringBuffer();
+        for (int k = s.length(); k < width; ++k)
+            buf.append(' ');
+        return buf.append(s).toString();
+    }
+    
+    /**
+     * Runs the core benchmarks.
+     * @param args the command line arguments
+     */
+    public static void main(String args[]) {
+        BenchmarkRunner runner = new BenchmarkRunner(System.out);
+        ArrayList names = new ArrayList();
+        boolean list = false;
+        try {
+            for (int k = 0; k < args.length; ++k) {
+                if ("-warmup".equals(args[k]))
+                    runner.setWarmup(Integer.parseInt(args[++k]));
+                else if ("-iterations".equals(args[k]))
+                    runner.setIterations(Integer.parseInt(args[++k]));
+                else if ("-time".equals(args[k]))
+                    runner.setTime(Integer.parseInt(args[++k]));
+                else if ("-memory".equals(args[k]))
+                    runner.setMemory(true);
+                else if ("-list".equals(args[k]))
+                    list = true;
+                else
+                    names.add(args[k]);
+            }
+        }
+        catch (Exception e) {
+            System.err.println("arguments: [-warmup n] [-iterations n] [-time ms] [-memory] [-list] [name ...]");
+            return;
+        }
+        Benchmark benchmarks[] = CoreBenchmarks.getBenchmarks();
+        for (int k = 0; k < benchmarks.length; ++k) {
+            Benchmark b = benchmarks[k];
+            if (!names.isEmpty()) {
+                boolean found = false;
+                for (int j = 0; j < names.size() && !found; ++j)
+                    found = b.getName().startsWith((String)names.get(j));
+                if (!found)
+                    continue;
+            }
+            if (list) {
+                System.out.println(b.getName());
+                continue;
+            }
+            try {
+                runner.run(b);
+            }
+            catch (Exception e) {
+                System.err.println(b.getName() + " failed: " + e);
+            }
+        }
+    }
+}
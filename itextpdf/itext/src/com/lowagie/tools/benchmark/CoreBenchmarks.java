@@ -0,0 +1,850 @@
+/*
+ * $Id$
+ *
+ * Copyright 2007 by the iText contributors.
+ *
+ * The contents of this file are subject to the Mozilla Public License Version 1.1
+ * (the "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the License.
+ *
+ * The Original Code is 'iText, a free JAVA-PDF library'.
+ *
+ * The Initial Developer of the Original Code is Bruno Lowagie. Portions created by
+ * the Initial Developer are Copyright (C) 1999, 2000, 2001, 2002 by Bruno Lowagie.
+ * All Rights Reserved.
+ * Co-Developer of the code is Paulo Soares. Portions created by the Co-Developer
+ * are Copyright (C) 2000, 2001, 2002 by Paulo Soares. All Rights Reserved.
+ *
+ * Contributor(s): all the names of the contributors are added in the source code
+ * where applicable.
+ *
+ * Alternatively, the contents of this file may be used under the terms of the
+ * LGPL license (the "GNU LIBRARY GENERAL PUBLIC LICENSE"), in which case the
+ * provisions of LGPL are applicable instead of those above.  If you wish to
+ * allow use of your version of this file only under the terms of the LGPL
+ * License and not to allow others to use your version of this file under
+ * the MPL, indicate your decision by deleting the provisions above and
+ * replace them with the notice and other provisions required by the LGPL.
+ * If you do not delete the provisions above, a recipient may use your version
+ * of this file under either the MPL or the GNU LIBRARY GENERAL PUBLIC LICENSE.
+ *
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the MPL as stated above or under the terms of the GNU
+ * Library General Public License as published by the Free Software Foundation;
+ * either version 2 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Library general Public License for more
+ * details.
+ *
+ * If you didn't download this code from the following link, you should check if
+ * you aren't using an obsolete version:
+ * http://www.lowagie.com/iText/
+ */
+package com.lowagie.tools.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.Image;
+import com.lowagie.text.ImageCache;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.AcroFields;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.ByteBuffer;
+import com.lowagie.text.pdf.ColumnText;
+import com.lowagie.text.pdf.PRTokeniser;
+import com.lowagie.text.pdf.PdfContentByte;
+import com.lowagie.text.pdf.PdfContentParser;
+import com.lowagie.text.pdf.PdfContentScanner;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfEncryption;
+import com.lowagie.text.pdf.PdfFormFiller;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfSharedReader;
+import com.lowagie.text.pdf.PdfSplitter;
+import com.lowagie.text.pdf.PdfStamper;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.TextField;
+import com.lowagie.text.pdf.crypto.AESFastEngine;
+import com.lowagie.text.pdf.crypto.CBCBlockCipher;
+import com.lowagie.text.pdf.crypto.KeyParameter;
+import com.lowagie.text.pdf.crypto.PaddedBufferedBlockCipher;
+import com.lowagie.text.pdf.crypto.ParametersWithIV;
+
+/**
+ * The benchmarks of the hot paths of the iText core: number formatting,
+ * content stream operators, text and table layout, reading, copying,
+ * stamping and encryption.
+ * <p>
+ * The documents used as input are generated in <CODE>setUp()</CODE>, so
+ * the results don't depend on files outside the distribution.
+ */
+public class CoreBenchmarks {
+    
+    /** The text used to fill columns and cells. */
+    static final String TEXT = "Lorem ipsum dolor sit amet, consectetur adipisicing elit, sed do eiusmod "
+        + "tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud "
+        + "exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat. ";
+    
+    /**
+     * Gets all the core benchmarks.
+     * @return the benchmarks
+     */
+    public static Benchmark[] getBenchmarks() {
+        return new Benchmark[]{
+            new FormatDouble(),
+            new AppendFloat("ByteBuffer.appendFloat", false),
+            new AppendFloat("ByteBuffer.appendFloat.highPrecision", true),
+            new AppendFloatThreads(4),
+            new TextOperators(),
+            new PathOperators(),
+            new ColumnTextGo("ColumnText.go", BaseFont.CP1252),
+            new ColumnTextGo("ColumnText.go.cp1250", BaseFont.CP1250),
+            new ColumnTextPages(),
+            new Measure(false),
+            new Measure(true),
+            new PdfPTableRows(),
+            new ReaderPageContent(),
+            new ReaderParse(),
+            new ContentParse(false),
+            new ContentParse(true),
+            new CopyAddPage(),
+            new Burst(false),
+            new Burst(true),
+            new StamperFormFill(false),
+            new StamperFormFill(true),
+            new FormFillerFill(),
+            new EncryptStream("PdfEncryption.rc4", PdfWriter.ENCRYPTION_RC4_128),
+            new EncryptStream("PdfEncryption.aes", PdfWriter.ENCRYPTION_AES_128),
+            new EncryptBundled(),
+            new EncryptStrings(),
+            new EncryptDocument(0),
+            new EncryptDocument(2),
+            new ImageDocuments(false),
+            new ImageDocuments(true)
+        };
+    }
+    
+    /**
+     * Creates a document with <CODE>pages</CODE> pages of text.
+     * @param pages the number of pages
+     * @return the PDF
+     * @throws Exception on error
+     */
+    static byte[] createDocument(int pages) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document document = new Document(PageSize.A4);
+        PdfWriter.getInstance(document, out);
+        document.open();
+        for (int k = 0; k < pages; ++k) {
+            for (int j = 0; j < 20; ++j)
+                document.add(new Paragraph(TEXT));
+            document.newPage();
+        }
+        document.close();
+        return out.toByteArray();
+    }
+    
+    /**
+     * Creates a one page document with a form of <CODE>fields</CODE> text fields
+     * named <CODE>field0</CODE> to <CODE>fieldn</CODE>.
+     * @param fields the number of fields
+     * @return the PDF
+     * @throws Exception on error
+     */
+    static byte[] createForm(int fields) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document document = new Document(PageSize.A4);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        document.open();
+        document.add(new Paragraph("Form"));
+        for (int k = 0; k < fields; ++k) {
+            float y = 780 - (k % 35) * 20;
+            float x = 36 + (k / 35) * 180;
+            TextField field = new TextField(writer, new Rectangle(x, y, x + 170, y + 16), "field" + k);
+            writer.addAnnotation(field.getTextField());
+        }
+        document.close();
+        return out.toByteArray();
+    }
+    
+    /**
+     * Opens a document writing to nowhere, to get a <CODE>PdfContentByte</CODE>
+     * attached to a writer. The document is never closed.
+     * @return the direct content of the writer
+     * @throws Exception on error
+     */
+    static PdfContentByte createCanvas() throws Exception {
+        Document document = new Document(PageSize.A4);
+        PdfWriter writer = PdfWriter.getInstance(document, new NullOutputStream());
+        document.open();
+        return writer.getDirectContent();
+    }
+    
+    /** An <CODE>OutputStream</CODE> that discards everything. */
+    static class NullOutputStream extends OutputStream {
+        public void write(int b) {
+        }
+        
+        public void write(byte b[], int off, int len) {
+        }
+    }
+    
+    /** <CODE>ByteBuffer.formatDouble()</CODE> on a mix of coordinates. */
+    static class FormatDouble extends Benchmark {
+        private double values[] = new double[1000];
+        
+        FormatDouble() {
+            super("ByteBuffer.formatDouble");
+        }
+        
+        public void setUp() {
+            for (int k = 0; k < values.length; ++k)
+                values[k] = (k % 7 == 0) ? k : k * 0.731 - 300;
+        }
+        
+        public Object run() {
+            int n = 0;
+            for (int k = 0; k < values.length; ++k)
+                n += ByteBuffer.formatDouble(values[k]).length();
+            return new Integer(n);
+        }
+    }
+    
+    /** <CODE>ByteBuffer.append(float)</CODE> as used by the content operators. */
+    static class AppendFloat extends Benchmark {
+        private float values[] = new float[1000];
+        private ByteBuffer buf = new ByteBuffer();
+        private boolean highPrecision;
+        private boolean oldHighPrecision;
+        
+        AppendFloat(String name, boolean highPrecision) {
+            super(name);
+            this.highPrecision = highPrecision;
+        }
+        
+        public void setUp() {
+            oldHighPrecision = ByteBuffer.HIGH_PRECISION;
+            ByteBuffer.HIGH_PRECISION = highPrecision;
+            fillValues(values);
+        }
+        
+        public Object run() {
+            return new Integer(appendValues(buf, values));
+        }
+        
+        public void tearDown() {
+            ByteBuffer.HIGH_PRECISION = oldHighPrecision;
+        }
+    }
+    
+    /**
+     * <CODE>ByteBuffer.append(float)</CODE> called from several threads at
+     * once, each one with its own buffer.
+     */
+    static class AppendFloatThreads extends Benchmark {
+        private float values[] = new float[1000];
+        private int threads;
+        
+        AppendFloatThreads(int threads) {
+            super("ByteBuffer.appendFloat.threads" + threads);
+            this.threads = threads;
+        }
+        
+        public void setUp() {
+            fillValues(values);
+        }
+        
+        public Object run() throws Exception {
+            final int sizes[] = new int[threads];
+            Thread t[] = new Thread[threads];
+            for (int k = 0; k < threads; ++k) {
+                final int n = k;
+                t[k] = new Thread() {
+                    public void run() {
+                        ByteBuffer buf = new ByteBuffer();
+                        for (int i = 0; i < 10; ++i)
+                            sizes[n] += appendValues(buf, values);
+                    }
+                };
+                t[k].start();
+            }
+            int n = 0;
+            for (int k = 0; k < threads; ++k) {
+                t[k].join();
+                n += sizes[k];
+            }
+            return new Integer(n);
+        }
+    }
+    
+    /**
+     * Fills an array with coordinates in the ranges formatted differently.
+     * @param values the array to fill
+     */
+    static void fillValues(float values[]) {
+        for (int k = 0; k < values.length; ++k)
+            values[k] = (k % 7 == 0) ? k : k * 0.731f - 300;
+    }
+    
+    /**
+     * Appends the values to the buffer separated by spaces.
+     * @param buf the buffer, it is reset first
+     * @param values the values to append
+     * @return the size of the buffer
+     */
+    static int appendValues(ByteBuffer buf, float values[]) {
+        buf.reset();
+        for (int k = 0; k < values.length; ++k)
+            buf.append(values[k]).append(' ');
+        return buf.size();
+    }
+    
+    /** A line of text with the text operators of <CODE>PdfContentByte</CODE>. */
+    static class TextOperators extends Benchmark {
+        private PdfContentByte cb;
+        private BaseFont bf;
+        
+        TextOperators() {
+            super("PdfContentByte.text");
+        }
+        
+        public void setUp() throws Exception {
+            cb = createCanvas();
+            bf = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+        }
+        
+        public Object run() {
+            cb.reset();
+            cb.beginText();
+            cb.setFontAndSize(bf, 10);
+            for (int k = 0; k < 50; ++k) {
+                cb.setTextMatrix(36, 800 - k * 12);
+                cb.showText(TEXT);
+            }
+            cb.showTextAligned(Element.ALIGN_CENTER, TEXT, 300, 100, 45);
+            cb.endText();
+            return new Integer(cb.getInternalBuffer().size());
+        }
+    }
+    
+    /** Lines, curves and rectangles with the path operators of <CODE>PdfContentByte</CODE>. */
+    static class PathOperators extends Benchmark {
+        private PdfContentByte cb;
+        
+        PathOperators() {
+            super("PdfContentByte.path");
+        }
+        
+        public void setUp() throws Exception {
+            cb = createCanvas();
+        }
+        
+        public Object run() {
+            cb.reset();
+            for (int k = 0; k < 100; ++k) {
+                float x = k * 5.3f;
+                cb.moveTo(x, 10);
+                cb.lineTo(x + 100.25f, 400.5f);
+                cb.curveTo(x + 10, 20, x + 30.5f, 60.75f, x + 90.1f, 15.3f);
+                cb.rectangle(x, x, 50.5f, 20.25f);
+                cb.stroke();
+            }
+            return new Integer(cb.getInternalBuffer().size());
+        }
+    }
+    
+    /** The layout of a column of text. */
+    static class ColumnTextGo extends Benchmark {
+        private String encoding;
+        private PdfContentByte cb;
+        private Phrase phrase;
+        
+        /**
+         * @param name the name of the benchmark
+         * @param encoding the encoding of the font, only Cp1252 has the fast path
+         * that doesn't need the width tables of <CODE>BaseFont</CODE>
+         */
+        ColumnTextGo(String name, String encoding) {
+            super(name);
+            this.encoding = encoding;
+        }
+        
+        public void setUp() throws Exception {
+            cb = createCanvas();
+            StringBuffer text = new StringBuffer();
+            for (int k = 0; k < 10; ++k)
+                text.append(TEXT);
+            BaseFont bf = BaseFont.createFont(BaseFont.HELVETICA, encoding, false);
+            phrase = new Phrase(text.toString(), new Font(bf, 10));
+        }
+        
+        public Object run() throws Exception {
+            cb.reset();
+            ColumnText ct = new ColumnText(cb);
+            ct.setSimpleColumn(36, 36, 300, 806, 12, Element.ALIGN_JUSTIFIED);
+            ct.addText(phrase);
+            return new Integer(ct.go());
+        }
+    }
+    
+    /** The layout of a paragraph that takes many pages. */
+    static class ColumnTextPages extends Benchmark {
+        private PdfContentByte cb;
+        private Phrase phrase;
+        
+        ColumnTextPages() {
+            super("ColumnText.go.pages");
+        }
+        
+        public void setUp() throws Exception {
+            cb = createCanvas();
+            StringBuffer text = new StringBuffer();
+            for (int k = 0; k < 200; ++k)
+                text.append(TEXT);
+            phrase = new Phrase(text.toString(), new Font(Font.HELVETICA, 10));
+        }
+        
+        public Object run() throws Exception {
+            ColumnText ct = new ColumnText(cb);
+            ct.addText(phrase);
+            int pages = 0;
+            int status = ColumnText.NO_MORE_COLUMN;
+            while (ColumnText.hasMoreText(status)) {
+                cb.reset();
+                ct.setSimpleColumn(36, 36, 559, 806, 12, Element.ALIGN_JUSTIFIED);
+                status = ct.go();
+                ++pages;
+            }
+            return new Integer(pages);
+        }
+    }
+    
+    /** The width of a text with kerning, from a <CODE>String</CODE> or from the chars. */
+    static class Measure extends Benchmark {
+        private boolean bulk;
+        private BaseFont bf;
+        private String text;
+        private char chars[];
+        
+        Measure(boolean bulk) {
+            super(bulk ? "BaseFont.measureKerned" : "BaseFont.getWidthPointKerned");
+            this.bulk = bulk;
+        }
+        
+        public void setUp() throws Exception {
+            bf = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1250, false);
+            text = TEXT;
+            chars = text.toCharArray();
+        }
+        
+        public Object run() throws Exception {
+            float width;
+            if (bulk)
+                width = bf.measureKerned(chars, 0, chars.length, 10);
+            else
+                width = bf.getWidthPointKerned(text, 10);
+            return new Float(width);
+        }
+    }
+    
+    /** The layout of the rows of a <CODE>PdfPTable</CODE>. */
+    static class PdfPTableRows extends Benchmark {
+        private PdfContentByte cb;
+        
+        PdfPTableRows() {
+            super("PdfPTable.rows");
+        }
+        
+        public void setUp() throws Exception {
+            cb = createCanvas();
+        }
+        
+        public Object run() throws Exception {
+            cb.reset();
+            PdfPTable table = new PdfPTable(4);
+            table.setTotalWidth(500);
+            for (int k = 0; k < 200; ++k)
+                table.addCell(k % 4 == 3 ? TEXT : "cell " + k);
+            return new Float(table.writeSelectedRows(0, -1, 36, 806, cb));
+        }
+    }
+    
+    /** Opening a document and getting the content of all its pages. */
+    static class ReaderPageContent extends Benchmark {
+        private byte pdf[];
+        
+        ReaderPageContent() {
+            super("PdfReader.getPageContent");
+        }
+        
+        public void setUp() throws Exception {
+            pdf = createDocument(20);
+        }
+        
+        public Object run() throws Exception {
+            PdfReader reader = new PdfReader(pdf);
+            int n = 0;
+            for (int k = 1; k <= reader.getNumberOfPages(); ++k)
+                n += reader.getPageContent(k).length;
+            reader.close();
+            return new Integer(n);
+        }
+    }
+    
+    /**
+     * Opening a form and reading all its objects. The reader is returned so
+     * that the memory it takes can be reported with <CODE>-memory</CODE>.
+     */
+    static class ReaderParse extends Benchmark {
+        private static final int FIELDS = 105;
+        private byte pdf[];
+        
+        ReaderParse() {
+            super("PdfReader.parse");
+        }
+        
+        public void setUp() throws Exception {
+            pdf = createForm(FIELDS);
+        }
+        
+        public Object run() throws Exception {
+            PdfReader reader = new PdfReader(pdf);
+            for (int k = 1; k < reader.getXrefSize(); ++k)
+                reader.getPdfObject(k);
+            return reader;
+        }
+    }
+    
+    /**
+     * Reading all the operators of the pages of a document with
+     * <CODE>PdfContentParser</CODE> or with <CODE>PdfContentScanner</CODE>.
+     */
+    static class ContentParse extends Benchmark {
+        private boolean scanner;
+        private byte contents[][];
+        
+        ContentParse(boolean scanner) {
+            super(scanner ? "PdfContentScanner.next" : "PdfContentParser.parse");
+            this.scanner = scanner;
+        }
+        
+        public void setUp() throws Exception {
+            PdfReader reader = new PdfReader(createDocument(20));
+            contents = new byte[reader.getNumberOfPages()][];
+            for (int k = 0; k < contents.length; ++k)
+                contents[k] = reader.getPageContent(k + 1);
+        }
+        
+        public Object run() throws Exception {
+            int n = 0;
+            if (scanner) {
+                PdfContentScanner cs = new PdfContentScanner(contents[0]);
+                for (int k = 0; k < contents.length; ++k) {
+                    cs.setContent(contents[k], 0, contents[k].length);
+                    while (cs.next())
+                        n += cs.getOperandCount();
+                }
+            }
+            else {
+                ArrayList operands = new ArrayList();
+                for (int k = 0; k < contents.length; ++k) {
+                    PdfContentParser parser = new PdfContentParser(new PRTokeniser(contents[k]));
+                    while (parser.parse(operands).size() > 0)
+                        n += operands.size() - 1;
+                }
+            }
+            return new Integer(n);
+        }
+    }
+    
+    /** Copying all the pages of a document with <CODE>PdfCopy</CODE>. */
+    static class CopyAddPage extends Benchmark {
+        private PdfReader reader;
+        
+        CopyAddPage() {
+            super("PdfCopy.addPage");
+        }
+        
+        public void setUp() throws Exception {
+            reader = new PdfReader(createDocument(20));
+        }
+        
+        public Object run() throws Exception {
+            Document document = new Document();
+            PdfCopy copy = new PdfCopy(document, new NullOutputStream());
+            document.open();
+            for (int k = 1; k <= reader.getNumberOfPages(); ++k)
+                copy.addPage(copy.getImportedPage(reader, k));
+            document.close();
+            return copy;
+        }
+    }
+    
+    /**
+     * Writing each page of a document as a new document, reading the document
+     * for each page or sharing it with <CODE>PdfSplitter</CODE>.
+     */
+    static class Burst extends Benchmark {
+        private boolean shared;
+        private byte pdf[];
+        private PdfSplitter splitter;
+        private PdfSplitter.DocumentTarget target = new PdfSplitter.DocumentTarget() {
+            public OutputStream getOutputStream(int index, List pages) {
+                return new NullOutputStream();
+            }
+        };
+        
+        Burst(boolean shared) {
+            super(shared ? "PdfSplitter.burst" : "PdfCopy.burst");
+            this.shared = shared;
+        }
+        
+        public void setUp() throws Exception {
+            pdf = createDocument(20);
+            splitter = new PdfSplitter(new PdfReader(pdf));
+        }
+        
+        public Object run() throws Exception {
+            if (shared)
+                return new Integer(splitter.burst(target, 1));
+            int n = splitter.getNumberOfPages();
+            for (int k = 1; k <= n; ++k) {
+                PdfReader reader = new PdfReader(pdf);
+                reader.selectPages(String.valueOf(k));
+                Document document = new Document();
+                PdfCopy copy = new PdfCopy(document, new NullOutputStream());
+                document.open();
+                copy.addPage(copy.getImportedPage(reader, 1));
+                document.close();
+            }
+            return new Integer(n);
+        }
+    }
+    
+    /**
+     * Filling the fields of a form with <CODE>PdfStamper</CODE>, reading the
+     * form each time or getting it from a <CODE>PdfSharedReader</CODE>.
+     */
+    static class StamperFormFill extends Benchmark {
+        private static final int FIELDS = 70;
+        private boolean shared;
+        private byte pdf[];
+        private PdfSharedReader template;
+        
+        StamperFormFill(boolean shared) {
+            super(shared ? "PdfStamper.formFill.shared" : "PdfStamper.formFill");
+            this.shared = shared;
+        }
+        
+        public void setUp() throws Exception {
+            pdf = createForm(FIELDS);
+            if (shared)
+                template = new PdfSharedReader(pdf);
+        }
+        
+        public Object run() throws Exception {
+            PdfReader reader = shared ? template.getReader() : new PdfReader(pdf);
+            PdfStamper stamper = new PdfStamper(reader, new NullOutputStream());
+            AcroFields form = stamper.getAcroFields();
+            for (int k = 0; k < FIELDS; ++k)
+                form.setField("field" + k, "value " + k);
+            stamper.setFormFlattening(true);
+            stamper.close();
+            return stamper;
+        }
+    }
+    
+    /** Filling the fields of a form with <CODE>PdfFormFiller</CODE>. */
+    static class FormFillerFill extends Benchmark {
+        private PdfFormFiller filler;
+        private HashMap record = new HashMap();
+        
+        FormFillerFill() {
+            super("PdfFormFiller.fill");
+        }
+        
+        public void setUp() throws Exception {
+            filler = new PdfFormFiller(new PdfReader(createForm(StamperFormFill.FIELDS)));
+            filler.setFormFlattening(true);
+            for (int k = 0; k < StamperFormFill.FIELDS; ++k)
+                record.put("field" + k, "value " + k);
+        }
+        
+        public Object run() throws Exception {
+            filler.fill(record, new NullOutputStream());
+            return filler;
+        }
+    }
+    
+    /** The encryption of a 64k stream. */
+    static class EncryptStream extends Benchmark {
+        private int mode;
+        private PdfEncryption crypto;
+        private byte data[] = new byte[0x10000];
+        private int number;
+        
+        EncryptStream(String name, int mode) {
+            super(name);
+            this.mode = mode;
+        }
+        
+        public void setUp() {
+            for (int k = 0; k < data.length; ++k)
+                data[k] = (byte)k;
+            crypto = new PdfEncryption();
+            crypto.setCryptoMode(mode, 0);
+            crypto.setupAllKeys("user".getBytes(), "owner".getBytes(), 0);
+        }
+        
+        public Object run() {
+            crypto.setHashKey(++number, 0);
+            return crypto.encryptByteArray(data);
+        }
+    }
+    
+    /** The encryption of a 64k stream with the bundled AES engine, the one used without a JCE provider. */
+    static class EncryptBundled extends Benchmark {
+        private byte data[] = new byte[0x10000];
+        private byte key[] = new byte[16];
+        private byte iv[] = new byte[16];
+        
+        EncryptBundled() {
+            super("PdfEncryption.aes.bundled");
+        }
+        
+        public void setUp() {
+            for (int k = 0; k < data.length; ++k)
+                data[k] = (byte)k;
+        }
+        
+        public Object run() throws Exception {
+            PaddedBufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
+            cipher.init(true, new ParametersWithIV(new KeyParameter(key), iv));
+            byte out[] = new byte[cipher.getOutputSize(data.length)];
+            int n = cipher.processBytes(data, 0, data.length, out, 0);
+            cipher.doFinal(out, n);
+            return out;
+        }
+    }
+    
+    /** The encryption of the short strings of 200 objects, with the key set for each string. */
+    static class EncryptStrings extends Benchmark {
+        private PdfEncryption crypto;
+        private byte data[] = new byte[40];
+        
+        EncryptStrings() {
+            super("PdfEncryption.strings.aes");
+        }
+        
+        public void setUp() {
+            crypto = new PdfEncryption();
+            crypto.setCryptoMode(PdfWriter.ENCRYPTION_AES_128, 0);
+            crypto.setupAllKeys("user".getBytes(), "owner".getBytes(), 0);
+        }
+        
+        public Object run() {
+            byte b[] = null;
+            for (int k = 0; k < 200; ++k) {
+                for (int j = 0; j < 5; ++j) {
+                    crypto.setHashKey(k, 0);
+                    b = crypto.encryptByteArray(data);
+                }
+            }
+            return b;
+        }
+    }
+    
+    /** Writing a 20 page document with images encrypted with AES. */
+    static class EncryptDocument extends Benchmark {
+        private int threads;
+        private byte image[] = new byte[128 * 128 * 3];
+        
+        EncryptDocument(int threads) {
+            super(threads == 0 ? "PdfWriter.encrypted" : "PdfWriter.encrypted.parallel");
+            this.threads = threads;
+        }
+        
+        public void setUp() {
+            for (int k = 0; k < image.length; ++k)
+                image[k] = (byte)(k * 31 + k / 384);
+        }
+        
+        public Object run() throws Exception {
+            Document document = new Document(PageSize.A4);
+            PdfWriter writer = PdfWriter.getInstance(document, new NullOutputStream());
+            writer.setEncryption("user".getBytes(), "owner".getBytes(), PdfWriter.AllowPrinting, PdfWriter.ENCRYPTION_AES_128);
+            writer.setParallelCompression(threads);
+            document.open();
+            for (int k = 0; k < 20; ++k) {
+                for (int j = 0; j < 10; ++j)
+                    document.add(new Paragraph(TEXT));
+                document.add(Image.getInstance(128, 128, 3, 8, image));
+                document.newPage();
+            }
+            document.close();
+            return writer;
+        }
+    }
+    
+    /** Writing 10 one page documents that use the same PNG logo, read from its bytes each time. */
+    static class ImageDocuments extends Benchmark {
+        private boolean cached;
+        private byte png[];
+        
+        ImageDocuments(boolean cached) {
+            super(cached ? "Image.getInstance.cached" : "Image.getInstance");
+            this.cached = cached;
+        }
+        
+        public void setUp() throws Exception {
+            BufferedImage logo = new BufferedImage(240, 80, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < 80; ++y) {
+                for (int x = 0; x < 240; ++x)
+                    logo.setRGB(x, y, ((x * 7) & 0xff) << 16 | ((y * 3) & 0xff) << 8 | ((x + y) & 0xff));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(logo, "png", out);
+            png = out.toByteArray();
+            if (cached)
+                Image.setImageCache(new ImageCache());
+        }
+        
+        public void tearDown() {
+            Image.setImageCache(null);
+        }
+        
+        public Object run() throws Exception {
+            Object result = null;
+            for (int k = 0; k < 10; ++k) {
+                Document document = new Document(PageSize.A4);
+                PdfWriter writer = PdfWriter.getInstance(document, new NullOutputStream());
+                document.open();
+                document.add(Image.getInstance(png));
+                document.add(new Paragraph(TEXT));
+                document.close();
+                result = writer;
+            }
+            return result;
+        }
+    }
+}
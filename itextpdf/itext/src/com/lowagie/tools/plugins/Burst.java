@@ -51,14 +51,14 @@ package com.lowagie.tools.plugins;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 
 import javax.swing.JInternalFrame;
 
-import com.lowagie.text.Document;
-import com.lowagie.text.pdf.PdfContentByte;
-import com.lowagie.text.pdf.PdfImportedPage;
 import com.lowagie.text.pdf.PdfReader;
-import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.PdfSplitter;
 import com.lowagie.tools.arguments.FileArgument;
 import com.lowagie.tools.arguments.LabelAccessory;
 import com.lowagie.tools.arguments.PdfFilter;
@@ -99,41 +99,24 @@ public class Burst extends AbstractTool {
         try {
 			if (getValue("srcfile") == null) throw new InstantiationException("You need to choose a sourcefile");
 			File src = (File)getValue("srcfile");
-            File directory = src.getParentFile();
-            String name = src.getName();
-            name = name.substring(0, name.lastIndexOf('.'));
+            final File directory = src.getParentFile();
+            final String name = src.getName().substring(0, src.getName().lastIndexOf('.'));
         	// we create a reader for a certain document
 			PdfReader reader = new PdfReader(src.getAbsolutePath());
 			// we retrieve the total number of pages
-			int n = reader.getNumberOfPages();
-			int digits = 1 + (n / 10);
+			final int n = reader.getNumberOfPages();
 			System.out.println("There are " + n + " pages in the original file.");
-			Document document;
-			int pagenumber;
-			String filename;
-            for (int i = 0; i < n; i++) {
-            	pagenumber = i + 1;
-            	filename = String.valueOf(pagenumber);
-            	while (filename.length() < digits) filename = "0" + filename;
-            	filename = "_" + filename + ".pdf";
-            	// step 1: creation of a document-object
-            	document = new Document(reader.getPageSizeWithRotation(pagenumber));
-				// step 2: we create a writer that listens to the document
-            	PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(new File(directory, name + filename)));
-            	// step 3: we open the document
-            	document.open();
-            	PdfContentByte cb = writer.getDirectContent();
-				PdfImportedPage page = writer.getImportedPage(reader, pagenumber);
-				int rotation = reader.getPageRotation(pagenumber);
-				if (rotation == 90 || rotation == 270) {
-					cb.addTemplate(page, 0, -1f, 1f, 0, 0, reader.getPageSizeWithRotation(pagenumber).height());
+			// the pages are written by one thread per processor
+			PdfSplitter splitter = new PdfSplitter(reader);
+			splitter.burst(new PdfSplitter.DocumentTarget() {
+				public OutputStream getOutputStream(int index, List pages) throws IOException {
+					int digits = 1 + (n / 10);
+					String filename = String.valueOf(index + 1);
+					while (filename.length() < digits) filename = "0" + filename;
+					filename = "_" + filename + ".pdf";
+					return new FileOutputStream(new File(directory, name + filename));
 				}
-				else {
-					cb.addTemplate(page, 1f, 0, 0, 1f, 0, 0);
-				}
-				// step 5: we close the document
-				document.close();
-			}
+			}, Runtime.getRuntime().availableProcessors());
         }
         catch(Exception e) {
             e.printStackTrace();
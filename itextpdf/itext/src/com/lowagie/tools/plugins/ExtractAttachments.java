@@ -52,6 +52,8 @@ package com.lowagie.tools.plugins;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 
@@ -225,10 +227,24 @@ public class ExtractAttachments extends AbstractTool {
 		PRStream prs = (PRStream) PdfReader.getPdfObject(ef.get(PdfName.F));
 		if (prs == null)
 			return;
-		byte b[] = PdfReader.getStreamBytes(prs);
-		FileOutputStream fout = new FileOutputStream(fullPath);
-		fout.write(b);
-		fout.close();
+		// a file with a filter that can't be decoded is written still encoded
+		ArrayList notApplied = new ArrayList();
+		InputStream in = PdfReader.getStreamInputStream(prs, notApplied);
+		if (!notApplied.isEmpty())
+			System.out.println("The file '" + fn + "' is still encoded with " + notApplied);
+		try {
+			FileOutputStream fout = new FileOutputStream(fullPath);
+			try {
+				byte b[] = new byte[8192];
+				int n;
+				while ((n = in.read(b)) >= 0)
+					fout.write(b, 0, n);
+			} finally {
+				fout.close();
+			}
+		} finally {
+			in.close();
+		}
 	}
 
 }
\ No newline at end of file
@@ -50,14 +50,16 @@
 
 package com.lowagie.tools;
 
+import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
-import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
-import com.lowagie.text.pdf.PdfContentByte;
-import com.lowagie.text.pdf.PdfImportedPage;
 import com.lowagie.text.pdf.PdfReader;
-import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.PdfSplitter;
 
 /**
  * This class demonstrates how to split a PDF file using iText.
@@ -87,51 +89,17 @@ public class split_pdf extends java.lang.Object {
 					throw new DocumentException("You can't split this document at page " + pagenumber + "; there is no such page.");
 				}
                 
-				// step 1: creation of a document-object
-				Document document1 = new Document(reader.getPageSizeWithRotation(1));
-				Document document2 = new Document(reader.getPageSizeWithRotation(pagenumber));
-				// step 2: we create a writer that listens to the document
-				PdfWriter writer1 = PdfWriter.getInstance(document1, new FileOutputStream(args[1]));
-				PdfWriter writer2 = PdfWriter.getInstance(document2, new FileOutputStream(args[2]));
-				// step 3: we open the document
-				document1.open();
-				PdfContentByte cb1 = writer1.getDirectContent();
-				document2.open();
-				PdfContentByte cb2 = writer2.getDirectContent();
-				PdfImportedPage page;
-				int rotation;
-				int i = 0;
-				// step 4: we add content
-				while (i < pagenumber - 1) {
-					i++;
-					document1.setPageSize(reader.getPageSizeWithRotation(i));
-					document1.newPage();
-					page = writer1.getImportedPage(reader, i);
-					rotation = reader.getPageRotation(i);
-					if (rotation == 90 || rotation == 270) {
-						cb1.addTemplate(page, 0, -1f, 1f, 0, 0, reader.getPageSizeWithRotation(i).height());
+				// the two parts are written at the same time
+				final File files[] = {new File(args[1]), new File(args[2])};
+				ArrayList parts = new ArrayList();
+				parts.add("1-" + (pagenumber - 1));
+				parts.add(pagenumber + "-" + n);
+				PdfSplitter splitter = new PdfSplitter(reader);
+				splitter.split(parts.iterator(), new PdfSplitter.DocumentTarget() {
+					public OutputStream getOutputStream(int index, List pages) throws IOException {
+						return new FileOutputStream(files[index]);
 					}
-					else {
-						cb1.addTemplate(page, 1f, 0, 0, 1f, 0, 0);
-					}
-				}
-				while (i < n) {
-					i++;
-					document2.setPageSize(reader.getPageSizeWithRotation(i));
-					document2.newPage();
-					page = writer2.getImportedPage(reader, i);
-					rotation = reader.getPageRotation(i);
-					if (rotation == 90 || rotation == 270) {
-						cb2.addTemplate(page, 0, -1f, 1f, 0, 0, reader.getPageSizeWithRotation(i).height());
-					}
-					else {
-						cb2.addTemplate(page, 1f, 0, 0, 1f, 0, 0);
-					}
-					System.out.println("Processed page " + i);
-				}
-				// step 5: we close the document
-				document1.close();
-				document2.close();
+				}, 2);
             }
             catch(Exception e) {
                 e.printStackTrace();